@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.benchmark;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.Utils;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.spring.autoconfigure.sender.LineEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare the encoding of metric, histogram and span lines by the SDK and by
+ * {@link LineEncoder}. The interesting figure is the allocation rate per operation.
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar EncodingBenchmark -prof gc}.
+ *
+ * @author Stephane Nicoll
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+
+	private static final String SOURCE = "benchmark";
+
+	private final LineEncoder encoder = new LineEncoder(SOURCE);
+
+	private final Map<String, String> tags = createTags();
+
+	private final List<Pair<Double, Integer>> centroids = Arrays.asList(new Pair<>(1.5, 3), new Pair<>(12.25, 10),
+			new Pair<>(120.0, 1));
+
+	private final Set<HistogramGranularity> granularities = EnumSet.of(HistogramGranularity.MINUTE);
+
+	private final List<Pair<String, String>> spanTags = Arrays.asList(new Pair<>("application", "benchmark"),
+			new Pair<>("service", "orders"), new Pair<>("http.method", "GET"), new Pair<>("http.status_code", "200"));
+
+	private final UUID traceId = UUID.randomUUID();
+
+	private final UUID spanId = UUID.randomUUID();
+
+	private final List<UUID> parents = Arrays.asList(UUID.randomUUID());
+
+	private static Map<String, String> createTags() {
+		Map<String, String> tags = new LinkedHashMap<>();
+		tags.put("application", "benchmark");
+		tags.put("service", "orders");
+		tags.put("uri", "/orders/{id}");
+		tags.put("status", "200");
+		return tags;
+	}
+
+	@Benchmark
+	public String metricWithSdk() {
+		return Utils.metricToLineData("http.server.requests", 42.5, 1000L, null, this.tags, SOURCE);
+	}
+
+	@Benchmark
+	public String metricWithEncoder() {
+		return this.encoder.encodeMetric("http.server.requests", 42.5, 1000L, null, this.tags);
+	}
+
+	@Benchmark
+	public String distributionWithSdk() {
+		return Utils.histogramToLineData("http.server.requests", this.centroids, this.granularities, 1000L, null,
+				this.tags, SOURCE);
+	}
+
+	@Benchmark
+	public String distributionWithEncoder() {
+		return this.encoder.encodeDistribution("http.server.requests", this.centroids, this.granularities, 1000L,
+				null, this.tags);
+	}
+
+	@Benchmark
+	public String spanWithSdk() {
+		return Utils.tracingSpanToLineData("GET /orders/{id}", 1000, 12, null, this.traceId, this.spanId,
+				this.parents, null, this.spanTags, null, SOURCE);
+	}
+
+	@Benchmark
+	public String spanWithEncoder() {
+		return this.encoder.encodeSpan("GET /orders/{id}", 1000, 12, null, this.traceId, this.spanId, this.parents,
+				null, this.spanTags, null);
+	}
+
+}
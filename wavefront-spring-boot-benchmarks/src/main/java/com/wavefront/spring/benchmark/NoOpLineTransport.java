@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.benchmark;
+
+import java.util.List;
+
+import com.wavefront.spring.autoconfigure.sender.DataFormat;
+import com.wavefront.spring.autoconfigure.sender.LineTransport;
+
+/**
+ * A {@link LineTransport} that discards the lines it is given.
+ *
+ * @author Stephane Nicoll
+ */
+class NoOpLineTransport implements LineTransport {
+
+	private long lines;
+
+	@Override
+	public void send(DataFormat format, List<String> lines) {
+		this.lines += lines.size();
+	}
+
+	long getLines() {
+		return this.lines;
+	}
+
+	@Override
+	public void close() {
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.benchmark;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import com.wavefront.spring.autoconfigure.sender.BufferingWavefrontSender;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.wavefront.WavefrontConfig;
+import io.micrometer.wavefront.WavefrontMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Measure the wall time of a publication of the Wavefront registry, from the snapshot of
+ * the meters until every point has been handed to the transport, depending on the number
+ * of meters and the encoding parallelism of the sender.
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar PublishBenchmark}.
+ *
+ * @author Stephane Nicoll
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class PublishBenchmark {
+
+	private static final WavefrontConfig CONFIG = new WavefrontConfig() {
+
+		@Override
+		public String get(String key) {
+			return null;
+		}
+
+		@Override
+		public String uri() {
+			return "proxy://localhost:2878";
+		}
+
+		@Override
+		public String source() {
+			return "benchmark";
+		}
+
+		@Override
+		public Duration step() {
+			return Duration.ofDays(1);
+		}
+
+	};
+
+	@Param({ "10000", "50000", "100000" })
+	private int meters;
+
+	@Param({ "1", "4" })
+	private int encodingParallelism;
+
+	private BufferingWavefrontSender sender;
+
+	private WavefrontMeterRegistry registry;
+
+	private Method publish;
+
+	@Setup
+	public void setup() {
+		this.sender = new BufferingWavefrontSender.Builder(new NoOpLineTransport()).source("benchmark").batchSize(10000)
+				.queueCapacity(this.meters * 4).seriesCacheSize(this.meters * 4).flushInterval(Duration.ofHours(1))
+				.encodingParallelism(this.encodingParallelism).build();
+		this.registry = WavefrontMeterRegistry.builder(CONFIG).clock(Clock.SYSTEM).wavefrontSender(this.sender).build();
+		for (int i = 0; i < this.meters; i++) {
+			Tags tags = Tags.of("application", "benchmark", "uri", "/resource/" + (i / 3), "status", "200");
+			switch (i % 3) {
+			case 0:
+				this.registry.counter("benchmark.counter", tags).increment(i);
+				break;
+			case 1:
+				this.registry.gauge("benchmark.gauge", tags, i);
+				break;
+			default:
+				this.registry.timer("benchmark.timer", tags).record(i, TimeUnit.MICROSECONDS);
+			}
+		}
+		this.publish = ReflectionUtils.findMethod(WavefrontMeterRegistry.class, "publish");
+		ReflectionUtils.makeAccessible(this.publish);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		this.registry.close();
+		this.sender.close();
+	}
+
+	@Benchmark
+	public void publish() throws IOException {
+		ReflectionUtils.invokeMethod(this.publish, this.registry);
+		this.sender.flush();
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.opentracing.reporting.Reporter;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.spring.autoconfigure.tracing.LimitingTracer;
+import com.wavefront.spring.autoconfigure.tracing.servlet.TracingFilter;
+import com.wavefront.spring.autoconfigure.tracing.servlet.TracingHandlerInterceptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Measure the overhead of the server span created for a Spring MVC request by
+ * {@link TracingFilter} and {@link TracingHandlerInterceptor}, compared to the same
+ * request without tracing. The tracer is limited as the auto-configured one is, and spans
+ * are discarded once finished.
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar ServletTracingBenchmark -prof gc}.
+ *
+ * @author Stephane Nicoll
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ServletTracingBenchmark {
+
+	private final TracingFilter filter = new TracingFilter(new LimitingTracer(new WavefrontTracer.Builder(
+			new DiscardingReporter(), new ApplicationTags.Builder("benchmark", "orders").build()).build(), 128, 1024,
+			64, 4096));
+
+	private final TracingHandlerInterceptor interceptor = new TracingHandlerInterceptor();
+
+	private final MockHttpServletRequest request = createRequest();
+
+	private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+	private final FilterChain handler = this::handle;
+
+	private static MockHttpServletRequest createRequest() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/orders/42");
+		request.addHeader("Accept", "application/json");
+		request.addHeader("User-Agent", "benchmark");
+		request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/orders/{id}");
+		return request;
+	}
+
+	@Benchmark
+	public void untraced() throws IOException, ServletException {
+		this.handler.doFilter(this.request, this.response);
+	}
+
+	@Benchmark
+	public void traced() throws IOException, ServletException {
+		this.filter.doFilter(this.request, this.response, this.handler);
+	}
+
+	private void handle(ServletRequest request, ServletResponse response) {
+		HttpServletRequest httpRequest = (HttpServletRequest) request;
+		HttpServletResponse httpResponse = (HttpServletResponse) response;
+		this.interceptor.preHandle(httpRequest, httpResponse, this);
+		httpResponse.setStatus(200);
+		this.interceptor.afterCompletion(httpRequest, httpResponse, this, null);
+	}
+
+	private static final class DiscardingReporter implements Reporter {
+
+		@Override
+		public void report(WavefrontSpan span) {
+		}
+
+		@Override
+		public int getFailureCount() {
+			return 0;
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
@@ -41,7 +41,10 @@ import org.springframework.context.annotation.Import;
 @ConditionalOnClass(ApplicationTags.class)
 @EnableConfigurationProperties(WavefrontProperties.class)
 @AutoConfigureAfter(WavefrontMetricsExportAutoConfiguration.class)
-@Import({ WavefrontMetricsConfiguration.class, WavefrontTracingConfiguration.class })
+@Import({ WavefrontMetricsConfiguration.class, WavefrontTracingConfiguration.class,
+		WavefrontTracingServletConfiguration.class, WavefrontTracingReactiveConfiguration.class,
+		WavefrontTracingRestTemplateConfiguration.class, WavefrontTracingTaskConfiguration.class,
+		WavefrontTracingJdbcConfiguration.class })
 public class WavefrontAutoConfiguration {
 
 	@Bean
@@ -17,17 +17,28 @@
 package com.wavefront.spring.autoconfigure;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.spring.autoconfigure.WavefrontProperties.Metrics;
+import com.wavefront.spring.autoconfigure.WavefrontProperties.Metrics.Cardinality;
+import com.wavefront.spring.autoconfigure.metrics.CardinalityLimitingMeterFilter;
+import com.wavefront.spring.autoconfigure.metrics.DistributionMeterFilter;
+import com.wavefront.spring.autoconfigure.metrics.NameMatchingMeterFilter;
+import com.wavefront.spring.autoconfigure.sender.BufferingWavefrontSender;
+import com.wavefront.spring.autoconfigure.sender.BufferingWavefrontSenderMetrics;
+import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
 import io.micrometer.wavefront.WavefrontMeterRegistry;
 
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.actuate.autoconfigure.metrics.MeterRegistryCustomizer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.PropertyMapper;
 import org.springframework.context.annotation.Bean;
 
@@ -46,6 +57,59 @@ class WavefrontMetricsConfiguration {
 				.ifUnique((appTags) -> registry.config().commonTags(createTagsFrom(appTags)));
 	}
 
+	@Bean
+	MeterRegistryCustomizer<WavefrontMeterRegistry> wavefrontNameMatchingMeterRegistryCustomizer(
+			WavefrontProperties properties) {
+		Metrics metrics = properties.getMetrics();
+		return (registry) -> {
+			if (!metrics.getInclude().isEmpty() || !metrics.getExclude().isEmpty()) {
+				registry.config().meterFilter(new NameMatchingMeterFilter(metrics.getInclude(), metrics.getExclude()));
+			}
+		};
+	}
+
+	@Bean
+	MeterRegistryCustomizer<WavefrontMeterRegistry> wavefrontDistributionMeterRegistryCustomizer(
+			WavefrontProperties properties) {
+		List<String> names = properties.getMetrics().getDistributions().getNames();
+		return (registry) -> {
+			if (!names.isEmpty()) {
+				registry.config().meterFilter(new DistributionMeterFilter(names));
+			}
+		};
+	}
+
+	@Bean
+	@ConditionalOnProperty(value = "wavefront.metrics.cardinality.enabled", matchIfMissing = true)
+	MeterRegistryCustomizer<WavefrontMeterRegistry> wavefrontCardinalityLimitingMeterRegistryCustomizer(
+			WavefrontProperties properties) {
+		Cardinality cardinality = properties.getMetrics().getCardinality();
+		return (registry) -> {
+			CardinalityLimitingMeterFilter filter = new CardinalityLimitingMeterFilter(cardinality.getMaxSeries(),
+					cardinality.getLimits());
+			registry.config().meterFilter(filter);
+			filter.bindTo(registry);
+		};
+	}
+
+	@Bean
+	@ConditionalOnBean(BufferingWavefrontSender.class)
+	BufferingWavefrontSenderMetrics wavefrontSenderMetrics(BufferingWavefrontSender sender) {
+		return new BufferingWavefrontSenderMetrics(sender, Tags.empty());
+	}
+
+	@Bean
+	@ConditionalOnBean(BufferingWavefrontSender.class)
+	MeterRegistryCustomizer<WavefrontMeterRegistry> wavefrontGaugeMeterRegistryCustomizer(
+			BufferingWavefrontSender sender) {
+		return (registry) -> registry.config().onMeterAdded((meter) -> {
+			if (meter.getId().getType() == Meter.Type.GAUGE) {
+				sender.registerGauge(meter.getId().getConventionName(registry.config().namingConvention()));
+			}
+		});
+	}
+
+
 	private Iterable<Tag> createTagsFrom(ApplicationTags applicationTags) {
 		Map<String, String> tags = new HashMap<>();
 		PropertyMapper mapper = PropertyMapper.get().alwaysApplyingWhenNonNull();
@@ -16,7 +16,19 @@
 
 package com.wavefront.spring.autoconfigure;
 
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.wavefront.spring.autoconfigure.sender.CompressionCodec;
+import com.wavefront.spring.autoconfigure.sender.OverflowPolicy;
+import com.wavefront.spring.autoconfigure.sender.ProxyTransport;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 /**
  * Advanced configuration properties for Wavefront.
@@ -28,10 +40,28 @@ public class WavefrontProperties {
 
 	private final Application application = new Application();
 
+	private final Metrics metrics = new Metrics();
+
+	private final Sender sender = new Sender();
+
+	private final Tracing tracing = new Tracing();
+
 	public Application getApplication() {
 		return this.application;
 	}
 
+	public Metrics getMetrics() {
+		return this.metrics;
+	}
+
+	public Sender getSender() {
+		return this.sender;
+	}
+
+	public Tracing getTracing() {
+		return this.tracing;
+	}
+
 	public static class Application {
 
 		/**
@@ -88,4 +118,836 @@ public class WavefrontProperties {
 
 	}
 
+	public static class Metrics {
+
+		/**
+		 * Names of the meters to export. A name is either a prefix, matching whole
+		 * dot-separated segments, or a glob pattern using "*" and "?". If set, meters
+		 * that do not match any of them are not exported.
+		 */
+		private List<String> include = new ArrayList<>();
+
+		/**
+		 * Names of the meters not to export. A name is either a prefix or a glob pattern
+		 * using "*" and "?". Takes precedence over "include".
+		 */
+		private List<String> exclude = new ArrayList<>();
+
+		private final Cardinality cardinality = new Cardinality();
+
+		private final SkipUnchanged skipUnchanged = new SkipUnchanged();
+
+		private final Distributions distributions = new Distributions();
+
+		/**
+		 * Publish tiers, keyed by an arbitrary name. Gauges whose name starts with one of
+		 * the prefixes of a tier are published at most once per interval of that tier.
+		 * Counters and timers are published at every step.
+		 */
+		private final Map<String, Tier> tiers = new LinkedHashMap<>();
+
+		public List<String> getInclude() {
+			return this.include;
+		}
+
+		public void setInclude(List<String> include) {
+			this.include = include;
+		}
+
+		public List<String> getExclude() {
+			return this.exclude;
+		}
+
+		public void setExclude(List<String> exclude) {
+			this.exclude = exclude;
+		}
+
+		public Cardinality getCardinality() {
+			return this.cardinality;
+		}
+
+		public Distributions getDistributions() {
+			return this.distributions;
+		}
+
+		public Map<String, Tier> getTiers() {
+			return this.tiers;
+		}
+
+		public SkipUnchanged getSkipUnchanged() {
+			return this.skipUnchanged;
+		}
+
+		public static class Cardinality {
+
+			/**
+			 * Maximum number of distinct series per meter name. Once reached, the tag
+			 * values of additional series are replaced by "other".
+			 */
+			private int maxSeries = 1000;
+
+			/**
+			 * Maximum number of distinct series for meter names starting with the
+			 * specified prefix, matching whole dot-separated segments. The longest
+			 * matching prefix applies.
+			 */
+			private Map<String, Integer> limits = new LinkedHashMap<>();
+
+			public int getMaxSeries() {
+				return this.maxSeries;
+			}
+
+			public void setMaxSeries(int maxSeries) {
+				this.maxSeries = maxSeries;
+			}
+
+			public Map<String, Integer> getLimits() {
+				return this.limits;
+			}
+
+			public void setLimits(Map<String, Integer> limits) {
+				this.limits = limits;
+			}
+
+		}
+
+		public static class Distributions {
+
+			/**
+			 * Prefixes of the names of the timers and distribution summaries to export as
+			 * native Wavefront distributions rather than as individual statistics. A
+			 * prefix matches whole dot-separated segments.
+			 */
+			private List<String> names = new ArrayList<>();
+
+			public List<String> getNames() {
+				return this.names;
+			}
+
+			public void setNames(List<String> names) {
+				this.names = names;
+			}
+
+		}
+
+		public static class Tier {
+
+			/**
+			 * Prefixes of the names of the gauges that belong to this tier, matching
+			 * whole dot-separated segments.
+			 */
+			private List<String> prefixes = new ArrayList<>();
+
+			/**
+			 * Minimum interval between two publications of the gauges of this tier.
+			 * Should be a multiple of the step of the registry.
+			 */
+			private Duration interval;
+
+			public List<String> getPrefixes() {
+				return this.prefixes;
+			}
+
+			public void setPrefixes(List<String> prefixes) {
+				this.prefixes = prefixes;
+			}
+
+			public Duration getInterval() {
+				return this.interval;
+			}
+
+			public void setInterval(Duration interval) {
+				this.interval = interval;
+			}
+
+		}
+
+		public static class SkipUnchanged {
+
+			/**
+			 * Whether to skip publishing a gauge whose value has not changed since it was
+			 * last published, or a counter or timer that remains at zero.
+			 */
+			private boolean enabled;
+
+			/**
+			 * Interval after which an unchanged metric is published again so that its
+			 * series does not look stale.
+			 */
+			private Duration refreshInterval = Duration.ofMinutes(5);
+
+			public boolean isEnabled() {
+				return this.enabled;
+			}
+
+			public void setEnabled(boolean enabled) {
+				this.enabled = enabled;
+			}
+
+			public Duration getRefreshInterval() {
+				return this.refreshInterval;
+			}
+
+			public void setRefreshInterval(Duration refreshInterval) {
+				this.refreshInterval = refreshInterval;
+			}
+
+		}
+
+	}
+
+	public static class Sender {
+
+		/**
+		 * Maximum number of points sent in a single batch.
+		 */
+		private int batchSize = 10000;
+
+		/**
+		 * Maximum time to wait before buffered points are flushed.
+		 */
+		private Duration flushInterval = Duration.ofSeconds(1);
+
+		/**
+		 * Capacity of the in-memory buffer for each type of data (metrics, histograms,
+		 * spans and span logs). Rounded up to the next power of two.
+		 */
+		private int queueCapacity = 50000;
+
+		/**
+		 * Policy to apply when a buffer is full.
+		 */
+		private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+
+		/**
+		 * Maximum number of metric series whose escaped name, source and tags are cached
+		 * between publications. Set to 0 to disable the cache.
+		 */
+		private int seriesCacheSize = 100000;
+
+		/**
+		 * Time after which a cached series that has not been published can be evicted to
+		 * make room for a new series. Should be longer than the publication step.
+		 */
+		private Duration seriesCacheExpiry = Duration.ofMinutes(10);
+
+		/**
+		 * Number of threads used to encode metric points. With more than one, points are
+		 * encoded in parallel when they are flushed rather than on the publishing thread.
+		 */
+		private int encodingParallelism = 1;
+
+		private final Proxy proxy = new Proxy();
+
+		private final Spool spool = new Spool();
+
+		private final Compression compression = new Compression();
+
+		public int getBatchSize() {
+			return this.batchSize;
+		}
+
+		public void setBatchSize(int batchSize) {
+			this.batchSize = batchSize;
+		}
+
+		public Duration getFlushInterval() {
+			return this.flushInterval;
+		}
+
+		public void setFlushInterval(Duration flushInterval) {
+			this.flushInterval = flushInterval;
+		}
+
+		public int getQueueCapacity() {
+			return this.queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public OverflowPolicy getOverflowPolicy() {
+			return this.overflowPolicy;
+		}
+
+		public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+			this.overflowPolicy = overflowPolicy;
+		}
+
+		public int getSeriesCacheSize() {
+			return this.seriesCacheSize;
+		}
+
+		public void setSeriesCacheSize(int seriesCacheSize) {
+			this.seriesCacheSize = seriesCacheSize;
+		}
+
+		public Duration getSeriesCacheExpiry() {
+			return this.seriesCacheExpiry;
+		}
+
+		public void setSeriesCacheExpiry(Duration seriesCacheExpiry) {
+			this.seriesCacheExpiry = seriesCacheExpiry;
+		}
+
+		public int getEncodingParallelism() {
+			return this.encodingParallelism;
+		}
+
+		public void setEncodingParallelism(int encodingParallelism) {
+			this.encodingParallelism = encodingParallelism;
+		}
+
+		public Proxy getProxy() {
+			return this.proxy;
+		}
+
+		public Spool getSpool() {
+			return this.spool;
+		}
+
+		public Compression getCompression() {
+			return this.compression;
+		}
+
+		public static class Proxy {
+
+			/**
+			 * Transport to use to send points to a proxy.
+			 */
+			private ProxyTransport transport = ProxyTransport.HTTP;
+
+			/**
+			 * Port on which the proxy accepts histogram distributions, when using the TCP
+			 * transport. Defaults to the port of the proxy uri.
+			 */
+			private Integer distributionPort;
+
+			/**
+			 * Port on which the proxy accepts spans and span logs, when using the TCP
+			 * transport. Defaults to the port of the proxy uri.
+			 */
+			private Integer tracingPort;
+
+			/**
+			 * Maximum amount of data waiting to be written to a proxy connection, when
+			 * using the TCP transport. Once reached, the sender waits for the proxy to
+			 * catch up.
+			 */
+			private DataSize maxPendingSize = DataSize.ofMegabytes(16);
+
+			/**
+			 * Interval at which a proxy that failed to accept a batch is checked again,
+			 * when several proxies are configured.
+			 */
+			private Duration healthCheckInterval = Duration.ofSeconds(30);
+
+			public ProxyTransport getTransport() {
+				return this.transport;
+			}
+
+			public void setTransport(ProxyTransport transport) {
+				this.transport = transport;
+			}
+
+			public Integer getDistributionPort() {
+				return this.distributionPort;
+			}
+
+			public void setDistributionPort(Integer distributionPort) {
+				this.distributionPort = distributionPort;
+			}
+
+			public Integer getTracingPort() {
+				return this.tracingPort;
+			}
+
+			public void setTracingPort(Integer tracingPort) {
+				this.tracingPort = tracingPort;
+			}
+
+			public DataSize getMaxPendingSize() {
+				return this.maxPendingSize;
+			}
+
+			public void setMaxPendingSize(DataSize maxPendingSize) {
+				this.maxPendingSize = maxPendingSize;
+			}
+
+			public Duration getHealthCheckInterval() {
+				return this.healthCheckInterval;
+			}
+
+			public void setHealthCheckInterval(Duration healthCheckInterval) {
+				this.healthCheckInterval = healthCheckInterval;
+			}
+
+		}
+
+		public static class Spool {
+
+			/**
+			 * Whether to spool points to disk when the Wavefront endpoint is unreachable.
+			 */
+			private boolean enabled;
+
+			/**
+			 * Directory in which spooled points are stored. Must not be shared with
+			 * another application. Defaults to a "wavefront-spool" directory in the
+			 * temporary directory, or to a numbered sibling if it is already in use.
+			 */
+			private File directory;
+
+			/**
+			 * Maximum size of the spool. Once reached, the oldest points are discarded.
+			 */
+			private DataSize maxSize = DataSize.ofMegabytes(256);
+
+			/**
+			 * Size of a single spool segment.
+			 */
+			private DataSize segmentSize = DataSize.ofMegabytes(16);
+
+			/**
+			 * Maximum number of spooled points to replay per second once the endpoint is
+			 * reachable again.
+			 */
+			private int replayRate = 5000;
+
+			public boolean isEnabled() {
+				return this.enabled;
+			}
+
+			public void setEnabled(boolean enabled) {
+				this.enabled = enabled;
+			}
+
+			public File getDirectory() {
+				return this.directory;
+			}
+
+			public void setDirectory(File directory) {
+				this.directory = directory;
+			}
+
+			public DataSize getMaxSize() {
+				return this.maxSize;
+			}
+
+			public void setMaxSize(DataSize maxSize) {
+				this.maxSize = maxSize;
+			}
+
+			public DataSize getSegmentSize() {
+				return this.segmentSize;
+			}
+
+			public void setSegmentSize(DataSize segmentSize) {
+				this.segmentSize = segmentSize;
+			}
+
+			public int getReplayRate() {
+				return this.replayRate;
+			}
+
+			public void setReplayRate(int replayRate) {
+				this.replayRate = replayRate;
+			}
+
+		}
+
+		public static class Compression {
+
+			/**
+			 * Compression codec to use for batches sent directly to a Wavefront cluster.
+			 */
+			private CompressionCodec codec = CompressionCodec.GZIP;
+
+			/**
+			 * Compression level, from 0 (no compression) to 9 (best compression), or -1
+			 * for the default level of the codec.
+			 */
+			private int level = -1;
+
+			/**
+			 * Minimum size of a batch for it to be compressed.
+			 */
+			private DataSize minBatchSize = DataSize.ofKilobytes(1);
+
+			public CompressionCodec getCodec() {
+				return this.codec;
+			}
+
+			public void setCodec(CompressionCodec codec) {
+				this.codec = codec;
+			}
+
+			public int getLevel() {
+				return this.level;
+			}
+
+			public void setLevel(int level) {
+				this.level = level;
+			}
+
+			public DataSize getMinBatchSize() {
+				return this.minBatchSize;
+			}
+
+			public void setMinBatchSize(DataSize minBatchSize) {
+				this.minBatchSize = minBatchSize;
+			}
+
+		}
+
+	}
+
+	public static class Tracing {
+
+		private final Sampling sampling = new Sampling();
+
+		private final TailSampling tailSampling = new TailSampling();
+
+		private final Reporter reporter = new Reporter();
+
+		private final RedMetrics redMetrics = new RedMetrics();
+
+		private final Limits limits = new Limits();
+
+		private final Jdbc jdbc = new Jdbc();
+
+		public Sampling getSampling() {
+			return this.sampling;
+		}
+
+		public TailSampling getTailSampling() {
+			return this.tailSampling;
+		}
+
+		public Reporter getReporter() {
+			return this.reporter;
+		}
+
+		public RedMetrics getRedMetrics() {
+			return this.redMetrics;
+		}
+
+		public Limits getLimits() {
+			return this.limits;
+		}
+
+		public Jdbc getJdbc() {
+			return this.jdbc;
+		}
+
+		public static class Sampling {
+
+			/**
+			 * Probability, between 0 and 1, that a trace is reported. Decided when the
+			 * root span starts and inherited by its children.
+			 */
+			private Double rate;
+
+			/**
+			 * Minimum duration of a span for it to be always reported, regardless of the
+			 * other samplers.
+			 */
+			private Duration duration;
+
+			/**
+			 * Number of spans to report per second. If set, the sampling rate is adjusted
+			 * periodically to keep the reported spans close to that budget.
+			 */
+			private Integer spansPerSecond;
+
+			/**
+			 * Interval at which the sampling rate is adjusted to the budget of reported
+			 * spans.
+			 */
+			private Duration adjustInterval = Duration.ofSeconds(5);
+
+			public Double getRate() {
+				return this.rate;
+			}
+
+			public void setRate(Double rate) {
+				this.rate = rate;
+			}
+
+			public Duration getDuration() {
+				return this.duration;
+			}
+
+			public void setDuration(Duration duration) {
+				this.duration = duration;
+			}
+
+			public Integer getSpansPerSecond() {
+				return this.spansPerSecond;
+			}
+
+			public void setSpansPerSecond(Integer spansPerSecond) {
+				this.spansPerSecond = spansPerSecond;
+			}
+
+			public Duration getAdjustInterval() {
+				return this.adjustInterval;
+			}
+
+			public void setAdjustInterval(Duration adjustInterval) {
+				this.adjustInterval = adjustInterval;
+			}
+
+		}
+
+		public static class TailSampling {
+
+			/**
+			 * Whether to hold finished spans per trace and only report the traces that
+			 * have an error or a slow span.
+			 */
+			private boolean enabled;
+
+			/**
+			 * Minimum duration of a span for its trace to be reported.
+			 */
+			private Duration latencyThreshold = Duration.ofSeconds(1);
+
+			/**
+			 * Maximum time to wait for the local root of a trace to finish before a
+			 * decision is made on the spans received so far.
+			 */
+			private Duration window = Duration.ofSeconds(10);
+
+			/**
+			 * Maximum number of spans to hold. The oldest traces are decided on the spans
+			 * received so far when that limit is reached.
+			 */
+			private int maxSpans = 10000;
+
+			public boolean isEnabled() {
+				return this.enabled;
+			}
+
+			public void setEnabled(boolean enabled) {
+				this.enabled = enabled;
+			}
+
+			public Duration getLatencyThreshold() {
+				return this.latencyThreshold;
+			}
+
+			public void setLatencyThreshold(Duration latencyThreshold) {
+				this.latencyThreshold = latencyThreshold;
+			}
+
+			public Duration getWindow() {
+				return this.window;
+			}
+
+			public void setWindow(Duration window) {
+				this.window = window;
+			}
+
+			public int getMaxSpans() {
+				return this.maxSpans;
+			}
+
+			public void setMaxSpans(int maxSpans) {
+				this.maxSpans = maxSpans;
+			}
+
+		}
+
+		public static class Reporter {
+
+			/**
+			 * Maximum number of finished spans waiting to be reported.
+			 */
+			private int queueSize = 10000;
+
+			/**
+			 * Policy to apply when a span finishes while the queue is full.
+			 */
+			private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+
+			/**
+			 * Number of queued spans that triggers their reporting.
+			 */
+			private int batchSize = 1000;
+
+			/**
+			 * Maximum time a finished span waits before it is reported.
+			 */
+			private Duration flushInterval = Duration.ofSeconds(1);
+
+			public int getQueueSize() {
+				return this.queueSize;
+			}
+
+			public void setQueueSize(int queueSize) {
+				this.queueSize = queueSize;
+			}
+
+			public OverflowPolicy getOverflowPolicy() {
+				return this.overflowPolicy;
+			}
+
+			public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+				this.overflowPolicy = overflowPolicy;
+			}
+
+			public int getBatchSize() {
+				return this.batchSize;
+			}
+
+			public void setBatchSize(int batchSize) {
+				this.batchSize = batchSize;
+			}
+
+			public Duration getFlushInterval() {
+				return this.flushInterval;
+			}
+
+			public void setFlushInterval(Duration flushInterval) {
+				this.flushInterval = flushInterval;
+			}
+
+		}
+
+		public static class RedMetrics {
+
+			/**
+			 * Whether to derive request rate, error count and duration metrics per
+			 * operation from every finished span, sampled or not.
+			 */
+			private boolean enabled = true;
+
+			/**
+			 * Interval at which the derived metrics are published.
+			 */
+			private Duration step = Duration.ofMinutes(1);
+
+			/**
+			 * Maximum number of distinct operations to derive metrics for.
+			 */
+			private int maxOperations = 1000;
+
+			public boolean isEnabled() {
+				return this.enabled;
+			}
+
+			public void setEnabled(boolean enabled) {
+				this.enabled = enabled;
+			}
+
+			public Duration getStep() {
+				return this.step;
+			}
+
+			public void setStep(Duration step) {
+				this.step = step;
+			}
+
+			public int getMaxOperations() {
+				return this.maxOperations;
+			}
+
+			public void setMaxOperations(int maxOperations) {
+				this.maxOperations = maxOperations;
+			}
+
+		}
+
+		public static class Limits {
+
+			/**
+			 * Maximum number of tags per span. Additional tags are dropped.
+			 */
+			private int maxTags = 128;
+
+			/**
+			 * Maximum length of a span tag value. Longer values are truncated.
+			 */
+			private int maxTagValueLength = 1024;
+
+			/**
+			 * Maximum number of logs per span. Additional logs are dropped.
+			 */
+			private int maxLogs = 64;
+
+			/**
+			 * Maximum length of a span log value. Longer values are truncated.
+			 */
+			private int maxLogValueLength = 4096;
+
+			public int getMaxTags() {
+				return this.maxTags;
+			}
+
+			public void setMaxTags(int maxTags) {
+				this.maxTags = maxTags;
+			}
+
+			public int getMaxTagValueLength() {
+				return this.maxTagValueLength;
+			}
+
+			public void setMaxTagValueLength(int maxTagValueLength) {
+				this.maxTagValueLength = maxTagValueLength;
+			}
+
+			public int getMaxLogs() {
+				return this.maxLogs;
+			}
+
+			public void setMaxLogs(int maxLogs) {
+				this.maxLogs = maxLogs;
+			}
+
+			public int getMaxLogValueLength() {
+				return this.maxLogValueLength;
+			}
+
+			public void setMaxLogValueLength(int maxLogValueLength) {
+				this.maxLogValueLength = maxLogValueLength;
+			}
+
+		}
+
+		public static class Jdbc {
+
+			/**
+			 * Whether to create a span and record a timer for each statement executed
+			 * against a DataSource bean.
+			 */
+			private boolean enabled;
+
+			/**
+			 * Maximum number of distinct statements per DataSource whose fingerprint is
+			 * cached. The least recently used statements are evicted beyond that.
+			 */
+			private int maxStatements = 1000;
+
+			public boolean isEnabled() {
+				return this.enabled;
+			}
+
+			public void setEnabled(boolean enabled) {
+				this.enabled = enabled;
+			}
+
+			public int getMaxStatements() {
+				return this.maxStatements;
+			}
+
+			public void setMaxStatements(int maxStatements) {
+				this.maxStatements = maxStatements;
+			}
+
+		}
+
+	}
+
 }
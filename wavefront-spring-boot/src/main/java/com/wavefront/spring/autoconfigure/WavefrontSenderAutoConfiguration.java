@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.spring.autoconfigure.WavefrontProperties.Metrics.SkipUnchanged;
+import com.wavefront.spring.autoconfigure.WavefrontProperties.Sender.Compression;
+import com.wavefront.spring.autoconfigure.WavefrontProperties.Sender.Proxy;
+import com.wavefront.spring.autoconfigure.WavefrontProperties.Sender.Spool;
+import com.wavefront.spring.autoconfigure.sender.BufferingWavefrontSender;
+import com.wavefront.spring.autoconfigure.sender.DiskSpool;
+import com.wavefront.spring.autoconfigure.sender.HttpLineTransport;
+import com.wavefront.spring.autoconfigure.sender.LineTransport;
+import com.wavefront.spring.autoconfigure.sender.NioProxyLineTransport;
+import com.wavefront.spring.autoconfigure.sender.ProxyTransport;
+import com.wavefront.spring.autoconfigure.sender.ShardedLineTransport;
+import com.wavefront.spring.autoconfigure.sender.SpoolLockedException;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.wavefront.WavefrontConfig;
+import io.micrometer.wavefront.WavefrontMeterRegistry;
+
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontMetricsExportAutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.PropertyMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * {@link EnableAutoConfiguration Auto-configuration} for a buffering
+ * {@link WavefrontSender} that is shared by metrics and tracing. Runs before the
+ * auto-configuration of the Wavefront meter registry so that it uses the sender
+ * configured here.
+ *
+ * @author Stephane Nicoll
+ */
+@Configuration
+@ConditionalOnClass({ WavefrontSender.class, WavefrontMeterRegistry.class })
+@ConditionalOnBean(Clock.class)
+@ConditionalOnProperty(prefix = "management.metrics.export.wavefront", name = "enabled", havingValue = "true",
+		matchIfMissing = true)
+@EnableConfigurationProperties(WavefrontProperties.class)
+@AutoConfigureAfter(MetricsAutoConfiguration.class)
+@AutoConfigureBefore(WavefrontMetricsExportAutoConfiguration.class)
+public class WavefrontSenderAutoConfiguration {
+
+	private static final String PROXY_SCHEME = "proxy";
+
+	private static final int DEFAULT_PROXY_PORT = 2878;
+
+	private static final String DEFAULT_SPOOL_DIRECTORY = "wavefront-spool";
+
+	private static final int MAX_DEFAULT_SPOOL_DIRECTORIES = 16;
+
+	@Bean
+	@ConditionalOnMissingBean(WavefrontSender.class)
+	public BufferingWavefrontSender wavefrontSender(WavefrontConfig wavefrontConfig, WavefrontProperties properties)
+			throws IOException {
+		WavefrontProperties.Sender sender = properties.getSender();
+		BufferingWavefrontSender.Builder builder = new BufferingWavefrontSender.Builder(
+				createTransport(wavefrontConfig, sender));
+		PropertyMapper mapper = PropertyMapper.get().alwaysApplyingWhenNonNull();
+		mapper.from(wavefrontConfig::source).whenHasText().to(builder::source);
+		mapper.from(sender::getBatchSize).to(builder::batchSize);
+		mapper.from(sender::getFlushInterval).to(builder::flushInterval);
+		mapper.from(sender::getQueueCapacity).to(builder::queueCapacity);
+		mapper.from(sender::getOverflowPolicy).to(builder::overflowPolicy);
+		mapper.from(sender::getSeriesCacheSize).to(builder::seriesCacheSize);
+		mapper.from(sender::getSeriesCacheExpiry).to(builder::seriesCacheExpiry);
+		mapper.from(sender::getEncodingParallelism).to(builder::encodingParallelism);
+		SkipUnchanged skipUnchanged = properties.getMetrics().getSkipUnchanged();
+		if (skipUnchanged.isEnabled()) {
+			builder.skipUnchanged(skipUnchanged.getRefreshInterval());
+		}
+		properties.getMetrics().getTiers().forEach((name, tier) -> {
+			Assert.state(tier.getInterval() != null, () -> "No interval defined for publish tier '" + name + "'");
+			tier.getPrefixes().forEach((prefix) -> builder.publishInterval(prefix, tier.getInterval()));
+		});
+		Spool spool = sender.getSpool();
+		if (spool.isEnabled()) {
+			builder.spool(createSpool(spool)).replayRate(spool.getReplayRate());
+		}
+		return builder.build();
+	}
+
+	private DiskSpool createSpool(Spool spool) throws IOException {
+		long maxSize = spool.getMaxSize().toBytes();
+		int segmentSize = (int) spool.getSegmentSize().toBytes();
+		if (spool.getDirectory() != null) {
+			return new DiskSpool(spool.getDirectory().toPath(), maxSize, segmentSize);
+		}
+		Path directory = Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_SPOOL_DIRECTORY);
+		for (int i = 1;; i++) {
+			try {
+				return new DiskSpool(directory, maxSize, segmentSize);
+			}
+			catch (SpoolLockedException ex) {
+				if (i >= MAX_DEFAULT_SPOOL_DIRECTORIES) {
+					throw ex;
+				}
+				directory = directory.resolveSibling(DEFAULT_SPOOL_DIRECTORY + "-" + i);
+			}
+		}
+	}
+
+	private LineTransport createTransport(WavefrontConfig wavefrontConfig, WavefrontProperties.Sender sender)
+			throws IOException {
+		String[] uris = StringUtils.commaDelimitedListToStringArray(wavefrontConfig.uri());
+		if (uris.length > 1) {
+			List<LineTransport> transports = new ArrayList<>();
+			for (String uri : uris) {
+				transports.add(createTransport(uri.trim(), wavefrontConfig.apiToken(), sender));
+			}
+			return new ShardedLineTransport(transports, sender.getProxy().getHealthCheckInterval());
+		}
+		return createTransport(wavefrontConfig.uri(), wavefrontConfig.apiToken(), sender);
+	}
+
+	private LineTransport createTransport(String uri, String apiToken, WavefrontProperties.Sender sender)
+			throws IOException {
+		URI target = URI.create(uri);
+		if (PROXY_SCHEME.equals(target.getScheme())) {
+			return createProxyTransport(uri, target, sender.getProxy());
+		}
+		Compression compression = sender.getCompression();
+		return new HttpLineTransport(uri, apiToken, compression.getCodec(), compression.getLevel(),
+				(int) compression.getMinBatchSize().toBytes());
+	}
+
+	private LineTransport createProxyTransport(String uri, URI target, Proxy proxy) throws IOException {
+		if (proxy.getTransport() == ProxyTransport.TCP) {
+			int port = (target.getPort() != -1) ? target.getPort() : DEFAULT_PROXY_PORT;
+			return new NioProxyLineTransport(target.getHost(), port,
+					(proxy.getDistributionPort() != null) ? proxy.getDistributionPort() : port,
+					(proxy.getTracingPort() != null) ? proxy.getTracingPort() : port,
+					proxy.getMaxPendingSize().toBytes());
+		}
+		return new HttpLineTransport("http" + uri.substring(PROXY_SCHEME.length()), null);
+	}
+
+}
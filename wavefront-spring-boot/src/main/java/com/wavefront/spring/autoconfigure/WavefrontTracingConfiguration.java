@@ -16,22 +16,53 @@
 
 package com.wavefront.spring.autoconfigure;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.wavefront.opentracing.WavefrontTracer;
 import com.wavefront.opentracing.reporting.Reporter;
 import com.wavefront.opentracing.reporting.WavefrontSpanReporter;
 import com.wavefront.sdk.common.WavefrontSender;
 import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.entities.tracing.sampling.DurationSampler;
+import com.wavefront.sdk.entities.tracing.sampling.RateSampler;
+import com.wavefront.sdk.entities.tracing.sampling.Sampler;
+import com.wavefront.spring.autoconfigure.WavefrontProperties.Tracing;
+import com.wavefront.spring.autoconfigure.WavefrontProperties.Tracing.Limits;
+import com.wavefront.spring.autoconfigure.WavefrontProperties.Tracing.RedMetrics;
+import com.wavefront.spring.autoconfigure.WavefrontProperties.Tracing.Sampling;
+import com.wavefront.spring.autoconfigure.WavefrontProperties.Tracing.TailSampling;
+import com.wavefront.spring.autoconfigure.tracing.AdaptiveSampler;
+import com.wavefront.spring.autoconfigure.tracing.AsyncReporter;
+import com.wavefront.spring.autoconfigure.tracing.ComponentHeartbeater;
+import com.wavefront.spring.autoconfigure.tracing.LimitingTracer;
+import com.wavefront.spring.autoconfigure.tracing.RedMetricsReporter;
+import com.wavefront.spring.autoconfigure.tracing.SpanFinishListener;
+import com.wavefront.spring.autoconfigure.tracing.TailSamplingReporter;
 import io.micrometer.wavefront.WavefrontConfig;
 import io.opentracing.Tracer;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
+import org.springframework.util.Assert;
 
 /**
- * Configuration for Wavefront tracing.
+ * Configuration for Wavefront tracing. Spans are sampled according to the
+ * {@code wavefront.tracing.sampling} properties and to any {@link Sampler} bean: a span
+ * is reported as soon as one of them keeps it. Without any sampler, every span is
+ * reported. If a budget of spans per second is set, an {@link AdaptiveSampler} adjusts
+ * its rate to the spans that are actually reported. If tail sampling is enabled, the
+ * spans that remain are held per trace and only traces with an error or a slow span are
+ * reported. Unless disabled, request rate, error count and duration metrics are derived
+ * from every finished span, before any sampling applies. Spans are handed to an
+ * {@link AsyncReporter} so that finishing a span never waits for the reporting chain,
+ * the heartbeats of the tracing components being sent by a {@link ComponentHeartbeater}.
+ * The {@link WavefrontTracer} is wrapped in a {@link LimitingTracer} that bounds the
+ * number and size of the tags and logs of each span.
  *
  * @author Stephane Nicoll
  */
@@ -42,11 +73,80 @@ class WavefrontTracingConfiguration {
 	@Bean
 	@ConditionalOnMissingBean(Tracer.class)
 	@ConditionalOnBean(WavefrontSender.class)
-	WavefrontTracer wavefrontTracer(WavefrontSender wavefrontSender, ApplicationTags applicationTags,
-			WavefrontConfig wavefrontConfig) {
+	@ConditionalOnProperty("wavefront.tracing.sampling.spans-per-second")
+	AdaptiveSampler wavefrontAdaptiveSampler(WavefrontProperties properties) {
+		Sampling sampling = properties.getTracing().getSampling();
+		return new AdaptiveSampler(sampling.getSpansPerSecond(), sampling.getAdjustInterval());
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(Tracer.class)
+	@ConditionalOnBean(WavefrontSender.class)
+	AsyncReporter wavefrontSpanReporter(WavefrontSender wavefrontSender, WavefrontConfig wavefrontConfig,
+			WavefrontProperties properties, ObjectProvider<AdaptiveSampler> adaptiveSampler) {
+		Tracing tracing = properties.getTracing();
 		Reporter spanReporter = new WavefrontSpanReporter.Builder().withSource(wavefrontConfig.source())
 				.build(wavefrontSender);
-		return new WavefrontTracer.Builder(spanReporter, applicationTags).build();
+		AdaptiveSampler sampler = adaptiveSampler.getIfUnique();
+		if (sampler != null) {
+			spanReporter = sampler.reporter(spanReporter);
+		}
+		TailSampling tailSampling = tracing.getTailSampling();
+		if (tailSampling.isEnabled()) {
+			spanReporter = new TailSamplingReporter(spanReporter, tailSampling.getLatencyThreshold(),
+					tailSampling.getWindow(), tailSampling.getMaxSpans());
+		}
+		WavefrontProperties.Tracing.Reporter reporter = tracing.getReporter();
+		return new AsyncReporter(spanReporter, reporter.getQueueSize(), reporter.getOverflowPolicy(),
+				reporter.getBatchSize(), reporter.getFlushInterval());
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(Tracer.class)
+	@ConditionalOnBean(WavefrontSender.class)
+	@ConditionalOnProperty(value = "wavefront.tracing.red-metrics.enabled", matchIfMissing = true)
+	RedMetricsReporter wavefrontRedMetricsReporter(WavefrontSender wavefrontSender, ApplicationTags applicationTags,
+			WavefrontProperties properties) {
+		RedMetrics redMetrics = properties.getTracing().getRedMetrics();
+		return new RedMetricsReporter(wavefrontSender, applicationTags, redMetrics.getStep(),
+				redMetrics.getMaxOperations());
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(Tracer.class)
+	@ConditionalOnBean(WavefrontSender.class)
+	ComponentHeartbeater wavefrontComponentHeartbeater(WavefrontSender wavefrontSender,
+			ApplicationTags applicationTags) {
+		return new ComponentHeartbeater(wavefrontSender, applicationTags);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(Tracer.class)
+	@ConditionalOnBean(WavefrontSender.class)
+	LimitingTracer wavefrontTracer(AsyncReporter wavefrontSpanReporter, ApplicationTags applicationTags,
+			WavefrontProperties properties, ObjectProvider<Sampler> samplers,
+			ObjectProvider<RedMetricsReporter> redMetricsReporter) {
+		WavefrontTracer.Builder builder = new WavefrontTracer.Builder(wavefrontSpanReporter, applicationTags);
+		createSamplers(properties.getTracing().getSampling()).forEach(builder::withSampler);
+		samplers.orderedStream().forEach(builder::withSampler);
+		Limits limits = properties.getTracing().getLimits();
+		SpanFinishListener finishListener = redMetricsReporter.getIfAvailable(() -> (span) -> {
+		});
+		return new LimitingTracer(builder.build(), limits.getMaxTags(), limits.getMaxTagValueLength(),
+				limits.getMaxLogs(), limits.getMaxLogValueLength(), finishListener);
+	}
+
+	private List<Sampler> createSamplers(Sampling sampling) {
+		List<Sampler> samplers = new ArrayList<>();
+		if (sampling.getRate() != null) {
+			double rate = sampling.getRate();
+			Assert.state(rate >= 0 && rate <= 1, () -> "Sampling rate must be between 0 and 1, got " + rate);
+			samplers.add(new RateSampler(rate));
+		}
+		if (sampling.getDuration() != null) {
+			samplers.add(new DurationSampler(sampling.getDuration().toMillis()));
+		}
+		return samplers;
 	}
 
 }
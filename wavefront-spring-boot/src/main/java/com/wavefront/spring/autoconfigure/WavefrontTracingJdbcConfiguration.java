@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure;
+
+import javax.sql.DataSource;
+
+import com.wavefront.spring.autoconfigure.WavefrontProperties.Tracing.Jdbc;
+import com.wavefront.spring.autoconfigure.tracing.jdbc.TracingDataSourceBeanPostProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentracing.Tracer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Configuration for the tracing of the statements executed against {@link DataSource}
+ * beans. Opt-in as it proxies every data source of the application.
+ *
+ * @author Stephane Nicoll
+ */
+@ConditionalOnClass(Tracer.class)
+@ConditionalOnProperty("wavefront.tracing.jdbc.enabled")
+class WavefrontTracingJdbcConfiguration {
+
+	@Bean
+	@ConditionalOnBean(Tracer.class)
+	static TracingDataSourceBeanPostProcessor wavefrontTracingDataSourceBeanPostProcessor(Environment environment,
+			ObjectProvider<Tracer> tracer, ObjectProvider<MeterRegistry> meterRegistry) {
+		Jdbc jdbc = Binder.get(environment).bind("wavefront.tracing.jdbc", Jdbc.class).orElseGet(Jdbc::new);
+		return new TracingDataSourceBeanPostProcessor(tracer::getObject, meterRegistry::getIfAvailable,
+				jdbc.getMaxStatements());
+	}
+
+}
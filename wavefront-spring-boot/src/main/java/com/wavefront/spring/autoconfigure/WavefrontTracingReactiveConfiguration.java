@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure;
+
+import com.wavefront.spring.autoconfigure.tracing.reactive.TracingExchangeFilterFunction;
+import com.wavefront.spring.autoconfigure.tracing.reactive.TracingWebFilter;
+import io.opentracing.Tracer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * Configuration for the tracing of reactive applications. A server span is created for
+ * each exchange handled by WebFlux and a client span for each request of a
+ * {@link WebClient} built from the auto-configured {@link WebClient.Builder}. The active
+ * span is propagated through the Reactor context.
+ *
+ * @author Stephane Nicoll
+ */
+@ConditionalOnClass({ Tracer.class, WebClient.class })
+@ConditionalOnProperty(value = "wavefront.tracing.enabled", matchIfMissing = true)
+class WavefrontTracingReactiveConfiguration {
+
+	@Bean
+	@ConditionalOnWebApplication(type = Type.REACTIVE)
+	@ConditionalOnBean(Tracer.class)
+	@ConditionalOnProperty(value = "wavefront.tracing.webflux.enabled", matchIfMissing = true)
+	TracingWebFilter wavefrontTracingWebFilter(Tracer tracer) {
+		return new TracingWebFilter(tracer);
+	}
+
+	@Bean
+	@ConditionalOnBean(Tracer.class)
+	@ConditionalOnProperty(value = "wavefront.tracing.webclient.enabled", matchIfMissing = true)
+	WebClientCustomizer wavefrontTracingWebClientCustomizer(Tracer tracer) {
+		TracingExchangeFilterFunction filter = new TracingExchangeFilterFunction(tracer);
+		return (builder) -> builder.filter(filter);
+	}
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure;
+
+import com.wavefront.spring.autoconfigure.tracing.client.TracingRestTemplateCustomizer;
+import io.opentracing.Tracer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Configuration for the tracing of the requests sent by a {@link RestTemplate} built from
+ * the auto-configured {@link RestTemplateBuilder}.
+ *
+ * @author Stephane Nicoll
+ */
+@ConditionalOnClass({ Tracer.class, RestTemplate.class })
+@ConditionalOnProperty(value = { "wavefront.tracing.enabled", "wavefront.tracing.rest-template.enabled" },
+		matchIfMissing = true)
+class WavefrontTracingRestTemplateConfiguration {
+
+	@Bean
+	@ConditionalOnBean(Tracer.class)
+	TracingRestTemplateCustomizer wavefrontTracingRestTemplateCustomizer(Tracer tracer) {
+		return new TracingRestTemplateCustomizer(tracer);
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure;
+
+import com.wavefront.spring.autoconfigure.tracing.servlet.TracingFilter;
+import com.wavefront.spring.autoconfigure.tracing.servlet.TracingHandlerInterceptor;
+import io.opentracing.Tracer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Configuration for the tracing of the requests handled by Spring MVC. A server span is
+ * created for each request and named after the route template of its handler.
+ *
+ * @author Stephane Nicoll
+ */
+@ConditionalOnWebApplication(type = Type.SERVLET)
+@ConditionalOnClass({ Tracer.class, DispatcherServlet.class })
+@ConditionalOnProperty(value = { "wavefront.tracing.enabled", "wavefront.tracing.servlet.enabled" },
+		matchIfMissing = true)
+class WavefrontTracingServletConfiguration {
+
+	@Bean
+	@ConditionalOnBean(Tracer.class)
+	FilterRegistrationBean<TracingFilter> wavefrontTracingFilter(Tracer tracer) {
+		FilterRegistrationBean<TracingFilter> registration = new FilterRegistrationBean<>(new TracingFilter(tracer));
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+		return registration;
+	}
+
+	@Bean
+	@ConditionalOnBean(Tracer.class)
+	WebMvcConfigurer wavefrontTracingWebMvcConfigurer() {
+		return new WebMvcConfigurer() {
+
+			@Override
+			public void addInterceptors(InterceptorRegistry registry) {
+				registry.addInterceptor(new TracingHandlerInterceptor());
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure;
+
+import com.wavefront.spring.autoconfigure.tracing.task.TracingExecutorBeanPostProcessor;
+import com.wavefront.spring.autoconfigure.tracing.task.TracingTaskDecorator;
+import io.opentracing.Tracer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * Configuration for the propagation of the active span to the tasks run by executors.
+ * The {@link TaskDecorator} is used by the auto-configured task executor, and applied to
+ * the other executor beans by a post-processor.
+ *
+ * @author Stephane Nicoll
+ */
+@ConditionalOnClass(Tracer.class)
+@ConditionalOnProperty(value = { "wavefront.tracing.enabled", "wavefront.tracing.task.enabled" },
+		matchIfMissing = true)
+class WavefrontTracingTaskConfiguration {
+
+	@Bean
+	@ConditionalOnBean(Tracer.class)
+	@ConditionalOnMissingBean(TaskDecorator.class)
+	TracingTaskDecorator wavefrontTracingTaskDecorator(Tracer tracer) {
+		return new TracingTaskDecorator(tracer);
+	}
+
+	@Bean
+	@ConditionalOnBean(Tracer.class)
+	static TracingExecutorBeanPostProcessor wavefrontTracingExecutorBeanPostProcessor(
+			ObjectProvider<TracingTaskDecorator> taskDecorator, ObjectProvider<Tracer> tracer) {
+		return new TracingExecutorBeanPostProcessor(
+				() -> taskDecorator.getIfAvailable(() -> new TracingTaskDecorator(tracer.getObject())));
+	}
+
+}
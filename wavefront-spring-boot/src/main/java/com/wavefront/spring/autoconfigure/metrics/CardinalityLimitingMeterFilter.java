@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.config.MeterFilter;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link MeterFilter} that limits the number of distinct series, that is distinct sets
+ * of tags, registered for a given meter name. The limit can be tuned for names that start
+ * with a given prefix, matching whole segments of the name, the longest matching prefix
+ * winning.
+ * <p>
+ * Once the limit for a name is reached, all the tag values of any additional series are
+ * replaced by {@value #OTHER}, so that runaway tags such as uris or user ids, as well as
+ * new combinations of known values, are collapsed in a single series. Distinct collapsed
+ * series are counted, up to {@value #MAX_TRACKED_REJECTED_SERIES} per name, and exposed
+ * as the {@code wavefront.metrics.cardinality.rejected} counter.
+ *
+ * @author Stephane Nicoll
+ */
+public class CardinalityLimitingMeterFilter implements MeterFilter, MeterBinder {
+
+	/**
+	 * Tag value used for series that exceed the limit.
+	 */
+	public static final String OTHER = "other";
+
+	private static final int MAX_TRACKED_REJECTED_SERIES = 10000;
+
+	private final int maxSeries;
+
+	private final Map<String, Integer> limits;
+
+	private final Map<String, SeriesTracker> trackers = new ConcurrentHashMap<>();
+
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * Create an instance.
+	 * @param maxSeries the maximum number of series per meter name
+	 * @param limits the maximum number of series for names starting with a given prefix
+	 */
+	public CardinalityLimitingMeterFilter(int maxSeries, Map<String, Integer> limits) {
+		Assert.isTrue(maxSeries > 0, "Max series must be positive");
+		this.maxSeries = maxSeries;
+		this.limits = new LinkedHashMap<>(limits);
+	}
+
+	@Override
+	public Meter.Id map(Meter.Id id) {
+		return this.trackers.computeIfAbsent(id.getName(), (name) -> new SeriesTracker(getLimit(name))).map(id);
+	}
+
+	private int getLimit(String name) {
+		int limit = this.maxSeries;
+		int matchLength = -1;
+		for (Map.Entry<String, Integer> entry : this.limits.entrySet()) {
+			String prefix = entry.getKey();
+			if (MetricNames.startsWith(name, prefix) && prefix.length() > matchLength) {
+				limit = entry.getValue();
+				matchLength = prefix.length();
+			}
+		}
+		return limit;
+	}
+
+	/**
+	 * Return the number of distinct series that have been collapsed because their meter
+	 * name had reached its limit.
+	 * @return the number of rejected series
+	 */
+	public long getRejectedCount() {
+		return this.rejected.sum();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter
+				.builder("wavefront.metrics.cardinality.rejected", this,
+						CardinalityLimitingMeterFilter::getRejectedCount)
+				.description("Number of distinct series collapsed because of a cardinality limit")
+				.register(registry);
+	}
+
+	private final class SeriesTracker {
+
+		private final int limit;
+
+		private final Set<Tags> series = ConcurrentHashMap.newKeySet();
+
+		private final Set<Tags> rejected = ConcurrentHashMap.newKeySet();
+
+		SeriesTracker(int limit) {
+			this.limit = limit;
+		}
+
+		Meter.Id map(Meter.Id id) {
+			Tags tags = Tags.of(id.getTagsAsIterable());
+			if (this.series.contains(tags) || (this.series.size() < this.limit && admit(tags))) {
+				return id;
+			}
+			if (this.rejected.size() < MAX_TRACKED_REJECTED_SERIES && this.rejected.add(tags)) {
+				CardinalityLimitingMeterFilter.this.rejected.increment();
+			}
+			List<Tag> collapsed = new ArrayList<>();
+			for (Tag tag : tags) {
+				collapsed.add(Tag.of(tag.getKey(), OTHER));
+			}
+			return id.replaceTags(collapsed);
+		}
+
+		private synchronized boolean admit(Tags tags) {
+			if (this.series.contains(tags)) {
+				return true;
+			}
+			if (this.series.size() >= this.limit) {
+				return false;
+			}
+			this.series.add(tags);
+			return true;
+		}
+
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+
+/**
+ * A {@link MeterFilter} that exports timers and distribution summaries whose name starts
+ * with one of the configured prefixes, matching whole segments of the name, as native
+ * Wavefront distributions.
+ * <p>
+ * Rather than publishing a sum, a count, a mean, a max and a gauge per percentile, such
+ * meters record their samples in a t-digest that is sent as a single distribution per
+ * step. Distributions can be merged server-side and therefore give accurate percentiles
+ * across instances. Client-side percentiles are disabled for matching meters as they
+ * would be redundant.
+ *
+ * @author Stephane Nicoll
+ */
+public class DistributionMeterFilter implements MeterFilter {
+
+	private static final double[] NO_PERCENTILES = new double[0];
+
+	private final List<String> prefixes;
+
+	/**
+	 * Create an instance.
+	 * @param prefixes the prefixes of the names of the meters to export as distributions
+	 */
+	public DistributionMeterFilter(Collection<String> prefixes) {
+		this.prefixes = new ArrayList<>(prefixes);
+	}
+
+	@Override
+	public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+		if (!isDistribution(id)) {
+			return config;
+		}
+		return DistributionStatisticConfig.builder().percentilesHistogram(true).percentiles(NO_PERCENTILES).build()
+				.merge(config);
+	}
+
+	private boolean isDistribution(Meter.Id id) {
+		if (id.getType() != Meter.Type.TIMER && id.getType() != Meter.Type.DISTRIBUTION_SUMMARY) {
+			return false;
+		}
+		for (String prefix : this.prefixes) {
+			if (MetricNames.startsWith(id.getName(), prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
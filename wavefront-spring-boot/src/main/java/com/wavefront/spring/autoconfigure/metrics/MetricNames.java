@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.metrics;
+
+/**
+ * Utility methods to match metric names against prefixes. As with the
+ * {@code management.metrics.enable} properties of Spring Boot, a prefix matches whole
+ * segments of the dot-separated name: {@code jvm.gc} matches {@code jvm.gc} and
+ * {@code jvm.gc.pause}, but not {@code jvm.gcx}.
+ *
+ * @author Stephane Nicoll
+ */
+public final class MetricNames {
+
+	private MetricNames() {
+	}
+
+	/**
+	 * Specify whether the specified name starts with the specified prefix, on a segment
+	 * boundary.
+	 * @param name the metric name
+	 * @param prefix the prefix
+	 * @return {@code true} if the name matches the prefix
+	 */
+	public static boolean startsWith(String name, String prefix) {
+		return name.startsWith(prefix) && isSegmentBoundary(name, prefix.length());
+	}
+
+	/**
+	 * Specify whether the specified index of a name is on a segment boundary, that is at
+	 * either end of the name or next to a dot.
+	 * @param name the metric name
+	 * @param index the index in the name
+	 * @return {@code true} if the index is on a segment boundary
+	 */
+	public static boolean isSegmentBoundary(String name, int index) {
+		return index == 0 || index == name.length() || name.charAt(index) == '.' || name.charAt(index - 1) == '.';
+	}
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.metrics;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.config.MeterFilterReply;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link MeterFilter} that accepts or denies meters based on their name. A pattern is
+ * either a prefix, such as {@code jvm.gc}, or a glob that must match the whole name,
+ * where {@code *} matches any sequence of characters and {@code ?} a single character,
+ * such as {@code http.*.requests}. As with the {@code management.metrics.enable}
+ * properties of Spring Boot, a prefix matches whole segments of the dot-separated name,
+ * see {@link MetricNames}.
+ * <p>
+ * Patterns are compiled in a trie so that a decision takes a single walk of the name,
+ * regardless of the number of patterns. If include patterns are defined, a meter must
+ * match one of them to be accepted. A meter that matches an exclude pattern is always
+ * denied.
+ *
+ * @author Stephane Nicoll
+ */
+public class NameMatchingMeterFilter implements MeterFilter {
+
+	private final Node includes;
+
+	private final Node excludes;
+
+	/**
+	 * Create an instance.
+	 * @param includes the patterns of the names to accept, or an empty collection to
+	 * accept any name that is not excluded
+	 * @param excludes the patterns of the names to deny
+	 */
+	public NameMatchingMeterFilter(Collection<String> includes, Collection<String> excludes) {
+		this.includes = compile(includes);
+		this.excludes = compile(excludes);
+	}
+
+	private static Node compile(Collection<String> patterns) {
+		if (patterns.isEmpty()) {
+			return null;
+		}
+		Node root = new Node();
+		for (String pattern : patterns) {
+			Assert.hasText(pattern, "Pattern must not be empty");
+			root.add(pattern);
+		}
+		return root;
+	}
+
+	@Override
+	public MeterFilterReply accept(Meter.Id id) {
+		String name = id.getName();
+		if (this.excludes != null && this.excludes.matches(name, 0)) {
+			return MeterFilterReply.DENY;
+		}
+		if (this.includes != null && !this.includes.matches(name, 0)) {
+			return MeterFilterReply.DENY;
+		}
+		return MeterFilterReply.NEUTRAL;
+	}
+
+	/**
+	 * A node of the trie. Literal characters lead to child nodes while wildcards lead to
+	 * dedicated nodes.
+	 */
+	private static final class Node {
+
+		private final Map<Character, Node> children = new HashMap<>();
+
+		private Node anyChar;
+
+		private Node anySequence;
+
+		/**
+		 * Whether a prefix pattern ends at this node, that is any name that reaches it on
+		 * a segment boundary matches.
+		 */
+		private boolean prefix;
+
+		/**
+		 * Whether a glob pattern ends at this node, that is a name that ends here
+		 * matches.
+		 */
+		private boolean terminal;
+
+		void add(String pattern) {
+			boolean glob = pattern.indexOf('*') != -1 || pattern.indexOf('?') != -1;
+			Node node = this;
+			for (int i = 0; i < pattern.length(); i++) {
+				char c = pattern.charAt(i);
+				if (glob && c == '*') {
+					node.anySequence = (node.anySequence != null) ? node.anySequence : new Node();
+					node = node.anySequence;
+				}
+				else if (glob && c == '?') {
+					node.anyChar = (node.anyChar != null) ? node.anyChar : new Node();
+					node = node.anyChar;
+				}
+				else {
+					node = node.children.computeIfAbsent(c, (key) -> new Node());
+				}
+			}
+			if (glob) {
+				node.terminal = true;
+			}
+			else {
+				node.prefix = true;
+			}
+		}
+
+		boolean matches(String name, int index) {
+			if (this.prefix && MetricNames.isSegmentBoundary(name, index)) {
+				return true;
+			}
+			if (index == name.length()) {
+				return this.terminal || (this.anySequence != null && this.anySequence.matches(name, index));
+			}
+			Node child = this.children.get(name.charAt(index));
+			if (child != null && child.matches(name, index + 1)) {
+				return true;
+			}
+			if (this.anyChar != null && this.anyChar.matches(name, index + 1)) {
+				return true;
+			}
+			if (this.anySequence != null) {
+				for (int i = index; i <= name.length(); i++) {
+					if (this.anySequence.matches(name, i)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+	}
+
+}
@@ -0,0 +1,922 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.Utils;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link WavefrontSender} that encodes points on the calling thread, stores them in a
+ * bounded lock-free buffer and ships them in batches from a dedicated flusher thread.
+ * <p>
+ * A batch is flushed as soon as a buffer holds {@code batchSize} points, or when the
+ * {@code flushInterval} has elapsed, whichever comes first. What happens when a buffer is
+ * full is driven by the configured {@link OverflowPolicy}.
+ * <p>
+ * If a {@link DiskSpool} is configured, batches that cannot be sent are written to disk
+ * by the flusher thread rather than dropped, and replayed at a bounded rate once the
+ * endpoint is reachable again. Lines that are rejected permanently, as signaled by a
+ * {@link RejectedLinesException}, are dropped rather than spooled or replayed again.
+ *
+ * @author Stephane Nicoll
+ */
+public class BufferingWavefrontSender implements WavefrontSender {
+
+	private static final Log logger = LogFactory.getLog(BufferingWavefrontSender.class);
+
+	private static final DataFormat[] FORMATS = DataFormat.values();
+
+	private static final long BLOCK_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private static final int MIN_ENCODING_PARTITION_SIZE = 1024;
+
+	private final LineTransport transport;
+
+	private final LineEncoder lineEncoder;
+
+	private final MetricLineCache metricLineCache;
+
+	private final int batchSize;
+
+	private final long flushIntervalNanos;
+
+	private final OverflowPolicy overflowPolicy;
+
+	@SuppressWarnings("unchecked")
+	private final LineBuffer<String>[] buffers = new LineBuffer[FORMATS.length];
+
+	private final LineBuffer<PendingMetric> pendingMetrics;
+
+	private final List<PendingMetric> pending = new ArrayList<>();
+
+	private final int encodingParallelism;
+
+	private final ForkJoinPool encoder;
+
+	private final LongAdder[] dropped = new LongAdder[FORMATS.length];
+
+	private final LongAdder[] enqueued = new LongAdder[FORMATS.length];
+
+	private final LongAdder[] sent = new LongAdder[FORMATS.length];
+
+	private final LongAdder sentBytes = new LongAdder();
+
+	private final LongAdder suppressed = new LongAdder();
+
+	private final AtomicInteger failures = new AtomicInteger();
+
+	private final List<FlushListener> flushListeners = new CopyOnWriteArrayList<>();
+
+	private final DiskSpool spool;
+
+	private final int replayRate;
+
+	private final List<DataFormat> replayFormats = new ArrayList<>();
+
+	private final List<String> replayLines = new ArrayList<>();
+
+	private double replayAllowance;
+
+	private long lastReplayNanos;
+
+	private boolean connected = true;
+
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	private final List<String> batch;
+
+	private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	private final Thread flusher;
+
+	private volatile boolean running = true;
+
+	BufferingWavefrontSender(Builder builder) {
+		this.transport = builder.transport;
+		this.lineEncoder = new LineEncoder(builder.source);
+		this.metricLineCache = (builder.seriesCacheSize > 0)
+				? new MetricLineCache(builder.source, builder.seriesCacheSize, builder.seriesCacheExpiry,
+						builder.unchangedRefreshInterval, builder.publishIntervals, System::currentTimeMillis)
+				: null;
+		this.batchSize = builder.batchSize;
+		this.flushIntervalNanos = builder.flushInterval.toNanos();
+		this.overflowPolicy = builder.overflowPolicy;
+		this.spool = builder.spool;
+		this.replayRate = builder.replayRate;
+		this.replayAllowance = this.replayRate;
+		this.lastReplayNanos = System.nanoTime();
+		this.encodingParallelism = builder.encodingParallelism;
+		this.pendingMetrics = (this.encodingParallelism > 1) ? new LineBuffer<>(builder.queueCapacity) : null;
+		this.encoder = (this.encodingParallelism > 1) ? createEncoder(this.encodingParallelism) : null;
+		for (int i = 0; i < FORMATS.length; i++) {
+			this.buffers[i] = new LineBuffer<>(builder.queueCapacity);
+			this.dropped[i] = new LongAdder();
+			this.enqueued[i] = new LongAdder();
+			this.sent[i] = new LongAdder();
+		}
+		this.batch = new ArrayList<>(Math.min(this.batchSize, 16384));
+		this.flusher = new Thread(this::runFlusher, "wavefront-sender-flusher");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	private static ForkJoinPool createEncoder(int parallelism) {
+		AtomicInteger threadCount = new AtomicInteger();
+		return new ForkJoinPool(parallelism, (pool) -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("wavefront-sender-encoder-" + threadCount.incrementAndGet());
+			return thread;
+		}, null, false);
+	}
+
+	@Override
+	public String getClientId() {
+		return this.transport.toString();
+	}
+
+	@Override
+	public void sendMetric(String name, double value, Long timestamp, String source, Map<String, String> tags)
+			throws IOException {
+		if (this.pendingMetrics != null) {
+			enqueue(DataFormat.METRIC, this.pendingMetrics, new PendingMetric(name, value, timestamp, source, tags));
+			return;
+		}
+		String line;
+		try {
+			line = encodeMetric(name, value, timestamp, source, tags);
+		}
+		catch (IllegalArgumentException ex) {
+			throw new IOException(ex);
+		}
+		if (line == null) {
+			this.suppressed.increment();
+			return;
+		}
+		enqueue(DataFormat.METRIC, line);
+	}
+
+	private String encodeMetric(String name, double value, Long timestamp, String source, Map<String, String> tags) {
+		return (this.metricLineCache != null) ? this.metricLineCache.encode(name, value, timestamp, source, tags)
+				: this.lineEncoder.encodeMetric(name, value, timestamp, source, tags);
+	}
+
+	@Override
+	public void sendFormattedMetric(String point) throws IOException {
+		Assert.hasText(point, "Point must not be empty");
+		enqueue(DataFormat.METRIC, (point.charAt(point.length() - 1) != '\n') ? point + "\n" : point);
+	}
+
+	@Override
+	public void sendDistribution(String name, List<Pair<Double, Integer>> centroids,
+			Set<HistogramGranularity> histogramGranularities, Long timestamp, String source, Map<String, String> tags)
+			throws IOException {
+		String line;
+		try {
+			line = this.lineEncoder.encodeDistribution(name, centroids, histogramGranularities, timestamp, source,
+					tags);
+		}
+		catch (IllegalArgumentException ex) {
+			throw new IOException(ex);
+		}
+		enqueue(DataFormat.HISTOGRAM, line);
+	}
+
+	@Override
+	public void sendSpan(String name, long startMillis, long durationMillis, String source, UUID traceId, UUID spanId,
+			List<UUID> parents, List<UUID> followsFrom, List<Pair<String, String>> tags, List<SpanLog> spanLogs)
+			throws IOException {
+		String line;
+		try {
+			line = this.lineEncoder.encodeSpan(name, startMillis, durationMillis, source, traceId, spanId, parents,
+					followsFrom, tags, spanLogs);
+		}
+		catch (IllegalArgumentException ex) {
+			throw new IOException(ex);
+		}
+		enqueue(DataFormat.SPAN, line);
+		if (spanLogs != null && !spanLogs.isEmpty()) {
+			enqueue(DataFormat.SPAN_LOG, Utils.spanLogsToLineData(traceId, spanId, spanLogs));
+		}
+	}
+
+	private void enqueue(DataFormat format, String line) {
+		enqueue(format, this.buffers[format.ordinal()], line);
+	}
+
+	private <E> void enqueue(DataFormat format, LineBuffer<E> buffer, E line) {
+		int index = format.ordinal();
+		if (offer(index, buffer, line)) {
+			this.enqueued[index].increment();
+		}
+		else {
+			this.dropped[index].increment();
+		}
+		if (buffer.size() >= this.batchSize) {
+			requestFlush();
+		}
+	}
+
+	private <E> boolean offer(int index, LineBuffer<E> buffer, E line) {
+		if (buffer.offer(line)) {
+			return true;
+		}
+		switch (this.overflowPolicy) {
+		case DROP_OLDEST:
+			while (!buffer.offer(line)) {
+				if (buffer.poll() != null) {
+					this.dropped[index].increment();
+				}
+			}
+			return true;
+		case BLOCK:
+			while (this.running) {
+				requestFlush();
+				LockSupport.parkNanos(BLOCK_PARK_NANOS);
+				if (buffer.offer(line)) {
+					return true;
+				}
+			}
+			return false;
+		default:
+			return false;
+		}
+	}
+
+	private void requestFlush() {
+		if (this.flushRequested.compareAndSet(false, true)) {
+			LockSupport.unpark(this.flusher);
+		}
+	}
+
+	private void runFlusher() {
+		while (this.running) {
+			LockSupport.parkNanos(this, this.flushIntervalNanos);
+			this.flushRequested.set(false);
+			try {
+				flush();
+			}
+			catch (Exception ex) {
+				logger.debug("Failed to flush buffered points", ex);
+			}
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		IOException failure = null;
+		this.flushLock.lock();
+		try {
+			long start = System.nanoTime();
+			boolean flushed = false;
+			for (DataFormat format : FORMATS) {
+				LineBuffer<String> buffer = this.buffers[format.ordinal()];
+				while (buffer.drainTo(this.batch, this.batchSize) > 0) {
+					flushed = true;
+					failure = sendBatch(format, failure);
+				}
+				if (format == DataFormat.METRIC && this.pendingMetrics != null) {
+					while (this.pendingMetrics.drainTo(this.pending, this.batchSize) > 0) {
+						flushed = true;
+						encodePendingMetrics();
+						if (!this.batch.isEmpty()) {
+							failure = sendBatch(format, failure);
+						}
+					}
+				}
+			}
+			if (this.spool != null) {
+				flushed |= replaySpool();
+			}
+			if (flushed) {
+				long duration = System.nanoTime() - start;
+				for (FlushListener listener : this.flushListeners) {
+					listener.flushCompleted(duration);
+				}
+			}
+		}
+		finally {
+			this.flushLock.unlock();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private IOException sendBatch(DataFormat format, IOException failure) {
+		try {
+			send(format, this.batch);
+			return failure;
+		}
+		catch (IOException ex) {
+			return ex;
+		}
+		finally {
+			this.batch.clear();
+		}
+	}
+
+	/**
+	 * Encode the pending metric points in the current batch, partitioning them across the
+	 * encoder threads. Lines are added in the order the points were sent.
+	 */
+	private void encodePendingMetrics() {
+		List<PendingMetric> points = this.pending;
+		String[] lines = new String[points.size()];
+		int partitions = Math.min(this.encodingParallelism,
+				(points.size() + MIN_ENCODING_PARTITION_SIZE - 1) / MIN_ENCODING_PARTITION_SIZE);
+		if (partitions <= 1) {
+			encodePendingMetrics(points, lines, 0, points.size());
+		}
+		else {
+			List<Callable<Void>> tasks = new ArrayList<>(partitions);
+			for (int i = 0; i < partitions; i++) {
+				int from = (int) ((long) points.size() * i / partitions);
+				int to = (int) ((long) points.size() * (i + 1) / partitions);
+				tasks.add(() -> {
+					encodePendingMetrics(points, lines, from, to);
+					return null;
+				});
+			}
+			this.encoder.invokeAll(tasks);
+		}
+		points.clear();
+		for (String line : lines) {
+			if (line != null) {
+				this.batch.add(line);
+			}
+		}
+	}
+
+	private void encodePendingMetrics(List<PendingMetric> points, String[] lines, int from, int to) {
+		for (int i = from; i < to; i++) {
+			PendingMetric point = points.get(i);
+			try {
+				lines[i] = encodeMetric(point.name, point.value, point.timestamp, point.source, point.tags);
+				if (lines[i] == null) {
+					this.suppressed.increment();
+				}
+			}
+			catch (IllegalArgumentException ex) {
+				logger.debug("Dropping invalid metric point '" + point.name + "'", ex);
+				this.dropped[DataFormat.METRIC.ordinal()].increment();
+			}
+		}
+	}
+
+	private void send(DataFormat format, List<String> lines) throws IOException {
+		if (this.spool != null && !this.connected) {
+			spool(format, lines);
+			return;
+		}
+		try {
+			transportSend(format, lines);
+		}
+		catch (RejectedLinesException ex) {
+			this.failures.incrementAndGet();
+			this.dropped[format.ordinal()].add(lines.size());
+			throw ex;
+		}
+		catch (PartialSendException ex) {
+			this.failures.incrementAndGet();
+			List<String> unsent = ex.getUnsentLines();
+			if (this.spool == null) {
+				this.dropped[format.ordinal()].add(unsent.size());
+				throw ex;
+			}
+			logger.debug("Failed to send part of a batch, spooling it until the endpoint is reachable again", ex);
+			this.connected = false;
+			spool(format, unsent);
+		}
+		catch (IOException ex) {
+			this.failures.incrementAndGet();
+			if (this.spool == null) {
+				this.dropped[format.ordinal()].add(lines.size());
+				throw ex;
+			}
+			logger.debug("Failed to send batch, spooling to disk until the endpoint is reachable again", ex);
+			this.connected = false;
+			spool(format, lines);
+		}
+	}
+
+	private void transportSend(DataFormat format, List<String> lines) throws IOException {
+		long start = System.nanoTime();
+		try {
+			this.transport.send(format, lines);
+		}
+		catch (PartialSendException ex) {
+			recordSent(format, lines.size() - ex.getUnsentLines().size(), size(lines) - size(ex.getUnsentLines()),
+					System.nanoTime() - start);
+			throw ex;
+		}
+		recordSent(format, lines.size(), size(lines), System.nanoTime() - start);
+	}
+
+	private void recordSent(DataFormat format, int count, long bytes, long duration) {
+		this.sent[format.ordinal()].add(count);
+		this.sentBytes.add(bytes);
+		for (FlushListener listener : this.flushListeners) {
+			listener.batchSent(format, count, bytes, duration);
+		}
+	}
+
+	private static long size(List<String> lines) {
+		long bytes = 0;
+		for (String line : lines) {
+			bytes += line.length();
+		}
+		return bytes;
+	}
+
+	private void spool(DataFormat format, List<String> lines) {
+		try {
+			this.spool.append(format, lines);
+		}
+		catch (IOException ex) {
+			logger.debug("Failed to spool batch", ex);
+			this.dropped[format.ordinal()].add(lines.size());
+		}
+	}
+
+	private boolean replaySpool() {
+		if (this.spool.isEmpty()) {
+			this.connected = true;
+			return false;
+		}
+		long now = System.nanoTime();
+		this.replayAllowance = Math.min(this.replayRate,
+				this.replayAllowance + (now - this.lastReplayNanos) * this.replayRate / 1e9);
+		this.lastReplayNanos = now;
+		int permits = (int) Math.min(this.replayAllowance, this.batchSize);
+		if (permits == 0) {
+			return false;
+		}
+		int replayed = 0;
+		DataFormat unsentFormat = null;
+		List<String> unsent = null;
+		try {
+			int count = this.spool.peek(permits, this.replayFormats, this.replayLines);
+			while (replayed < count) {
+				DataFormat format = this.replayFormats.get(replayed);
+				int end = replayed;
+				while (end < count && this.replayFormats.get(end) == format) {
+					this.batch.add(this.replayLines.get(end++));
+				}
+				try {
+					replay(format, this.batch);
+				}
+				catch (PartialSendException ex) {
+					replayed = end;
+					unsentFormat = format;
+					unsent = ex.getUnsentLines();
+					throw ex;
+				}
+				this.batch.clear();
+				replayed = end;
+			}
+			this.connected = true;
+			return count > 0;
+		}
+		catch (IOException ex) {
+			this.failures.incrementAndGet();
+			this.connected = false;
+			logger.debug("Failed to replay spooled lines", ex);
+			return true;
+		}
+		finally {
+			this.replayAllowance -= replayed;
+			commitReplayed(replayed);
+			if (unsent != null) {
+				spool(unsentFormat, unsent);
+			}
+			this.batch.clear();
+			this.replayFormats.clear();
+			this.replayLines.clear();
+		}
+	}
+
+	/**
+	 * Replay a run of spooled lines of the same format. Lines that are rejected
+	 * permanently are dropped so that they do not block the spool.
+	 */
+	private void replay(DataFormat format, List<String> lines) throws IOException {
+		try {
+			transportSend(format, lines);
+		}
+		catch (RejectedLinesException ex) {
+			this.failures.incrementAndGet();
+			this.dropped[format.ordinal()].add(lines.size());
+			logger.warn(String.format("Dropping %d spooled %s line(s) that were rejected: %s", lines.size(),
+					format.getFormat(), ex.getMessage()));
+		}
+	}
+
+	private void commitReplayed(int replayed) {
+		try {
+			this.spool.commit(replayed);
+		}
+		catch (IOException ex) {
+			logger.debug("Failed to commit replayed lines", ex);
+		}
+	}
+
+	/**
+	 * Register the name of a gauge. Points of a gauge whose value has not changed can be
+	 * skipped, whereas points of other metrics are only skipped if they remain at zero.
+	 * @param name the name of the metric, as sent to Wavefront
+	 * @see Builder#skipUnchanged(Duration)
+	 */
+	public void registerGauge(String name) {
+		Assert.hasText(name, "Name must not be empty");
+		if (this.metricLineCache != null) {
+			this.metricLineCache.registerGauge(name);
+		}
+	}
+
+	/**
+	 * Register a {@link FlushListener} to be notified when batches are sent.
+	 * @param listener the listener to add
+	 */
+	public void addFlushListener(FlushListener listener) {
+		Assert.notNull(listener, "Listener must not be null");
+		this.flushListeners.add(listener);
+	}
+
+	@Override
+	public int getFailureCount() {
+		return this.failures.get();
+	}
+
+	/**
+	 * Return the number of points of the specified {@link DataFormat} that are currently
+	 * buffered.
+	 * @param format the format of the points
+	 * @return the number of buffered points
+	 */
+	public int getQueueSize(DataFormat format) {
+		int size = this.buffers[format.ordinal()].size();
+		if (format == DataFormat.METRIC && this.pendingMetrics != null) {
+			size += this.pendingMetrics.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Return the number of points of the specified {@link DataFormat} that have been
+	 * dropped, either because the buffer was full or because they could not be sent.
+	 * @param format the format of the points
+	 * @return the number of dropped points
+	 */
+	public long getDroppedCount(DataFormat format) {
+		return this.dropped[format.ordinal()].sum();
+	}
+
+	/**
+	 * Return the number of points of the specified {@link DataFormat} that have been
+	 * accepted in the buffer.
+	 * @param format the format of the points
+	 * @return the number of enqueued points
+	 */
+	public long getEnqueuedCount(DataFormat format) {
+		return this.enqueued[format.ordinal()].sum();
+	}
+
+	/**
+	 * Return the number of points of the specified {@link DataFormat} that have been
+	 * accepted by the transport.
+	 * @param format the format of the points
+	 * @return the number of sent points
+	 */
+	public long getSentCount(DataFormat format) {
+		return this.sent[format.ordinal()].sum();
+	}
+
+	/**
+	 * Return the number of metric points that were skipped, either because their value
+	 * had not changed since they were last published or because of their publish
+	 * interval.
+	 * @return the number of suppressed points
+	 */
+	public long getSuppressedCount() {
+		return this.suppressed.sum();
+	}
+
+	/**
+	 * Return the number of metric points whose series could not be cached because the
+	 * series cache was full.
+	 * @return the number of series cache overflows
+	 */
+	public long getSeriesCacheOverflowCount() {
+		return (this.metricLineCache != null) ? this.metricLineCache.getOverflowCount() : 0;
+	}
+
+	/**
+	 * Return the size of the lines that have been accepted by the transport, before any
+	 * compression.
+	 * @return the number of bytes sent
+	 */
+	public long getSentBytes() {
+		return this.sentBytes.sum();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!this.closed.compareAndSet(false, true)) {
+			return;
+		}
+		this.running = false;
+		LockSupport.unpark(this.flusher);
+		try {
+			this.flusher.join(TimeUnit.NANOSECONDS.toMillis(this.flushIntervalNanos) + 1000);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			flush();
+		}
+		finally {
+			if (this.encoder != null) {
+				this.encoder.shutdown();
+			}
+			try {
+				if (this.spool != null) {
+					this.spool.close();
+				}
+			}
+			finally {
+				this.transport.close();
+			}
+		}
+	}
+
+	/**
+	 * A metric point waiting to be encoded.
+	 */
+	private static final class PendingMetric {
+
+		private final String name;
+
+		private final double value;
+
+		private final Long timestamp;
+
+		private final String source;
+
+		private final Map<String, String> tags;
+
+		PendingMetric(String name, double value, Long timestamp, String source, Map<String, String> tags) {
+			this.name = name;
+			this.value = value;
+			this.timestamp = timestamp;
+			this.source = source;
+			this.tags = tags;
+		}
+
+	}
+
+	/**
+	 * Builder for {@link BufferingWavefrontSender}.
+	 */
+	public static class Builder {
+
+		private final LineTransport transport;
+
+		private String source = "unknown";
+
+		private int seriesCacheSize = 100000;
+
+		private Duration seriesCacheExpiry = Duration.ofMinutes(10);
+
+		private Duration unchangedRefreshInterval;
+
+		private final Map<String, Duration> publishIntervals = new LinkedHashMap<>();
+
+		private int batchSize = 10000;
+
+		private Duration flushInterval = Duration.ofSeconds(1);
+
+		private int queueCapacity = 50000;
+
+		private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+
+		private DiskSpool spool;
+
+		private int replayRate = 5000;
+
+		private int encodingParallelism = 1;
+
+		/**
+		 * Create a builder for the specified {@link LineTransport}.
+		 * @param transport the transport to use to ship batches
+		 */
+		public Builder(LineTransport transport) {
+			Assert.notNull(transport, "Transport must not be null");
+			this.transport = transport;
+		}
+
+		/**
+		 * Set the source to use for points that do not specify one.
+		 * @param source the default source
+		 * @return this builder
+		 */
+		public Builder source(String source) {
+			Assert.hasText(source, "Source must not be empty");
+			this.source = source;
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of points in a single batch.
+		 * @param batchSize the batch size
+		 * @return this builder
+		 */
+		public Builder batchSize(int batchSize) {
+			Assert.isTrue(batchSize > 0, "Batch size must be positive");
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		/**
+		 * Set the maximum time to wait before buffered points are flushed.
+		 * @param flushInterval the flush interval
+		 * @return this builder
+		 */
+		public Builder flushInterval(Duration flushInterval) {
+			Assert.isTrue(flushInterval != null && !flushInterval.isNegative() && !flushInterval.isZero(),
+					"Flush interval must be positive");
+			this.flushInterval = flushInterval;
+			return this;
+		}
+
+		/**
+		 * Set the capacity of the buffer for each {@link DataFormat}.
+		 * @param queueCapacity the capacity, rounded up to the next power of two
+		 * @return this builder
+		 */
+		public Builder queueCapacity(int queueCapacity) {
+			Assert.isTrue(queueCapacity > 0, "Queue capacity must be positive");
+			this.queueCapacity = queueCapacity;
+			return this;
+		}
+
+		/**
+		 * Set the {@link OverflowPolicy} to apply when a buffer is full.
+		 * @param overflowPolicy the overflow policy
+		 * @return this builder
+		 */
+		public Builder overflowPolicy(OverflowPolicy overflowPolicy) {
+			Assert.notNull(overflowPolicy, "Overflow policy must not be null");
+			this.overflowPolicy = overflowPolicy;
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of metric series whose escaped name, source and tags are
+		 * cached to speed up the encoding of subsequent points.
+		 * @param seriesCacheSize the maximum number of cached series or {@code 0} to
+		 * disable the cache
+		 * @return this builder
+		 */
+		public Builder seriesCacheSize(int seriesCacheSize) {
+			Assert.isTrue(seriesCacheSize >= 0, "Series cache size must not be negative");
+			this.seriesCacheSize = seriesCacheSize;
+			return this;
+		}
+
+		/**
+		 * Set the time after which a cached series that has not been published can be
+		 * evicted to make room for a new series. Should be longer than the interval at
+		 * which metrics are published.
+		 * @param seriesCacheExpiry the expiry of cached series
+		 * @return this builder
+		 */
+		public Builder seriesCacheExpiry(Duration seriesCacheExpiry) {
+			Assert.isTrue(seriesCacheExpiry != null && !seriesCacheExpiry.isNegative() && !seriesCacheExpiry.isZero(),
+					"Series cache expiry must be positive");
+			this.seriesCacheExpiry = seriesCacheExpiry;
+			return this;
+		}
+
+		/**
+		 * Skip metric points whose value has not changed since they were last published,
+		 * unless the specified refresh interval has elapsed. Only applies to
+		 * {@link BufferingWavefrontSender#registerGauge(String) gauges} and to metrics
+		 * that remain at zero, as other points are counts for the last step. Requires the
+		 * series cache.
+		 * @param refreshInterval the interval after which an unchanged point is published
+		 * again or {@code null} to publish every point
+		 * @return this builder
+		 */
+		public Builder skipUnchanged(Duration refreshInterval) {
+			this.unchangedRefreshInterval = refreshInterval;
+			return this;
+		}
+
+		/**
+		 * Publish metric points whose name starts with the specified prefix at most once
+		 * per interval. The prefix matches whole segments of the dot-separated name and,
+		 * if several prefixes match, the longest one applies. Only applies to
+		 * {@link BufferingWavefrontSender#registerGauge(String) gauges}, as other points
+		 * are counts for the last step. Requires the series cache.
+		 * @param prefix the prefix of the metric names
+		 * @param interval the minimum interval between two publications of a series
+		 * @return this builder
+		 */
+		public Builder publishInterval(String prefix, Duration interval) {
+			Assert.notNull(prefix, "Prefix must not be null");
+			Assert.isTrue(interval != null && !interval.isNegative() && !interval.isZero(),
+					"Publish interval must be positive");
+			this.publishIntervals.put(prefix, interval);
+			return this;
+		}
+
+		/**
+		 * Set the {@link DiskSpool} to use to store batches that could not be sent.
+		 * @param spool the spool or {@code null} to drop such batches
+		 * @return this builder
+		 */
+		public Builder spool(DiskSpool spool) {
+			this.spool = spool;
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of spooled lines to replay per second.
+		 * @param replayRate the replay rate
+		 * @return this builder
+		 */
+		public Builder replayRate(int replayRate) {
+			Assert.isTrue(replayRate > 0, "Replay rate must be positive");
+			this.replayRate = replayRate;
+			return this;
+		}
+
+		/**
+		 * Set the number of threads used to encode metric points. With a single thread,
+		 * points are encoded by the caller as they are sent. With more than one thread,
+		 * points are buffered as is and encoded in parallel when they are flushed, so
+		 * that large publications return sooner. In that mode, invalid points are dropped
+		 * rather than rejected and the tags of a point must not be modified once sent.
+		 * @param encodingParallelism the number of encoding threads
+		 * @return this builder
+		 */
+		public Builder encodingParallelism(int encodingParallelism) {
+			Assert.isTrue(encodingParallelism > 0, "Encoding parallelism must be positive");
+			this.encodingParallelism = encodingParallelism;
+			return this;
+		}
+
+		/**
+		 * Build a {@link BufferingWavefrontSender} and start its flusher thread.
+		 * @return a new sender
+		 */
+		public BufferingWavefrontSender build() {
+			return new BufferingWavefrontSender(this);
+		}
+
+	}
+
+}
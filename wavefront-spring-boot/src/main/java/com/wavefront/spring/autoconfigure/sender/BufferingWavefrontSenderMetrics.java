@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * A {@link MeterBinder} that exposes the state of a {@link BufferingWavefrontSender}.
+ * Counters are read from the sender on publication and distributions are recorded per
+ * batch on the flusher thread, so that producers are not affected.
+ *
+ * @author Stephane Nicoll
+ */
+public class BufferingWavefrontSenderMetrics implements MeterBinder {
+
+	private static final DataFormat[] FORMATS = DataFormat.values();
+
+	private final BufferingWavefrontSender sender;
+
+	private final Iterable<Tag> tags;
+
+	/**
+	 * Create an instance for the specified sender.
+	 * @param sender the sender to instrument
+	 * @param tags additional tags to apply to the meters
+	 */
+	public BufferingWavefrontSenderMetrics(BufferingWavefrontSender sender, Iterable<Tag> tags) {
+		this.sender = sender;
+		this.tags = tags;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		DistributionSummary[] batchSizes = new DistributionSummary[FORMATS.length];
+		for (DataFormat format : FORMATS) {
+			Tags tags = Tags.of(this.tags).and("type", format.name().toLowerCase(Locale.ENGLISH));
+			Gauge.builder("wavefront.sender.queue.size", this.sender, (sender) -> sender.getQueueSize(format))
+					.tags(tags).description("Number of points waiting to be sent").baseUnit("points")
+					.register(registry);
+			FunctionCounter
+					.builder("wavefront.sender.points.enqueued", this.sender,
+							(sender) -> sender.getEnqueuedCount(format))
+					.tags(tags).description("Number of points accepted in the buffer").baseUnit("points")
+					.register(registry);
+			FunctionCounter
+					.builder("wavefront.sender.points.sent", this.sender, (sender) -> sender.getSentCount(format))
+					.tags(tags).description("Number of points accepted by the transport").baseUnit("points")
+					.register(registry);
+			FunctionCounter
+					.builder("wavefront.sender.points.dropped", this.sender, (sender) -> sender.getDroppedCount(format))
+					.tags(tags).description("Number of points that were discarded").baseUnit("points")
+					.register(registry);
+			batchSizes[format.ordinal()] = DistributionSummary.builder("wavefront.sender.batch.size").tags(tags)
+					.description("Number of points in a batch").baseUnit("points").register(registry);
+		}
+		FunctionCounter.builder("wavefront.sender.bytes.sent", this.sender, BufferingWavefrontSender::getSentBytes)
+				.tags(this.tags).description("Size of the lines accepted by the transport, before compression")
+				.baseUnit(BaseUnits.BYTES).register(registry);
+		FunctionCounter
+				.builder("wavefront.sender.points.suppressed", this.sender,
+						BufferingWavefrontSender::getSuppressedCount)
+				.tags(this.tags)
+				.description("Number of metric points skipped because they had not changed or were not due")
+				.baseUnit("points").register(registry);
+		FunctionCounter
+				.builder("wavefront.sender.series.cache.overflow", this.sender,
+						BufferingWavefrontSender::getSeriesCacheOverflowCount)
+				.tags(this.tags).description("Number of metric points whose series could not be cached")
+				.baseUnit("points").register(registry);
+		FunctionCounter.builder("wavefront.sender.failures", this.sender, BufferingWavefrontSender::getFailureCount)
+				.tags(this.tags).description("Number of batches that could not be sent").register(registry);
+		Timer flushTimer = Timer.builder("wavefront.sender.flush").tags(this.tags)
+				.description("Time taken to flush the buffers").register(registry);
+		this.sender.addFlushListener(new FlushListener() {
+
+			@Override
+			public void batchSent(DataFormat format, int size, long bytes, long durationNanos) {
+				batchSizes[format.ordinal()].record(size);
+			}
+
+			@Override
+			public void flushCompleted(long durationNanos) {
+				flushTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+			}
+
+		});
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression codecs that can be applied to a batch sent over HTTP.
+ *
+ * @author Stephane Nicoll
+ */
+public enum CompressionCodec {
+
+	/**
+	 * Send batches uncompressed.
+	 */
+	NONE(null) {
+		@Override
+		OutputStream compress(OutputStream out, int level) {
+			return out;
+		}
+	},
+
+	/**
+	 * Compress batches using gzip.
+	 */
+	GZIP("gzip") {
+		@Override
+		OutputStream compress(OutputStream out, int level) throws IOException {
+			return new LevelGzipOutputStream(out, level);
+		}
+	},
+
+	/**
+	 * Compress batches using deflate (zlib).
+	 */
+	DEFLATE("deflate") {
+		@Override
+		OutputStream compress(OutputStream out, int level) {
+			return new LevelDeflaterOutputStream(out, level);
+		}
+	};
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final String contentEncoding;
+
+	CompressionCodec(String contentEncoding) {
+		this.contentEncoding = contentEncoding;
+	}
+
+	/**
+	 * Return the value of the {@code Content-Encoding} header for this codec.
+	 * @return the content encoding or {@code null} if batches are not compressed
+	 */
+	public String getContentEncoding() {
+		return this.contentEncoding;
+	}
+
+	/**
+	 * Wrap the specified {@link OutputStream} so that the bytes written to it are
+	 * compressed. Closing the returned stream finishes the compressed payload and closes
+	 * the target.
+	 * @param out the target output stream
+	 * @param level the compression level
+	 * @return a stream that compresses to {@code out}
+	 * @throws IOException if the stream could not be created
+	 */
+	abstract OutputStream compress(OutputStream out, int level) throws IOException;
+
+	private static final class LevelGzipOutputStream extends GZIPOutputStream {
+
+		LevelGzipOutputStream(OutputStream out, int level) throws IOException {
+			super(out, BUFFER_SIZE);
+			this.def.setLevel(level);
+		}
+
+	}
+
+	private static final class LevelDeflaterOutputStream extends DeflaterOutputStream {
+
+		LevelDeflaterOutputStream(OutputStream out, int level) {
+			super(out, new Deflater(level), BUFFER_SIZE);
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			}
+			finally {
+				this.def.end();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import com.wavefront.sdk.common.Constants;
+
+/**
+ * The type of data that can be sent to Wavefront.
+ *
+ * @author Stephane Nicoll
+ */
+public enum DataFormat {
+
+	/**
+	 * Metric points.
+	 */
+	METRIC(Constants.WAVEFRONT_METRIC_FORMAT),
+
+	/**
+	 * Histogram distributions.
+	 */
+	HISTOGRAM(Constants.WAVEFRONT_HISTOGRAM_FORMAT),
+
+	/**
+	 * Tracing spans.
+	 */
+	SPAN(Constants.WAVEFRONT_TRACING_SPAN_FORMAT),
+
+	/**
+	 * Logs attached to tracing spans.
+	 */
+	SPAN_LOG(Constants.WAVEFRONT_SPAN_LOG_FORMAT);
+
+	private final String format;
+
+	DataFormat(String format) {
+		this.format = format;
+	}
+
+	/**
+	 * Return the identifier of the format, as expected by the {@code f} parameter of the
+	 * report endpoint.
+	 * @return the format identifier
+	 */
+	public String getFormat() {
+		return this.format;
+	}
+
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * A bounded, segment-based, on-disk spool of encoded lines. Segments are fixed-size
+ * memory-mapped files that are written sequentially and deleted once they have been fully
+ * replayed. When the spool reaches its maximum size, the oldest segment is discarded.
+ * Segments left by a previous run are recovered whatever their size, so that changing
+ * the segment size does not discard spooled lines. Only segments with an invalid header
+ * are deleted.
+ * <p>
+ * Each record is written as a header (length, CRC32 and format) followed by the UTF-8
+ * bytes of the line, with the length written last so that a record interrupted by a crash
+ * is never considered valid. The replay position is stored in the segment header once a
+ * batch has been acknowledged, so that a restart resumes where it left off.
+ * <p>
+ * The directory is locked exclusively while the spool is open so that two applications
+ * never share the same segments. A {@link SpoolLockedException} is thrown if it is
+ * already in use.
+ * <p>
+ * This class is not thread-safe and is meant to be used by a single flusher thread.
+ *
+ * @author Stephane Nicoll
+ */
+public class DiskSpool implements Closeable {
+
+	private static final Log logger = LogFactory.getLog(DiskSpool.class);
+
+	private static final String SEGMENT_PREFIX = "wavefront-";
+
+	private static final String SEGMENT_SUFFIX = ".spool";
+
+	private static final String LOCK_FILE = "wavefront.lock";
+
+	private static final int MAGIC = 0x57465350;
+
+	private static final int SEGMENT_HEADER_SIZE = 8;
+
+	private static final int READ_OFFSET_POSITION = 4;
+
+	private static final int RECORD_HEADER_SIZE = 9;
+
+	private static final DataFormat[] FORMATS = DataFormat.values();
+
+	private final Path directory;
+
+	private final int segmentSize;
+
+	private final int maxSegments;
+
+	private final FileChannel lockChannel;
+
+	private final Deque<Segment> segments = new ArrayDeque<>();
+
+	private final CRC32 crc = new CRC32();
+
+	private long nextSequence;
+
+	private long size;
+
+	private long droppedCount;
+
+	private int pendingCommit;
+
+	private int pendingReadOffset;
+
+	/**
+	 * Open a spool in the specified directory, recovering any segment left by a previous
+	 * run.
+	 * @param directory the directory that holds the segments
+	 * @param maxSize the maximum size of the spool, in bytes
+	 * @param segmentSize the size of a segment, in bytes
+	 * @throws SpoolLockedException if the directory is used by another spool
+	 * @throws IOException if the spool could not be opened
+	 */
+	public DiskSpool(Path directory, long maxSize, int segmentSize) throws IOException {
+		Assert.notNull(directory, "Directory must not be null");
+		Assert.isTrue(segmentSize > SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE, "Segment size is too small");
+		Assert.isTrue(maxSize >= segmentSize * 2L, "Maximum size must hold at least two segments");
+		this.directory = Files.createDirectories(directory);
+		this.segmentSize = segmentSize;
+		this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maxSize / segmentSize);
+		this.lockChannel = lock(this.directory);
+		try {
+			recover();
+		}
+		catch (IOException | RuntimeException ex) {
+			this.lockChannel.close();
+			throw ex;
+		}
+	}
+
+	private static FileChannel lock(Path directory) throws IOException {
+		FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE);
+		FileLock lock;
+		try {
+			lock = channel.tryLock();
+		}
+		catch (OverlappingFileLockException ex) {
+			lock = null;
+		}
+		catch (IOException ex) {
+			channel.close();
+			throw ex;
+		}
+		if (lock == null) {
+			channel.close();
+			throw new SpoolLockedException("Spool directory " + directory + " is used by another application");
+		}
+		return channel;
+	}
+
+	private void recover() throws IOException {
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory,
+				SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			stream.forEach(files::add);
+		}
+		files.sort(null);
+		for (Path file : files) {
+			long sequence = Segment.parseSequence(file);
+			if (sequence < 0) {
+				continue;
+			}
+			Segment segment = Segment.open(file, sequence, this.crc);
+			if (segment == null) {
+				Files.deleteIfExists(file);
+				continue;
+			}
+			this.segments.addLast(segment);
+			this.size += segment.remaining();
+			this.nextSequence = segment.sequence + 1;
+		}
+		if (!this.segments.isEmpty()) {
+			logger.info(String.format("Recovered %d spooled line(s) from %s", this.size, this.directory));
+		}
+	}
+
+	/**
+	 * Append the specified lines to the spool.
+	 * @param format the format of the lines
+	 * @param lines the lines to append
+	 * @throws IOException if the lines could not be written
+	 */
+	public void append(DataFormat format, List<String> lines) throws IOException {
+		for (String line : lines) {
+			byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+			int recordSize = RECORD_HEADER_SIZE + bytes.length;
+			if (recordSize > this.segmentSize - SEGMENT_HEADER_SIZE) {
+				this.droppedCount++;
+				continue;
+			}
+			Segment segment = this.segments.peekLast();
+			if (segment == null || segment.writeOffset + recordSize > segment.size) {
+				segment = rollSegment();
+			}
+			segment.write(format, bytes, this.crc);
+			this.size++;
+		}
+	}
+
+	private Segment rollSegment() throws IOException {
+		Segment current = this.segments.peekLast();
+		if (current != null) {
+			current.buffer.force();
+		}
+		if (this.segments.size() >= this.maxSegments) {
+			Segment oldest = this.segments.removeFirst();
+			long lost = oldest.remaining();
+			this.size -= lost;
+			this.droppedCount += lost;
+			oldest.delete();
+			this.pendingCommit = 0;
+			logger.warn(String.format("Spool is full, discarded %d line(s)", lost));
+		}
+		Path file = this.directory
+				.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, this.nextSequence, SEGMENT_SUFFIX));
+		Segment segment = Segment.create(file, this.nextSequence++, this.segmentSize);
+		this.segments.addLast(segment);
+		return segment;
+	}
+
+	/**
+	 * Read up to {@code maxLines} of the oldest lines without removing them. Invoke
+	 * {@link #commit()} once the lines have been processed successfully.
+	 * @param maxLines the maximum number of lines to read
+	 * @param formats the list to add the format of each line to
+	 * @param lines the list to add the lines to
+	 * @return the number of lines that were read
+	 */
+	public int peek(int maxLines, List<DataFormat> formats, List<String> lines) throws IOException {
+		this.pendingCommit = 0;
+		Segment segment = head();
+		if (segment == null) {
+			return 0;
+		}
+		int offset = segment.readOffset;
+		int count = 0;
+		while (count < maxLines && offset < segment.writeOffset) {
+			formats.add(FORMATS[segment.buffer.get(offset + 8)]);
+			lines.add(new String(segment.read(offset), StandardCharsets.UTF_8));
+			offset += RECORD_HEADER_SIZE + segment.buffer.getInt(offset);
+			count++;
+		}
+		this.pendingCommit = count;
+		this.pendingReadOffset = offset;
+		return count;
+	}
+
+	private Segment head() throws IOException {
+		Segment segment = this.segments.peekFirst();
+		while (segment != null && segment.readOffset >= segment.writeOffset && this.segments.size() > 1) {
+			this.segments.removeFirst().delete();
+			segment = this.segments.peekFirst();
+		}
+		return segment;
+	}
+
+	/**
+	 * Remove the lines returned by the last invocation of {@link #peek}.
+	 * @throws IOException if a fully replayed segment could not be deleted
+	 */
+	public void commit() throws IOException {
+		commit(this.pendingCommit);
+	}
+
+	/**
+	 * Remove the first {@code count} lines returned by the last invocation of
+	 * {@link #peek}. The lines that follow are returned again by the next invocation of
+	 * {@link #peek}.
+	 * @param count the number of lines to remove
+	 * @throws IOException if a fully replayed segment could not be deleted
+	 */
+	public void commit(int count) throws IOException {
+		Assert.isTrue(count >= 0 && count <= this.pendingCommit, "Count must not exceed the number of peeked lines");
+		if (count == 0) {
+			return;
+		}
+		Segment segment = this.segments.peekFirst();
+		segment.commitReadOffset((count == this.pendingCommit) ? this.pendingReadOffset : segment.offsetOf(count));
+		this.size -= count;
+		this.pendingCommit = 0;
+		head();
+	}
+
+	/**
+	 * Return the number of lines in the spool.
+	 * @return the number of spooled lines
+	 */
+	public long size() {
+		return this.size;
+	}
+
+	/**
+	 * Return whether the spool is empty.
+	 * @return {@code true} if there is nothing to replay
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Return the number of lines that were discarded because the spool was full or
+	 * because they were larger than a segment.
+	 * @return the number of discarded lines
+	 */
+	public long getDroppedCount() {
+		return this.droppedCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Segment segment : this.segments) {
+			segment.buffer.force();
+		}
+		this.segments.clear();
+		this.lockChannel.close();
+	}
+
+	private static final class Segment {
+
+		private final Path file;
+
+		private final long sequence;
+
+		private final MappedByteBuffer buffer;
+
+		private final ByteBuffer view;
+
+		private final int size;
+
+		private int readOffset;
+
+		private int writeOffset;
+
+		private Segment(Path file, long sequence, MappedByteBuffer buffer, int readOffset, int writeOffset) {
+			this.file = file;
+			this.sequence = sequence;
+			this.buffer = buffer;
+			this.view = buffer.duplicate();
+			this.size = buffer.capacity();
+			this.readOffset = readOffset;
+			this.writeOffset = writeOffset;
+		}
+
+		static Segment create(Path file, long sequence, int size) throws IOException {
+			MappedByteBuffer buffer = map(file, size);
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(READ_OFFSET_POSITION, SEGMENT_HEADER_SIZE);
+			return new Segment(file, sequence, buffer, SEGMENT_HEADER_SIZE, SEGMENT_HEADER_SIZE);
+		}
+
+		/**
+		 * Open an existing segment, using the size of its file.
+		 * @return the segment or {@code null} if it has an invalid header or nothing left
+		 * to replay
+		 */
+		static Segment open(Path file, long sequence, CRC32 crc) throws IOException {
+			long length = Files.size(file);
+			if (length < SEGMENT_HEADER_SIZE || length > Integer.MAX_VALUE) {
+				return null;
+			}
+			int size = (int) length;
+			MappedByteBuffer buffer = map(file, size);
+			int readOffset = buffer.getInt(READ_OFFSET_POSITION);
+			if (buffer.getInt(0) != MAGIC || readOffset < SEGMENT_HEADER_SIZE || readOffset > size) {
+				return null;
+			}
+			Segment segment = new Segment(file, sequence, buffer, readOffset, SEGMENT_HEADER_SIZE);
+			while (segment.isValidRecord(segment.writeOffset, size, crc)) {
+				segment.writeOffset += RECORD_HEADER_SIZE + buffer.getInt(segment.writeOffset);
+			}
+			segment.readOffset = Math.min(readOffset, segment.writeOffset);
+			return (segment.remaining() > 0) ? segment : null;
+		}
+
+		private static MappedByteBuffer map(Path file, int size) throws IOException {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE)) {
+				return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			}
+		}
+
+		static long parseSequence(Path file) {
+			String name = file.getFileName().toString();
+			try {
+				return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+			}
+			catch (RuntimeException ex) {
+				return -1;
+			}
+		}
+
+		private boolean isValidRecord(int offset, int size, CRC32 crc) {
+			if (offset + RECORD_HEADER_SIZE > size) {
+				return false;
+			}
+			int length = this.buffer.getInt(offset);
+			int format = this.buffer.get(offset + 8);
+			if (length <= 0 || offset + RECORD_HEADER_SIZE + length > size || format < 0 || format >= FORMATS.length) {
+				return false;
+			}
+			crc.reset();
+			crc.update(read(offset));
+			return (int) crc.getValue() == this.buffer.getInt(offset + 4);
+		}
+
+		byte[] read(int offset) {
+			byte[] bytes = new byte[this.buffer.getInt(offset)];
+			this.view.position(offset + RECORD_HEADER_SIZE);
+			this.view.get(bytes);
+			return bytes;
+		}
+
+		void write(DataFormat format, byte[] bytes, CRC32 crc) {
+			int offset = this.writeOffset;
+			crc.reset();
+			crc.update(bytes);
+			this.view.position(offset + RECORD_HEADER_SIZE);
+			this.view.put(bytes);
+			this.buffer.put(offset + 8, (byte) format.ordinal());
+			this.buffer.putInt(offset + 4, (int) crc.getValue());
+			this.buffer.putInt(offset, bytes.length);
+			this.writeOffset = offset + RECORD_HEADER_SIZE + bytes.length;
+		}
+
+		void commitReadOffset(int readOffset) {
+			this.readOffset = readOffset;
+			this.buffer.putInt(READ_OFFSET_POSITION, readOffset);
+		}
+
+		int offsetOf(int records) {
+			int offset = this.readOffset;
+			for (int i = 0; i < records; i++) {
+				offset += RECORD_HEADER_SIZE + this.buffer.getInt(offset);
+			}
+			return offset;
+		}
+
+		long remaining() {
+			long count = 0;
+			int offset = this.readOffset;
+			while (offset < this.writeOffset) {
+				offset += RECORD_HEADER_SIZE + this.buffer.getInt(offset);
+				count++;
+			}
+			return count;
+		}
+
+		void delete() throws IOException {
+			Files.deleteIfExists(this.file);
+		}
+
+	}
+
+}
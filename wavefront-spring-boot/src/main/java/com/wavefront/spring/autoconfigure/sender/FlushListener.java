@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+/**
+ * Callback interface invoked by {@link BufferingWavefrontSender} on its flusher thread
+ * once batches have been sent. Implementations should return quickly.
+ *
+ * @author Stephane Nicoll
+ * @see BufferingWavefrontSender#addFlushListener(FlushListener)
+ */
+public interface FlushListener {
+
+	/**
+	 * Invoked when a batch has been accepted by the transport.
+	 * @param format the format of the lines in the batch
+	 * @param size the number of lines in the batch
+	 * @param bytes the size of the lines, before any compression
+	 * @param durationNanos the time it took to send the batch, in nanoseconds
+	 */
+	default void batchSent(DataFormat format, int size, long bytes, long durationNanos) {
+	}
+
+	/**
+	 * Invoked when a flush that had at least one batch to ship has completed.
+	 * @param durationNanos the time it took to flush all buffers, in nanoseconds
+	 */
+	default void flushCompleted(long durationNanos) {
+	}
+
+}
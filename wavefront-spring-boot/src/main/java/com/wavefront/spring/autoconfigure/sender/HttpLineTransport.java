@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * A {@link LineTransport} that posts batches to the {@code /report} endpoint of a
+ * Wavefront cluster or proxy. Batches can be compressed using a {@link CompressionCodec}
+ * once their size reaches a configurable threshold; smaller batches are sent as is as the
+ * compression overhead would not pay off.
+ * <p>
+ * A client error status, other than a timeout or throttling, is reported as a
+ * {@link RejectedLinesException} as sending the batch again would not help.
+ *
+ * @author Stephane Nicoll
+ */
+public class HttpLineTransport implements LineTransport {
+
+	private static final int CONNECT_TIMEOUT_MILLIS = 30000;
+
+	private static final int READ_TIMEOUT_MILLIS = 10000;
+
+	private final String reportUri;
+
+	private final String apiToken;
+
+	private final CompressionCodec compression;
+
+	private final int compressionLevel;
+
+	private final int compressionThreshold;
+
+	/**
+	 * Create an instance for the specified base uri.
+	 * @param uri the uri of the Wavefront cluster or proxy
+	 * @param apiToken the api token to use or {@code null} to send unauthenticated
+	 * requests
+	 */
+	public HttpLineTransport(String uri, String apiToken) {
+		this(uri, apiToken, CompressionCodec.NONE, Deflater.DEFAULT_COMPRESSION, 0);
+	}
+
+	/**
+	 * Create an instance for the specified base uri that compresses batches.
+	 * @param uri the uri of the Wavefront cluster or proxy
+	 * @param apiToken the api token to use or {@code null} to send unauthenticated
+	 * requests
+	 * @param compression the compression codec to use
+	 * @param compressionLevel the compression level, from 0 to 9 or -1 for the default
+	 * level of the codec
+	 * @param compressionThreshold the minimum size of a batch, in bytes, for it to be
+	 * compressed
+	 */
+	public HttpLineTransport(String uri, String apiToken, CompressionCodec compression, int compressionLevel,
+			int compressionThreshold) {
+		Assert.notNull(compression, "Compression codec must not be null");
+		Assert.isTrue(compressionLevel >= Deflater.DEFAULT_COMPRESSION && compressionLevel <= Deflater.BEST_COMPRESSION,
+				"Compression level must be between -1 and 9");
+		this.reportUri = StringUtils.trimTrailingCharacter(uri, '/') + "/report?f=";
+		this.apiToken = apiToken;
+		this.compression = compression;
+		this.compressionLevel = compressionLevel;
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	@Override
+	public void send(DataFormat format, List<String> lines) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(this.reportUri + format.getFormat())
+				.openConnection();
+		connection.setDoOutput(true);
+		connection.setRequestMethod("POST");
+		connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+		connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+		connection.setRequestProperty("Content-Type", "application/octet-stream");
+		if (StringUtils.hasText(this.apiToken)) {
+			connection.setRequestProperty("Authorization", "Bearer " + this.apiToken);
+		}
+		CompressionCodec compression = shouldCompress(lines) ? this.compression : CompressionCodec.NONE;
+		if (compression.getContentEncoding() != null) {
+			connection.setRequestProperty("Content-Encoding", compression.getContentEncoding());
+		}
+		try (OutputStream out = compression.compress(connection.getOutputStream(), this.compressionLevel)) {
+			writeBody(lines, out);
+		}
+		int status = connection.getResponseCode();
+		if (status < 200 || status >= 300) {
+			discard(connection.getErrorStream());
+			String message = String.format("Failed to send %d %s line(s), server replied with status %d",
+					lines.size(), format.getFormat(), status);
+			throw isPermanentFailure(status) ? new RejectedLinesException(message) : new IOException(message);
+		}
+		discard(connection.getInputStream());
+	}
+
+	private boolean isPermanentFailure(int status) {
+		return status >= 400 && status < 500 && status != 408 && status != 429;
+	}
+
+	private boolean shouldCompress(List<String> lines) {
+		if (this.compression == CompressionCodec.NONE) {
+			return false;
+		}
+		long size = 0;
+		for (String line : lines) {
+			size += line.length();
+			if (size >= this.compressionThreshold) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void writeBody(List<String> lines, OutputStream out) throws IOException {
+		for (String line : lines) {
+			out.write(line.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private void discard(InputStream in) throws IOException {
+		if (in != null) {
+			try (InputStream body = in) {
+				StreamUtils.drain(body);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return this.reportUri.substring(0, this.reportUri.indexOf('?'));
+	}
+
+}
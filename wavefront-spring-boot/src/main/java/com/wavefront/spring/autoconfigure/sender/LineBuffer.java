@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free, multi-producer multi-consumer ring buffer of encoded lines, of
+ * points waiting to be encoded, or of spans waiting to be reported. Each slot carries a
+ * sequence number that tells producers and consumers whether it can be claimed, so that
+ * neither side ever takes a lock.
+ *
+ * @param <E> the type of the buffered lines
+ * @author Stephane Nicoll
+ */
+public final class LineBuffer<E> {
+
+	private final int mask;
+
+	private final AtomicReferenceArray<E> elements;
+
+	private final AtomicLongArray sequences;
+
+	private final AtomicLong head = new AtomicLong();
+
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * Create a buffer that can hold at least the specified number of lines.
+	 * @param capacity the requested capacity, rounded up to the next power of two
+	 */
+	public LineBuffer(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		int size = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		if (size <= 0) {
+			throw new IllegalArgumentException("Capacity is too large: " + capacity);
+		}
+		this.mask = size - 1;
+		this.elements = new AtomicReferenceArray<>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			this.sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Add the specified line if the buffer has room for it.
+	 * @param line the line to add
+	 * @return {@code true} if the line was added, {@code false} if the buffer is full
+	 */
+	public boolean offer(E line) {
+		long position = this.tail.get();
+		while (true) {
+			int index = (int) position & this.mask;
+			long diff = this.sequences.get(index) - position;
+			if (diff == 0) {
+				if (this.tail.compareAndSet(position, position + 1)) {
+					this.elements.lazySet(index, line);
+					this.sequences.lazySet(index, position + 1);
+					return true;
+				}
+				position = this.tail.get();
+			}
+			else if (diff < 0) {
+				return false;
+			}
+			else {
+				position = this.tail.get();
+			}
+		}
+	}
+
+	/**
+	 * Remove the oldest line.
+	 * @return the oldest line or {@code null} if the buffer is empty
+	 */
+	public E poll() {
+		long position = this.head.get();
+		while (true) {
+			int index = (int) position & this.mask;
+			long diff = this.sequences.get(index) - (position + 1);
+			if (diff == 0) {
+				if (this.head.compareAndSet(position, position + 1)) {
+					E line = this.elements.get(index);
+					this.elements.lazySet(index, null);
+					this.sequences.lazySet(index, position + this.mask + 1);
+					return line;
+				}
+				position = this.head.get();
+			}
+			else if (diff < 0) {
+				return null;
+			}
+			else {
+				position = this.head.get();
+			}
+		}
+	}
+
+	/**
+	 * Move up to {@code maxLines} lines to the specified target, oldest first.
+	 * @param target the list to add lines to
+	 * @param maxLines the maximum number of lines to move
+	 * @return the number of lines that were moved
+	 */
+	public int drainTo(List<? super E> target, int maxLines) {
+		int count = 0;
+		while (count < maxLines) {
+			E line = poll();
+			if (line == null) {
+				break;
+			}
+			target.add(line);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Return an estimate of the number of lines in the buffer.
+	 * @return the number of buffered lines
+	 */
+	public int size() {
+		long size = this.tail.get() - this.head.get();
+		return (int) Math.max(0, Math.min(size, capacity()));
+	}
+
+	/**
+	 * Return the actual capacity of the buffer.
+	 * @return the capacity
+	 */
+	public int capacity() {
+		return this.mask + 1;
+	}
+
+}
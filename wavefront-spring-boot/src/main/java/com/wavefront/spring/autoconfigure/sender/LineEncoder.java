@@ -0,0 +1,305 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.Utils;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+
+/**
+ * Encodes points in the Wavefront line protocol, producing the same lines as
+ * {@link Utils}. Names, tags and values are escaped and numbers are formatted directly in
+ * a buffer that is pooled per thread, so that the line itself is the only object that is
+ * allocated per point.
+ * <p>
+ * Tags are written in the iteration order of the map or list that holds them.
+ *
+ * @author Stephane Nicoll
+ */
+public final class LineEncoder {
+
+	private static final int INITIAL_BUFFER_SIZE = 512;
+
+	private static final int MAX_POOLED_BUFFER_SIZE = 16 * 1024;
+
+	private static final ThreadLocal<StringBuilder> buffers = ThreadLocal
+			.withInitial(() -> new StringBuilder(INITIAL_BUFFER_SIZE));
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private static final String SPAN_LOGS_TAG = " \"_spanLogs\"=\"true\"";
+
+	private final String defaultSource;
+
+	/**
+	 * Create an encoder.
+	 * @param defaultSource the source to use when a point does not define one
+	 */
+	public LineEncoder(String defaultSource) {
+		this.defaultSource = defaultSource;
+	}
+
+	/**
+	 * Encode the specified metric point, producing the same line as
+	 * {@link Utils#metricToLineData(String, double, Long, String, Map, String)}.
+	 * @param name the name of the metric
+	 * @param value the value
+	 * @param timestamp the timestamp or {@code null}
+	 * @param source the source or {@code null} to use the default source
+	 * @param tags the tags or {@code null}
+	 * @return the encoded line
+	 * @throws IllegalArgumentException if the point is invalid
+	 */
+	public String encodeMetric(String name, double value, Long timestamp, String source, Map<String, String> tags) {
+		checkNotBlank(name, "Metric name must not be blank");
+		StringBuilder sb = buffer();
+		appendName(sb, name);
+		sb.append(' ').append(value);
+		if (timestamp != null) {
+			sb.append(' ').append(timestamp.longValue());
+		}
+		appendSource(sb, source);
+		appendTags(sb, tags);
+		sb.append('\n');
+		return toLine(sb);
+	}
+
+	/**
+	 * Encode the specified distribution, producing the same lines as
+	 * {@link Utils#histogramToLineData(String, List, Set, Long, String, Map, String)}.
+	 * @param name the name of the distribution
+	 * @param centroids the centroids of the distribution, as value and count pairs
+	 * @param granularities the granularities to report the distribution for
+	 * @param timestamp the timestamp or {@code null}
+	 * @param source the source or {@code null} to use the default source
+	 * @param tags the tags or {@code null}
+	 * @return the encoded lines, one per granularity
+	 * @throws IllegalArgumentException if the distribution is invalid
+	 */
+	public String encodeDistribution(String name, List<Pair<Double, Integer>> centroids,
+			Set<HistogramGranularity> granularities, Long timestamp, String source, Map<String, String> tags) {
+		checkNotBlank(name, "Histogram name must not be blank");
+		if (granularities == null || granularities.isEmpty()) {
+			throw new IllegalArgumentException("Histogram granularities must not be empty");
+		}
+		if (centroids == null || centroids.isEmpty()) {
+			throw new IllegalArgumentException("A distribution must have at least one centroid");
+		}
+		StringBuilder sb = buffer();
+		for (HistogramGranularity granularity : granularities) {
+			sb.append(granularity.identifier);
+			if (timestamp != null) {
+				sb.append(' ').append(timestamp.longValue());
+			}
+			for (int i = 0; i < centroids.size(); i++) {
+				Pair<Double, Integer> centroid = centroids.get(i);
+				sb.append(" #").append(centroid._2.intValue()).append(' ').append(centroid._1.doubleValue());
+			}
+			sb.append(' ');
+			appendName(sb, name);
+			appendSource(sb, source);
+			appendTags(sb, tags);
+			sb.append('\n');
+		}
+		return toLine(sb);
+	}
+
+	/**
+	 * Encode the specified span, producing the same line as
+	 * {@link Utils#tracingSpanToLineData(String, long, long, String, UUID, UUID, List, List, List, List, String)}.
+	 * @param name the name of the span
+	 * @param startMillis the start time, in milliseconds
+	 * @param durationMillis the duration, in milliseconds
+	 * @param source the source or {@code null} to use the default source
+	 * @param traceId the id of the trace
+	 * @param spanId the id of the span
+	 * @param parents the ids of the parent spans or {@code null}
+	 * @param followsFrom the ids of the spans this span follows from or {@code null}
+	 * @param tags the tags or {@code null}
+	 * @param spanLogs the logs of the span or {@code null}
+	 * @return the encoded line
+	 * @throws IllegalArgumentException if the span is invalid
+	 */
+	public String encodeSpan(String name, long startMillis, long durationMillis, String source, UUID traceId,
+			UUID spanId, List<UUID> parents, List<UUID> followsFrom, List<Pair<String, String>> tags,
+			List<SpanLog> spanLogs) {
+		checkNotBlank(name, "Span name must not be blank");
+		StringBuilder sb = buffer();
+		appendValue(sb, name);
+		appendSource(sb, source);
+		sb.append(" traceId=");
+		appendUuid(sb, traceId);
+		sb.append(" spanId=");
+		appendUuid(sb, spanId);
+		appendUuids(sb, " parent=", parents);
+		appendUuids(sb, " followsFrom=", followsFrom);
+		if (tags != null) {
+			for (int i = 0; i < tags.size(); i++) {
+				Pair<String, String> tag = tags.get(i);
+				appendTag(sb, tag._1, tag._2);
+			}
+		}
+		if (spanLogs != null && !spanLogs.isEmpty()) {
+			sb.append(SPAN_LOGS_TAG);
+		}
+		sb.append(' ').append(startMillis).append(' ').append(durationMillis).append('\n');
+		return toLine(sb);
+	}
+
+	/**
+	 * Return the buffer of the current thread, ready to encode a new line.
+	 * @return an empty buffer
+	 */
+	static StringBuilder buffer() {
+		StringBuilder sb = buffers.get();
+		sb.setLength(0);
+		return sb;
+	}
+
+	/**
+	 * Return the line held by the specified buffer. Buffers that grew beyond a reasonable
+	 * size to hold an unusually large line are not pooled further.
+	 * @param sb the buffer of the current thread
+	 * @return the line
+	 */
+	static String toLine(StringBuilder sb) {
+		String line = sb.toString();
+		if (sb.capacity() > MAX_POOLED_BUFFER_SIZE) {
+			buffers.remove();
+		}
+		return line;
+	}
+
+	private void appendSource(StringBuilder sb, String source) {
+		sb.append(" source=");
+		appendValue(sb, isBlank(source) ? this.defaultSource : source);
+	}
+
+	private static void appendTags(StringBuilder sb, Map<String, String> tags) {
+		if (tags != null) {
+			for (Map.Entry<String, String> tag : tags.entrySet()) {
+				appendTag(sb, tag.getKey(), tag.getValue());
+			}
+		}
+	}
+
+	private static void appendTag(StringBuilder sb, String key, String value) {
+		checkNotBlank(key, "Tag key must not be blank");
+		checkNotBlank(value, "Tag value must not be blank");
+		sb.append(' ');
+		appendName(sb, key);
+		sb.append('=');
+		appendValue(sb, value);
+	}
+
+	/**
+	 * Append a quoted metric name or tag key, replacing unsupported characters by
+	 * {@code -}. A delta prefix or a {@code ~} is allowed as the first character.
+	 */
+	private static void appendName(StringBuilder sb, String name) {
+		sb.append('"');
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			boolean legal = (c >= ',' && c <= '9') || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '_'
+					|| (i == 0 && (c == '\u2206' || c == '\u0394' || c == '~'));
+			sb.append(legal ? c : '-');
+		}
+		sb.append('"');
+	}
+
+	/**
+	 * Append a trimmed, quoted value, escaping quotes and new lines.
+	 */
+	private static void appendValue(StringBuilder sb, String value) {
+		int start = 0;
+		int end = value.length();
+		while (start < end && value.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && value.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		sb.append('"');
+		for (int i = start; i < end; i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				sb.append("\\\"");
+			}
+			else if (c == '\n') {
+				sb.append("\\n");
+			}
+			else {
+				sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+
+	private static void appendUuids(StringBuilder sb, String prefix, List<UUID> uuids) {
+		if (uuids != null) {
+			for (int i = 0; i < uuids.size(); i++) {
+				sb.append(prefix);
+				appendUuid(sb, uuids.get(i));
+			}
+		}
+	}
+
+	private static void appendUuid(StringBuilder sb, UUID uuid) {
+		long msb = uuid.getMostSignificantBits();
+		long lsb = uuid.getLeastSignificantBits();
+		appendHex(sb, msb >>> 32, 8);
+		sb.append('-');
+		appendHex(sb, msb >>> 16, 4);
+		sb.append('-');
+		appendHex(sb, msb, 4);
+		sb.append('-');
+		appendHex(sb, lsb >>> 48, 4);
+		sb.append('-');
+		appendHex(sb, lsb, 12);
+	}
+
+	private static void appendHex(StringBuilder sb, long value, int digits) {
+		for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+			sb.append(HEX_DIGITS[(int) (value >>> shift) & 0xF]);
+		}
+	}
+
+	private static void checkNotBlank(String value, String message) {
+		if (isBlank(value)) {
+			throw new IllegalArgumentException(message);
+		}
+	}
+
+	private static boolean isBlank(String value) {
+		if (value == null) {
+			return true;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			if (!Character.isWhitespace(value.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
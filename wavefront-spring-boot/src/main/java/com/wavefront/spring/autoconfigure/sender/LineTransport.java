@@ -0,0 +1,44 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Transport used to ship batches of encoded lines to Wavefront.
+ *
+ * @author Stephane Nicoll
+ * @see BufferingWavefrontSender
+ */
+public interface LineTransport extends Closeable {
+
+	/**
+	 * Send the specified batch of lines. Each line is expected to be terminated by a new
+	 * line character.
+	 * @param format the format of the lines
+	 * @param lines the lines to send
+	 * @throws IOException if the batch could not be sent
+	 */
+	void send(DataFormat format, List<String> lines) throws IOException;
+
+	@Override
+	default void close() throws IOException {
+	}
+
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import com.wavefront.sdk.common.Constants;
+import com.wavefront.sdk.common.Utils;
+import com.wavefront.spring.autoconfigure.metrics.MetricNames;
+
+/**
+ * Encodes metric points using a cache of the escaped parts of each series. A metric line
+ * is made of the name of the series, its value and timestamp, followed by the source and
+ * the tags. Only the value and timestamp change from one publication to the next, so the
+ * name and the source and tags are escaped once and reused afterwards.
+ * <p>
+ * Series that have not been encoded for the expiry time are evicted once the cache
+ * reaches its maximum size. If no series has expired, points of additional series are
+ * encoded from scratch and counted as {@link #getOverflowCount() overflows}.
+ * <p>
+ * The cache also keeps track of the last publication of each series so that points can be
+ * skipped:
+ * <ul>
+ * <li>If a refresh interval is set, a point whose value is identical to the one
+ * previously published for the same series is skipped, unless the refresh interval has
+ * elapsed since that series was last published. As the points of counters and timers
+ * are per-step values, this only applies to {@link #registerGauge(String) gauges} and to
+ * other series that stay at zero.</li>
+ * <li>If a publish interval applies to the name of a gauge, at most one point is
+ * published per interval. Intervals are aligned on the epoch so that all series of a
+ * given interval are published together. Publish intervals do not apply to other
+ * series, as skipping a count for a step would lose it.</li>
+ * </ul>
+ * Delta counters are never skipped as their points are not cumulative. Only cached series
+ * benefit from this.
+ *
+ * @author Stephane Nicoll
+ */
+final class MetricLineCache {
+
+	private static final Duration DEFAULT_EXPIRY = Duration.ofMinutes(10);
+
+	private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+	private final LineEncoder encoder;
+
+	private final int maxSize;
+
+	private final long expiryMillis;
+
+	private final LongSupplier clock;
+
+	private final long refreshIntervalMillis;
+
+	private final Map<String, Duration> publishIntervals;
+
+	private final Map<SeriesKey, Series> series = new ConcurrentHashMap<>();
+
+	private final Set<String> gauges = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong lastSweep = new AtomicLong();
+
+	private final LongAdder overflows = new LongAdder();
+
+	/**
+	 * Create a cache whose series expire after ten minutes.
+	 * @param defaultSource the source to use when a point does not define one
+	 * @param maxSize the maximum number of series to cache
+	 * @param refreshInterval the interval after which an unchanged point is published
+	 * again or {@code null} to publish every point
+	 * @param publishIntervals the minimum interval between two publications of a series,
+	 * keyed by metric name prefix
+	 */
+	MetricLineCache(String defaultSource, int maxSize, Duration refreshInterval,
+			Map<String, Duration> publishIntervals) {
+		this(defaultSource, maxSize, DEFAULT_EXPIRY, refreshInterval, publishIntervals, System::currentTimeMillis);
+	}
+
+	/**
+	 * Create a cache.
+	 * @param defaultSource the source to use when a point does not define one
+	 * @param maxSize the maximum number of series to cache
+	 * @param expiry the time after which a series that has not been encoded can be
+	 * evicted
+	 * @param refreshInterval the interval after which an unchanged point is published
+	 * again or {@code null} to publish every point
+	 * @param publishIntervals the minimum interval between two publications of a series,
+	 * keyed by metric name prefix
+	 * @param clock the clock to use, in milliseconds
+	 */
+	MetricLineCache(String defaultSource, int maxSize, Duration expiry, Duration refreshInterval,
+			Map<String, Duration> publishIntervals, LongSupplier clock) {
+		this.encoder = new LineEncoder(defaultSource);
+		this.maxSize = maxSize;
+		this.expiryMillis = expiry.toMillis();
+		this.clock = clock;
+		this.refreshIntervalMillis = (refreshInterval != null) ? refreshInterval.toMillis() : -1;
+		this.publishIntervals = new LinkedHashMap<>(publishIntervals);
+	}
+
+	/**
+	 * Encode the specified metric point, producing the same line as
+	 * {@link Utils#metricToLineData(String, double, Long, String, Map, String)}.
+	 * @param name the name of the metric
+	 * @param value the value
+	 * @param timestamp the timestamp or {@code null}
+	 * @param source the source or {@code null} to use the default source
+	 * @param tags the tags or {@code null}
+	 * @return the encoded line or {@code null} if the point should be skipped
+	 * @throws IllegalArgumentException if the point is invalid
+	 */
+	String encode(String name, double value, Long timestamp, String source, Map<String, String> tags) {
+		long now = this.clock.getAsLong();
+		Series series = this.series.get(new SeriesKey(name, source, tags));
+		if (series == null) {
+			boolean gauge = this.gauges.contains(name);
+			series = Series.of(this.encoder.encodeMetric(name, 0, null, source, tags),
+					isDelta(name) ? -1 : (gauge ? getPublishInterval(name) : 0), gauge);
+			if (this.series.size() >= this.maxSize) {
+				evictExpired(now);
+			}
+			if (this.series.size() < this.maxSize) {
+				Map<String, String> copy = (tags != null) ? Collections.unmodifiableMap(new HashMap<>(tags)) : null;
+				Series existing = this.series.putIfAbsent(new SeriesKey(name, source, copy), series);
+				series = (existing != null) ? existing : series;
+			}
+			else {
+				this.overflows.increment();
+			}
+		}
+		series.lastSeen = now;
+		return (!isSkipped(series, value, (timestamp != null) ? timestamp : now)) ? series.encode(value, timestamp)
+				: null;
+	}
+
+	/**
+	 * Evict the series that have not been encoded for the expiry time. The cache is
+	 * swept at most once per second so that a full cache of live series does not cost a
+	 * sweep per point.
+	 * @param now the current time
+	 */
+	private void evictExpired(long now) {
+		long lastSweep = this.lastSweep.get();
+		if (now - lastSweep < SWEEP_INTERVAL_MILLIS || !this.lastSweep.compareAndSet(lastSweep, now)) {
+			return;
+		}
+		long threshold = now - this.expiryMillis;
+		this.series.values().removeIf((series) -> series.lastSeen < threshold);
+	}
+
+	private boolean isSkipped(Series series, double value, long time) {
+		if (series.publishIntervalMillis < 0 || (series.publishIntervalMillis == 0 && this.refreshIntervalMillis < 0)) {
+			return false;
+		}
+		return series.isSkipped(value, time, this.refreshIntervalMillis);
+	}
+
+	private boolean isDelta(String name) {
+		return name.startsWith(Constants.DELTA_PREFIX) || name.startsWith(Constants.DELTA_PREFIX_2);
+	}
+
+	private long getPublishInterval(String name) {
+		long interval = 0;
+		int matchLength = -1;
+		for (Map.Entry<String, Duration> entry : this.publishIntervals.entrySet()) {
+			String prefix = entry.getKey();
+			if (MetricNames.startsWith(name, prefix) && prefix.length() > matchLength) {
+				interval = entry.getValue().toMillis();
+				matchLength = prefix.length();
+			}
+		}
+		return interval;
+	}
+
+	/**
+	 * Register the name of a gauge, whose points are a measurement rather than a count
+	 * for the last step and can therefore be skipped when their value has not changed.
+	 * @param name the name of the gauge
+	 */
+	void registerGauge(String name) {
+		this.gauges.add(name);
+	}
+
+	int size() {
+		return this.series.size();
+	}
+
+	/**
+	 * Return the number of points whose series could not be cached because the cache was
+	 * full.
+	 * @return the number of overflows
+	 */
+	long getOverflowCount() {
+		return this.overflows.sum();
+	}
+
+	private static final class SeriesKey {
+
+		private final String name;
+
+		private final String source;
+
+		private final Map<String, String> tags;
+
+		private final int hash;
+
+		SeriesKey(String name, String source, Map<String, String> tags) {
+			this.name = name;
+			this.source = source;
+			this.tags = tags;
+			this.hash = (31 * Objects.hashCode(name) + Objects.hashCode(source)) * 31 + Objects.hashCode(tags);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			SeriesKey other = (SeriesKey) obj;
+			return this.hash == other.hash && Objects.equals(this.name, other.name)
+					&& Objects.equals(this.source, other.source) && Objects.equals(this.tags, other.tags);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+	}
+
+	private static final class Series {
+
+		private final String prefix;
+
+		private final String suffix;
+
+		private final long publishIntervalMillis;
+
+		private final boolean gauge;
+
+		private volatile long lastValueBits;
+
+		private volatile long lastPublished = Long.MIN_VALUE;
+
+		private volatile long lastSeen;
+
+		private Series(String prefix, String suffix, long publishIntervalMillis, boolean gauge) {
+			this.prefix = prefix;
+			this.suffix = suffix;
+			this.publishIntervalMillis = publishIntervalMillis;
+			this.gauge = gauge;
+		}
+
+		/**
+		 * Split a line encoded with a value of zero and no timestamp around its value.
+		 * @param line the template line
+		 * @param publishIntervalMillis the minimum interval between two publications, 0
+		 * to publish every point, or -1 if no point of the series should ever be skipped
+		 * @param gauge whether the series is a gauge
+		 * @return the series
+		 */
+		static Series of(String line, long publishIntervalMillis, boolean gauge) {
+			int valueStart = line.indexOf(' ') + 1;
+			int valueEnd = line.indexOf(' ', valueStart);
+			return new Series(line.substring(0, valueStart), line.substring(valueEnd), publishIntervalMillis, gauge);
+		}
+
+		/**
+		 * Return whether the specified point should be skipped, either because the
+		 * publish interval of the series has not elapsed or because its value is
+		 * identical to the one published last and the refresh interval has not elapsed.
+		 * Unless the series is a gauge, only a value of zero is considered unchanged.
+		 * Otherwise, record the point as published.
+		 * @param value the value of the point
+		 * @param time the time of the point, in milliseconds
+		 * @param refreshIntervalMillis the refresh interval, in milliseconds, or -1 to
+		 * publish unchanged points
+		 * @return {@code true} if the point can be skipped
+		 */
+		boolean isSkipped(double value, long time, long refreshIntervalMillis) {
+			long valueBits = Double.doubleToLongBits(value);
+			long last = this.lastPublished;
+			if (last != Long.MIN_VALUE) {
+				if (this.publishIntervalMillis > 0
+						&& time / this.publishIntervalMillis == last / this.publishIntervalMillis) {
+					return true;
+				}
+				if (valueBits == this.lastValueBits && (this.gauge || value == 0)
+						&& time - last < refreshIntervalMillis) {
+					return true;
+				}
+			}
+			this.lastValueBits = valueBits;
+			this.lastPublished = time;
+			return false;
+		}
+
+		String encode(double value, Long timestamp) {
+			StringBuilder sb = LineEncoder.buffer();
+			sb.append(this.prefix).append(value);
+			if (timestamp != null) {
+				sb.append(' ').append(timestamp.longValue());
+			}
+			return LineEncoder.toLine(sb.append(this.suffix));
+		}
+
+	}
+
+}
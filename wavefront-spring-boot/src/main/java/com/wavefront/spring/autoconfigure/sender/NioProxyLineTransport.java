@@ -0,0 +1,509 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link LineTransport} that writes batches to the plain TCP listeners of a Wavefront
+ * proxy using non-blocking I/O.
+ * <p>
+ * Lines are encoded in pooled direct {@link ByteBuffer buffers} by the calling thread and
+ * queued for the connection that handles their format. A dedicated I/O thread drives a
+ * {@link Selector} and flushes pending buffers using gathering writes while the rest of
+ * the batch is being encoded. The calling thread waits once the configured amount of
+ * pending bytes is reached, and until the whole batch has been written to the socket.
+ * <p>
+ * If the connection fails, or if the proxy does not read anything for the write timeout,
+ * the batch fails with the lines that were not fully written: a
+ * {@link PartialSendException} if some lines were written, a plain {@link IOException}
+ * otherwise. The connection is re-established on the next batch. An empty batch connects
+ * to the proxy if necessary, so that it can be used as a health check.
+ *
+ * @author Stephane Nicoll
+ */
+public class NioProxyLineTransport implements LineTransport {
+
+	private static final Log logger = LogFactory.getLog(NioProxyLineTransport.class);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final int MAX_GATHERED_BUFFERS = 16;
+
+	private static final long SELECT_TIMEOUT_MILLIS = 1000;
+
+	private static final long DEFAULT_WRITE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+	private final String host;
+
+	private final long maxPendingBytes;
+
+	private final long writeTimeoutNanos;
+
+	private final Connection[] connections = new Connection[DataFormat.values().length];
+
+	private final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+
+	private final Selector selector;
+
+	private final Thread ioThread;
+
+	private volatile boolean closing;
+
+	/**
+	 * Create an instance for the specified proxy.
+	 * @param host the host of the proxy
+	 * @param metricsPort the port on which the proxy accepts metrics
+	 * @param distributionPort the port on which the proxy accepts histogram distributions
+	 * @param tracingPort the port on which the proxy accepts spans and span logs
+	 * @param maxPendingBytes the maximum number of bytes of a batch that can be waiting
+	 * to be written to a single connection before the calling thread waits
+	 * @throws IOException if the selector could not be opened
+	 */
+	public NioProxyLineTransport(String host, int metricsPort, int distributionPort, int tracingPort,
+			long maxPendingBytes) throws IOException {
+		this(host, metricsPort, distributionPort, tracingPort, maxPendingBytes, DEFAULT_WRITE_TIMEOUT_NANOS);
+	}
+
+	NioProxyLineTransport(String host, int metricsPort, int distributionPort, int tracingPort, long maxPendingBytes,
+			long writeTimeoutNanos) throws IOException {
+		Assert.hasText(host, "Host must not be empty");
+		Assert.isTrue(maxPendingBytes > 0, "Max pending bytes must be positive");
+		this.host = host;
+		this.maxPendingBytes = maxPendingBytes;
+		this.writeTimeoutNanos = writeTimeoutNanos;
+		Map<Integer, Connection> connections = new LinkedHashMap<>();
+		this.connections[DataFormat.METRIC.ordinal()] = connections.computeIfAbsent(metricsPort, Connection::new);
+		this.connections[DataFormat.HISTOGRAM.ordinal()] = connections.computeIfAbsent(distributionPort,
+				Connection::new);
+		this.connections[DataFormat.SPAN.ordinal()] = connections.computeIfAbsent(tracingPort, Connection::new);
+		this.connections[DataFormat.SPAN_LOG.ordinal()] = this.connections[DataFormat.SPAN.ordinal()];
+		this.selector = Selector.open();
+		this.ioThread = new Thread(this::run, "wavefront-proxy-io");
+		this.ioThread.setDaemon(true);
+		this.ioThread.start();
+	}
+
+	@Override
+	public synchronized void send(DataFormat format, List<String> lines) throws IOException {
+		if (this.closing) {
+			throw new IOException("Transport has been closed");
+		}
+		Connection connection = this.connections[format.ordinal()];
+		connection.startBatch();
+		if (lines.isEmpty()) {
+			connection.awaitConnected();
+			return;
+		}
+		long[] lineEnds = new long[lines.size()];
+		long size = 0;
+		ByteBuffer buffer = acquireBuffer();
+		try {
+			for (int index = 0; index < lines.size() && connection.failure == null; index++) {
+				String line = lines.get(index);
+				for (int i = 0; i < line.length(); i++) {
+					if (buffer.remaining() < 4) {
+						size += connection.enqueue(buffer);
+						buffer = null;
+						connection.awaitPendingBytesBelow(this.maxPendingBytes);
+						buffer = acquireBuffer();
+					}
+					i = encode(line, i, buffer);
+				}
+				lineEnds[index] = size + buffer.position();
+			}
+			if (buffer.position() > 0) {
+				size += connection.enqueue(buffer);
+				buffer = null;
+			}
+		}
+		finally {
+			if (buffer != null) {
+				releaseBuffer(buffer);
+			}
+		}
+		long written = connection.awaitWritten(size);
+		long end = lineEnds[lineEnds.length - 1];
+		if (end == 0 || written < end) {
+			throw unsent(connection, lines, lineEnds, written);
+		}
+	}
+
+	private IOException unsent(Connection connection, List<String> lines, long[] lineEnds, long written) {
+		int firstUnsent = 0;
+		while (firstUnsent < lines.size() && lineEnds[firstUnsent] != 0 && lineEnds[firstUnsent] <= written) {
+			firstUnsent++;
+		}
+		String message = String.format("Connection to proxy %s:%d failed, %d of %d line(s) not written", this.host,
+				connection.port, lines.size() - firstUnsent, lines.size());
+		IOException failure = (firstUnsent > 0)
+				? new PartialSendException(message, new ArrayList<>(lines.subList(firstUnsent, lines.size())))
+				: new IOException(message);
+		failure.initCause(connection.failure);
+		return failure;
+	}
+
+	/**
+	 * Encode the character at the specified index in UTF-8.
+	 * @param line the line
+	 * @param index the index of the character to encode
+	 * @param buffer the buffer to write to, with at least four bytes remaining
+	 * @return the index of the last character that was consumed
+	 */
+	private int encode(String line, int index, ByteBuffer buffer) {
+		char c = line.charAt(index);
+		if (c < 0x80) {
+			buffer.put((byte) c);
+		}
+		else if (c < 0x800) {
+			buffer.put((byte) (0xC0 | (c >> 6)));
+			buffer.put((byte) (0x80 | (c & 0x3F)));
+		}
+		else if (Character.isHighSurrogate(c) && index + 1 < line.length()
+				&& Character.isLowSurrogate(line.charAt(index + 1))) {
+			int codePoint = Character.toCodePoint(c, line.charAt(index + 1));
+			buffer.put((byte) (0xF0 | (codePoint >> 18)));
+			buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+			buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+			buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+			return index + 1;
+		}
+		else if (Character.isSurrogate(c)) {
+			buffer.put((byte) '?');
+		}
+		else {
+			buffer.put((byte) (0xE0 | (c >> 12)));
+			buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+			buffer.put((byte) (0x80 | (c & 0x3F)));
+		}
+		return index;
+	}
+
+	private ByteBuffer acquireBuffer() {
+		ByteBuffer buffer = this.bufferPool.poll();
+		return (buffer != null) ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+	}
+
+	private void releaseBuffer(ByteBuffer buffer) {
+		buffer.clear();
+		this.bufferPool.offer(buffer);
+	}
+
+	private void run() {
+		try {
+			while (!this.closing) {
+				for (Connection connection : this.connections) {
+					connection.updateInterest();
+				}
+				this.selector.select(SELECT_TIMEOUT_MILLIS);
+				Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					((Connection) key.attachment()).process(key);
+				}
+			}
+		}
+		catch (IOException | ClosedSelectorException ex) {
+			logger.warn("Wavefront proxy I/O loop has stopped", ex);
+		}
+		finally {
+			this.closing = true;
+			for (Connection connection : this.connections) {
+				connection.disconnect(new IOException("Transport has been closed"));
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.closing) {
+			return;
+		}
+		this.closing = true;
+		this.selector.wakeup();
+		try {
+			this.ioThread.join(SELECT_TIMEOUT_MILLIS * 2);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		this.selector.close();
+	}
+
+	@Override
+	public String toString() {
+		return "tcp://" + this.host + ":" + this.connections[DataFormat.METRIC.ordinal()].port;
+	}
+
+	/**
+	 * A connection to a proxy port. The channel is only handled by the I/O thread. The
+	 * thread sending a batch waits on the connection for the I/O thread to make progress.
+	 */
+	private final class Connection {
+
+		private final int port;
+
+		private final Queue<ByteBuffer> pending = new ConcurrentLinkedQueue<>();
+
+		private final AtomicLong pendingBytes = new AtomicLong();
+
+		private final AtomicLong written = new AtomicLong();
+
+		private final ByteBuffer[] gathered = new ByteBuffer[MAX_GATHERED_BUFFERS];
+
+		private volatile IOException failure;
+
+		private volatile IOException abort;
+
+		private volatile boolean connectRequested;
+
+		private volatile boolean connected;
+
+		private SocketChannel channel;
+
+		private SelectionKey key;
+
+		Connection(int port) {
+			this.port = port;
+		}
+
+		void startBatch() {
+			this.failure = null;
+			this.abort = null;
+			this.written.set(0);
+		}
+
+		/**
+		 * Queue the specified buffer, unless the current batch has failed already.
+		 * @return the number of bytes that were queued
+		 */
+		synchronized int enqueue(ByteBuffer buffer) {
+			if (this.failure != null) {
+				releaseBuffer(buffer);
+				return 0;
+			}
+			buffer.flip();
+			int size = buffer.remaining();
+			this.pendingBytes.addAndGet(size);
+			this.pending.add(buffer);
+			NioProxyLineTransport.this.selector.wakeup();
+			return size;
+		}
+
+		/**
+		 * Wait for the connection to be established.
+		 */
+		void awaitConnected() throws IOException {
+			if (this.connected) {
+				return;
+			}
+			this.connectRequested = true;
+			NioProxyLineTransport.this.selector.wakeup();
+			awaitProgress(() -> this.connected);
+			if (!this.connected) {
+				throw new IOException(String.format("Connection to proxy %s:%d failed",
+						NioProxyLineTransport.this.host, this.port), this.failure);
+			}
+		}
+
+		/**
+		 * Wait for the number of pending bytes to go below the specified limit, unless
+		 * the batch fails.
+		 */
+		void awaitPendingBytesBelow(long limit) {
+			awaitProgress(() -> this.pendingBytes.get() < limit);
+		}
+
+		/**
+		 * Wait for the specified number of bytes of the current batch to be written,
+		 * unless the batch fails.
+		 * @return the number of bytes of the batch that were written
+		 */
+		long awaitWritten(long size) {
+			awaitProgress(() -> this.written.get() >= size);
+			return this.written.get();
+		}
+
+		private void awaitProgress(BooleanSupplier condition) {
+			long timeout = NioProxyLineTransport.this.writeTimeoutNanos;
+			long deadline = System.nanoTime() + timeout;
+			long lastProgress = this.written.get();
+			synchronized (this) {
+				while (!condition.getAsBoolean() && this.failure == null) {
+					long now = System.nanoTime();
+					if (this.written.get() != lastProgress) {
+						lastProgress = this.written.get();
+						deadline = now + timeout;
+					}
+					if (now - deadline >= 0 && this.abort == null) {
+						this.abort = new IOException(String.format("No progress writing to proxy %s:%d for %dms",
+								NioProxyLineTransport.this.host, this.port, TimeUnit.NANOSECONDS.toMillis(timeout)));
+						NioProxyLineTransport.this.selector.wakeup();
+					}
+					try {
+						wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - now)));
+					}
+					catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+						this.failure = new IOException("Interrupted while writing to proxy");
+					}
+				}
+			}
+		}
+
+		void updateInterest() {
+			IOException abort = this.abort;
+			if (abort != null) {
+				this.abort = null;
+				disconnect(abort);
+				return;
+			}
+			if (this.pending.isEmpty() && !this.connectRequested) {
+				if (this.key != null && this.key.isValid() && this.channel.isConnected()) {
+					this.key.interestOps(0);
+				}
+				return;
+			}
+			if (this.channel == null) {
+				connect();
+			}
+			else if (this.channel.isConnected()) {
+				this.key.interestOps(this.pending.isEmpty() ? 0 : SelectionKey.OP_WRITE);
+			}
+		}
+
+		private void connect() {
+			try {
+				this.channel = SocketChannel.open();
+				this.channel.configureBlocking(false);
+				if (this.channel.connect(new InetSocketAddress(NioProxyLineTransport.this.host, this.port))) {
+					this.key = this.channel.register(NioProxyLineTransport.this.selector, SelectionKey.OP_WRITE, this);
+					connected();
+				}
+				else {
+					this.key = this.channel.register(NioProxyLineTransport.this.selector, SelectionKey.OP_CONNECT,
+							this);
+				}
+			}
+			catch (IOException ex) {
+				disconnect(ex);
+			}
+		}
+
+		private synchronized void connected() {
+			this.connected = true;
+			this.connectRequested = false;
+			notifyAll();
+		}
+
+		void process(SelectionKey key) {
+			try {
+				if (key.isConnectable() && this.channel.finishConnect()) {
+					key.interestOps(SelectionKey.OP_WRITE);
+					connected();
+				}
+				if (key.isValid() && key.isWritable()) {
+					write();
+				}
+			}
+			catch (IOException ex) {
+				disconnect(ex);
+			}
+		}
+
+		private void write() throws IOException {
+			while (true) {
+				int count = 0;
+				for (ByteBuffer buffer : this.pending) {
+					if (count == this.gathered.length) {
+						break;
+					}
+					this.gathered[count++] = buffer;
+				}
+				if (count == 0) {
+					return;
+				}
+				long written = this.channel.write(this.gathered, 0, count);
+				for (int i = 0; i < count; i++) {
+					this.gathered[i] = null;
+				}
+				while (!this.pending.isEmpty() && !this.pending.peek().hasRemaining()) {
+					releaseBuffer(this.pending.poll());
+				}
+				if (written > 0) {
+					synchronized (this) {
+						this.pendingBytes.addAndGet(-written);
+						this.written.addAndGet(written);
+						notifyAll();
+					}
+				}
+				if (written == 0 || !this.pending.isEmpty() && this.pending.peek().position() > 0) {
+					// The socket buffer is full, wait to be selected again
+					return;
+				}
+			}
+		}
+
+		void disconnect(IOException failure) {
+			if (this.channel != null) {
+				try {
+					this.channel.close();
+				}
+				catch (IOException ex) {
+					// Ignore
+				}
+				this.channel = null;
+				this.key = null;
+			}
+			synchronized (this) {
+				ByteBuffer buffer;
+				while ((buffer = this.pending.poll()) != null) {
+					this.pendingBytes.addAndGet(-buffer.remaining());
+					releaseBuffer(buffer);
+				}
+				this.connected = false;
+				this.connectRequested = false;
+				this.failure = failure;
+				notifyAll();
+			}
+		}
+
+	}
+
+}
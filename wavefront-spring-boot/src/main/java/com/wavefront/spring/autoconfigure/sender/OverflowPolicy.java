@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+/**
+ * Policy to apply when a point is sent while the buffer is full.
+ *
+ * @author Stephane Nicoll
+ */
+public enum OverflowPolicy {
+
+	/**
+	 * Discard the oldest buffered point to make room for the new one.
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * Discard the new point.
+	 */
+	DROP_NEWEST,
+
+	/**
+	 * Wait until the buffer has room for the new point.
+	 */
+	BLOCK
+
+}
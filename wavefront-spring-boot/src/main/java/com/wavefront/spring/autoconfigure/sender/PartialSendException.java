@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Thrown by a {@link LineTransport} when only part of a batch could be sent. The lines
+ * that were not sent are available so that the caller does not send the others again.
+ *
+ * @author Stephane Nicoll
+ */
+public class PartialSendException extends IOException {
+
+	private final List<String> unsentLines;
+
+	/**
+	 * Create an instance.
+	 * @param message the detail message
+	 * @param unsentLines the lines that could not be sent
+	 */
+	public PartialSendException(String message, List<String> unsentLines) {
+		super(message);
+		this.unsentLines = unsentLines;
+	}
+
+	/**
+	 * Return the lines of the batch that could not be sent.
+	 * @return the unsent lines
+	 */
+	public List<String> getUnsentLines() {
+		return this.unsentLines;
+	}
+
+}
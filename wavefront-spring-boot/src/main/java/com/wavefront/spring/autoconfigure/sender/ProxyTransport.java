@@ -0,0 +1,38 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+/**
+ * Transports that can be used to send points to a Wavefront proxy.
+ *
+ * @author Stephane Nicoll
+ */
+public enum ProxyTransport {
+
+	/**
+	 * Post batches to the {@code /report} endpoint of the proxy.
+	 * @see HttpLineTransport
+	 */
+	HTTP,
+
+	/**
+	 * Write batches to the plain TCP listeners of the proxy using non-blocking I/O.
+	 * @see NioProxyLineTransport
+	 */
+	TCP
+
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link LineTransport} that shards batches across several proxies. Lines are routed
+ * using a consistent hash of the name and source of the point they represent, so that a
+ * given series always lands on the same proxy while it is healthy.
+ * <p>
+ * A proxy that fails to accept a batch is marked as unhealthy and the lines it did not
+ * receive are redistributed to the next healthy proxies on the ring. A batch that a proxy
+ * rejects permanently is not sent elsewhere and does not affect the health of the proxy.
+ * An unhealthy proxy is probed with an empty batch, on a separate thread, once the health
+ * check interval has elapsed, and receives its series again as soon as it responds. If
+ * no proxy is healthy for some of the lines, a {@link PartialSendException} reports the
+ * lines that were not sent.
+ *
+ * @author Stephane Nicoll
+ */
+public class ShardedLineTransport implements LineTransport {
+
+	private static final Log logger = LogFactory.getLog(ShardedLineTransport.class);
+
+	private static final int VIRTUAL_NODES = 128;
+
+	private final Endpoint[] endpoints;
+
+	private final int[] ringHashes;
+
+	private final int[] ringOwners;
+
+	private final long healthCheckIntervalNanos;
+
+	private final Executor healthCheckExecutor;
+
+	private final List<String> pending = new ArrayList<>();
+
+	private final List<String> unsent = new ArrayList<>();
+
+	private int rejected;
+
+	private RejectedLinesException rejection;
+
+	/**
+	 * Create an instance that shards batches across the specified transports.
+	 * @param transports the transports of each proxy
+	 * @param healthCheckInterval the interval at which an unhealthy proxy is probed
+	 */
+	public ShardedLineTransport(List<? extends LineTransport> transports, Duration healthCheckInterval) {
+		this(transports, healthCheckInterval, Executors.newSingleThreadExecutor((task) -> {
+			Thread thread = new Thread(task, "wavefront-proxy-health-check");
+			thread.setDaemon(true);
+			return thread;
+		}));
+	}
+
+	ShardedLineTransport(List<? extends LineTransport> transports, Duration healthCheckInterval,
+			Executor healthCheckExecutor) {
+		Assert.notEmpty(transports, "Transports must not be empty");
+		Assert.notNull(healthCheckInterval, "HealthCheckInterval must not be null");
+		this.healthCheckExecutor = healthCheckExecutor;
+		this.endpoints = transports.stream().map(Endpoint::new).toArray(Endpoint[]::new);
+		this.healthCheckIntervalNanos = healthCheckInterval.toNanos();
+		long[] ring = new long[this.endpoints.length * VIRTUAL_NODES];
+		for (int i = 0; i < this.endpoints.length; i++) {
+			for (int node = 0; node < VIRTUAL_NODES; node++) {
+				int hash = hash(this.endpoints[i].transport.toString() + "#" + node);
+				ring[i * VIRTUAL_NODES + node] = ((long) hash << 32) | i;
+			}
+		}
+		Arrays.sort(ring);
+		this.ringHashes = new int[ring.length];
+		this.ringOwners = new int[ring.length];
+		for (int i = 0; i < ring.length; i++) {
+			this.ringHashes[i] = (int) (ring[i] >> 32);
+			this.ringOwners[i] = (int) ring[i];
+		}
+	}
+
+	@Override
+	public synchronized void send(DataFormat format, List<String> lines) throws IOException {
+		checkHealth(format);
+		try {
+			route(format, lines);
+			sendShards(format);
+			while (!this.pending.isEmpty()) {
+				List<String> failed = new ArrayList<>(this.pending);
+				this.pending.clear();
+				route(format, failed);
+				sendShards(format);
+			}
+			if (!this.unsent.isEmpty()) {
+				if (this.rejection != null) {
+					logger.warn(String.format("Dropping %d %s line(s) that were rejected: %s", this.rejected,
+							format.getFormat(), this.rejection.getMessage()));
+				}
+				throw new PartialSendException(String.format("No healthy proxy available to send %d of %d %s line(s)",
+						this.unsent.size(), lines.size(), format.getFormat()), new ArrayList<>(this.unsent));
+			}
+			if (this.rejection != null) {
+				RejectedLinesException failure = new RejectedLinesException(String.format(
+						"%d of %d %s line(s) were rejected", this.rejected, lines.size(), format.getFormat()));
+				failure.initCause(this.rejection);
+				throw failure;
+			}
+		}
+		finally {
+			for (Endpoint endpoint : this.endpoints) {
+				endpoint.shard.clear();
+			}
+			this.pending.clear();
+			this.unsent.clear();
+			this.rejected = 0;
+			this.rejection = null;
+		}
+	}
+
+	private void route(DataFormat format, List<String> lines) {
+		for (String line : lines) {
+			int index = owner(hash(format, line));
+			if (index < 0) {
+				this.unsent.add(line);
+			}
+			else {
+				this.endpoints[index].shard.add(line);
+			}
+		}
+	}
+
+	private void sendShards(DataFormat format) {
+		for (Endpoint endpoint : this.endpoints) {
+			if (!endpoint.shard.isEmpty()) {
+				sendShard(endpoint, format);
+			}
+		}
+	}
+
+	private void sendShard(Endpoint endpoint, DataFormat format) {
+		try {
+			endpoint.transport.send(format, endpoint.shard);
+		}
+		catch (RejectedLinesException ex) {
+			this.rejected += endpoint.shard.size();
+			this.rejection = ex;
+		}
+		catch (PartialSendException ex) {
+			markDown(endpoint, ex.getUnsentLines(), ex);
+		}
+		catch (IOException ex) {
+			markDown(endpoint, endpoint.shard, ex);
+		}
+		finally {
+			endpoint.shard.clear();
+		}
+	}
+
+	private void markDown(Endpoint endpoint, List<String> unsentLines, IOException ex) {
+		endpoint.markDown(System.nanoTime() + this.healthCheckIntervalNanos);
+		this.pending.addAll(unsentLines);
+		logger.warn("Proxy " + endpoint.transport + " is unavailable, redistributing its series", ex);
+	}
+
+	private void checkHealth(DataFormat format) {
+		long now = System.nanoTime();
+		for (Endpoint endpoint : this.endpoints) {
+			if (!endpoint.healthy && !endpoint.probing && now - endpoint.nextHealthCheck >= 0) {
+				endpoint.probing = true;
+				try {
+					this.healthCheckExecutor.execute(() -> probe(endpoint, format));
+				}
+				catch (RejectedExecutionException ex) {
+					endpoint.probing = false;
+				}
+			}
+		}
+	}
+
+	private void probe(Endpoint endpoint, DataFormat format) {
+		try {
+			endpoint.transport.send(format, Collections.emptyList());
+			endpoint.healthy = true;
+			logger.info("Proxy " + endpoint.transport + " is available again");
+		}
+		catch (IOException ex) {
+			endpoint.nextHealthCheck = System.nanoTime() + this.healthCheckIntervalNanos;
+		}
+		finally {
+			endpoint.probing = false;
+		}
+	}
+
+	private int owner(int hash) {
+		int index = Arrays.binarySearch(this.ringHashes, hash);
+		if (index < 0) {
+			index = -index - 1;
+		}
+		for (int i = 0; i < this.ringOwners.length; i++) {
+			int owner = this.ringOwners[(index + i) % this.ringOwners.length];
+			if (this.endpoints[owner].healthy) {
+				return owner;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Return the number of proxies that are currently considered healthy.
+	 * @return the number of healthy proxies
+	 */
+	public int getHealthyCount() {
+		int count = 0;
+		for (Endpoint endpoint : this.endpoints) {
+			count += (endpoint.healthy) ? 1 : 0;
+		}
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.healthCheckExecutor instanceof ExecutorService) {
+			((ExecutorService) this.healthCheckExecutor).shutdownNow();
+		}
+		IOException failure = null;
+		for (Endpoint endpoint : this.endpoints) {
+			try {
+				endpoint.transport.close();
+			}
+			catch (IOException ex) {
+				failure = ex;
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.stream(this.endpoints).map((endpoint) -> endpoint.transport.toString())
+				.collect(Collectors.joining(","));
+	}
+
+	/**
+	 * Hash the series of the specified line, that is its name and source. Span logs do
+	 * not have such a notion and are hashed as a whole.
+	 * @param format the format of the line
+	 * @param line the line
+	 * @return the hash of the series
+	 */
+	static int hash(DataFormat format, String line) {
+		if (format == DataFormat.SPAN_LOG) {
+			return mix(hash(line, 0, line.length(), 1));
+		}
+		int nameStart = (format == DataFormat.HISTOGRAM) ? Math.max(line.indexOf('"'), 0) : 0;
+		int nameEnd = tokenEnd(line, nameStart);
+		int hash = hash(line, nameStart, nameEnd, 1);
+		int source = line.indexOf(" source=", nameEnd);
+		if (source != -1) {
+			int sourceStart = source + 8;
+			hash = hash(line, sourceStart, tokenEnd(line, sourceStart), hash);
+		}
+		return mix(hash);
+	}
+
+	private static int tokenEnd(String line, int start) {
+		int length = line.length();
+		if (start < length && line.charAt(start) == '"') {
+			for (int i = start + 1; i < length; i++) {
+				char c = line.charAt(i);
+				if (c == '\\') {
+					i++;
+				}
+				else if (c == '"') {
+					return i + 1;
+				}
+			}
+			return length;
+		}
+		for (int i = start; i < length; i++) {
+			if (Character.isWhitespace(line.charAt(i))) {
+				return i;
+			}
+		}
+		return length;
+	}
+
+	private static int hash(String value) {
+		return mix(hash(value, 0, value.length(), 1));
+	}
+
+	private static int hash(String value, int start, int end, int seed) {
+		int hash = seed;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + value.charAt(i);
+		}
+		return hash;
+	}
+
+	private static int mix(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return hash;
+	}
+
+	private static final class Endpoint {
+
+		private final LineTransport transport;
+
+		private final List<String> shard = new ArrayList<>();
+
+		private volatile boolean healthy = true;
+
+		private volatile boolean probing;
+
+		private volatile long nextHealthCheck;
+
+		Endpoint(LineTransport transport) {
+			this.transport = transport;
+		}
+
+		void markDown(long nextHealthCheck) {
+			this.healthy = false;
+			this.nextHealthCheck = nextHealthCheck;
+		}
+
+	}
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link DiskSpool} when its directory is already locked by another spool,
+ * in this process or in another one.
+ *
+ * @author Stephane Nicoll
+ */
+public class SpoolLockedException extends IOException {
+
+	/**
+	 * Create an instance with the specified message.
+	 * @param message the detail message
+	 */
+	public SpoolLockedException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import com.wavefront.opentracing.reporting.Reporter;
+import com.wavefront.sdk.entities.tracing.sampling.Sampler;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link Sampler} whose sampling rate is adjusted periodically so that the number of
+ * reported spans stays close to a budget, regardless of the traffic. The decision is
+ * made when the root span of a trace starts and is inherited by its children.
+ * <p>
+ * The rate is derived from the number of spans that were actually reported since the
+ * last adjustment, as recorded by the {@link Reporter} returned by
+ * {@link #reporter(Reporter)}. It can drop sharply when the traffic spikes, but only
+ * doubles at most per interval when the traffic decreases, to avoid oscillating. Spans
+ * kept regardless of this sampler, such as slow spans kept by another sampler, count
+ * against the budget.
+ *
+ * @author Stephane Nicoll
+ */
+public class AdaptiveSampler implements Sampler {
+
+	private static final double MIN_RATE = 0.0001;
+
+	private static final double MAX_INCREASE = 2;
+
+	private static final long BUCKETS = 1_000_000;
+
+	private final double spansPerSecond;
+
+	private final long adjustIntervalNanos;
+
+	private final LongSupplier nanoTime;
+
+	private final LongAdder reportedSpans = new LongAdder();
+
+	private final AtomicLong nextAdjustment;
+
+	private volatile long lastAdjustment;
+
+	private volatile double rate = 1;
+
+	/**
+	 * Create an instance.
+	 * @param spansPerSecond the number of spans to report per second
+	 * @param adjustInterval the interval at which the sampling rate is adjusted
+	 */
+	public AdaptiveSampler(int spansPerSecond, Duration adjustInterval) {
+		this(spansPerSecond, adjustInterval, System::nanoTime);
+	}
+
+	AdaptiveSampler(int spansPerSecond, Duration adjustInterval, LongSupplier nanoTime) {
+		Assert.isTrue(spansPerSecond > 0, "Spans per second must be positive");
+		Assert.isTrue(adjustInterval != null && !adjustInterval.isNegative() && !adjustInterval.isZero(),
+				"Adjust interval must be positive");
+		this.spansPerSecond = spansPerSecond;
+		this.adjustIntervalNanos = adjustInterval.toNanos();
+		this.nanoTime = nanoTime;
+		this.lastAdjustment = nanoTime.getAsLong();
+		this.nextAdjustment = new AtomicLong(this.lastAdjustment + this.adjustIntervalNanos);
+	}
+
+	@Override
+	public boolean sample(String operationName, long traceId, long duration) {
+		adjustIfNecessary();
+		double rate = this.rate;
+		return rate >= 1 || Math.floorMod(traceId, BUCKETS) < rate * BUCKETS;
+	}
+
+	@Override
+	public boolean isEarly() {
+		return true;
+	}
+
+	/**
+	 * Return a {@link Reporter} that records the spans reported by the specified
+	 * {@link Reporter} so that the sampling rate can be adjusted accordingly.
+	 * @param reporter the reporter to use
+	 * @return a reporter that records reported spans for this sampler
+	 */
+	public Reporter reporter(Reporter reporter) {
+		return new AdaptiveSamplerReporter(reporter, this.reportedSpans);
+	}
+
+	/**
+	 * Return the current sampling rate.
+	 * @return the sampling rate, between 0 and 1
+	 */
+	public double getRate() {
+		return this.rate;
+	}
+
+	private void adjustIfNecessary() {
+		long now = this.nanoTime.getAsLong();
+		long next = this.nextAdjustment.get();
+		if (now - next < 0 || !this.nextAdjustment.compareAndSet(next, now + this.adjustIntervalNanos)) {
+			return;
+		}
+		long elapsed = now - this.lastAdjustment;
+		this.lastAdjustment = now;
+		double reported = this.reportedSpans.sumThenReset() * 1e9 / elapsed;
+		double rate = this.rate;
+		double adjusted = (reported > 0) ? rate * Math.min(this.spansPerSecond / reported, MAX_INCREASE)
+				: rate * MAX_INCREASE;
+		this.rate = Math.max(MIN_RATE, Math.min(1, adjusted));
+	}
+
+}
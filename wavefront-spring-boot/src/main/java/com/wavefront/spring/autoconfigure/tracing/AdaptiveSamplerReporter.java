@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.reporting.Reporter;
+
+/**
+ * A {@link Reporter} that counts the spans it reports on behalf of an
+ * {@link AdaptiveSampler}.
+ *
+ * @author Stephane Nicoll
+ */
+final class AdaptiveSamplerReporter implements Reporter {
+
+	private final Reporter delegate;
+
+	private final LongAdder reportedSpans;
+
+	AdaptiveSamplerReporter(Reporter delegate, LongAdder reportedSpans) {
+		this.delegate = delegate;
+		this.reportedSpans = reportedSpans;
+	}
+
+	@Override
+	public void report(WavefrontSpan span) throws IOException {
+		this.reportedSpans.increment();
+		this.delegate.report(span);
+	}
+
+	@Override
+	public int getFailureCount() {
+		return this.delegate.getFailureCount();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.delegate.close();
+	}
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.reporting.Reporter;
+import com.wavefront.spring.autoconfigure.sender.LineBuffer;
+import com.wavefront.spring.autoconfigure.sender.OverflowPolicy;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link Reporter} that hands finished spans to a bounded lock-free queue and reports
+ * them in batches from a dedicated thread, so that finishing a span never waits for the
+ * delegate {@link Reporter}. What happens when the queue is full is driven by the
+ * configured {@link OverflowPolicy}. A delegate that is {@link Flushable} is flushed at
+ * the end of every flush cycle, even if no span was queued.
+ * <p>
+ * The number of queued, reported and dropped spans are exposed as the
+ * {@code wavefront.tracing.reporter.*} meters.
+ *
+ * @author Stephane Nicoll
+ */
+public class AsyncReporter implements Reporter, MeterBinder {
+
+	private static final Log logger = LogFactory.getLog(AsyncReporter.class);
+
+	private static final long BLOCK_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final Reporter delegate;
+
+	private final LineBuffer<WavefrontSpan> queue;
+
+	private final OverflowPolicy overflowPolicy;
+
+	private final int batchSize;
+
+	private final long flushIntervalNanos;
+
+	private final List<WavefrontSpan> batch;
+
+	private final LongAdder reported = new LongAdder();
+
+	private final LongAdder dropped = new LongAdder();
+
+	private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	private final Thread flusher;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Create an instance and start its flusher thread.
+	 * @param delegate the reporter to use on the flusher thread
+	 * @param queueSize the maximum number of spans waiting to be reported
+	 * @param overflowPolicy the policy to apply when the queue is full
+	 * @param batchSize the number of queued spans that triggers a flush
+	 * @param flushInterval the maximum time a span waits before it is reported
+	 */
+	public AsyncReporter(Reporter delegate, int queueSize, OverflowPolicy overflowPolicy, int batchSize,
+			Duration flushInterval) {
+		Assert.notNull(delegate, "Delegate must not be null");
+		Assert.isTrue(queueSize > 0, "Queue size must be positive");
+		Assert.notNull(overflowPolicy, "Overflow policy must not be null");
+		Assert.isTrue(batchSize > 0, "Batch size must be positive");
+		Assert.isTrue(flushInterval != null && !flushInterval.isNegative() && !flushInterval.isZero(),
+				"Flush interval must be positive");
+		this.delegate = delegate;
+		this.queue = new LineBuffer<>(queueSize);
+		this.overflowPolicy = overflowPolicy;
+		this.batchSize = batchSize;
+		this.flushIntervalNanos = flushInterval.toNanos();
+		this.batch = new ArrayList<>(Math.min(batchSize, 16384));
+		this.flusher = new Thread(this::runFlusher, "wavefront-span-reporter");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	@Override
+	public void report(WavefrontSpan span) {
+		if (!offer(span)) {
+			this.dropped.increment();
+		}
+		if (this.queue.size() >= this.batchSize) {
+			requestFlush();
+		}
+	}
+
+	private boolean offer(WavefrontSpan span) {
+		if (this.queue.offer(span)) {
+			return true;
+		}
+		switch (this.overflowPolicy) {
+		case DROP_OLDEST:
+			while (!this.queue.offer(span)) {
+				if (this.queue.poll() != null) {
+					this.dropped.increment();
+				}
+			}
+			return true;
+		case BLOCK:
+			while (this.running) {
+				requestFlush();
+				LockSupport.parkNanos(BLOCK_PARK_NANOS);
+				if (this.queue.offer(span)) {
+					return true;
+				}
+			}
+			return false;
+		default:
+			return false;
+		}
+	}
+
+	private void requestFlush() {
+		if (this.flushRequested.compareAndSet(false, true)) {
+			LockSupport.unpark(this.flusher);
+		}
+	}
+
+	private void runFlusher() {
+		while (this.running) {
+			LockSupport.parkNanos(this, this.flushIntervalNanos);
+			this.flushRequested.set(false);
+			flush();
+		}
+	}
+
+	/**
+	 * Report the queued spans. Only invoked by the flusher thread, or once it has
+	 * stopped.
+	 */
+	private void flush() {
+		while (this.queue.drainTo(this.batch, this.batchSize) > 0) {
+			for (WavefrontSpan span : this.batch) {
+				try {
+					this.delegate.report(span);
+					this.reported.increment();
+				}
+				catch (Exception ex) {
+					logger.debug("Failed to report span", ex);
+					this.dropped.increment();
+				}
+			}
+			this.batch.clear();
+		}
+		if (this.delegate instanceof Flushable) {
+			try {
+				((Flushable) this.delegate).flush();
+			}
+			catch (Exception ex) {
+				logger.debug("Failed to flush span reporter", ex);
+			}
+		}
+	}
+
+	/**
+	 * Return the number of spans waiting to be reported.
+	 * @return the number of queued spans
+	 */
+	public int getQueueSize() {
+		return this.queue.size();
+	}
+
+	/**
+	 * Return the number of spans that have been handed to the delegate reporter.
+	 * @return the number of reported spans
+	 */
+	public long getReportedCount() {
+		return this.reported.sum();
+	}
+
+	/**
+	 * Return the number of spans that have been dropped, either because the queue was
+	 * full or because the delegate reporter failed.
+	 * @return the number of dropped spans
+	 */
+	public long getDroppedCount() {
+		return this.dropped.sum();
+	}
+
+	@Override
+	public int getFailureCount() {
+		return this.delegate.getFailureCount();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("wavefront.tracing.reporter.queue.size", this, AsyncReporter::getQueueSize)
+				.description("Number of spans waiting to be reported").baseUnit("spans").register(registry);
+		FunctionCounter.builder("wavefront.tracing.reporter.spans.reported", this, AsyncReporter::getReportedCount)
+				.description("Number of spans handed to the span reporter").baseUnit("spans").register(registry);
+		FunctionCounter.builder("wavefront.tracing.reporter.spans.dropped", this, AsyncReporter::getDroppedCount)
+				.description("Number of spans that were discarded").baseUnit("spans").register(registry);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!this.closed.compareAndSet(false, true)) {
+			return;
+		}
+		this.running = false;
+		LockSupport.unpark(this.flusher);
+		try {
+			this.flusher.join(TimeUnit.NANOSECONDS.toMillis(this.flushIntervalNanos) + 1000);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			flush();
+		}
+		finally {
+			this.delegate.close();
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.wavefront.opentracing.reporting.WavefrontSpanReporter;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * Periodically sends the {@value #HEARTBEAT_METRIC} metric that Wavefront uses to list
+ * the application and its tracing components. The SDK only sends it when a
+ * {@link WavefrontSpanReporter} is handed directly to the tracer, which is not the case
+ * once spans go through an {@link AsyncReporter}.
+ *
+ * @author Stephane Nicoll
+ */
+public class ComponentHeartbeater implements Closeable {
+
+	/**
+	 * Name of the heartbeat metric.
+	 */
+	public static final String HEARTBEAT_METRIC = "~component.heartbeat";
+
+	/**
+	 * Interval at which heartbeats are sent.
+	 */
+	public static final Duration HEARTBEAT_INTERVAL = Duration.ofMinutes(5);
+
+	private static final List<String> COMPONENTS = Collections
+			.unmodifiableList(Arrays.asList("wavefront-generated", "opentracing", "java"));
+
+	private static final Log logger = LogFactory.getLog(ComponentHeartbeater.class);
+
+	private final WavefrontSender sender;
+
+	private final List<Map<String, String>> heartbeats;
+
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Create an instance that sends heartbeats right away and then every
+	 * {@link #HEARTBEAT_INTERVAL}.
+	 * @param sender the sender to use to send heartbeats
+	 * @param applicationTags the tags of the application
+	 */
+	public ComponentHeartbeater(WavefrontSender sender, ApplicationTags applicationTags) {
+		this(sender, applicationTags, true);
+	}
+
+	ComponentHeartbeater(WavefrontSender sender, ApplicationTags applicationTags, boolean schedule) {
+		Assert.notNull(sender, "Sender must not be null");
+		Assert.notNull(applicationTags, "ApplicationTags must not be null");
+		this.sender = sender;
+		List<Map<String, String>> heartbeats = new ArrayList<>();
+		for (String component : COMPONENTS) {
+			Map<String, String> tags = new LinkedHashMap<>(applicationTags.toPointTags());
+			tags.put("component", component);
+			heartbeats.add(Collections.unmodifiableMap(tags));
+		}
+		this.heartbeats = Collections.unmodifiableList(heartbeats);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor((task) -> {
+			Thread thread = new Thread(task, "wavefront-heartbeater");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (schedule) {
+			long interval = HEARTBEAT_INTERVAL.toMillis();
+			this.scheduler.scheduleAtFixedRate(() -> heartbeat(System.currentTimeMillis()), 0, interval,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Send a heartbeat for each component.
+	 * @param timestamp the timestamp of the heartbeats, in milliseconds
+	 */
+	void heartbeat(long timestamp) {
+		for (Map<String, String> tags : this.heartbeats) {
+			try {
+				this.sender.sendMetric(HEARTBEAT_METRIC, 1.0, timestamp, null, tags);
+			}
+			catch (Exception ex) {
+				logger.debug("Failed to send heartbeat for component '" + tags.get("component") + "'", ex);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		this.scheduler.shutdownNow();
+	}
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import io.opentracing.propagation.TextMap;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * A {@link TextMap} view of {@link HttpHeaders}, to extract a span context from them or
+ * to inject one in them without copying the headers.
+ *
+ * @author Stephane Nicoll
+ */
+public class HttpHeadersCarrier implements TextMap {
+
+	private final HttpHeaders headers;
+
+	/**
+	 * Create an instance.
+	 * @param headers the headers to read from or write to
+	 */
+	public HttpHeadersCarrier(HttpHeaders headers) {
+		this.headers = headers;
+	}
+
+	@Override
+	public Iterator<Map.Entry<String, String>> iterator() {
+		Iterator<Map.Entry<String, List<String>>> entries = this.headers.entrySet().iterator();
+		return new Iterator<Map.Entry<String, String>>() {
+
+			@Override
+			public boolean hasNext() {
+				return entries.hasNext();
+			}
+
+			@Override
+			public Map.Entry<String, String> next() {
+				Map.Entry<String, List<String>> entry = entries.next();
+				List<String> values = entry.getValue();
+				return new SimpleImmutableEntry<>(entry.getKey(), values.isEmpty() ? null : values.get(0));
+			}
+
+		};
+	}
+
+	@Override
+	public void put(String key, String value) {
+		this.headers.set(key, value);
+	}
+
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.opentracing.Scope;
+import io.opentracing.ScopeManager;
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link Tracer} that enforces limits on the tags and logs of the spans it creates
+ * before they reach the delegate {@link Tracer}: tags beyond the maximum number per span
+ * are dropped, and so are logs beyond the maximum number per span, while tag and log
+ * values that are too long are truncated. Oversized data is therefore never held by a
+ * span.
+ * <p>
+ * The number of dropped and truncated tags and logs are exposed as the
+ * {@code wavefront.tracing.spans.*} meters.
+ * <p>
+ * A {@link SpanFinishListener} can be notified of every span that finishes, including
+ * the ones that the delegate {@link Tracer} does not sample.
+ *
+ * @author Stephane Nicoll
+ */
+public class LimitingTracer implements Tracer, MeterBinder, Closeable {
+
+	private final Tracer delegate;
+
+	private final int maxTags;
+
+	private final int maxTagValueLength;
+
+	private final int maxLogs;
+
+	private final int maxLogValueLength;
+
+	private final SpanFinishListener finishListener;
+
+	private final LongAdder droppedTags = new LongAdder();
+
+	private final LongAdder truncatedTags = new LongAdder();
+
+	private final LongAdder droppedLogs = new LongAdder();
+
+	private final LongAdder truncatedLogs = new LongAdder();
+
+	/**
+	 * Create an instance.
+	 * @param delegate the tracer to use to create spans
+	 * @param maxTags the maximum number of tags per span
+	 * @param maxTagValueLength the maximum length of a tag value
+	 * @param maxLogs the maximum number of logs per span
+	 * @param maxLogValueLength the maximum length of a log value
+	 */
+	public LimitingTracer(Tracer delegate, int maxTags, int maxTagValueLength, int maxLogs, int maxLogValueLength) {
+		this(delegate, maxTags, maxTagValueLength, maxLogs, maxLogValueLength, (span) -> {
+		});
+	}
+
+	/**
+	 * Create an instance that notifies the specified listener of every finished span.
+	 * @param delegate the tracer to use to create spans
+	 * @param maxTags the maximum number of tags per span
+	 * @param maxTagValueLength the maximum length of a tag value
+	 * @param maxLogs the maximum number of logs per span
+	 * @param maxLogValueLength the maximum length of a log value
+	 * @param finishListener the listener to notify when a span has finished
+	 */
+	public LimitingTracer(Tracer delegate, int maxTags, int maxTagValueLength, int maxLogs, int maxLogValueLength,
+			SpanFinishListener finishListener) {
+		Assert.notNull(delegate, "Delegate must not be null");
+		Assert.notNull(finishListener, "FinishListener must not be null");
+		Assert.isTrue(maxTags >= 0, "Max tags must not be negative");
+		Assert.isTrue(maxTagValueLength > 0, "Max tag value length must be positive");
+		Assert.isTrue(maxLogs >= 0, "Max logs must not be negative");
+		Assert.isTrue(maxLogValueLength > 0, "Max log value length must be positive");
+		this.delegate = delegate;
+		this.maxTags = maxTags;
+		this.maxTagValueLength = maxTagValueLength;
+		this.maxLogs = maxLogs;
+		this.maxLogValueLength = maxLogValueLength;
+		this.finishListener = finishListener;
+	}
+
+	/**
+	 * Return the {@link Tracer} that creates the spans.
+	 * @return the delegate tracer
+	 */
+	public Tracer getDelegate() {
+		return this.delegate;
+	}
+
+	@Override
+	public ScopeManager scopeManager() {
+		return this.delegate.scopeManager();
+	}
+
+	@Override
+	public Span activeSpan() {
+		return this.delegate.activeSpan();
+	}
+
+	@Override
+	public SpanBuilder buildSpan(String operationName) {
+		return new LimitingSpanBuilder(this.delegate.buildSpan(operationName));
+	}
+
+	@Override
+	public <C> void inject(SpanContext spanContext, Format<C> format, C carrier) {
+		this.delegate.inject(spanContext, format, carrier);
+	}
+
+	@Override
+	public <C> SpanContext extract(Format<C> format, C carrier) {
+		return this.delegate.extract(format, carrier);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.delegate instanceof Closeable) {
+			((Closeable) this.delegate).close();
+		}
+	}
+
+	/**
+	 * Return the number of tags that have been dropped because a span had too many tags.
+	 * @return the number of dropped tags
+	 */
+	public long getDroppedTags() {
+		return this.droppedTags.sum();
+	}
+
+	/**
+	 * Return the number of tag values that have been truncated.
+	 * @return the number of truncated tags
+	 */
+	public long getTruncatedTags() {
+		return this.truncatedTags.sum();
+	}
+
+	/**
+	 * Return the number of logs that have been dropped because a span had too many logs.
+	 * @return the number of dropped logs
+	 */
+	public long getDroppedLogs() {
+		return this.droppedLogs.sum();
+	}
+
+	/**
+	 * Return the number of logs with at least one value that has been truncated.
+	 * @return the number of truncated logs
+	 */
+	public long getTruncatedLogs() {
+		return this.truncatedLogs.sum();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("wavefront.tracing.spans.tags.dropped", this, LimitingTracer::getDroppedTags)
+				.description("Number of span tags dropped because a span had too many tags").baseUnit("tags")
+				.register(registry);
+		FunctionCounter.builder("wavefront.tracing.spans.tags.truncated", this, LimitingTracer::getTruncatedTags)
+				.description("Number of span tag values that were truncated").baseUnit("tags").register(registry);
+		FunctionCounter.builder("wavefront.tracing.spans.logs.dropped", this, LimitingTracer::getDroppedLogs)
+				.description("Number of span logs dropped because a span had too many logs").baseUnit("logs")
+				.register(registry);
+		FunctionCounter.builder("wavefront.tracing.spans.logs.truncated", this, LimitingTracer::getTruncatedLogs)
+				.description("Number of span logs with a value that was truncated").baseUnit("logs")
+				.register(registry);
+	}
+
+	private boolean acceptTag(int tags) {
+		if (tags < this.maxTags) {
+			return true;
+		}
+		this.droppedTags.increment();
+		return false;
+	}
+
+	private String truncateTag(String value) {
+		if (value == null || value.length() <= this.maxTagValueLength) {
+			return value;
+		}
+		this.truncatedTags.increment();
+		return value.substring(0, this.maxTagValueLength);
+	}
+
+	private boolean acceptLog(int logs) {
+		if (logs < this.maxLogs) {
+			return true;
+		}
+		this.droppedLogs.increment();
+		return false;
+	}
+
+	private String truncateLog(String event) {
+		if (event == null || event.length() <= this.maxLogValueLength) {
+			return event;
+		}
+		this.truncatedLogs.increment();
+		return event.substring(0, this.maxLogValueLength);
+	}
+
+	private Map<String, ?> truncateLog(Map<String, ?> fields) {
+		Map<String, Object> truncated = null;
+		for (Map.Entry<String, ?> entry : fields.entrySet()) {
+			Object value = entry.getValue();
+			if (value instanceof String && ((String) value).length() > this.maxLogValueLength) {
+				if (truncated == null) {
+					truncated = new LinkedHashMap<>(fields);
+				}
+				truncated.put(entry.getKey(), ((String) value).substring(0, this.maxLogValueLength));
+			}
+		}
+		if (truncated == null) {
+			return fields;
+		}
+		this.truncatedLogs.increment();
+		return truncated;
+	}
+
+	/**
+	 * A {@link SpanBuilder} that enforces the limits on the tags of the span to start.
+	 */
+	private final class LimitingSpanBuilder implements SpanBuilder {
+
+		private final SpanBuilder delegate;
+
+		private int tags;
+
+		LimitingSpanBuilder(SpanBuilder delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public SpanBuilder asChildOf(SpanContext parent) {
+			this.delegate.asChildOf(parent);
+			return this;
+		}
+
+		@Override
+		public SpanBuilder asChildOf(Span parent) {
+			this.delegate.asChildOf(parent);
+			return this;
+		}
+
+		@Override
+		public SpanBuilder addReference(String referenceType, SpanContext referencedContext) {
+			this.delegate.addReference(referenceType, referencedContext);
+			return this;
+		}
+
+		@Override
+		public SpanBuilder ignoreActiveSpan() {
+			this.delegate.ignoreActiveSpan();
+			return this;
+		}
+
+		@Override
+		public SpanBuilder withTag(String key, String value) {
+			if (acceptTag(this.tags)) {
+				this.tags++;
+				this.delegate.withTag(key, truncateTag(value));
+			}
+			return this;
+		}
+
+		@Override
+		public SpanBuilder withTag(String key, boolean value) {
+			if (acceptTag(this.tags)) {
+				this.tags++;
+				this.delegate.withTag(key, value);
+			}
+			return this;
+		}
+
+		@Override
+		public SpanBuilder withTag(String key, Number value) {
+			if (acceptTag(this.tags)) {
+				this.tags++;
+				this.delegate.withTag(key, value);
+			}
+			return this;
+		}
+
+		@Override
+		public SpanBuilder withStartTimestamp(long microseconds) {
+			this.delegate.withStartTimestamp(microseconds);
+			return this;
+		}
+
+		@Override
+		public Scope startActive(boolean finishSpanOnClose) {
+			return LimitingTracer.this.delegate.scopeManager().activate(start(), finishSpanOnClose);
+		}
+
+		@Override
+		@Deprecated
+		public Span startManual() {
+			return start();
+		}
+
+		@Override
+		public Span start() {
+			return new LimitingSpan(this.delegate.start(), this.tags);
+		}
+
+	}
+
+	/**
+	 * A {@link Span} that enforces the limits on its tags and logs.
+	 */
+	private final class LimitingSpan implements Span {
+
+		private final Span delegate;
+
+		private int tags;
+
+		private int logs;
+
+		private boolean finished;
+
+		LimitingSpan(Span delegate, int tags) {
+			this.delegate = delegate;
+			this.tags = tags;
+		}
+
+		@Override
+		public SpanContext context() {
+			return this.delegate.context();
+		}
+
+		@Override
+		public Span setTag(String key, String value) {
+			if (acceptTag(this.tags)) {
+				this.tags++;
+				this.delegate.setTag(key, truncateTag(value));
+			}
+			return this;
+		}
+
+		@Override
+		public Span setTag(String key, boolean value) {
+			if (acceptTag(this.tags)) {
+				this.tags++;
+				this.delegate.setTag(key, value);
+			}
+			return this;
+		}
+
+		@Override
+		public Span setTag(String key, Number value) {
+			if (acceptTag(this.tags)) {
+				this.tags++;
+				this.delegate.setTag(key, value);
+			}
+			return this;
+		}
+
+		@Override
+		public Span log(Map<String, ?> fields) {
+			if (acceptLog(this.logs)) {
+				this.logs++;
+				this.delegate.log(truncateLog(fields));
+			}
+			return this;
+		}
+
+		@Override
+		public Span log(long timestampMicroseconds, Map<String, ?> fields) {
+			if (acceptLog(this.logs)) {
+				this.logs++;
+				this.delegate.log(timestampMicroseconds, truncateLog(fields));
+			}
+			return this;
+		}
+
+		@Override
+		public Span log(String event) {
+			if (acceptLog(this.logs)) {
+				this.logs++;
+				this.delegate.log(truncateLog(event));
+			}
+			return this;
+		}
+
+		@Override
+		public Span log(long timestampMicroseconds, String event) {
+			if (acceptLog(this.logs)) {
+				this.logs++;
+				this.delegate.log(timestampMicroseconds, truncateLog(event));
+			}
+			return this;
+		}
+
+		@Override
+		public Span setBaggageItem(String key, String value) {
+			this.delegate.setBaggageItem(key, value);
+			return this;
+		}
+
+		@Override
+		public String getBaggageItem(String key) {
+			return this.delegate.getBaggageItem(key);
+		}
+
+		@Override
+		public Span setOperationName(String operationName) {
+			this.delegate.setOperationName(operationName);
+			return this;
+		}
+
+		@Override
+		public void finish() {
+			this.delegate.finish();
+			finished();
+		}
+
+		@Override
+		public void finish(long finishMicros) {
+			this.delegate.finish(finishMicros);
+			finished();
+		}
+
+		private void finished() {
+			if (!this.finished) {
+				this.finished = true;
+				LimitingTracer.this.finishListener.spanFinished(this.delegate);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return this.delegate.toString();
+		}
+
+	}
+
+}
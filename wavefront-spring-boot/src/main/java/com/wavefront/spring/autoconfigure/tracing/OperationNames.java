@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.util.Assert;
+
+/**
+ * A cache of the operation names of HTTP spans, made of an HTTP method and a route or URI
+ * template, for instance {@code GET /users/{id}}. Each name is built once and then reused
+ * so that naming a span does not allocate.
+ * <p>
+ * Only templates should be used as they are bounded in number, unlike expanded URIs. As
+ * a safeguard, at most {@value #DEFAULT_MAX_NAMES} names are cached by default, spans of
+ * any other template being named after their HTTP method only.
+ *
+ * @author Stephane Nicoll
+ */
+public final class OperationNames {
+
+	/**
+	 * Default maximum number of names.
+	 */
+	public static final int DEFAULT_MAX_NAMES = 1000;
+
+	private final int maxNames;
+
+	private final Map<String, Map<String, String>> names = new ConcurrentHashMap<>();
+
+	private final AtomicInteger count = new AtomicInteger();
+
+	/**
+	 * Create an instance that caches up to {@value #DEFAULT_MAX_NAMES} names.
+	 */
+	public OperationNames() {
+		this(DEFAULT_MAX_NAMES);
+	}
+
+	/**
+	 * Create an instance that caches up to the specified number of names.
+	 * @param maxNames the maximum number of names
+	 */
+	public OperationNames(int maxNames) {
+		Assert.isTrue(maxNames > 0, "Max names must be positive");
+		this.maxNames = maxNames;
+	}
+
+	/**
+	 * Return the operation name for the specified HTTP method and template.
+	 * @param method the HTTP method
+	 * @param template the route or URI template, or {@code null}
+	 * @return the operation name, or the method if no template is specified or the
+	 * maximum number of names has been reached
+	 */
+	public String get(String method, String template) {
+		if (template == null) {
+			return method;
+		}
+		Map<String, String> names = this.names.get(method);
+		String name = (names != null) ? names.get(template) : null;
+		if (name != null) {
+			return name;
+		}
+		if (this.count.get() >= this.maxNames) {
+			return method;
+		}
+		if (names == null) {
+			names = this.names.computeIfAbsent(method, (key) -> new ConcurrentHashMap<>());
+		}
+		return names.computeIfAbsent(template, (key) -> {
+			this.count.incrementAndGet();
+			return method + " " + key;
+		});
+	}
+
+	/**
+	 * Return the operation name for the specified HTTP method and client URI template.
+	 * Unlike server routes, the URI of a client request may be expanded or concatenated
+	 * before being handed to the client, in which case it is not a template: such a URI
+	 * is recognized by the absence of any variable and the method is used instead.
+	 * @param method the HTTP method
+	 * @param uriTemplate the URI template of the request, or {@code null}
+	 * @return the operation name
+	 */
+	public String getForUriTemplate(String method, String uriTemplate) {
+		return (uriTemplate != null && uriTemplate.indexOf('{') != -1) ? get(method, uriTemplate) : method;
+	}
+
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.sdk.common.Constants;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import io.opentracing.Span;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link SpanFinishListener} that derives request rate, error count and duration
+ * metrics per operation from every span that finishes. Metrics are aggregated in-process
+ * and published to Wavefront once per step, as delta counters and a histogram named
+ * after the application and service of the {@link ApplicationTags}.
+ * <p>
+ * Registered with a {@link LimitingTracer}, the metrics account for the spans that the
+ * tracer does not sample as well as for the traces that a {@link TailSamplingReporter}
+ * drops.
+ *
+ * @author Stephane Nicoll
+ */
+public class RedMetricsReporter implements SpanFinishListener, Closeable {
+
+	private static final Log logger = LogFactory.getLog(RedMetricsReporter.class);
+
+	private static final Set<HistogramGranularity> GRANULARITIES = Collections
+			.unmodifiableSet(EnumSet.of(HistogramGranularity.MINUTE));
+
+	private final WavefrontSender sender;
+
+	private final String prefix;
+
+	private final Map<String, String> tags;
+
+	private final int maxOperations;
+
+	private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+	private final LongAdder ignoredSpans = new LongAdder();
+
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Create an instance that publishes its metrics every {@code step}.
+	 * @param sender the sender to use to publish metrics
+	 * @param applicationTags the tags of the application
+	 * @param step the interval at which metrics are published
+	 * @param maxOperations the maximum number of distinct operations to track
+	 */
+	public RedMetricsReporter(WavefrontSender sender, ApplicationTags applicationTags, Duration step,
+			int maxOperations) {
+		this(sender, applicationTags, maxOperations);
+		Assert.isTrue(step != null && !step.isNegative() && !step.isZero(), "Step must be positive");
+		this.scheduler.scheduleAtFixedRate(() -> publish(System.currentTimeMillis()), step.toMillis(),
+				step.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	RedMetricsReporter(WavefrontSender sender, ApplicationTags applicationTags, int maxOperations) {
+		Assert.notNull(sender, "Sender must not be null");
+		Assert.notNull(applicationTags, "ApplicationTags must not be null");
+		Assert.isTrue(maxOperations > 0, "Max operations must be positive");
+		this.sender = sender;
+		this.prefix = "tracing.derived." + applicationTags.getApplication() + "." + applicationTags.getService()
+				+ ".";
+		this.tags = applicationTags.toPointTags();
+		this.maxOperations = maxOperations;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor((task) -> {
+			Thread thread = new Thread(task, "wavefront-red-metrics");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public void spanFinished(Span span) {
+		if (span instanceof WavefrontSpan) {
+			record((WavefrontSpan) span);
+		}
+	}
+
+	private void record(WavefrontSpan span) {
+		OperationMetrics metrics = getOperationMetrics(span.getOperationName());
+		if (metrics != null) {
+			metrics.record(span.getDurationMicroseconds(), Spans.isError(span));
+		}
+		else {
+			this.ignoredSpans.increment();
+		}
+	}
+
+	private OperationMetrics getOperationMetrics(String operationName) {
+		OperationMetrics metrics = this.operations.get(operationName);
+		if (metrics != null || this.operations.size() >= this.maxOperations) {
+			return metrics;
+		}
+		return this.operations.computeIfAbsent(operationName, OperationMetrics::new);
+	}
+
+	/**
+	 * Publish the metrics recorded since the last publication and reset them.
+	 * @param timestamp the timestamp of the published metrics, in milliseconds
+	 */
+	void publish(long timestamp) {
+		for (OperationMetrics metrics : this.operations.values()) {
+			try {
+				metrics.publish(timestamp);
+			}
+			catch (Exception ex) {
+				logger.debug("Failed to publish RED metrics for operation '" + metrics.operationName + "'", ex);
+			}
+		}
+	}
+
+	/**
+	 * Return the number of spans whose metrics were not recorded because the maximum
+	 * number of operations was reached.
+	 * @return the number of ignored spans
+	 */
+	public long getIgnoredSpans() {
+		return this.ignoredSpans.sum();
+	}
+
+	@Override
+	public void close() {
+		this.scheduler.shutdownNow();
+		publish(System.currentTimeMillis());
+	}
+
+	/**
+	 * The metrics of an operation. Counters are striped so that concurrent spans of the
+	 * same operation do not contend, and durations are recorded in buckets that are a
+	 * quarter of a power of two wide, that is with a relative error of at most 12.5%.
+	 */
+	private final class OperationMetrics {
+
+		private static final int BUCKETS = 160;
+
+		private final String operationName;
+
+		private final String invocationCount;
+
+		private final String errorCount;
+
+		private final String totalTime;
+
+		private final String duration;
+
+		private final Map<String, String> tags;
+
+		private final LongAdder invocations = new LongAdder();
+
+		private final LongAdder errors = new LongAdder();
+
+		private final LongAdder totalTimeMicros = new LongAdder();
+
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+		OperationMetrics(String operationName) {
+			this.operationName = operationName;
+			String name = RedMetricsReporter.this.prefix + operationName;
+			this.invocationCount = Constants.DELTA_PREFIX + name + ".invocation.count";
+			this.errorCount = Constants.DELTA_PREFIX + name + ".error.count";
+			this.totalTime = Constants.DELTA_PREFIX + name + ".total_time.millis.count";
+			this.duration = name + ".duration.micros";
+			Map<String, String> tags = new LinkedHashMap<>(RedMetricsReporter.this.tags);
+			tags.put("operationName", operationName);
+			this.tags = Collections.unmodifiableMap(tags);
+		}
+
+		void record(long durationMicros, boolean error) {
+			long duration = Math.max(durationMicros, 0);
+			this.invocations.increment();
+			if (error) {
+				this.errors.increment();
+			}
+			this.totalTimeMicros.add(duration);
+			this.buckets.incrementAndGet(bucket(duration));
+		}
+
+		void publish(long timestamp) throws IOException {
+			long invocations = this.invocations.sumThenReset();
+			long errors = this.errors.sumThenReset();
+			long totalTimeMicros = this.totalTimeMicros.sumThenReset();
+			List<Pair<Double, Integer>> centroids = new ArrayList<>();
+			for (int i = 0; i < BUCKETS; i++) {
+				long count = this.buckets.getAndSet(i, 0);
+				if (count > 0) {
+					centroids.add(new Pair<>(value(i), (int) Math.min(count, Integer.MAX_VALUE)));
+				}
+			}
+			if (invocations == 0) {
+				return;
+			}
+			WavefrontSender sender = RedMetricsReporter.this.sender;
+			sender.sendMetric(this.invocationCount, invocations, timestamp, null, this.tags);
+			if (errors > 0) {
+				sender.sendMetric(this.errorCount, errors, timestamp, null, this.tags);
+			}
+			sender.sendMetric(this.totalTime, totalTimeMicros / 1000.0, timestamp, null, this.tags);
+			if (!centroids.isEmpty()) {
+				sender.sendDistribution(this.duration, centroids, GRANULARITIES, timestamp, null, this.tags);
+			}
+		}
+
+		private int bucket(long micros) {
+			if (micros < 4) {
+				return (int) micros;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(micros);
+			int bucket = exponent * 4 + (int) ((micros >>> (exponent - 2)) & 3);
+			return Math.min(bucket, BUCKETS - 1);
+		}
+
+		private double value(int bucket) {
+			if (bucket < 4) {
+				return bucket;
+			}
+			int exponent = bucket / 4;
+			long width = 1L << (exponent - 2);
+			return (4 + (bucket & 3)) * width + width / 2.0;
+		}
+
+	}
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import io.opentracing.Span;
+
+/**
+ * Callback interface invoked by {@link LimitingTracer} on the thread that finishes a
+ * span, whether or not the span has been sampled. Implementations should return quickly.
+ *
+ * @author Stephane Nicoll
+ * @see LimitingTracer#LimitingTracer(io.opentracing.Tracer, int, int, int, int,
+ * SpanFinishListener)
+ */
+@FunctionalInterface
+public interface SpanFinishListener {
+
+	/**
+	 * Invoked once a span has finished.
+	 * @param span the span created by the delegate tracer
+	 */
+	void spanFinished(Span span);
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.sdk.common.Pair;
+import io.opentracing.tag.Tags;
+
+/**
+ * Utilities to inspect finished {@link WavefrontSpan spans}.
+ *
+ * @author Stephane Nicoll
+ */
+final class Spans {
+
+	private Spans() {
+	}
+
+	/**
+	 * Return whether the specified span is tagged as an error.
+	 * @param span the span to inspect
+	 * @return {@code true} if the span has an {@code error} tag set to {@code true}
+	 */
+	static boolean isError(WavefrontSpan span) {
+		return hasTag(span, Tags.ERROR.getKey(), "true");
+	}
+
+	/**
+	 * Return whether the specified span has a tag with the specified key and value,
+	 * ignoring the case of the value.
+	 * @param span the span to inspect
+	 * @param key the key of the tag
+	 * @param value the value of the tag
+	 * @return {@code true} if the span has such a tag
+	 */
+	static boolean hasTag(WavefrontSpan span, String key, String value) {
+		for (Pair<String, String> tag : span.getTagsAsList()) {
+			if (key.equals(tag._1) && value.equalsIgnoreCase(tag._2)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.reporting.Reporter;
+import io.opentracing.tag.Tags;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link Reporter} that holds finished spans per trace and only reports the traces
+ * that are worth keeping: those with at least one span tagged as an error, or with a
+ * span that lasted at least the latency threshold.
+ * <p>
+ * The decision is made when the local root of a trace finishes, that is a span without
+ * parent or a server or consumer span. Traces whose local root has not finished within
+ * the configured window are decided on the spans received so far, and so are the oldest
+ * traces when more than the maximum number of spans are held. Expired traces are looked
+ * for whenever a span is reported and on {@link #flush()}, which an {@link AsyncReporter}
+ * invokes periodically, so that they are decided even if no other span finishes.
+ * <p>
+ * Only spans that reach this reporter can be kept: head samplers configured on the
+ * tracer still apply first.
+ *
+ * @author Stephane Nicoll
+ */
+public class TailSamplingReporter implements Reporter, Flushable {
+
+	private final Reporter delegate;
+
+	private final long latencyThresholdMicros;
+
+	private final long windowNanos;
+
+	private final int maxSpans;
+
+	private final LongSupplier nanoTime;
+
+	private final Map<UUID, TraceBuffer> traces = new LinkedHashMap<>();
+
+	private int bufferedSpans;
+
+	private final LongAdder keptTraces = new LongAdder();
+
+	private final LongAdder droppedTraces = new LongAdder();
+
+	private final LongAdder evictedTraces = new LongAdder();
+
+	/**
+	 * Create an instance.
+	 * @param delegate the reporter to use for the traces that are kept
+	 * @param latencyThreshold the minimum duration of a span for its trace to be kept
+	 * @param window the maximum time to wait for the local root of a trace to finish
+	 * @param maxSpans the maximum number of spans to hold
+	 */
+	public TailSamplingReporter(Reporter delegate, Duration latencyThreshold, Duration window, int maxSpans) {
+		this(delegate, latencyThreshold, window, maxSpans, System::nanoTime);
+	}
+
+	TailSamplingReporter(Reporter delegate, Duration latencyThreshold, Duration window, int maxSpans,
+			LongSupplier nanoTime) {
+		Assert.notNull(delegate, "Delegate must not be null");
+		Assert.notNull(latencyThreshold, "Latency threshold must not be null");
+		Assert.isTrue(window != null && !window.isNegative() && !window.isZero(), "Window must be positive");
+		Assert.isTrue(maxSpans > 0, "Max spans must be positive");
+		this.delegate = delegate;
+		this.latencyThresholdMicros = latencyThreshold.toNanos() / 1000;
+		this.windowNanos = window.toNanos();
+		this.maxSpans = maxSpans;
+		this.nanoTime = nanoTime;
+	}
+
+	@Override
+	public void report(WavefrontSpan span) throws IOException {
+		List<WavefrontSpan> kept = new ArrayList<>();
+		synchronized (this.traces) {
+			long now = this.nanoTime.getAsLong();
+			UUID traceId = span.context().getTraceId();
+			TraceBuffer trace = this.traces.get(traceId);
+			if (trace == null) {
+				trace = new TraceBuffer(now);
+				this.traces.put(traceId, trace);
+			}
+			trace.add(span, Spans.isError(span), span.getDurationMicroseconds());
+			this.bufferedSpans++;
+			if (isLocalRoot(span)) {
+				this.traces.remove(traceId);
+				decide(trace, kept);
+			}
+			expireAndEvict(now, kept);
+		}
+		report(kept);
+	}
+
+	/**
+	 * Decide the traces whose window has elapsed and report those that are kept.
+	 * @throws IOException if the delegate failed to report a span
+	 */
+	@Override
+	public void flush() throws IOException {
+		List<WavefrontSpan> kept = new ArrayList<>();
+		synchronized (this.traces) {
+			expireAndEvict(this.nanoTime.getAsLong(), kept);
+		}
+		report(kept);
+	}
+
+	private void expireAndEvict(long now, List<WavefrontSpan> kept) {
+		Iterator<TraceBuffer> iterator = this.traces.values().iterator();
+		while (iterator.hasNext()) {
+			TraceBuffer oldest = iterator.next();
+			boolean expired = now - oldest.firstSeen >= this.windowNanos;
+			if (!expired && this.bufferedSpans <= this.maxSpans) {
+				return;
+			}
+			iterator.remove();
+			if (!expired) {
+				this.evictedTraces.increment();
+			}
+			decide(oldest, kept);
+		}
+	}
+
+	private void decide(TraceBuffer trace, List<WavefrontSpan> kept) {
+		this.bufferedSpans -= trace.spans.size();
+		if (trace.error || trace.maxDurationMicros >= this.latencyThresholdMicros) {
+			this.keptTraces.increment();
+			kept.addAll(trace.spans);
+		}
+		else {
+			this.droppedTraces.increment();
+		}
+	}
+
+	private void report(List<WavefrontSpan> spans) throws IOException {
+		IOException failure = null;
+		for (WavefrontSpan span : spans) {
+			try {
+				this.delegate.report(span);
+			}
+			catch (IOException ex) {
+				failure = ex;
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private static boolean isLocalRoot(WavefrontSpan span) {
+		return span.getParents().isEmpty() || Spans.hasTag(span, Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
+				|| Spans.hasTag(span, Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CONSUMER);
+	}
+
+	/**
+	 * Return the number of traces that have been reported.
+	 * @return the number of kept traces
+	 */
+	public long getKeptTraces() {
+		return this.keptTraces.sum();
+	}
+
+	/**
+	 * Return the number of traces that have been dropped.
+	 * @return the number of dropped traces
+	 */
+	public long getDroppedTraces() {
+		return this.droppedTraces.sum();
+	}
+
+	/**
+	 * Return the number of traces that were decided before their local root finished
+	 * because too many spans were held.
+	 * @return the number of evicted traces
+	 */
+	public long getEvictedTraces() {
+		return this.evictedTraces.sum();
+	}
+
+	/**
+	 * Return the number of spans that are currently held.
+	 * @return the number of buffered spans
+	 */
+	public int getBufferedSpans() {
+		synchronized (this.traces) {
+			return this.bufferedSpans;
+		}
+	}
+
+	@Override
+	public int getFailureCount() {
+		return this.delegate.getFailureCount();
+	}
+
+	@Override
+	public void close() throws IOException {
+		List<WavefrontSpan> kept = new ArrayList<>();
+		synchronized (this.traces) {
+			for (TraceBuffer trace : this.traces.values()) {
+				decide(trace, kept);
+			}
+			this.traces.clear();
+		}
+		try {
+			report(kept);
+		}
+		finally {
+			this.delegate.close();
+		}
+	}
+
+	/**
+	 * The finished spans of a trace.
+	 */
+	private static final class TraceBuffer {
+
+		private final long firstSeen;
+
+		private final List<WavefrontSpan> spans = new ArrayList<>(4);
+
+		private boolean error;
+
+		private long maxDurationMicros;
+
+		TraceBuffer(long firstSeen) {
+			this.firstSeen = firstSeen;
+		}
+
+		void add(WavefrontSpan span, boolean error, long durationMicros) {
+			this.spans.add(span);
+			this.error |= error;
+			this.maxDurationMicros = Math.max(this.maxDurationMicros, durationMicros);
+		}
+
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+import com.wavefront.spring.autoconfigure.tracing.HttpHeadersCarrier;
+import com.wavefront.spring.autoconfigure.tracing.OperationNames;
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.tag.Tags;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.web.util.UriTemplateHandler;
+
+/**
+ * A {@link ClientHttpRequestInterceptor} that creates a client span for each request,
+ * as a child of the active span, and injects its context in the request headers. The
+ * span is named after the HTTP method and the URI template of the request, for instance
+ * {@code GET /users/{id}}, if the template was expanded by the {@link UriTemplateHandler}
+ * returned by {@link #createUriTemplateHandler(UriTemplateHandler)}, or after the HTTP
+ * method alone otherwise, including when the template has no variable as is the case of
+ * a URI that was expanded or concatenated beforehand.
+ *
+ * @author Stephane Nicoll
+ */
+public class TracingClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	private static final ThreadLocal<Deque<String>> uriTemplates = ThreadLocal.withInitial(ArrayDeque::new);
+
+	private static final String COMPONENT = "spring-resttemplate";
+
+	private final Tracer tracer;
+
+	private final OperationNames operationNames = new OperationNames();
+
+	/**
+	 * Create an instance.
+	 * @param tracer the tracer to use to create spans
+	 */
+	public TracingClientHttpRequestInterceptor(Tracer tracer) {
+		Assert.notNull(tracer, "Tracer must not be null");
+		this.tracer = tracer;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		Span span = startSpan(request, uriTemplates.get().poll());
+		try {
+			this.tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS,
+					new HttpHeadersCarrier(request.getHeaders()));
+			ClientHttpResponse response = execution.execute(request, body);
+			int status = response.getRawStatusCode();
+			span.setTag(Tags.HTTP_STATUS.getKey(), status);
+			if (status >= 500) {
+				span.setTag(Tags.ERROR.getKey(), true);
+			}
+			return response;
+		}
+		catch (IOException | RuntimeException ex) {
+			span.setTag(Tags.ERROR.getKey(), true);
+			throw ex;
+		}
+		finally {
+			span.finish();
+			if (uriTemplates.get().isEmpty()) {
+				uriTemplates.remove();
+			}
+		}
+	}
+
+	private Span startSpan(HttpRequest request, String uriTemplate) {
+		String method = request.getMethodValue();
+		String operationName = this.operationNames.getForUriTemplate(method, uriTemplate);
+		return this.tracer.buildSpan(operationName).withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+				.withTag(Tags.COMPONENT.getKey(), COMPONENT).withTag(Tags.HTTP_METHOD.getKey(), method)
+				.withTag(Tags.HTTP_URL.getKey(), request.getURI().toString()).start();
+	}
+
+	/**
+	 * Return a {@link UriTemplateHandler} that records the URI template it expands so
+	 * that the next request intercepted on the same thread is named after it.
+	 * @param delegate the handler to use to expand URI templates
+	 * @return a recording {@link UriTemplateHandler}
+	 */
+	public UriTemplateHandler createUriTemplateHandler(UriTemplateHandler delegate) {
+		return new UriTemplateHandler() {
+
+			@Override
+			public URI expand(String uriTemplate, Map<String, ?> uriVariables) {
+				uriTemplates.get().push(uriTemplate);
+				return delegate.expand(uriTemplate, uriVariables);
+			}
+
+			@Override
+			public URI expand(String uriTemplate, Object... uriVariables) {
+				uriTemplates.get().push(uriTemplate);
+				return delegate.expand(uriTemplate, uriVariables);
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.opentracing.Tracer;
+
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriTemplateHandler;
+
+/**
+ * A {@link RestTemplateCustomizer} that traces the requests of a {@link RestTemplate}
+ * with a {@link TracingClientHttpRequestInterceptor}.
+ *
+ * @author Stephane Nicoll
+ */
+public class TracingRestTemplateCustomizer implements RestTemplateCustomizer {
+
+	private final TracingClientHttpRequestInterceptor interceptor;
+
+	/**
+	 * Create an instance.
+	 * @param tracer the tracer to use to create spans
+	 */
+	public TracingRestTemplateCustomizer(Tracer tracer) {
+		this.interceptor = new TracingClientHttpRequestInterceptor(tracer);
+	}
+
+	@Override
+	public void customize(RestTemplate restTemplate) {
+		UriTemplateHandler uriTemplateHandler = restTemplate.getUriTemplateHandler();
+		restTemplate.setUriTemplateHandler(this.interceptor.createUriTemplateHandler(uriTemplateHandler));
+		List<ClientHttpRequestInterceptor> interceptors = new ArrayList<>();
+		interceptors.add(this.interceptor);
+		interceptors.addAll(restTemplate.getInterceptors());
+		restTemplate.setInterceptors(interceptors);
+	}
+
+}
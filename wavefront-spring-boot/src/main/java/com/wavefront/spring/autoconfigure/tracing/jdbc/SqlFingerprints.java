@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.jdbc;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Utility to reduce SQL statements to a fingerprint that does not depend on the values
+ * they hold: literals are replaced by {@code ?}, lists of parameters in an {@code IN}
+ * clause are collapsed, comments are removed and whitespaces are normalized.
+ *
+ * @author Stephane Nicoll
+ */
+final class SqlFingerprints {
+
+	private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN ?\\( ?\\?(?: ?, ?\\?)* ?\\)");
+
+	private SqlFingerprints() {
+	}
+
+	/**
+	 * Return the fingerprint of the specified SQL statement.
+	 * @param sql a SQL statement
+	 * @return its fingerprint
+	 */
+	static String normalize(String sql) {
+		StringBuilder fingerprint = new StringBuilder(sql.length());
+		int length = sql.length();
+		int i = 0;
+		while (i < length) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				i = skipQuoted(sql, i + 1, '\'');
+				fingerprint.append('?');
+			}
+			else if (c == '"' || c == '`') {
+				int end = skipQuoted(sql, i + 1, c);
+				fingerprint.append(sql, i, end);
+				i = end;
+			}
+			else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+				i = skipLine(sql, i + 2);
+				appendSpace(fingerprint);
+			}
+			else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+				int end = sql.indexOf("*/", i + 2);
+				i = (end != -1) ? end + 2 : length;
+				appendSpace(fingerprint);
+			}
+			else if (Character.isWhitespace(c)) {
+				appendSpace(fingerprint);
+				i++;
+			}
+			else if (Character.isDigit(c) && !isPartOfIdentifier(fingerprint)) {
+				i = skipNumber(sql, i + 1);
+				fingerprint.append('?');
+			}
+			else {
+				fingerprint.append(c);
+				i++;
+			}
+		}
+		int end = fingerprint.length();
+		if (end > 0 && fingerprint.charAt(end - 1) == ' ') {
+			fingerprint.setLength(end - 1);
+		}
+		return IN_LIST.matcher(fingerprint).replaceAll("IN (?)");
+	}
+
+	/**
+	 * Return the name of the operation for the specified fingerprint, that is its first
+	 * keyword in upper case, for instance {@code SELECT}.
+	 * @param fingerprint a fingerprint returned by {@link #normalize(String)}
+	 * @return the name of the operation
+	 */
+	static String operationName(String fingerprint) {
+		int start = 0;
+		int length = fingerprint.length();
+		while (start < length && !Character.isLetter(fingerprint.charAt(start))) {
+			start++;
+		}
+		int end = start;
+		while (end < length && Character.isLetter(fingerprint.charAt(end))) {
+			end++;
+		}
+		return (end > start) ? fingerprint.substring(start, end).toUpperCase(Locale.ROOT) : "JDBC";
+	}
+
+	/**
+	 * Return a short identifier of the specified fingerprint, that is the hexadecimal
+	 * value of its hash code on eight characters.
+	 * @param fingerprint a fingerprint returned by {@link #normalize(String)}
+	 * @return the identifier of the fingerprint
+	 */
+	static String id(String fingerprint) {
+		return String.format("%08x", fingerprint.hashCode());
+	}
+
+	private static int skipQuoted(String sql, int index, char quote) {
+		int i = index;
+		while (i < sql.length()) {
+			if (sql.charAt(i) == quote) {
+				if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			i++;
+		}
+		return i;
+	}
+
+	private static int skipLine(String sql, int index) {
+		int end = sql.indexOf('\n', index);
+		return (end != -1) ? end + 1 : sql.length();
+	}
+
+	private static int skipNumber(String sql, int index) {
+		int i = index;
+		while (i < sql.length() && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+			i++;
+		}
+		return i;
+	}
+
+	private static void appendSpace(StringBuilder fingerprint) {
+		int length = fingerprint.length();
+		if (length > 0 && fingerprint.charAt(length - 1) != ' ') {
+			fingerprint.append(' ');
+		}
+	}
+
+	private static boolean isPartOfIdentifier(StringBuilder fingerprint) {
+		int length = fingerprint.length();
+		if (length == 0) {
+			return false;
+		}
+		char previous = fingerprint.charAt(length - 1);
+		return Character.isLetterOrDigit(previous) || previous == '_' || previous == '$' || previous == '.';
+	}
+
+}
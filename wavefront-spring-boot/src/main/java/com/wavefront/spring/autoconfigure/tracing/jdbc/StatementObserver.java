@@ -0,0 +1,353 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.tag.Tags;
+
+/**
+ * Observes the statements executed through the connections of a data source: a client
+ * span is created as a child of the active span, if any, and the execution is recorded
+ * by a {@code jdbc.statements} timer. The span holds the fingerprint of the statement
+ * rather than its SQL, while the timer is tagged with its operation and with a short
+ * identifier of the fingerprint, also set on the span. Fingerprints are cached, up to
+ * a maximum number of statements, so that repeated statements are not normalized again.
+ * The least recently used statements are evicted once that maximum is reached.
+ *
+ * @author Stephane Nicoll
+ */
+final class StatementObserver {
+
+	static final String METER_NAME = "jdbc.statements";
+
+	static final String STATEMENT_ID_TAG = "db.statement.id";
+
+	private static final String COMPONENT = "java-jdbc";
+
+	private final String dataSourceName;
+
+	private final Tracer tracer;
+
+	private final Supplier<MeterRegistry> meterRegistry;
+
+	private final StatementCache statements;
+
+	private volatile MeterRegistry resolvedMeterRegistry;
+
+	private volatile boolean meterRegistryResolved;
+
+	StatementObserver(String dataSourceName, Tracer tracer, Supplier<MeterRegistry> meterRegistry,
+			int maxStatements) {
+		this.dataSourceName = dataSourceName;
+		this.tracer = tracer;
+		this.meterRegistry = meterRegistry;
+		this.statements = new StatementCache(maxStatements);
+	}
+
+	/**
+	 * Return a {@link Connection} whose statements are observed.
+	 * @param connection the connection to instrument
+	 * @return the instrumented connection
+	 */
+	Connection instrument(Connection connection) {
+		return (Connection) Proxy.newProxyInstance(StatementObserver.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new ConnectionHandler(connection));
+	}
+
+	StatementMetadata getMetadata(String sql) {
+		StatementMetadata metadata = this.statements.get(sql);
+		if (metadata != null) {
+			return metadata;
+		}
+		metadata = new StatementMetadata(SqlFingerprints.normalize(sql));
+		return this.statements.putIfAbsent(sql, metadata);
+	}
+
+	private Object observe(String sql, Object target, Method method, Object[] args) throws Throwable {
+		StatementMetadata metadata = getMetadata(sql);
+		Span span = startSpan(metadata);
+		long start = System.nanoTime();
+		boolean error = false;
+		try {
+			return invoke(target, method, args);
+		}
+		catch (Throwable ex) {
+			error = true;
+			if (span != null) {
+				span.setTag(Tags.ERROR.getKey(), true);
+			}
+			throw ex;
+		}
+		finally {
+			record(metadata, error, System.nanoTime() - start);
+			if (span != null) {
+				span.finish();
+			}
+		}
+	}
+
+	private Span startSpan(StatementMetadata metadata) {
+		if (this.tracer.activeSpan() == null) {
+			return null;
+		}
+		return this.tracer.buildSpan(metadata.operationName)
+				.withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT).withTag(Tags.COMPONENT.getKey(), COMPONENT)
+				.withTag(Tags.DB_TYPE.getKey(), "sql").withTag(Tags.DB_INSTANCE.getKey(), this.dataSourceName)
+				.withTag(Tags.DB_STATEMENT.getKey(), metadata.fingerprint).withTag(STATEMENT_ID_TAG, metadata.id)
+				.start();
+	}
+
+	private void record(StatementMetadata metadata, boolean error, long durationNanos) {
+		MeterRegistry registry = getMeterRegistry();
+		if (registry != null) {
+			metadata.getTimer(registry, error).record(durationNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private MeterRegistry getMeterRegistry() {
+		if (!this.meterRegistryResolved) {
+			this.resolvedMeterRegistry = this.meterRegistry.get();
+			this.meterRegistryResolved = true;
+		}
+		return this.resolvedMeterRegistry;
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException ex) {
+			throw ex.getTargetException();
+		}
+	}
+
+	private static boolean isExecute(Method method) {
+		return method.getName().startsWith("execute");
+	}
+
+	/**
+	 * The fingerprint of a statement and the meters it is recorded by.
+	 */
+	final class StatementMetadata {
+
+		final String fingerprint;
+
+		final String id;
+
+		final String operationName;
+
+		private volatile Timer successTimer;
+
+		private volatile Timer errorTimer;
+
+		StatementMetadata(String fingerprint) {
+			this.fingerprint = fingerprint;
+			this.id = SqlFingerprints.id(fingerprint);
+			this.operationName = SqlFingerprints.operationName(fingerprint);
+		}
+
+		Timer getTimer(MeterRegistry registry, boolean error) {
+			Timer timer = (error) ? this.errorTimer : this.successTimer;
+			if (timer == null) {
+				timer = Timer.builder(METER_NAME).description("Statements executed against a data source")
+						.tag("datasource", StatementObserver.this.dataSourceName)
+						.tag("operation", this.operationName).tag("statement", this.id)
+						.tag("outcome", (error) ? "ERROR" : "SUCCESS")
+						.register(registry);
+				if (error) {
+					this.errorTimer = timer;
+				}
+				else {
+					this.successTimer = timer;
+				}
+			}
+			return timer;
+		}
+
+	}
+
+	/**
+	 * A cache of the metadata of the most recently used statements. Statements are
+	 * spread over access-order maps that each evict their least recently used entry, so
+	 * that concurrent executions of different statements seldom contend for the same
+	 * lock.
+	 */
+	private static final class StatementCache {
+
+		private static final int MAX_STRIPES = 16;
+
+		private static final int MIN_STATEMENTS_PER_STRIPE = 64;
+
+		private final Map<String, StatementMetadata>[] stripes;
+
+		@SuppressWarnings("unchecked")
+		StatementCache(int maxStatements) {
+			int stripes = Integer.highestOneBit(Math.max(maxStatements / MIN_STATEMENTS_PER_STRIPE, 1));
+			stripes = Math.min(stripes, MAX_STRIPES);
+			int capacity = (maxStatements + stripes - 1) / stripes;
+			this.stripes = new Map[stripes];
+			for (int i = 0; i < stripes; i++) {
+				this.stripes[i] = new LinkedHashMap<String, StatementMetadata>(16, 0.75f, true) {
+
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<String, StatementMetadata> eldest) {
+						return size() > capacity;
+					}
+
+				};
+			}
+		}
+
+		StatementMetadata get(String sql) {
+			Map<String, StatementMetadata> stripe = stripe(sql);
+			synchronized (stripe) {
+				return stripe.get(sql);
+			}
+		}
+
+		StatementMetadata putIfAbsent(String sql, StatementMetadata metadata) {
+			Map<String, StatementMetadata> stripe = stripe(sql);
+			synchronized (stripe) {
+				StatementMetadata existing = stripe.putIfAbsent(sql, metadata);
+				return (existing != null) ? existing : metadata;
+			}
+		}
+
+		private Map<String, StatementMetadata> stripe(String sql) {
+			int hash = sql.hashCode();
+			return this.stripes[(hash ^ (hash >>> 16)) & (this.stripes.length - 1)];
+		}
+
+	}
+
+	/**
+	 * Instruments the statements created by a {@link Connection}.
+	 */
+	private final class ConnectionHandler implements InvocationHandler {
+
+		private final Connection connection;
+
+		ConnectionHandler(Connection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "createStatement":
+				return instrument(proxy, (Statement) StatementObserver.invoke(this.connection, method, args),
+						Statement.class, null);
+			case "prepareStatement":
+				return instrument(proxy, (Statement) StatementObserver.invoke(this.connection, method, args),
+						PreparedStatement.class, (String) args[0]);
+			case "prepareCall":
+				return instrument(proxy, (Statement) StatementObserver.invoke(this.connection, method, args),
+						CallableStatement.class, (String) args[0]);
+			default:
+				return StatementObserver.invoke(this.connection, method, args);
+			}
+		}
+
+		private Statement instrument(Object connection, Statement statement, Class<?> type, String sql) {
+			return (Statement) Proxy.newProxyInstance(StatementObserver.class.getClassLoader(),
+					new Class<?>[] { type }, new StatementHandler((Connection) connection, statement, sql));
+		}
+
+	}
+
+	/**
+	 * Observes the executions of a {@link Statement}.
+	 */
+	private final class StatementHandler implements InvocationHandler {
+
+		private final Connection connection;
+
+		private final Statement statement;
+
+		private final String sql;
+
+		private String batchSql;
+
+		StatementHandler(Connection connection, Statement statement, String sql) {
+			this.connection = connection;
+			this.statement = statement;
+			this.sql = sql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "getConnection":
+				return this.connection;
+			case "addBatch":
+				if (this.batchSql == null && args != null && args.length > 0) {
+					this.batchSql = (String) args[0];
+				}
+				break;
+			case "clearBatch":
+				this.batchSql = null;
+				break;
+			default:
+				if (isExecute(method)) {
+					String sql = getSql(method, args);
+					if (sql != null) {
+						return observe(sql, this.statement, method, args);
+					}
+				}
+			}
+			return StatementObserver.invoke(this.statement, method, args);
+		}
+
+		private String getSql(Method method, Object[] args) {
+			if (args != null && args.length > 0 && args[0] instanceof String) {
+				return (String) args[0];
+			}
+			if (method.getName().endsWith("Batch")) {
+				String sql = (this.sql != null) ? this.sql : this.batchSql;
+				this.batchSql = null;
+				return sql;
+			}
+			return this.sql;
+		}
+
+	}
+
+}
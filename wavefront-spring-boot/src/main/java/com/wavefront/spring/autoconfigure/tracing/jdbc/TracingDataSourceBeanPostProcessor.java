@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.jdbc;
+
+import java.lang.reflect.Modifier;
+import java.sql.Connection;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentracing.Tracer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link BeanPostProcessor} that proxies {@link DataSource} beans so that the
+ * statements executed through their connections create a client span, when a span is
+ * active, and are recorded by a {@code jdbc.statements} timer. The span holds the
+ * fingerprint of the statement, with its literals stripped, and the timer a short
+ * identifier of that fingerprint.
+ * <p>
+ * Unless it is final, the proxy extends the class of the data source so that it can
+ * still be injected by type. The tracer and the meter registry are only resolved when
+ * they are first needed.
+ *
+ * @author Stephane Nicoll
+ */
+public class TracingDataSourceBeanPostProcessor implements BeanPostProcessor {
+
+	private final Supplier<Tracer> tracer;
+
+	private final Supplier<MeterRegistry> meterRegistry;
+
+	private final int maxStatements;
+
+	/**
+	 * Create an instance.
+	 * @param tracer a supplier of the tracer to use to create spans
+	 * @param meterRegistry a supplier of the registry to record timers with, which may
+	 * supply {@code null} if no timer should be recorded
+	 * @param maxStatements the maximum number of distinct statements per data source
+	 * whose fingerprint is cached
+	 */
+	public TracingDataSourceBeanPostProcessor(Supplier<Tracer> tracer, Supplier<MeterRegistry> meterRegistry,
+			int maxStatements) {
+		Assert.notNull(tracer, "Tracer must not be null");
+		Assert.notNull(meterRegistry, "MeterRegistry must not be null");
+		Assert.isTrue(maxStatements > 0, "Max statements must be positive");
+		this.tracer = tracer;
+		this.meterRegistry = meterRegistry;
+		this.maxStatements = maxStatements;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		if (bean instanceof DataSource && !AopUtils.isAopProxy(bean)) {
+			return instrument((DataSource) bean, beanName);
+		}
+		return bean;
+	}
+
+	private Object instrument(DataSource dataSource, String beanName) {
+		ProxyFactory factory = new ProxyFactory(dataSource);
+		factory.setProxyTargetClass(!Modifier.isFinal(dataSource.getClass().getModifiers()));
+		factory.addAdvice(new ConnectionInterceptor(beanName));
+		return factory.getProxy(dataSource.getClass().getClassLoader());
+	}
+
+	private StatementObserver createObserver(String dataSourceName) {
+		return new StatementObserver(dataSourceName, this.tracer.get(), this.meterRegistry, this.maxStatements);
+	}
+
+	/**
+	 * Instruments the connections returned by a {@link DataSource}.
+	 */
+	private final class ConnectionInterceptor implements MethodInterceptor {
+
+		private final String dataSourceName;
+
+		private volatile StatementObserver observer;
+
+		ConnectionInterceptor(String dataSourceName) {
+			this.dataSourceName = dataSourceName;
+		}
+
+		@Override
+		public Object invoke(MethodInvocation invocation) throws Throwable {
+			Object result = invocation.proceed();
+			if (result instanceof Connection && "getConnection".equals(invocation.getMethod().getName())) {
+				return getObserver().instrument((Connection) result);
+			}
+			return result;
+		}
+
+		private StatementObserver getObserver() {
+			StatementObserver observer = this.observer;
+			if (observer == null) {
+				synchronized (this) {
+					observer = this.observer;
+					if (observer == null) {
+						observer = createObserver(this.dataSourceName);
+						this.observer = observer;
+					}
+				}
+			}
+			return observer;
+		}
+
+	}
+
+}
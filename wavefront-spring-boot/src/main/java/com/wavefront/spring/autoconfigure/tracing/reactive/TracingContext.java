@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.reactive;
+
+import io.opentracing.Span;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * Access the active span of a reactive pipeline. The span is held in the Reactor
+ * {@link Context} rather than in a {@link ThreadLocal} so that it is available whatever
+ * thread the pipeline runs on.
+ *
+ * @author Stephane Nicoll
+ */
+public final class TracingContext {
+
+	private static final Object SPAN_KEY = Span.class;
+
+	private TracingContext() {
+	}
+
+	/**
+	 * Return a {@link Context} with the specified active span.
+	 * @param context the context to update
+	 * @param span the active span
+	 * @return the updated context
+	 */
+	public static Context withSpan(Context context, Span span) {
+		return context.put(SPAN_KEY, span);
+	}
+
+	/**
+	 * Return the active span of the specified {@link Context}, if any.
+	 * @param context the context to inspect
+	 * @return the active span or {@code null}
+	 */
+	public static Span getSpan(Context context) {
+		return context.getOrDefault(SPAN_KEY, null);
+	}
+
+	/**
+	 * Return a {@link Mono} that emits the active span of the pipeline it is part of, or
+	 * completes empty if there is none.
+	 * @return the active span
+	 */
+	public static Mono<Span> currentSpan() {
+		return Mono.subscriberContext().flatMap((context) -> Mono.justOrEmpty(getSpan(context)));
+	}
+
+}
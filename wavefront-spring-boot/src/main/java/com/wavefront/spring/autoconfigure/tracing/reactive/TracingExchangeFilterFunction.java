@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.reactive;
+
+import com.wavefront.spring.autoconfigure.tracing.HttpHeadersCarrier;
+import com.wavefront.spring.autoconfigure.tracing.OperationNames;
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.tag.Tags;
+import reactor.core.publisher.Mono;
+
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * An {@link ExchangeFilterFunction} that creates a client span for each request of a
+ * {@link WebClient} and injects its context in the request headers. The parent of the
+ * span is the span of the pipeline, see {@link TracingContext}, or the active span of the
+ * {@link Tracer} if there is none. The span is named after the HTTP method and the URI
+ * template of the request, for instance {@code GET /users/{id}}, or after the HTTP method
+ * alone if the URI was not built from a template with variables.
+ *
+ * @author Stephane Nicoll
+ */
+public class TracingExchangeFilterFunction implements ExchangeFilterFunction {
+
+	private static final String URI_TEMPLATE_ATTRIBUTE = WebClient.class.getName() + ".uriTemplate";
+
+	private static final String COMPONENT = "spring-webclient";
+
+	private final Tracer tracer;
+
+	private final OperationNames operationNames = new OperationNames();
+
+	/**
+	 * Create an instance.
+	 * @param tracer the tracer to use to create spans
+	 */
+	public TracingExchangeFilterFunction(Tracer tracer) {
+		Assert.notNull(tracer, "Tracer must not be null");
+		this.tracer = tracer;
+	}
+
+	@Override
+	public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+		return Mono.subscriberContext().flatMap((context) -> {
+			Span span = startSpan(request, TracingContext.getSpan(context));
+			ClientRequest tracedRequest = ClientRequest.from(request).headers((headers) -> this.tracer
+					.inject(span.context(), Format.Builtin.HTTP_HEADERS, new HttpHeadersCarrier(headers))).build();
+			return next.exchange(tracedRequest).doOnSuccess((response) -> {
+				if (response != null) {
+					int status = response.rawStatusCode();
+					span.setTag(Tags.HTTP_STATUS.getKey(), status);
+					if (status >= 500) {
+						span.setTag(Tags.ERROR.getKey(), true);
+					}
+				}
+			}).doOnError((ex) -> span.setTag(Tags.ERROR.getKey(), true)).doFinally((signal) -> span.finish());
+		});
+	}
+
+	private Span startSpan(ClientRequest request, Span parent) {
+		String method = request.method().name();
+		Tracer.SpanBuilder builder = this.tracer.buildSpan(getOperationName(request, method))
+				.withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT).withTag(Tags.COMPONENT.getKey(), COMPONENT)
+				.withTag(Tags.HTTP_METHOD.getKey(), method).withTag(Tags.HTTP_URL.getKey(), request.url().toString());
+		if (parent != null) {
+			builder = builder.asChildOf(parent);
+		}
+		return builder.start();
+	}
+
+	private String getOperationName(ClientRequest request, String method) {
+		Object template = request.attribute(URI_TEMPLATE_ATTRIBUTE).orElse(null);
+		return this.operationNames.getForUriTemplate(method, (template instanceof String) ? (String) template : null);
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.reactive;
+
+import com.wavefront.spring.autoconfigure.tracing.HttpHeadersCarrier;
+import com.wavefront.spring.autoconfigure.tracing.OperationNames;
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.tag.Tags;
+import reactor.core.publisher.Mono;
+
+import org.springframework.core.Ordered;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+
+/**
+ * A {@link WebFilter} that creates a server span for each exchange, continuing the trace
+ * of the caller if its context is present in the request headers. The span is available
+ * to the rest of the chain through {@link TracingContext} and is named after the HTTP
+ * method and the route template of the handler, for instance {@code GET /users/{id}}.
+ *
+ * @author Stephane Nicoll
+ */
+public class TracingWebFilter implements WebFilter, Ordered {
+
+	private static final String COMPONENT = "spring-webflux";
+
+	private final Tracer tracer;
+
+	private final OperationNames operationNames = new OperationNames();
+
+	private int order = Ordered.HIGHEST_PRECEDENCE + 10;
+
+	/**
+	 * Create an instance.
+	 * @param tracer the tracer to use to create spans
+	 */
+	public TracingWebFilter(Tracer tracer) {
+		Assert.notNull(tracer, "Tracer must not be null");
+		this.tracer = tracer;
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		Span span = startSpan(exchange);
+		return chain.filter(exchange).doOnError((ex) -> span.setTag(Tags.ERROR.getKey(), true))
+				.doFinally((signal) -> finishSpan(span, exchange))
+				.subscriberContext((context) -> TracingContext.withSpan(context, span));
+	}
+
+	private Span startSpan(ServerWebExchange exchange) {
+		String method = exchange.getRequest().getMethodValue();
+		Tracer.SpanBuilder builder = this.tracer.buildSpan(method).ignoreActiveSpan()
+				.withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER).withTag(Tags.COMPONENT.getKey(), COMPONENT)
+				.withTag(Tags.HTTP_METHOD.getKey(), method);
+		SpanContext parent = this.tracer.extract(Format.Builtin.HTTP_HEADERS,
+				new HttpHeadersCarrier(exchange.getRequest().getHeaders()));
+		if (parent != null) {
+			builder = builder.asChildOf(parent);
+		}
+		return builder.start();
+	}
+
+	private void finishSpan(Span span, ServerWebExchange exchange) {
+		Object pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		if (pattern instanceof PathPattern) {
+			span.setOperationName(this.operationNames.get(exchange.getRequest().getMethodValue(),
+					((PathPattern) pattern).getPatternString()));
+		}
+		ServerHttpResponse response = exchange.getResponse();
+		Integer status = response.getRawStatusCode();
+		if (status != null) {
+			span.setTag(Tags.HTTP_STATUS.getKey(), status);
+			if (status >= 500) {
+				span.setTag(Tags.ERROR.getKey(), true);
+			}
+		}
+		span.finish();
+	}
+
+	@Override
+	public int getOrder() {
+		return this.order;
+	}
+
+	public void setOrder(int order) {
+		this.order = order;
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.servlet;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import io.opentracing.propagation.TextMap;
+
+/**
+ * A read-only {@link TextMap} view of the headers of a request, so that extracting a
+ * span context does not copy them.
+ *
+ * @author Stephane Nicoll
+ */
+class HttpServletRequestHeaders implements TextMap {
+
+	private final HttpServletRequest request;
+
+	HttpServletRequestHeaders(HttpServletRequest request) {
+		this.request = request;
+	}
+
+	@Override
+	public Iterator<Map.Entry<String, String>> iterator() {
+		Enumeration<String> names = this.request.getHeaderNames();
+		if (names == null) {
+			return Collections.emptyIterator();
+		}
+		return new Iterator<Map.Entry<String, String>>() {
+
+			@Override
+			public boolean hasNext() {
+				return names.hasMoreElements();
+			}
+
+			@Override
+			public Map.Entry<String, String> next() {
+				String name = names.nextElement();
+				return new SimpleImmutableEntry<>(name, HttpServletRequestHeaders.this.request.getHeader(name));
+			}
+
+		};
+	}
+
+	@Override
+	public void put(String key, String value) {
+		throw new UnsupportedOperationException("Request headers are read-only");
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.servlet;
+
+import java.io.IOException;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import io.opentracing.Scope;
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.tag.Tags;
+
+import org.springframework.util.Assert;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * A {@link javax.servlet.Filter} that creates a server span for each request, continuing
+ * the trace of the caller if its context is present in the request headers. The span is
+ * named after the HTTP method until a {@link TracingHandlerInterceptor} renames it after
+ * the route template of the handler.
+ *
+ * @author Stephane Nicoll
+ */
+public class TracingFilter extends OncePerRequestFilter {
+
+	/**
+	 * Name of the request attribute holding the server {@link Span}.
+	 */
+	public static final String SPAN_ATTRIBUTE = TracingFilter.class.getName() + ".span";
+
+	private static final String COMPONENT = "spring-webmvc";
+
+	private final Tracer tracer;
+
+	/**
+	 * Create an instance.
+	 * @param tracer the tracer to use to create spans
+	 */
+	public TracingFilter(Tracer tracer) {
+		Assert.notNull(tracer, "Tracer must not be null");
+		this.tracer = tracer;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		Span span = startSpan(request);
+		request.setAttribute(SPAN_ATTRIBUTE, span);
+		Scope scope = this.tracer.scopeManager().activate(span, false);
+		try {
+			filterChain.doFilter(request, response);
+		}
+		catch (IOException | ServletException | RuntimeException | Error ex) {
+			span.setTag(Tags.ERROR.getKey(), true);
+			throw ex;
+		}
+		finally {
+			scope.close();
+			if (request.isAsyncStarted()) {
+				request.getAsyncContext().addListener(new SpanFinishingListener(span));
+			}
+			else {
+				finishSpan(span, response);
+			}
+		}
+	}
+
+	private Span startSpan(HttpServletRequest request) {
+		String method = request.getMethod();
+		Tracer.SpanBuilder builder = this.tracer.buildSpan(method).ignoreActiveSpan()
+				.withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER).withTag(Tags.COMPONENT.getKey(), COMPONENT)
+				.withTag(Tags.HTTP_METHOD.getKey(), method);
+		SpanContext parent = this.tracer.extract(Format.Builtin.HTTP_HEADERS,
+				new HttpServletRequestHeaders(request));
+		if (parent != null) {
+			builder = builder.asChildOf(parent);
+		}
+		return builder.start();
+	}
+
+	private static void finishSpan(Span span, HttpServletResponse response) {
+		int status = response.getStatus();
+		span.setTag(Tags.HTTP_STATUS.getKey(), status);
+		if (status >= 500) {
+			span.setTag(Tags.ERROR.getKey(), true);
+		}
+		span.finish();
+	}
+
+	/**
+	 * Finish the span of a request once its asynchronous processing has completed.
+	 */
+	private static final class SpanFinishingListener implements AsyncListener {
+
+		private final Span span;
+
+		SpanFinishingListener(Span span) {
+			this.span = span;
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			finishSpan(this.span, (HttpServletResponse) event.getSuppliedResponse());
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			this.span.setTag(Tags.ERROR.getKey(), true);
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			this.span.setTag(Tags.ERROR.getKey(), true);
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			event.getAsyncContext().addListener(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.wavefront.spring.autoconfigure.tracing.OperationNames;
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * A {@link HandlerInterceptor} that renames the server span created by the
+ * {@link TracingFilter} after the HTTP method and the route template of the handler, for
+ * instance {@code GET /users/{id}}. Operation names are cached in {@link OperationNames}.
+ *
+ * @author Stephane Nicoll
+ */
+public class TracingHandlerInterceptor implements HandlerInterceptor {
+
+	private final OperationNames operationNames = new OperationNames();
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		Span span = getSpan(request);
+		if (span != null) {
+			Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+			if (pattern instanceof String) {
+				span.setOperationName(this.operationNames.get(request.getMethod(), (String) pattern));
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		Span span = getSpan(request);
+		if (span != null && ex != null) {
+			span.setTag(Tags.ERROR.getKey(), true);
+		}
+	}
+
+	private Span getSpan(HttpServletRequest request) {
+		Object span = request.getAttribute(TracingFilter.SPAN_ATTRIBUTE);
+		return (span instanceof Span) ? (Span) span : null;
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.task;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link BeanPostProcessor} that propagates the active span to the tasks run by the
+ * {@link ThreadPoolTaskExecutor} and {@link ScheduledExecutorService} beans.
+ * <p>
+ * A {@link ThreadPoolTaskExecutor} gets a {@link TracingTaskDecorator}, composed with
+ * the {@link TaskDecorator} it may already have. A {@link ScheduledExecutorService} is
+ * wrapped in a {@link TracingScheduledExecutorService}, only if its bean is exposed as
+ * an interface so that the wrapper can still be injected.
+ *
+ * @author Stephane Nicoll
+ */
+public class TracingExecutorBeanPostProcessor implements BeanPostProcessor, BeanFactoryAware {
+
+	private static final Log logger = LogFactory.getLog(TracingExecutorBeanPostProcessor.class);
+
+	private final Supplier<TracingTaskDecorator> taskDecorator;
+
+	private ConfigurableListableBeanFactory beanFactory;
+
+	/**
+	 * Create an instance.
+	 * @param taskDecorator a supplier of the decorator to apply, invoked when the first
+	 * executor bean is processed
+	 */
+	public TracingExecutorBeanPostProcessor(Supplier<TracingTaskDecorator> taskDecorator) {
+		Assert.notNull(taskDecorator, "TaskDecorator must not be null");
+		this.taskDecorator = taskDecorator;
+	}
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+		if (beanFactory instanceof ConfigurableListableBeanFactory) {
+			this.beanFactory = (ConfigurableListableBeanFactory) beanFactory;
+		}
+	}
+
+	@Override
+	public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+		if (bean instanceof ThreadPoolTaskExecutor) {
+			decorate((ThreadPoolTaskExecutor) bean);
+		}
+		return bean;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		if (bean instanceof ScheduledExecutorService && !(bean instanceof TracingScheduledExecutorService)) {
+			if (isExposedAsInterface(beanName)) {
+				return new TracingScheduledExecutorService((ScheduledExecutorService) bean, this.taskDecorator.get());
+			}
+			logger.debug("Not propagating spans to '" + beanName + "' as it is not exposed as an interface");
+		}
+		return bean;
+	}
+
+	private void decorate(ThreadPoolTaskExecutor executor) {
+		TaskDecorator existing = (TaskDecorator) new DirectFieldAccessor(executor).getPropertyValue("taskDecorator");
+		if (existing instanceof TracingTaskDecorator) {
+			return;
+		}
+		TracingTaskDecorator tracingTaskDecorator = this.taskDecorator.get();
+		executor.setTaskDecorator((existing != null)
+				? (runnable) -> tracingTaskDecorator.decorate(existing.decorate(runnable)) : tracingTaskDecorator);
+	}
+
+	private boolean isExposedAsInterface(String beanName) {
+		if (this.beanFactory == null || !this.beanFactory.containsBeanDefinition(beanName)) {
+			return false;
+		}
+		BeanDefinition beanDefinition = this.beanFactory.getMergedBeanDefinition(beanName);
+		if (beanDefinition instanceof RootBeanDefinition) {
+			Method factoryMethod = ((RootBeanDefinition) beanDefinition).getResolvedFactoryMethod();
+			return factoryMethod != null && factoryMethod.getReturnType().isInterface()
+					&& factoryMethod.getReturnType().isAssignableFrom(TracingScheduledExecutorService.class);
+		}
+		return false;
+	}
+
+}
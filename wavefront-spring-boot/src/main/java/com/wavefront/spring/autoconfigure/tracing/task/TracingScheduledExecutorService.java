@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link ScheduledExecutorService} that propagates the active span to the tasks it
+ * runs, using a {@link TracingTaskDecorator}. Periodic tasks are not decorated as they
+ * outlive the span that was active when they were scheduled.
+ *
+ * @author Stephane Nicoll
+ */
+public class TracingScheduledExecutorService implements ScheduledExecutorService {
+
+	private final ScheduledExecutorService delegate;
+
+	private final TracingTaskDecorator taskDecorator;
+
+	/**
+	 * Create an instance.
+	 * @param delegate the executor to run tasks
+	 * @param taskDecorator the decorator to use to propagate the active span
+	 */
+	public TracingScheduledExecutorService(ScheduledExecutorService delegate, TracingTaskDecorator taskDecorator) {
+		Assert.notNull(delegate, "Delegate must not be null");
+		Assert.notNull(taskDecorator, "TaskDecorator must not be null");
+		this.delegate = delegate;
+		this.taskDecorator = taskDecorator;
+	}
+
+	/**
+	 * Return the {@link ScheduledExecutorService} that runs the tasks.
+	 * @return the delegate executor
+	 */
+	public ScheduledExecutorService getDelegate() {
+		return this.delegate;
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+		return this.delegate.schedule(this.taskDecorator.decorate(command), delay, unit);
+	}
+
+	@Override
+	public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+		return this.delegate.schedule(this.taskDecorator.decorate(callable), delay, unit);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+		return this.delegate.scheduleAtFixedRate(command, initialDelay, period, unit);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+			TimeUnit unit) {
+		return this.delegate.scheduleWithFixedDelay(command, initialDelay, delay, unit);
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		this.delegate.execute(this.taskDecorator.decorate(command));
+	}
+
+	@Override
+	public Future<?> submit(Runnable task) {
+		return this.delegate.submit(this.taskDecorator.decorate(task));
+	}
+
+	@Override
+	public <T> Future<T> submit(Runnable task, T result) {
+		return this.delegate.submit(this.taskDecorator.decorate(task), result);
+	}
+
+	@Override
+	public <T> Future<T> submit(Callable<T> task) {
+		return this.delegate.submit(this.taskDecorator.decorate(task));
+	}
+
+	@Override
+	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+		return this.delegate.invokeAll(decorate(tasks));
+	}
+
+	@Override
+	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+			throws InterruptedException {
+		return this.delegate.invokeAll(decorate(tasks), timeout, unit);
+	}
+
+	@Override
+	public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+		return this.delegate.invokeAny(decorate(tasks));
+	}
+
+	@Override
+	public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		return this.delegate.invokeAny(decorate(tasks), timeout, unit);
+	}
+
+	private <T> List<Callable<T>> decorate(Collection<? extends Callable<T>> tasks) {
+		List<Callable<T>> decorated = new ArrayList<>(tasks.size());
+		for (Callable<T> task : tasks) {
+			decorated.add(this.taskDecorator.decorate(task));
+		}
+		return decorated;
+	}
+
+	@Override
+	public void shutdown() {
+		this.delegate.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return this.delegate.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return this.delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return this.delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.delegate.awaitTermination(timeout, unit);
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.task;
+
+import java.util.concurrent.Callable;
+
+import io.opentracing.Scope;
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link TaskDecorator} that makes the span that is active when a task is submitted
+ * active while the task runs. Only the span is captured, so that decorating a task costs
+ * a single allocation, and none if no span is active.
+ *
+ * @author Stephane Nicoll
+ */
+public class TracingTaskDecorator implements TaskDecorator {
+
+	private final Tracer tracer;
+
+	/**
+	 * Create an instance.
+	 * @param tracer the tracer whose active span should be propagated
+	 */
+	public TracingTaskDecorator(Tracer tracer) {
+		Assert.notNull(tracer, "Tracer must not be null");
+		this.tracer = tracer;
+	}
+
+	@Override
+	public Runnable decorate(Runnable runnable) {
+		Span span = this.tracer.activeSpan();
+		if (span == null) {
+			return runnable;
+		}
+		return () -> {
+			try (Scope scope = this.tracer.scopeManager().activate(span, false)) {
+				runnable.run();
+			}
+		};
+	}
+
+	/**
+	 * Decorate the specified {@link Callable} so that the currently active span is active
+	 * while it runs.
+	 * @param callable the callable to decorate
+	 * @param <T> the type of the result of the callable
+	 * @return the decorated callable
+	 */
+	public <T> Callable<T> decorate(Callable<T> callable) {
+		Span span = this.tracer.activeSpan();
+		if (span == null) {
+			return callable;
+		}
+		return () -> {
+			try (Scope scope = this.tracer.scopeManager().activate(span, false)) {
+				return callable.call();
+			}
+		};
+	}
+
+}
@@ -16,17 +16,52 @@
 
 package com.wavefront.spring.autoconfigure;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import javax.sql.DataSource;
+
 import com.wavefront.opentracing.WavefrontTracer;
 import com.wavefront.opentracing.reporting.Reporter;
 import com.wavefront.sdk.common.WavefrontSender;
 import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.entities.tracing.sampling.DurationSampler;
+import com.wavefront.sdk.entities.tracing.sampling.RateSampler;
+import com.wavefront.sdk.entities.tracing.sampling.Sampler;
+import com.wavefront.spring.autoconfigure.metrics.CardinalityLimitingMeterFilter;
+import com.wavefront.spring.autoconfigure.metrics.DistributionMeterFilter;
+import com.wavefront.spring.autoconfigure.sender.BufferingWavefrontSender;
+import com.wavefront.spring.autoconfigure.sender.OverflowPolicy;
+import com.wavefront.spring.autoconfigure.tracing.AdaptiveSampler;
+import com.wavefront.spring.autoconfigure.tracing.AsyncReporter;
+import com.wavefront.spring.autoconfigure.tracing.ComponentHeartbeater;
+import com.wavefront.spring.autoconfigure.tracing.LimitingTracer;
+import com.wavefront.spring.autoconfigure.tracing.RedMetricsReporter;
+import com.wavefront.spring.autoconfigure.tracing.TailSamplingReporter;
+import com.wavefront.spring.autoconfigure.tracing.client.TracingRestTemplateCustomizer;
+import com.wavefront.spring.autoconfigure.tracing.jdbc.TracingDataSourceBeanPostProcessor;
+import com.wavefront.spring.autoconfigure.tracing.reactive.TracingWebFilter;
+import com.wavefront.spring.autoconfigure.tracing.servlet.TracingFilter;
+import com.wavefront.spring.autoconfigure.tracing.task.TracingExecutorBeanPostProcessor;
+import com.wavefront.spring.autoconfigure.tracing.task.TracingScheduledExecutorService;
+import com.wavefront.spring.autoconfigure.tracing.task.TracingTaskDecorator;
+import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.wavefront.WavefrontMeterRegistry;
 import io.opentracing.Tracer;
+import org.h2.jdbcx.JdbcDataSource;
 import org.junit.jupiter.api.Test;
 
+import org.springframework.aop.support.AopUtils;
 import org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration;
 import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
 import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
@@ -34,11 +69,21 @@ import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.W
 import org.springframework.boot.autoconfigure.AutoConfigurations;
 import org.springframework.boot.test.context.runner.AbstractApplicationContextRunner;
 import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.test.context.runner.ReactiveWebApplicationContextRunner;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 /**
  * Tests for {@link WavefrontAutoConfiguration}.
@@ -50,6 +95,9 @@ class WavefrontAutoConfigurationTests {
 	private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
 			.withConfiguration(AutoConfigurations.of(WavefrontAutoConfiguration.class));
 
+	private final WebApplicationContextRunner webContextRunner = new WebApplicationContextRunner()
+			.withConfiguration(AutoConfigurations.of(WavefrontAutoConfiguration.class));
+
 	@Test
 	void applicationTagsIsConfiguredFromPropertiesWhenNoneExists() {
 		this.contextRunner
@@ -142,6 +190,99 @@ class WavefrontAutoConfigurationTests {
 				});
 	}
 
+	@Test
+	void cardinalityLimitIsAppliedToWavefrontRegistry() {
+		this.contextRunner
+				.withPropertyValues("wavefront.tracing.enabled=false", "wavefront.metrics.cardinality.max-series=2",
+						"wavefront.metrics.cardinality.limits.my=3")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.withConfiguration(AutoConfigurations.of(SimpleMetricsExportAutoConfiguration.class))
+				.run((context) -> {
+					assertThat(context).doesNotHaveBean(CardinalityLimitingMeterFilter.class);
+					assertThat(meterFilter(context.getBean(SimpleMeterRegistry.class),
+							CardinalityLimitingMeterFilter.class)).isNull();
+					MeterRegistry registry = context.getBean(WavefrontMeterRegistry.class);
+					for (int i = 0; i < 5; i++) {
+						registry.counter("my.counter", "uri", "/" + i);
+						registry.counter("another.counter", "uri", "/" + i);
+					}
+					assertThat(registry.find("my.counter").counters()).hasSize(4);
+					assertThat(registry.find("another.counter").counters()).hasSize(3);
+					assertThat(registry.get("wavefront.metrics.cardinality.rejected").functionCounter().count())
+							.isEqualTo(5);
+				});
+	}
+
+	@Test
+	void cardinalityLimitCanBeDisabled() {
+		this.contextRunner
+				.withPropertyValues("wavefront.tracing.enabled=false", "wavefront.metrics.cardinality.enabled=false")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class))).run((context) -> {
+					WavefrontMeterRegistry registry = context.getBean(WavefrontMeterRegistry.class);
+					assertThat(meterFilter(registry, CardinalityLimitingMeterFilter.class)).isNull();
+				});
+	}
+
+	@Test
+	void metersCanBeExcludedFromWavefrontRegistry() {
+		this.contextRunner
+				.withPropertyValues("wavefront.tracing.enabled=false", "wavefront.metrics.include=my.,other.*.counter",
+						"wavefront.metrics.exclude=my.excluded")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class))).run((context) -> {
+					WavefrontMeterRegistry registry = context.getBean(WavefrontMeterRegistry.class);
+					registry.counter("my.counter");
+					registry.counter("my.excluded.counter");
+					registry.counter("other.test.counter");
+					registry.counter("another.counter");
+					assertThat(registry.find("my.counter").counter()).isNotNull();
+					assertThat(registry.find("my.excluded.counter").counter()).isNull();
+					assertThat(registry.find("other.test.counter").counter()).isNotNull();
+					assertThat(registry.find("another.counter").counter()).isNull();
+				});
+	}
+
+	@Test
+	void gaugesAreRegisteredWithBufferingSender() {
+		BufferingWavefrontSender sender = mock(BufferingWavefrontSender.class);
+		this.contextRunner.withPropertyValues("wavefront.tracing.enabled=false")
+				.withBean(BufferingWavefrontSender.class, () -> sender)
+				.withConfiguration(AutoConfigurations.of(WavefrontMetricsExportAutoConfiguration.class)).with(metrics())
+				.run((context) -> {
+					WavefrontMeterRegistry registry = context.getBean(WavefrontMeterRegistry.class);
+					registry.gauge("my.gauge", 42);
+					registry.counter("my.counter");
+					verify(sender).registerGauge("my.gauge");
+					verify(sender, never()).registerGauge("my.counter");
+				});
+	}
+
+	@Test
+	void distributionsAreConfiguredForSelectedMetersOfWavefrontRegistry() {
+		this.contextRunner
+				.withPropertyValues("wavefront.tracing.enabled=false", "wavefront.metrics.distributions.names=my.")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.withConfiguration(AutoConfigurations.of(SimpleMetricsExportAutoConfiguration.class))
+				.run((context) -> {
+					assertThat(context).doesNotHaveBean(DistributionMeterFilter.class);
+					DistributionMeterFilter filter = meterFilter(context.getBean(WavefrontMeterRegistry.class),
+							DistributionMeterFilter.class);
+					assertThat(filter.configure(timerId("my.timer"), DistributionStatisticConfig.DEFAULT)
+							.isPercentileHistogram()).isTrue();
+					assertThat(filter.configure(timerId("another.timer"), DistributionStatisticConfig.DEFAULT)
+							.isPercentileHistogram()).isFalse();
+					assertThat(meterFilter(context.getBean(SimpleMeterRegistry.class), DistributionMeterFilter.class))
+							.isNull();
+				});
+	}
+
+	@Test
+	void distributionsAreNotConfiguredByDefault() {
+		this.contextRunner.withPropertyValues("wavefront.tracing.enabled=false")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class))).run((context) -> assertThat(
+						meterFilter(context.getBean(WavefrontMeterRegistry.class), DistributionMeterFilter.class))
+								.isNull());
+	}
+
 	@Test
 	void tracerIsConfiguredWithWavefrontSender() {
 		this.contextRunner.withPropertyValues().with(wavefrontMetrics(() -> {
@@ -149,13 +290,137 @@ class WavefrontAutoConfigurationTests {
 			given(sender.getFailureCount()).willReturn(42);
 			return sender;
 		})).run((context) -> {
-			assertThat(context).hasSingleBean(Tracer.class).hasSingleBean(WavefrontTracer.class);
-			Reporter reporter = (Reporter) ReflectionTestUtils.getField(context.getBean(WavefrontTracer.class),
-					"reporter");
+			assertThat(context).hasSingleBean(Tracer.class).hasSingleBean(LimitingTracer.class);
+			assertThat(context.getBean(LimitingTracer.class).getDelegate()).isInstanceOf(WavefrontTracer.class);
+			Reporter reporter = (Reporter) ReflectionTestUtils.getField(wavefrontTracer(context), "reporter");
 			assertThat(reporter.getFailureCount()).isEqualTo(42);
 		});
 	}
 
+	@Test
+	void tracerReportsSpansAsynchronously() {
+		this.contextRunner
+				.withPropertyValues("wavefront.tracing.reporter.queue-size=42",
+						"wavefront.tracing.reporter.overflow-policy=drop-oldest")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class))).run((context) -> {
+					AsyncReporter reporter = context.getBean(AsyncReporter.class);
+					assertThat(ReflectionTestUtils.getField(wavefrontTracer(context), "reporter"))
+							.isSameAs(reporter);
+					assertThat(reporter).hasFieldOrPropertyWithValue("overflowPolicy", OverflowPolicy.DROP_OLDEST);
+					MeterRegistry registry = context.getBean(MeterRegistry.class);
+					assertThat(registry.find("wavefront.tracing.reporter.spans.dropped").functionCounter())
+							.isNotNull();
+				});
+	}
+
+	@Test
+	void tracerComponentsSendHeartbeats() {
+		this.contextRunner.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.run((context) -> assertThat(context).hasSingleBean(ComponentHeartbeater.class));
+	}
+
+	@Test
+	void tracerReportsEverySpanByDefault() {
+		this.contextRunner.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.run((context) -> assertThat(samplers(wavefrontTracer(context))).isEmpty());
+	}
+
+	@Test
+	void tracerIsConfiguredWithSamplersFromProperties() {
+		this.contextRunner
+				.withPropertyValues("wavefront.tracing.sampling.rate=0.1", "wavefront.tracing.sampling.duration=2s")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class))).run((context) -> {
+					List<Sampler> samplers = samplers(wavefrontTracer(context));
+					assertThat(samplers).hasSize(2);
+					assertThat(samplers.get(0)).isInstanceOf(RateSampler.class);
+					assertThat(samplers.get(1)).isInstanceOf(DurationSampler.class);
+					assertThat(samplers.get(1).sample("test", 1L, 1999)).isFalse();
+					assertThat(samplers.get(1).sample("test", 1L, 2000)).isTrue();
+				});
+	}
+
+	@Test
+	void tracerIsConfiguredWithSamplerBeans() {
+		Sampler sampler = mock(Sampler.class);
+		this.contextRunner.withPropertyValues("wavefront.tracing.sampling.rate=0.5")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class))).withBean(Sampler.class, () -> sampler)
+				.run((context) -> {
+					List<Sampler> samplers = samplers(wavefrontTracer(context));
+					assertThat(samplers).hasSize(2);
+					assertThat(samplers.get(1)).isSameAs(sampler);
+				});
+	}
+
+	@Test
+	void tracerIsConfiguredWithAdaptiveSamplerWhenBudgetIsSet() {
+		this.contextRunner
+				.withPropertyValues("wavefront.tracing.sampling.spans-per-second=500",
+						"wavefront.tracing.sampling.duration=2s")
+				.with(wavefrontMetrics(() -> {
+					WavefrontSender sender = mock(WavefrontSender.class);
+					given(sender.getFailureCount()).willReturn(42);
+					return sender;
+				})).run((context) -> {
+					WavefrontTracer tracer = wavefrontTracer(context);
+					List<Sampler> samplers = samplers(tracer);
+					assertThat(samplers).hasSize(2);
+					assertThat(samplers.get(0)).isInstanceOf(DurationSampler.class);
+					assertThat(samplers.get(1)).isInstanceOf(AdaptiveSampler.class);
+					Reporter reporter = (Reporter) ReflectionTestUtils.getField(tracer, "reporter");
+					assertThat(reporter.getFailureCount()).isEqualTo(42);
+				});
+	}
+
+	@Test
+	void tracerIsConfiguredWithTailSamplingWhenEnabled() {
+		this.contextRunner.withPropertyValues("wavefront.tracing.tail-sampling.enabled=true")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class))).run((context) -> {
+					Object reporter = ReflectionTestUtils.getField(context.getBean(AsyncReporter.class), "delegate");
+					assertThat(reporter).isInstanceOf(TailSamplingReporter.class);
+				});
+	}
+
+	@Test
+	void tracerDerivesRedMetricsByDefault() {
+		this.contextRunner.withPropertyValues("wavefront.tracing.red-metrics.max-operations=42")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class))).run((context) -> {
+					assertThat(context).hasSingleBean(RedMetricsReporter.class);
+					RedMetricsReporter reporter = context.getBean(RedMetricsReporter.class);
+					assertThat(reporter).hasFieldOrPropertyWithValue("maxOperations", 42);
+					assertThat(context.getBean(LimitingTracer.class)).hasFieldOrPropertyWithValue("finishListener",
+							reporter);
+				});
+	}
+
+	@Test
+	void tracerRedMetricsCanBeDisabled() {
+		this.contextRunner.withPropertyValues("wavefront.tracing.red-metrics.enabled=false")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.run((context) -> assertThat(context).doesNotHaveBean(RedMetricsReporter.class));
+	}
+
+	@Test
+	void tracerIsConfiguredWithLimits() {
+		this.contextRunner
+				.withPropertyValues("wavefront.tracing.limits.max-tags=12",
+						"wavefront.tracing.limits.max-log-value-length=34")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class))).run((context) -> {
+					LimitingTracer tracer = context.getBean(LimitingTracer.class);
+					assertThat(tracer).hasFieldOrPropertyWithValue("maxTags", 12)
+							.hasFieldOrPropertyWithValue("maxLogValueLength", 34);
+					MeterRegistry registry = context.getBean(MeterRegistry.class);
+					assertThat(registry.find("wavefront.tracing.spans.tags.dropped").functionCounter()).isNotNull();
+				});
+	}
+
+	@Test
+	void tracerWithInvalidSamplingRateFails() {
+		this.contextRunner.withPropertyValues("wavefront.tracing.sampling.rate=2")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.run((context) -> assertThat(context).hasFailed().getFailure()
+						.hasMessageContaining("Sampling rate must be between 0 and 1"));
+	}
+
 	@Test
 	void tracerCanBeDisabled() {
 		this.contextRunner.withPropertyValues("wavefront.tracing.enabled=false")
@@ -168,6 +433,154 @@ class WavefrontAutoConfigurationTests {
 		this.contextRunner.with(metrics()).run((context) -> assertThat(context).doesNotHaveBean(Tracer.class));
 	}
 
+	@Test
+	void servletTracingIsConfiguredInServletWebApplication() {
+		this.webContextRunner.with(wavefrontMetrics(() -> mock(WavefrontSender.class))).run((context) -> {
+			assertThat(context).hasBean("wavefrontTracingWebMvcConfigurer");
+			assertThat(context.getBean("wavefrontTracingFilter", FilterRegistrationBean.class).getFilter())
+					.isInstanceOf(TracingFilter.class);
+		});
+	}
+
+	@Test
+	void servletTracingCanBeDisabled() {
+		this.webContextRunner.withPropertyValues("wavefront.tracing.servlet.enabled=false")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.run((context) -> assertThat(context).hasSingleBean(Tracer.class)
+						.doesNotHaveBean("wavefrontTracingFilter").doesNotHaveBean("wavefrontTracingWebMvcConfigurer"));
+	}
+
+	@Test
+	void servletTracingIsNotConfiguredInNonWebApplication() {
+		this.contextRunner.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.run((context) -> assertThat(context).hasSingleBean(Tracer.class)
+						.doesNotHaveBean("wavefrontTracingFilter"));
+	}
+
+	@Test
+	void servletTracingIsNotConfiguredWithoutTracer() {
+		this.webContextRunner.with(metrics()).run((context) -> assertThat(context)
+				.doesNotHaveBean("wavefrontTracingFilter").doesNotHaveBean("wavefrontTracingWebMvcConfigurer"));
+	}
+
+	@Test
+	void reactiveTracingIsConfiguredInReactiveWebApplication() {
+		new ReactiveWebApplicationContextRunner()
+				.withConfiguration(AutoConfigurations.of(WavefrontAutoConfiguration.class))
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.run((context) -> assertThat(context).hasSingleBean(TracingWebFilter.class)
+						.hasBean("wavefrontTracingWebClientCustomizer"));
+	}
+
+	@Test
+	void webClientTracingIsConfiguredInNonWebApplication() {
+		this.contextRunner.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.run((context) -> assertThat(context).hasBean("wavefrontTracingWebClientCustomizer")
+						.doesNotHaveBean(TracingWebFilter.class));
+	}
+
+	@Test
+	void reactiveTracingCanBeDisabled() {
+		new ReactiveWebApplicationContextRunner()
+				.withConfiguration(AutoConfigurations.of(WavefrontAutoConfiguration.class))
+				.withPropertyValues("wavefront.tracing.webflux.enabled=false",
+						"wavefront.tracing.webclient.enabled=false")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.run((context) -> assertThat(context).hasSingleBean(Tracer.class)
+						.doesNotHaveBean(TracingWebFilter.class)
+						.doesNotHaveBean("wavefrontTracingWebClientCustomizer"));
+	}
+
+	@Test
+	void restTemplateTracingIsConfiguredWithTracer() {
+		this.contextRunner.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.run((context) -> assertThat(context).hasSingleBean(TracingRestTemplateCustomizer.class));
+	}
+
+	@Test
+	void restTemplateTracingCanBeDisabled() {
+		this.contextRunner.withPropertyValues("wavefront.tracing.rest-template.enabled=false")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.run((context) -> assertThat(context).hasSingleBean(Tracer.class)
+						.doesNotHaveBean(TracingRestTemplateCustomizer.class));
+	}
+
+	@Test
+	void taskTracingIsConfiguredWithTracer() {
+		this.contextRunner.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.run((context) -> assertThat(context).hasSingleBean(TracingTaskDecorator.class)
+						.hasSingleBean(TracingExecutorBeanPostProcessor.class));
+	}
+
+	@Test
+	void taskTracingDoesNotOverrideUserTaskDecorator() {
+		this.contextRunner.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.withBean(TaskDecorator.class, () -> (runnable) -> runnable)
+				.run((context) -> assertThat(context).hasSingleBean(TaskDecorator.class)
+						.doesNotHaveBean(TracingTaskDecorator.class)
+						.hasSingleBean(TracingExecutorBeanPostProcessor.class));
+	}
+
+	@Test
+	void taskTracingAppliesToExecutorBeans() {
+		this.contextRunner.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.withUserConfiguration(ExecutorsConfiguration.class).run((context) -> {
+					assertThat(ReflectionTestUtils.getField(context.getBean(ThreadPoolTaskExecutor.class),
+							"taskDecorator")).isInstanceOf(TracingTaskDecorator.class);
+					assertThat(context.getBean("scheduledExecutorService"))
+							.isInstanceOf(TracingScheduledExecutorService.class);
+					assertThat(context.getBean("scheduledThreadPoolExecutor"))
+							.isInstanceOf(ScheduledThreadPoolExecutor.class);
+				});
+	}
+
+	@Test
+	void taskTracingCanBeDisabled() {
+		this.contextRunner.withPropertyValues("wavefront.tracing.task.enabled=false")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.run((context) -> assertThat(context).hasSingleBean(Tracer.class)
+						.doesNotHaveBean(TracingTaskDecorator.class)
+						.doesNotHaveBean(TracingExecutorBeanPostProcessor.class));
+	}
+
+	@Test
+	void jdbcTracingIsNotConfiguredByDefault() {
+		this.contextRunner.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.withBean(DataSource.class, JdbcDataSource::new)
+				.run((context) -> {
+					assertThat(context).hasSingleBean(Tracer.class)
+							.doesNotHaveBean(TracingDataSourceBeanPostProcessor.class);
+					assertThat(AopUtils.isAopProxy(context.getBean(DataSource.class))).isFalse();
+				});
+	}
+
+	@Test
+	void jdbcTracingProxiesDataSourceBeansWhenEnabled() {
+		this.contextRunner.withPropertyValues("wavefront.tracing.jdbc.enabled=true")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.withBean(DataSource.class, JdbcDataSource::new)
+				.run((context) -> {
+					assertThat(context).hasSingleBean(TracingDataSourceBeanPostProcessor.class);
+					assertThat(AopUtils.isAopProxy(context.getBean(DataSource.class))).isTrue();
+				});
+	}
+
+	@Test
+	void jdbcTracingIsNotConfiguredWhenTracingIsDisabled() {
+		this.contextRunner.withPropertyValues("wavefront.tracing.enabled=false", "wavefront.tracing.jdbc.enabled=true")
+				.with(wavefrontMetrics(() -> mock(WavefrontSender.class)))
+				.run((context) -> assertThat(context).doesNotHaveBean(TracingDataSourceBeanPostProcessor.class));
+	}
+
+	private WavefrontTracer wavefrontTracer(ApplicationContext context) {
+		return (WavefrontTracer) context.getBean(LimitingTracer.class).getDelegate();
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Sampler> samplers(WavefrontTracer tracer) {
+		return (List<Sampler>) ReflectionTestUtils.getField(tracer, "samplers");
+	}
+
 	@SuppressWarnings("unchecked")
 	private static <T extends AbstractApplicationContextRunner<?, ?, ?>> Function<T, T> wavefrontMetrics(
 			Supplier<WavefrontSender> wavefrontSender) {
@@ -184,4 +597,33 @@ class WavefrontAutoConfigurationTests {
 
 	}
 
+	private <T extends MeterFilter> T meterFilter(MeterRegistry registry, Class<T> type) {
+		MeterFilter[] filters = (MeterFilter[]) ReflectionTestUtils.getField(registry, "filters");
+		return Arrays.stream(filters).filter(type::isInstance).map(type::cast).findFirst().orElse(null);
+	}
+
+	private Meter.Id timerId(String name) {
+		return new Meter.Id(name, Tags.empty(), null, null, Meter.Type.TIMER);
+	}
+
+	@Configuration(proxyBeanMethods = false)
+	static class ExecutorsConfiguration {
+
+		@Bean
+		ThreadPoolTaskExecutor threadPoolTaskExecutor() {
+			return new ThreadPoolTaskExecutor();
+		}
+
+		@Bean(destroyMethod = "shutdown")
+		ScheduledExecutorService scheduledExecutorService() {
+			return Executors.newSingleThreadScheduledExecutor();
+		}
+
+		@Bean(destroyMethod = "shutdown")
+		ScheduledThreadPoolExecutor scheduledThreadPoolExecutor() {
+			return new ScheduledThreadPoolExecutor(1);
+		}
+
+	}
+
 }
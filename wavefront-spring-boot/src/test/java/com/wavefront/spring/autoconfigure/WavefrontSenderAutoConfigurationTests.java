@@ -0,0 +1,260 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.opentracing.reporting.WavefrontSpanReporter;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.spring.autoconfigure.sender.BufferingWavefrontSender;
+import com.wavefront.spring.autoconfigure.sender.BufferingWavefrontSenderMetrics;
+import com.wavefront.spring.autoconfigure.sender.CompressionCodec;
+import com.wavefront.spring.autoconfigure.sender.DiskSpool;
+import com.wavefront.spring.autoconfigure.sender.NioProxyLineTransport;
+import com.wavefront.spring.autoconfigure.sender.OverflowPolicy;
+import com.wavefront.spring.autoconfigure.sender.ShardedLineTransport;
+import com.wavefront.spring.autoconfigure.sender.SpoolLockedException;
+import com.wavefront.spring.autoconfigure.tracing.LimitingTracer;
+import io.micrometer.wavefront.WavefrontMeterRegistry;
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.wavefront.WavefrontMetricsExportAutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link WavefrontSenderAutoConfiguration}.
+ *
+ * @author Stephane Nicoll
+ */
+class WavefrontSenderAutoConfigurationTests {
+
+	private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+			.withPropertyValues("management.metrics.use-global-registry=false",
+					"management.metrics.export.wavefront.uri=proxy://localhost:2878", "wavefront.tracing.enabled=false")
+			.withConfiguration(AutoConfigurations.of(MetricsAutoConfiguration.class,
+					CompositeMeterRegistryAutoConfiguration.class, WavefrontMetricsExportAutoConfiguration.class,
+					WavefrontSenderAutoConfiguration.class, WavefrontAutoConfiguration.class));
+
+	@Test
+	void bufferingSenderIsConfigured() {
+		this.contextRunner.run((context) -> {
+			assertThat(context).hasSingleBean(WavefrontSender.class);
+			assertThat(context.getBean(WavefrontSender.class)).isInstanceOf(BufferingWavefrontSender.class);
+			assertThat(context.getBean(WavefrontSender.class).getClientId()).isEqualTo("http://localhost:2878/report");
+		});
+	}
+
+	@Test
+	void bufferingSenderCanBeConfigured() {
+		this.contextRunner
+				.withPropertyValues("wavefront.sender.batch-size=200", "wavefront.sender.flush-interval=5s",
+						"wavefront.sender.queue-capacity=1000", "wavefront.sender.overflow-policy=drop-oldest")
+				.run((context) -> {
+					BufferingWavefrontSender sender = context.getBean(BufferingWavefrontSender.class);
+					assertThat(sender).hasFieldOrPropertyWithValue("batchSize", 200)
+							.hasFieldOrPropertyWithValue("flushIntervalNanos", 5000000000L)
+							.hasFieldOrPropertyWithValue("overflowPolicy", OverflowPolicy.DROP_OLDEST);
+				});
+	}
+
+	@Test
+	void bufferingSenderPublishesUnchangedMetricsByDefault() {
+		this.contextRunner.run((context) -> assertThat(context.getBean(BufferingWavefrontSender.class))
+				.extracting("metricLineCache").hasFieldOrPropertyWithValue("refreshIntervalMillis", -1L));
+	}
+
+	@Test
+	void bufferingSenderCanSkipUnchangedMetrics() {
+		this.contextRunner
+				.withPropertyValues("wavefront.metrics.skip-unchanged.enabled=true",
+						"wavefront.metrics.skip-unchanged.refresh-interval=2m")
+				.run((context) -> assertThat(context.getBean(BufferingWavefrontSender.class))
+						.extracting("metricLineCache").hasFieldOrPropertyWithValue("refreshIntervalMillis", 120000L));
+	}
+
+	@Test
+	void bufferingSenderCanUsePublishTiers() {
+		this.contextRunner.withPropertyValues("wavefront.metrics.tiers.fast.prefixes=http.server",
+				"wavefront.metrics.tiers.fast.interval=10s",
+				"wavefront.metrics.tiers.slow.prefixes=jvm.classes,system.", "wavefront.metrics.tiers.slow.interval=5m")
+				.run((context) -> {
+					Object cache = ReflectionTestUtils.getField(context.getBean(BufferingWavefrontSender.class),
+							"metricLineCache");
+					assertThat(cache).extracting("publishIntervals").asInstanceOf(InstanceOfAssertFactories.MAP)
+							.containsOnly(entry("http.server", Duration.ofSeconds(10)),
+									entry("jvm.classes", Duration.ofMinutes(5)),
+									entry("system.", Duration.ofMinutes(5)));
+				});
+	}
+
+	@Test
+	void bufferingSenderWithPublishTierWithoutIntervalFails() {
+		this.contextRunner.withPropertyValues("wavefront.metrics.tiers.fast.prefixes=http.server")
+				.run((context) -> assertThat(context).hasFailed().getFailure()
+						.hasMessageContaining("No interval defined for publish tier 'fast'"));
+	}
+
+	@Test
+	void directIngestionUsesGzipCompressionByDefault() {
+		this.contextRunner.withPropertyValues("management.metrics.export.wavefront.uri=https://example.wavefront.com",
+				"management.metrics.export.wavefront.api-token=abc-def").run((context) -> {
+					Object transport = ReflectionTestUtils.getField(context.getBean(BufferingWavefrontSender.class),
+							"transport");
+					assertThat(transport).hasFieldOrPropertyWithValue("compression", CompressionCodec.GZIP)
+							.hasFieldOrPropertyWithValue("compressionLevel", -1)
+							.hasFieldOrPropertyWithValue("compressionThreshold", 1024);
+				});
+	}
+
+	@Test
+	void directIngestionCompressionCanBeConfigured() {
+		this.contextRunner.withPropertyValues("management.metrics.export.wavefront.uri=https://example.wavefront.com",
+				"management.metrics.export.wavefront.api-token=abc-def", "wavefront.sender.compression.codec=deflate",
+				"wavefront.sender.compression.level=3", "wavefront.sender.compression.min-batch-size=4KB")
+				.run((context) -> {
+					Object transport = ReflectionTestUtils.getField(context.getBean(BufferingWavefrontSender.class),
+							"transport");
+					assertThat(transport).hasFieldOrPropertyWithValue("compression", CompressionCodec.DEFLATE)
+							.hasFieldOrPropertyWithValue("compressionLevel", 3)
+							.hasFieldOrPropertyWithValue("compressionThreshold", 4096);
+				});
+	}
+
+	@Test
+	void proxyDoesNotUseCompression() {
+		this.contextRunner.run((context) -> {
+			Object transport = ReflectionTestUtils.getField(context.getBean(BufferingWavefrontSender.class),
+					"transport");
+			assertThat(transport).hasFieldOrPropertyWithValue("compression", CompressionCodec.NONE);
+		});
+	}
+
+	@Test
+	void severalProxiesUseShardedTransport() {
+		this.contextRunner
+				.withPropertyValues("management.metrics.export.wavefront.uri=proxy://host1:2878,proxy://host2:2878",
+						"wavefront.sender.proxy.health-check-interval=5s")
+				.run((context) -> {
+					BufferingWavefrontSender sender = context.getBean(BufferingWavefrontSender.class);
+					Object transport = ReflectionTestUtils.getField(sender, "transport");
+					assertThat(transport).isInstanceOf(ShardedLineTransport.class)
+							.hasFieldOrPropertyWithValue("healthCheckIntervalNanos", 5000000000L);
+					assertThat(sender.getClientId()).isEqualTo("http://host1:2878/report,http://host2:2878/report");
+				});
+	}
+
+	@Test
+	void proxyWithTcpTransport() {
+		this.contextRunner.withPropertyValues("wavefront.sender.proxy.transport=tcp",
+				"wavefront.sender.proxy.tracing-port=30000", "wavefront.sender.proxy.max-pending-size=1MB")
+				.run((context) -> {
+					BufferingWavefrontSender sender = context.getBean(BufferingWavefrontSender.class);
+					Object transport = ReflectionTestUtils.getField(sender, "transport");
+					assertThat(transport).isInstanceOf(NioProxyLineTransport.class)
+							.hasFieldOrPropertyWithValue("host", "localhost")
+							.hasFieldOrPropertyWithValue("maxPendingBytes", 1024L * 1024);
+					assertThat(sender.getClientId()).isEqualTo("tcp://localhost:2878");
+				});
+	}
+
+	@Test
+	void bufferingSenderHasNoSpoolByDefault() {
+		this.contextRunner.run((context) -> assertThat(context.getBean(BufferingWavefrontSender.class))
+				.hasFieldOrPropertyWithValue("spool", null));
+	}
+
+	@Test
+	void bufferingSenderWithSpoolEnabled(@TempDir Path directory) {
+		this.contextRunner
+				.withPropertyValues("wavefront.sender.spool.enabled=true",
+						"wavefront.sender.spool.directory=" + directory, "wavefront.sender.spool.max-size=2MB",
+						"wavefront.sender.spool.segment-size=1MB", "wavefront.sender.spool.replay-rate=100")
+				.run((context) -> {
+					BufferingWavefrontSender sender = context.getBean(BufferingWavefrontSender.class);
+					assertThat(sender).hasFieldOrPropertyWithValue("replayRate", 100);
+					assertThat(ReflectionTestUtils.getField(sender, "spool")).isInstanceOf(DiskSpool.class)
+							.hasFieldOrPropertyWithValue("directory", directory)
+							.hasFieldOrPropertyWithValue("maxSegments", 2);
+				});
+	}
+
+	@Test
+	void bufferingSenderWithSpoolInDirectoryUsedByAnotherApplicationFails(@TempDir Path directory)
+			throws IOException {
+		try (DiskSpool spool = new DiskSpool(directory, 2048, 1024)) {
+			this.contextRunner
+					.withPropertyValues("wavefront.sender.spool.enabled=true",
+							"wavefront.sender.spool.directory=" + directory)
+					.run((context) -> assertThat(context).hasFailed().getFailure()
+							.hasRootCauseInstanceOf(SpoolLockedException.class));
+		}
+	}
+
+	@Test
+	void bufferingSenderIsUsedByMeterRegistryAndTracer() {
+		this.contextRunner.withPropertyValues("wavefront.tracing.enabled=true").run((context) -> {
+			WavefrontSender sender = context.getBean(WavefrontSender.class);
+			assertThat(ReflectionTestUtils.getField(context.getBean(WavefrontMeterRegistry.class), "wavefrontSender"))
+					.isSameAs(sender);
+			WavefrontTracer tracer = (WavefrontTracer) context.getBean(LimitingTracer.class).getDelegate();
+			Object reporter = ReflectionTestUtils.getField(tracer, "reporter");
+			while (!(reporter instanceof WavefrontSpanReporter)) {
+				reporter = ReflectionTestUtils.getField(reporter, "delegate");
+			}
+			assertThat(((WavefrontSpanReporter) reporter).getWavefrontSender()).isSameAs(sender);
+		});
+	}
+
+	@Test
+	void bufferingSenderMetricsAreBoundToMeterRegistry() {
+		this.contextRunner.run((context) -> {
+			WavefrontMeterRegistry registry = context.getBean(WavefrontMeterRegistry.class);
+			assertThat(registry.find("wavefront.sender.queue.size").gauges()).hasSize(4);
+			assertThat(registry.find("wavefront.sender.points.dropped").functionCounters()).hasSize(4);
+			assertThat(registry.find("wavefront.sender.flush").timer()).isNotNull();
+		});
+	}
+
+	@Test
+	void bufferingSenderBacksOffWithCustomSender() {
+		WavefrontSender customSender = mock(WavefrontSender.class);
+		this.contextRunner.withBean(WavefrontSender.class, () -> customSender).run((context) -> {
+			assertThat(context.getBean(WavefrontSender.class)).isSameAs(customSender);
+			assertThat(context).doesNotHaveBean(BufferingWavefrontSenderMetrics.class);
+		});
+	}
+
+	@Test
+	void bufferingSenderIsNotConfiguredWhenWavefrontExportIsDisabled() {
+		this.contextRunner.withPropertyValues("management.metrics.export.wavefront.enabled=false")
+				.run((context) -> assertThat(context).doesNotHaveBean(WavefrontSender.class));
+	}
+
+}
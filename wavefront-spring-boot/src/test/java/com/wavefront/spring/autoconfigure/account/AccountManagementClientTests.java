@@ -16,8 +16,12 @@
 
 package com.wavefront.spring.autoconfigure.account;
 
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
 import com.wavefront.sdk.common.application.ApplicationTags;
 import com.wavefront.spring.autoconfigure.ApplicationTagsFactory;
+import com.wavefront.spring.autoconfigure.tracing.RecordingReporter;
+import com.wavefront.spring.autoconfigure.tracing.client.TracingRestTemplateCustomizer;
 import org.apache.commons.logging.Log;
 import org.junit.jupiter.api.Test;
 
@@ -130,6 +134,28 @@ class AccountManagementClientTests {
 						.isInstanceOf(AccountManagementFailedException.class);
 	}
 
+	@Test
+	void provisionAccountIsTracedWhenRestTemplateBuilderIsCustomized() {
+		RecordingReporter reporter = new RecordingReporter();
+		WavefrontTracer tracer = new WavefrontTracer.Builder(reporter, createDefaultApplicationTags()).build();
+		MockServerRestTemplateCustomizer restTemplateCustomizer = new MockServerRestTemplateCustomizer();
+		RestTemplateBuilder restTemplateBuilder = new RestTemplateBuilder().customizers(restTemplateCustomizer,
+				new TracingRestTemplateCustomizer(tracer));
+		AccountManagementClient client = new AccountManagementClient(mock(Log.class), restTemplateBuilder);
+		HttpHeaders sentHeaders = new HttpHeaders();
+		restTemplateCustomizer.getServer()
+				.expect(requestToUriTemplate(
+						"https://example.com/api/v2/trial/spring-boot-autoconfigure?application={0}&service={1}",
+						"unnamed_application", "unnamed_service"))
+				.andExpect((request) -> sentHeaders.putAll(request.getHeaders()))
+				.andRespond(withStatus(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON)
+						.body("{\"url\":\"/us/test123\",\"token\":\"ee479a71-abcd-abcd-abcd-62b0e8416989\"}\n"));
+		client.provisionAccount("https://example.com", createDefaultApplicationTags());
+		assertThat(reporter.getOperationNames()).containsExactly("POST");
+		WavefrontSpan span = reporter.getSpans().get(0);
+		assertThat(sentHeaders.toSingleValueMap()).containsValue(span.context().getSpanId().toString());
+	}
+
 	private ApplicationTags createDefaultApplicationTags() {
 		return new ApplicationTagsFactory().createFromEnvironment(new MockEnvironment());
 	}
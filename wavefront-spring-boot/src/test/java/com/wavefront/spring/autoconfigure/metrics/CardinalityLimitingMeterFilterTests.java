@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link CardinalityLimitingMeterFilter}.
+ *
+ * @author Stephane Nicoll
+ */
+class CardinalityLimitingMeterFilterTests {
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void seriesWithinLimitAreRegistered() {
+		register(new CardinalityLimitingMeterFilter(3, Collections.emptyMap()));
+		this.registry.counter("test.counter", "uri", "/a");
+		this.registry.counter("test.counter", "uri", "/b");
+		this.registry.counter("test.counter", "uri", "/c");
+		assertThat(this.registry.find("test.counter").counters()).hasSize(3);
+	}
+
+	@Test
+	void seriesOverLimitAreCollapsedInOtherBucket() {
+		CardinalityLimitingMeterFilter filter = register(new CardinalityLimitingMeterFilter(2, Collections.emptyMap()));
+		for (int i = 0; i < 10; i++) {
+			this.registry.counter("test.counter", "uri", "/" + i).increment();
+		}
+		assertThat(this.registry.find("test.counter").counters()).hasSize(3);
+		assertThat(this.registry.get("test.counter").tag("uri", "other").counter().count()).isEqualTo(8);
+		assertThat(filter.getRejectedCount()).isEqualTo(8);
+	}
+
+	@Test
+	void newCombinationsOfKnownTagValuesAreCollapsedInOtherSeries() {
+		register(new CardinalityLimitingMeterFilter(2, Collections.emptyMap()));
+		this.registry.counter("test.counter", "method", "GET", "uri", "/a");
+		this.registry.counter("test.counter", "method", "POST", "uri", "/b");
+		this.registry.counter("test.counter", "method", "GET", "uri", "/b").increment();
+		this.registry.counter("test.counter", "method", "POST", "uri", "/a").increment();
+		this.registry.counter("test.counter", "method", "PUT", "uri", "/c").increment();
+		assertThat(this.registry.find("test.counter").counters()).hasSize(3);
+		assertThat(this.registry.get("test.counter").tags("method", "other", "uri", "other").counter().count())
+				.isEqualTo(3);
+	}
+
+	@Test
+	void rejectedSeriesIsCountedOnce() {
+		CardinalityLimitingMeterFilter filter = register(new CardinalityLimitingMeterFilter(1, Collections.emptyMap()));
+		this.registry.counter("test.counter", "uri", "/a");
+		for (int i = 0; i < 5; i++) {
+			this.registry.counter("test.counter", "uri", "/b").increment();
+		}
+		assertThat(this.registry.get("test.counter").tag("uri", "other").counter().count()).isEqualTo(5);
+		assertThat(filter.getRejectedCount()).isEqualTo(1);
+	}
+
+	@Test
+	void registeredSeriesIsNotRejected() {
+		CardinalityLimitingMeterFilter filter = register(new CardinalityLimitingMeterFilter(1, Collections.emptyMap()));
+		this.registry.counter("test.counter", "uri", "/a").increment();
+		this.registry.counter("test.counter", "uri", "/a").increment();
+		assertThat(this.registry.get("test.counter").tag("uri", "/a").counter().count()).isEqualTo(2);
+		assertThat(filter.getRejectedCount()).isEqualTo(0);
+	}
+
+	@Test
+	void limitsAreTrackedPerName() {
+		register(new CardinalityLimitingMeterFilter(1, Collections.emptyMap()));
+		this.registry.counter("test.first", "uri", "/a");
+		this.registry.counter("test.second", "uri", "/b");
+		assertThat(this.registry.get("test.first").tag("uri", "/a").counter()).isNotNull();
+		assertThat(this.registry.get("test.second").tag("uri", "/b").counter()).isNotNull();
+	}
+
+	@Test
+	void longestMatchingPrefixLimitApplies() {
+		Map<String, Integer> limits = new LinkedHashMap<>();
+		limits.put("http", 2);
+		limits.put("http.server", 3);
+		register(new CardinalityLimitingMeterFilter(1, limits));
+		for (int i = 0; i < 5; i++) {
+			this.registry.counter("http.server.requests", "uri", "/" + i);
+			this.registry.counter("http.client.requests", "uri", "/" + i);
+			this.registry.counter("jvm.test", "id", "/" + i);
+		}
+		assertThat(this.registry.find("http.server.requests").counters()).hasSize(4);
+		assertThat(this.registry.find("http.client.requests").counters()).hasSize(3);
+		assertThat(this.registry.find("jvm.test").counters()).hasSize(2);
+	}
+
+	@Test
+	void prefixLimitMatchesWholeSegments() {
+		register(new CardinalityLimitingMeterFilter(1, Collections.singletonMap("http", 3)));
+		for (int i = 0; i < 5; i++) {
+			this.registry.counter("http.requests", "uri", "/" + i);
+			this.registry.counter("https.requests", "uri", "/" + i);
+		}
+		assertThat(this.registry.find("http.requests").counters()).hasSize(4);
+		assertThat(this.registry.find("https.requests").counters()).hasSize(2);
+	}
+
+	@Test
+	void rejectedCountIsExposed() {
+		CardinalityLimitingMeterFilter filter = register(new CardinalityLimitingMeterFilter(1, Collections.emptyMap()));
+		filter.bindTo(this.registry);
+		this.registry.counter("test.counter", "uri", "/a");
+		this.registry.counter("test.counter", "uri", "/b");
+		assertThat(this.registry.get("wavefront.metrics.cardinality.rejected").functionCounter().count()).isEqualTo(1);
+	}
+
+	private CardinalityLimitingMeterFilter register(CardinalityLimitingMeterFilter filter) {
+		this.registry.config().meterFilter(filter);
+		return filter;
+	}
+
+}
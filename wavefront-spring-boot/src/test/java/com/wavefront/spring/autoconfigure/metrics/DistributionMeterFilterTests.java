@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.metrics;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import com.wavefront.sdk.common.WavefrontSender;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.wavefront.WavefrontConfig;
+import io.micrometer.wavefront.WavefrontMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+
+/**
+ * Tests for {@link DistributionMeterFilter}.
+ *
+ * @author Stephane Nicoll
+ */
+class DistributionMeterFilterTests {
+
+	private final DistributionMeterFilter filter = new DistributionMeterFilter(Arrays.asList("http.", "my.timer"));
+
+	@Test
+	void matchingTimerIsPublishedAsHistogram() {
+		DistributionStatisticConfig config = this.filter.configure(id("http.server.requests", Meter.Type.TIMER),
+				DistributionStatisticConfig.builder().percentiles(0.5, 0.95).build());
+		assertThat(config.isPercentileHistogram()).isTrue();
+		assertThat(config.getPercentiles()).isEmpty();
+	}
+
+	@Test
+	void matchingDistributionSummaryIsPublishedAsHistogram() {
+		DistributionStatisticConfig config = this.filter.configure(id("my.timer", Meter.Type.DISTRIBUTION_SUMMARY),
+				DistributionStatisticConfig.NONE);
+		assertThat(config.isPercentileHistogram()).isTrue();
+	}
+
+	@Test
+	void matchingCounterIsNotAffected() {
+		DistributionStatisticConfig config = DistributionStatisticConfig.NONE;
+		assertThat(this.filter.configure(id("http.requests", Meter.Type.COUNTER), config)).isSameAs(config);
+	}
+
+	@Test
+	void nonMatchingTimerIsNotAffected() {
+		DistributionStatisticConfig config = DistributionStatisticConfig.builder().percentiles(0.5).build();
+		assertThat(this.filter.configure(id("jvm.gc.pause", Meter.Type.TIMER), config)).isSameAs(config);
+	}
+
+	@Test
+	void timerMatchingPartOfSegmentIsNotAffected() {
+		DistributionStatisticConfig config = DistributionStatisticConfig.builder().percentiles(0.5).build();
+		assertThat(this.filter.configure(id("my.timers", Meter.Type.TIMER), config)).isSameAs(config);
+	}
+
+	@Test
+	void matchingTimerIsSentAsWavefrontDistribution() throws Exception {
+		WavefrontSender sender = mock(WavefrontSender.class);
+		MockClock clock = new MockClock();
+		WavefrontMeterRegistry registry = WavefrontMeterRegistry.builder(WavefrontConfig.DEFAULT_PROXY)
+				.wavefrontSender(sender).clock(clock).build();
+		registry.config().meterFilter(this.filter);
+		Timer timer = registry.timer("my.timer");
+		timer.record(Duration.ofMillis(10));
+		timer.record(Duration.ofMillis(20));
+		clock.add(Duration.ofMinutes(1));
+		registry.close();
+		then(sender).should().sendDistribution(eq("my.timer"), anyList(), anySet(), anyLong(), anyString(), anyMap());
+		then(sender).should(never()).sendMetric(eq("my.timer.count"), anyDouble(), any(), any(), any());
+	}
+
+	private Meter.Id id(String name, Meter.Type type) {
+		return new Meter.Id(name, Tags.empty(), null, null, type);
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link MetricNames}.
+ *
+ * @author Stephane Nicoll
+ */
+class MetricNamesTests {
+
+	@Test
+	void prefixMatchesSameName() {
+		assertThat(MetricNames.startsWith("jvm.gc", "jvm.gc")).isTrue();
+	}
+
+	@Test
+	void prefixMatchesWholeSegments() {
+		assertThat(MetricNames.startsWith("jvm.gc.pause", "jvm.gc")).isTrue();
+		assertThat(MetricNames.startsWith("jvm.gcx", "jvm.gc")).isFalse();
+	}
+
+	@Test
+	void prefixEndingWithDotMatchesNextSegment() {
+		assertThat(MetricNames.startsWith("jvm.gc.pause", "jvm.")).isTrue();
+		assertThat(MetricNames.startsWith("jvmx.gc", "jvm.")).isFalse();
+	}
+
+	@Test
+	void prefixDoesNotMatchShorterName() {
+		assertThat(MetricNames.startsWith("jvm", "jvm.gc")).isFalse();
+	}
+
+	@Test
+	void emptyPrefixMatchesAnyName() {
+		assertThat(MetricNames.startsWith("jvm.gc", "")).isTrue();
+	}
+
+}
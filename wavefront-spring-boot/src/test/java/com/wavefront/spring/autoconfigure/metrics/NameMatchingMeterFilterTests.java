@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.config.MeterFilterReply;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for {@link NameMatchingMeterFilter}.
+ *
+ * @author Stephane Nicoll
+ */
+class NameMatchingMeterFilterTests {
+
+	@Test
+	void noPatternIsNeutral() {
+		NameMatchingMeterFilter filter = filter(Collections.emptyList(), Collections.emptyList());
+		assertThat(filter.accept(id("jvm.memory.used"))).isEqualTo(MeterFilterReply.NEUTRAL);
+	}
+
+	@Test
+	void includePrefixAcceptsMatchingNames() {
+		NameMatchingMeterFilter filter = filter(Arrays.asList("jvm.memory", "http"), Collections.emptyList());
+		assertThat(filter.accept(id("jvm.memory.used"))).isEqualTo(MeterFilterReply.NEUTRAL);
+		assertThat(filter.accept(id("jvm.memory"))).isEqualTo(MeterFilterReply.NEUTRAL);
+		assertThat(filter.accept(id("http.server.requests"))).isEqualTo(MeterFilterReply.NEUTRAL);
+		assertThat(filter.accept(id("jvm.gc.pause"))).isEqualTo(MeterFilterReply.DENY);
+		assertThat(filter.accept(id("jvm"))).isEqualTo(MeterFilterReply.DENY);
+	}
+
+	@Test
+	void includePrefixMatchesWholeSegments() {
+		NameMatchingMeterFilter filter = filter(Arrays.asList("my", "jvm."), Collections.emptyList());
+		assertThat(filter.accept(id("my"))).isEqualTo(MeterFilterReply.NEUTRAL);
+		assertThat(filter.accept(id("my.counter"))).isEqualTo(MeterFilterReply.NEUTRAL);
+		assertThat(filter.accept(id("mysql.queries"))).isEqualTo(MeterFilterReply.DENY);
+		assertThat(filter.accept(id("jvm.threads.live"))).isEqualTo(MeterFilterReply.NEUTRAL);
+		assertThat(filter.accept(id("jvmx.threads"))).isEqualTo(MeterFilterReply.DENY);
+	}
+
+	@Test
+	void prefixMatchingWholeSegmentsDoesNotHideLongerPattern() {
+		NameMatchingMeterFilter filter = filter(Arrays.asList("my", "mysql.queries"), Collections.emptyList());
+		assertThat(filter.accept(id("mysql.queries"))).isEqualTo(MeterFilterReply.NEUTRAL);
+		assertThat(filter.accept(id("mysql.connections"))).isEqualTo(MeterFilterReply.DENY);
+	}
+
+	@Test
+	void excludePrefixDeniesMatchingNames() {
+		NameMatchingMeterFilter filter = filter(Collections.emptyList(), Collections.singletonList("jvm.gc"));
+		assertThat(filter.accept(id("jvm.gc.pause"))).isEqualTo(MeterFilterReply.DENY);
+		assertThat(filter.accept(id("jvm.memory.used"))).isEqualTo(MeterFilterReply.NEUTRAL);
+	}
+
+	@Test
+	void excludeTakesPrecedenceOverInclude() {
+		NameMatchingMeterFilter filter = filter(Collections.singletonList("jvm"), Collections.singletonList("jvm.gc"));
+		assertThat(filter.accept(id("jvm.gc.pause"))).isEqualTo(MeterFilterReply.DENY);
+		assertThat(filter.accept(id("jvm.threads.live"))).isEqualTo(MeterFilterReply.NEUTRAL);
+	}
+
+	@Test
+	void globWithAnySequenceMatchesWholeName() {
+		NameMatchingMeterFilter filter = filter(Collections.emptyList(), Collections.singletonList("http.*.requests"));
+		assertThat(filter.accept(id("http.server.requests"))).isEqualTo(MeterFilterReply.DENY);
+		assertThat(filter.accept(id("http.client.sub.requests"))).isEqualTo(MeterFilterReply.DENY);
+		assertThat(filter.accept(id("http..requests"))).isEqualTo(MeterFilterReply.DENY);
+		assertThat(filter.accept(id("http.server.requests.active"))).isEqualTo(MeterFilterReply.NEUTRAL);
+		assertThat(filter.accept(id("http.requests"))).isEqualTo(MeterFilterReply.NEUTRAL);
+	}
+
+	@Test
+	void globWithTrailingAnySequenceMatchesAnySuffix() {
+		NameMatchingMeterFilter filter = filter(Collections.emptyList(), Collections.singletonList("*.active"));
+		assertThat(filter.accept(id("http.server.requests.active"))).isEqualTo(MeterFilterReply.DENY);
+		assertThat(filter.accept(id("tasks.active.count"))).isEqualTo(MeterFilterReply.NEUTRAL);
+	}
+
+	@Test
+	void globWithAnyCharMatchesSingleCharacter() {
+		NameMatchingMeterFilter filter = filter(Collections.emptyList(), Collections.singletonList("cache.l?.hits"));
+		assertThat(filter.accept(id("cache.l1.hits"))).isEqualTo(MeterFilterReply.DENY);
+		assertThat(filter.accept(id("cache.l.hits"))).isEqualTo(MeterFilterReply.NEUTRAL);
+		assertThat(filter.accept(id("cache.l10.hits"))).isEqualTo(MeterFilterReply.NEUTRAL);
+	}
+
+	@Test
+	void prefixAndGlobCanShareTrie() {
+		NameMatchingMeterFilter filter = filter(Arrays.asList("jvm.buffer", "jvm.*.max"), Collections.emptyList());
+		assertThat(filter.accept(id("jvm.buffer.count"))).isEqualTo(MeterFilterReply.NEUTRAL);
+		assertThat(filter.accept(id("jvm.memory.max"))).isEqualTo(MeterFilterReply.NEUTRAL);
+		assertThat(filter.accept(id("jvm.memory.used"))).isEqualTo(MeterFilterReply.DENY);
+	}
+
+	@Test
+	void emptyPatternIsRejected() {
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> filter(Collections.singletonList(""), Collections.emptyList()))
+				.withMessage("Pattern must not be empty");
+	}
+
+	@Test
+	void deniedMetersAreNotRegistered() {
+		MeterRegistry registry = new SimpleMeterRegistry();
+		registry.config().meterFilter(filter(Collections.emptyList(), Collections.singletonList("test.denied")));
+		registry.counter("test.denied.counter").increment();
+		registry.counter("test.accepted.counter").increment();
+		assertThat(registry.find("test.denied.counter").counter()).isNull();
+		assertThat(registry.find("test.accepted.counter").counter()).isNotNull();
+	}
+
+	private NameMatchingMeterFilter filter(List<String> includes, List<String> excludes) {
+		return new NameMatchingMeterFilter(includes, excludes);
+	}
+
+	private Meter.Id id(String name) {
+		return new Meter.Id(name, Tags.empty(), null, null, Meter.Type.COUNTER);
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link BufferingWavefrontSenderMetrics}.
+ *
+ * @author Stephane Nicoll
+ */
+class BufferingWavefrontSenderMetricsTests {
+
+	private final RecordingLineTransport transport = new RecordingLineTransport();
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	private BufferingWavefrontSender sender;
+
+	@AfterEach
+	void closeSender() throws IOException {
+		if (this.sender != null) {
+			this.sender.close();
+		}
+	}
+
+	@Test
+	void queueSizeIsExposedPerType() throws IOException {
+		bind(idleSender());
+		this.sender.sendFormattedMetric("test.metric 1");
+		assertThat(this.registry.get("wavefront.sender.queue.size").tag("type", "metric").gauge().value()).isEqualTo(1);
+		assertThat(this.registry.get("wavefront.sender.queue.size").tag("type", "span").gauge().value()).isEqualTo(0);
+		assertThat(this.registry.get("wavefront.sender.queue.size").tag("app", "test").gauges()).hasSize(4);
+	}
+
+	@Test
+	void pointCountersAreExposedPerType() throws IOException {
+		bind(idleSender().queueCapacity(4));
+		for (int i = 0; i < 6; i++) {
+			this.sender.sendFormattedMetric("test.metric " + i);
+		}
+		this.sender.flush();
+		assertThat(
+				this.registry.get("wavefront.sender.points.enqueued").tag("type", "metric").functionCounter().count())
+						.isEqualTo(4);
+		assertThat(this.registry.get("wavefront.sender.points.dropped").tag("type", "metric").functionCounter().count())
+				.isEqualTo(2);
+		assertThat(this.registry.get("wavefront.sender.points.sent").tag("type", "metric").functionCounter().count())
+				.isEqualTo(4);
+		assertThat(this.registry.get("wavefront.sender.bytes.sent").functionCounter().count()).isEqualTo(56);
+	}
+
+	@Test
+	void batchSizeIsRecordedPerType() throws IOException {
+		bind(idleSender().batchSize(2));
+		for (int i = 0; i < 3; i++) {
+			this.sender.sendFormattedMetric("test.metric " + i);
+		}
+		this.sender.flush();
+		assertThat(this.registry.get("wavefront.sender.batch.size").tag("type", "metric").summary().count())
+				.isEqualTo(2);
+		assertThat(this.registry.get("wavefront.sender.batch.size").tag("type", "metric").summary().totalAmount())
+				.isEqualTo(3);
+	}
+
+	@Test
+	void flushDurationIsRecorded() throws IOException {
+		bind(idleSender());
+		this.sender.sendFormattedMetric("test.metric 1");
+		this.sender.sendFormattedMetric("test.metric 2");
+		this.sender.flush();
+		assertThat(this.registry.get("wavefront.sender.flush").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	void flushWithoutPointsIsNotRecorded() throws IOException {
+		bind(idleSender());
+		this.sender.flush();
+		assertThat(this.registry.get("wavefront.sender.flush").timer().count()).isEqualTo(0);
+	}
+
+	@Test
+	void seriesCacheOverflowsAreExposed() throws IOException {
+		bind(idleSender().seriesCacheSize(1));
+		this.sender.sendMetric("test.metric1", 1, 1000L, "host", null);
+		this.sender.sendMetric("test.metric2", 1, 1000L, "host", null);
+		this.sender.sendMetric("test.metric3", 1, 1000L, "host", null);
+		assertThat(this.registry.get("wavefront.sender.series.cache.overflow").functionCounter().count())
+				.isEqualTo(2);
+	}
+
+	@Test
+	void failuresAreExposed() throws IOException {
+		bind(idleSender());
+		this.transport.failWith(new IOException("test"));
+		this.sender.sendSpan("test", 0, 1, "test", UUID.randomUUID(), UUID.randomUUID(), Collections.emptyList(),
+				Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+		try {
+			this.sender.flush();
+		}
+		catch (IOException ex) {
+			// Expected
+		}
+		assertThat(this.registry.get("wavefront.sender.failures").functionCounter().count()).isEqualTo(1);
+		assertThat(this.registry.get("wavefront.sender.points.dropped").tag("type", "span").functionCounter().count())
+				.isEqualTo(1);
+	}
+
+	private BufferingWavefrontSender.Builder idleSender() {
+		return new BufferingWavefrontSender.Builder(this.transport).batchSize(1000).flushInterval(Duration.ofHours(1));
+	}
+
+	private void bind(BufferingWavefrontSender.Builder builder) {
+		this.sender = builder.build();
+		new BufferingWavefrontSenderMetrics(this.sender, Tags.of("app", "test")).bindTo(this.registry);
+	}
+
+}
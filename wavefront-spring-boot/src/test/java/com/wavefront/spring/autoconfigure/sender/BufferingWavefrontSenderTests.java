@@ -0,0 +1,403 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+/**
+ * Tests for {@link BufferingWavefrontSender}.
+ *
+ * @author Stephane Nicoll
+ */
+class BufferingWavefrontSenderTests {
+
+	private final RecordingLineTransport transport = new RecordingLineTransport();
+
+	private BufferingWavefrontSender sender;
+
+	@AfterEach
+	void closeSender() throws IOException {
+		if (this.sender != null) {
+			this.sender.close();
+		}
+	}
+
+	@Test
+	void metricIsEncodedUsingDefaultSource() throws IOException {
+		this.sender = idleSender().source("test-host").build();
+		this.sender.sendMetric("test.metric", 42, 1000L, null, Collections.singletonMap("env", "qa"));
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.METRIC))
+				.containsExactly("\"test.metric\" 42.0 1000 source=\"test-host\" \"env\"=\"qa\"\n");
+	}
+
+	@Test
+	void unchangedMetricIsSkippedWhenConfigured() throws IOException {
+		this.sender = idleSender().skipUnchanged(Duration.ofMinutes(5)).build();
+		this.sender.registerGauge("test.metric");
+		this.sender.sendMetric("test.metric", 42, 1000L, "test", null);
+		this.sender.sendMetric("test.metric", 42, 2000L, "test", null);
+		this.sender.sendMetric("test.metric", 43, 3000L, "test", null);
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactly(
+				"\"test.metric\" 42.0 1000 source=\"test\"\n", "\"test.metric\" 43.0 3000 source=\"test\"\n");
+		assertThat(this.sender.getSuppressedCount()).isEqualTo(1);
+	}
+
+	@Test
+	void unchangedCounterStepIsPublishedWhenSkippingUnchangedMetrics() throws IOException {
+		this.sender = idleSender().skipUnchanged(Duration.ofMinutes(5)).build();
+		this.sender.sendMetric("test.counter", 42, 1000L, "test", null);
+		this.sender.sendMetric("test.counter", 42, 2000L, "test", null);
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactly(
+				"\"test.counter\" 42.0 1000 source=\"test\"\n", "\"test.counter\" 42.0 2000 source=\"test\"\n");
+		assertThat(this.sender.getSuppressedCount()).isEqualTo(0);
+	}
+
+	@Test
+	void unchangedMetricIsPublishedByDefault() throws IOException {
+		this.sender = idleSender().build();
+		this.sender.sendMetric("test.metric", 42, 1000L, "test", null);
+		this.sender.sendMetric("test.metric", 42, 2000L, "test", null);
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).hasSize(2);
+		assertThat(this.sender.getSuppressedCount()).isEqualTo(0);
+	}
+
+	@Test
+	void metricsAreEncodedInParallelInOrder() throws IOException {
+		this.sender = idleSender().batchSize(10000).queueCapacity(10000).encodingParallelism(4).build();
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			this.sender.sendMetric("test.metric", i, 1000L, "test", Collections.singletonMap("id", "" + (i % 10)));
+			expected.add("\"test.metric\" " + (double) i + " 1000 source=\"test\" \"id\"=\"" + (i % 10) + "\"\n");
+		}
+		assertThat(this.sender.getQueueSize(DataFormat.METRIC)).isEqualTo(5000);
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactlyElementsOf(expected);
+		assertThat(this.sender.getSentCount(DataFormat.METRIC)).isEqualTo(5000);
+	}
+
+	@Test
+	void invalidMetricIsDroppedWhenEncodedInParallel() throws IOException {
+		this.sender = idleSender().encodingParallelism(2).build();
+		this.sender.sendMetric("", 42, null, null, null);
+		this.sender.sendMetric("test.metric", 42, 1000L, "test", null);
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.METRIC))
+				.containsExactly("\"test.metric\" 42.0 1000 source=\"test\"\n");
+		assertThat(this.sender.getDroppedCount(DataFormat.METRIC)).isEqualTo(1);
+	}
+
+	@Test
+	void unchangedMetricIsSkippedWhenEncodedInParallel() throws IOException {
+		this.sender = idleSender().skipUnchanged(Duration.ofMinutes(5)).encodingParallelism(2).build();
+		this.sender.registerGauge("test.metric");
+		this.sender.sendMetric("test.metric", 42, 1000L, "test", null);
+		this.sender.flush();
+		this.sender.sendMetric("test.metric", 42, 2000L, "test", null);
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).hasSize(1);
+		assertThat(this.sender.getSuppressedCount()).isEqualTo(1);
+	}
+
+	@Test
+	void formattedMetricIsTerminatedByNewLine() throws IOException {
+		this.sender = idleSender().build();
+		this.sender.sendFormattedMetric("test.metric 42 source=test");
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactly("test.metric 42 source=test\n");
+	}
+
+	@Test
+	void invalidMetricIsRejected() {
+		this.sender = idleSender().build();
+		assertThatIOException().isThrownBy(() -> this.sender.sendMetric("", 42, null, null, null));
+	}
+
+	@Test
+	void distributionIsSentUsingHistogramFormat() throws IOException {
+		this.sender = idleSender().build();
+		this.sender.sendDistribution("test.histogram", Collections.singletonList(new Pair<>(1.5, 3)),
+				EnumSet.of(HistogramGranularity.MINUTE), 1000L, "test", null);
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.HISTOGRAM))
+				.containsExactly("!M 1000 #3 1.5 \"test.histogram\" source=\"test\"\n");
+	}
+
+	@Test
+	void spanWithLogsIsSentUsingSpanAndSpanLogsFormats() throws IOException {
+		this.sender = idleSender().build();
+		UUID traceId = UUID.randomUUID();
+		UUID spanId = UUID.randomUUID();
+		this.sender.sendSpan("test", 1000, 10, "test", traceId, spanId, null, null,
+				Collections.singletonList(new Pair<>("application", "app")),
+				Collections.singletonList(new SpanLog(1000, Collections.singletonMap("event", "error"))));
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.SPAN)).hasSize(1);
+		assertThat(this.transport.getLines(DataFormat.SPAN).get(0)).contains("traceId=" + traceId);
+		assertThat(this.transport.getLines(DataFormat.SPAN_LOG)).hasSize(1);
+		assertThat(this.transport.getLines(DataFormat.SPAN_LOG).get(0)).contains(spanId.toString());
+	}
+
+	@Test
+	void flushSplitsBuffersInBatches() throws IOException {
+		this.sender = idleSender().batchSize(2).build();
+		for (int i = 0; i < 5; i++) {
+			this.sender.sendFormattedMetric("test.metric " + i);
+		}
+		this.sender.flush();
+		assertThat(this.transport.getBatches()).extracting((batch) -> batch.getLines().size())
+				.allSatisfy((size) -> assertThat(size).isBetween(1, 2));
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactly("test.metric 0\n", "test.metric 1\n",
+				"test.metric 2\n", "test.metric 3\n", "test.metric 4\n");
+	}
+
+	@Test
+	void flushHappensWhenBatchSizeIsReached() throws Exception {
+		this.sender = idleSender().batchSize(3).build();
+		for (int i = 0; i < 3; i++) {
+			this.sender.sendFormattedMetric("test.metric " + i);
+		}
+		assertThat(this.transport.awaitBatch()).isTrue();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).hasSize(3);
+	}
+
+	@Test
+	void flushHappensWhenFlushIntervalHasElapsed() throws Exception {
+		this.sender = new BufferingWavefrontSender.Builder(this.transport).flushInterval(Duration.ofMillis(50)).build();
+		this.sender.sendFormattedMetric("test.metric 1");
+		assertThat(this.transport.awaitBatch()).isTrue();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactly("test.metric 1\n");
+	}
+
+	@Test
+	void overflowWithDropNewestKeepsOldestPoints() throws IOException {
+		this.sender = idleSender().queueCapacity(2).overflowPolicy(OverflowPolicy.DROP_NEWEST).build();
+		for (int i = 0; i < 4; i++) {
+			this.sender.sendFormattedMetric("test.metric " + i);
+		}
+		assertThat(this.sender.getQueueSize(DataFormat.METRIC)).isEqualTo(2);
+		assertThat(this.sender.getDroppedCount(DataFormat.METRIC)).isEqualTo(2);
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactly("test.metric 0\n", "test.metric 1\n");
+	}
+
+	@Test
+	void overflowWithDropOldestKeepsNewestPoints() throws IOException {
+		this.sender = idleSender().queueCapacity(2).overflowPolicy(OverflowPolicy.DROP_OLDEST).build();
+		for (int i = 0; i < 4; i++) {
+			this.sender.sendFormattedMetric("test.metric " + i);
+		}
+		assertThat(this.sender.getDroppedCount(DataFormat.METRIC)).isEqualTo(2);
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactly("test.metric 2\n", "test.metric 3\n");
+	}
+
+	@Test
+	void overflowWithBlockWaitsForFlush() throws IOException {
+		this.sender = new BufferingWavefrontSender.Builder(this.transport).queueCapacity(2).batchSize(100)
+				.flushInterval(Duration.ofHours(1)).overflowPolicy(OverflowPolicy.BLOCK).build();
+		for (int i = 0; i < 10; i++) {
+			this.sender.sendFormattedMetric("test.metric " + i);
+		}
+		this.sender.flush();
+		assertThat(this.sender.getDroppedCount(DataFormat.METRIC)).isEqualTo(0);
+		assertThat(this.transport.getLines(DataFormat.METRIC)).hasSize(10);
+	}
+
+	@Test
+	void transportFailureIsCounted() throws IOException {
+		this.sender = idleSender().build();
+		this.transport.failWith(new IOException("test"));
+		this.sender.sendFormattedMetric("test.metric 1");
+		assertThatIOException().isThrownBy(this.sender::flush).withMessage("test");
+		assertThat(this.sender.getFailureCount()).isEqualTo(1);
+		assertThat(this.sender.getDroppedCount(DataFormat.METRIC)).isEqualTo(1);
+	}
+
+	@Test
+	void closeFlushesBufferedPointsAndClosesTransport() throws IOException {
+		BufferingWavefrontSender sender = idleSender().build();
+		sender.sendFormattedMetric("test.metric 1");
+		sender.close();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactly("test.metric 1\n");
+		assertThat(this.transport.isClosed()).isTrue();
+	}
+
+	@Test
+	void transportFailureWithSpoolStoresBatchOnDisk(@TempDir Path directory) throws IOException {
+		DiskSpool spool = new DiskSpool(directory, 8192, 4096);
+		this.sender = idleSender().spool(spool).build();
+		this.transport.failWith(new IOException("test"));
+		this.sender.sendFormattedMetric("test.metric 1");
+		this.sender.flush();
+		assertThat(this.sender.getFailureCount()).isEqualTo(2);
+		assertThat(this.sender.getDroppedCount(DataFormat.METRIC)).isEqualTo(0);
+		assertThat(spool.size()).isEqualTo(1);
+	}
+
+	@Test
+	void spooledBatchesAreReplayedOnceTransportRecovers(@TempDir Path directory) throws IOException {
+		DiskSpool spool = new DiskSpool(directory, 8192, 4096);
+		this.sender = idleSender().spool(spool).build();
+		this.transport.failWith(new IOException("test"));
+		this.sender.sendFormattedMetric("test.metric 1");
+		this.sender.sendFormattedMetric("test.metric 2");
+		this.sender.flush();
+		this.sender.sendFormattedMetric("test.metric 3");
+		this.sender.flush();
+		assertThat(spool.size()).isEqualTo(3);
+		this.transport.failWith(null);
+		this.sender.flush();
+		assertThat(spool.isEmpty()).isTrue();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactly("test.metric 1\n", "test.metric 2\n",
+				"test.metric 3\n");
+	}
+
+	@Test
+	void spooledBatchesAreReplayedAtConfiguredRate(@TempDir Path directory) throws IOException {
+		DiskSpool spool = new DiskSpool(directory, 8192, 4096);
+		this.sender = idleSender().spool(spool).replayRate(2).build();
+		this.transport.failWith(new IOException("test"));
+		for (int i = 0; i < 5; i++) {
+			this.sender.sendFormattedMetric("test.metric " + i);
+		}
+		this.sender.flush();
+		this.transport.failWith(null);
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactly("test.metric 0\n", "test.metric 1\n");
+		assertThat(spool.size()).isEqualTo(3);
+	}
+
+	@Test
+	void rejectedBatchIsDroppedRatherThanSpooled(@TempDir Path directory) throws IOException {
+		DiskSpool spool = new DiskSpool(directory, 8192, 4096);
+		this.sender = idleSender().spool(spool).build();
+		this.transport.failWith(new RejectedLinesException("test"));
+		this.sender.sendFormattedMetric("test.metric 1");
+		assertThatIOException().isThrownBy(this.sender::flush).isInstanceOf(RejectedLinesException.class);
+		assertThat(this.sender.getDroppedCount(DataFormat.METRIC)).isEqualTo(1);
+		assertThat(spool.isEmpty()).isTrue();
+		this.transport.failWith(null);
+		this.sender.sendFormattedMetric("test.metric 2");
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactly("test.metric 2\n");
+		assertThat(spool.isEmpty()).isTrue();
+	}
+
+	@Test
+	void rejectedSpooledLinesAreDroppedAndCommitted(@TempDir Path directory) throws IOException {
+		DiskSpool spool = new DiskSpool(directory, 8192, 4096);
+		this.sender = idleSender().spool(spool).build();
+		this.transport.failWith(new IOException("test"));
+		this.sender.sendFormattedMetric("test.metric 1");
+		this.sender.flush();
+		assertThat(spool.size()).isEqualTo(1);
+		this.transport.failWith(new RejectedLinesException("test"));
+		this.sender.flush();
+		assertThat(spool.isEmpty()).isTrue();
+		assertThat(this.sender.getDroppedCount(DataFormat.METRIC)).isEqualTo(1);
+		this.transport.failWith(null);
+		this.sender.sendFormattedMetric("test.metric 2");
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactly("test.metric 2\n");
+	}
+
+	@Test
+	void replayedLinesAreCommittedPerFormat(@TempDir Path directory) throws IOException {
+		DiskSpool spool = new DiskSpool(directory, 8192, 4096);
+		this.sender = idleSender().spool(spool).build();
+		this.transport.failWith(new IOException("test"));
+		this.sender.sendFormattedMetric("test.metric 1");
+		this.sender.flush();
+		this.sender.sendSpan("test", 1000, 10, "test", UUID.randomUUID(), UUID.randomUUID(), null, null,
+				Collections.singletonList(new Pair<>("application", "app")), null);
+		this.sender.flush();
+		assertThat(spool.size()).isEqualTo(2);
+		this.transport.failWith(DataFormat.SPAN, new IOException("test"));
+		this.sender.flush();
+		assertThat(spool.size()).isEqualTo(1);
+		this.transport.failWith(null);
+		this.sender.flush();
+		assertThat(spool.isEmpty()).isTrue();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactly("test.metric 1\n");
+		assertThat(this.transport.getLines(DataFormat.SPAN)).hasSize(1);
+	}
+
+	@Test
+	void partialSendFailureSpoolsOnlyUnsentLines(@TempDir Path directory) throws IOException {
+		DiskSpool spool = new DiskSpool(directory, 8192, 4096);
+		LineTransport transport = (format, lines) -> {
+			this.transport.send(format, lines.subList(0, 1));
+			if (lines.size() > 1) {
+				throw new PartialSendException("test", new ArrayList<>(lines.subList(1, lines.size())));
+			}
+		};
+		this.sender = new BufferingWavefrontSender.Builder(transport).batchSize(1000)
+				.flushInterval(Duration.ofHours(1)).spool(spool).build();
+		this.sender.sendFormattedMetric("test.metric 1");
+		this.sender.sendFormattedMetric("test.metric 2");
+		this.sender.sendFormattedMetric("test.metric 3");
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactly("test.metric 1\n", "test.metric 2\n");
+		assertThat(this.sender.getSentCount(DataFormat.METRIC)).isEqualTo(2);
+		assertThat(spool.size()).isEqualTo(1);
+		this.sender.flush();
+		assertThat(this.transport.getLines(DataFormat.METRIC)).containsExactly("test.metric 1\n", "test.metric 2\n",
+				"test.metric 3\n");
+		assertThat(this.sender.getDroppedCount(DataFormat.METRIC)).isEqualTo(0);
+		assertThat(spool.isEmpty()).isTrue();
+	}
+
+	@Test
+	void partialSendFailureWithoutSpoolDropsOnlyUnsentLines() throws IOException {
+		LineTransport transport = (format, lines) -> {
+			throw new PartialSendException("test", new ArrayList<>(lines.subList(1, lines.size())));
+		};
+		this.sender = new BufferingWavefrontSender.Builder(transport).batchSize(1000)
+				.flushInterval(Duration.ofHours(1)).build();
+		this.sender.sendFormattedMetric("test.metric 1");
+		this.sender.sendFormattedMetric("test.metric 2");
+		assertThatIOException().isThrownBy(this.sender::flush).isInstanceOf(PartialSendException.class);
+		assertThat(this.sender.getSentCount(DataFormat.METRIC)).isEqualTo(1);
+		assertThat(this.sender.getDroppedCount(DataFormat.METRIC)).isEqualTo(1);
+	}
+
+	private BufferingWavefrontSender.Builder idleSender() {
+		return new BufferingWavefrontSender.Builder(this.transport).batchSize(1000).flushInterval(Duration.ofHours(1));
+	}
+
+}
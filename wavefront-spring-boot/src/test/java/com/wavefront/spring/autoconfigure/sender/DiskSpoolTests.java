@@ -0,0 +1,232 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Tests for {@link DiskSpool}.
+ *
+ * @author Stephane Nicoll
+ */
+class DiskSpoolTests {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void peekReturnsLinesInOrderWithTheirFormat() throws IOException {
+		try (DiskSpool spool = new DiskSpool(this.directory, 8192, 4096)) {
+			spool.append(DataFormat.METRIC, Arrays.asList("test.metric 1\n", "test.metric 2\n"));
+			spool.append(DataFormat.SPAN, Collections.singletonList("test.span\n"));
+			List<DataFormat> formats = new ArrayList<>();
+			List<String> lines = new ArrayList<>();
+			assertThat(spool.peek(10, formats, lines)).isEqualTo(3);
+			assertThat(formats).containsExactly(DataFormat.METRIC, DataFormat.METRIC, DataFormat.SPAN);
+			assertThat(lines).containsExactly("test.metric 1\n", "test.metric 2\n", "test.span\n");
+		}
+	}
+
+	@Test
+	void peekWithoutCommitDoesNotRemoveLines() throws IOException {
+		try (DiskSpool spool = new DiskSpool(this.directory, 8192, 4096)) {
+			spool.append(DataFormat.METRIC, Arrays.asList("test.metric 1\n", "test.metric 2\n"));
+			assertThat(peek(spool, 1)).containsExactly("test.metric 1\n");
+			assertThat(peek(spool, 1)).containsExactly("test.metric 1\n");
+			assertThat(spool.size()).isEqualTo(2);
+		}
+	}
+
+	@Test
+	void commitRemovesPeekedLines() throws IOException {
+		try (DiskSpool spool = new DiskSpool(this.directory, 8192, 4096)) {
+			spool.append(DataFormat.METRIC, Arrays.asList("test.metric 1\n", "test.metric 2\n"));
+			assertThat(peek(spool, 1)).containsExactly("test.metric 1\n");
+			spool.commit();
+			assertThat(spool.size()).isEqualTo(1);
+			assertThat(peek(spool, 10)).containsExactly("test.metric 2\n");
+			spool.commit();
+			assertThat(spool.isEmpty()).isTrue();
+		}
+	}
+
+	@Test
+	void commitWithCountRemovesFirstPeekedLines() throws IOException {
+		try (DiskSpool spool = new DiskSpool(this.directory, 8192, 4096)) {
+			spool.append(DataFormat.METRIC, Arrays.asList("test.metric 1\n", "test.metric 2\n", "test.metric 3\n"));
+			assertThat(peek(spool, 3)).hasSize(3);
+			spool.commit(1);
+			assertThat(spool.size()).isEqualTo(2);
+			assertThat(peek(spool, 10)).containsExactly("test.metric 2\n", "test.metric 3\n");
+		}
+	}
+
+	@Test
+	void appendRollsToNewSegmentAndDeletesReplayedSegments() throws IOException {
+		try (DiskSpool spool = new DiskSpool(this.directory, 8192, 256)) {
+			spool.append(DataFormat.METRIC, lines(20));
+			assertThat(segmentCount()).isGreaterThan(1);
+			List<String> replayed = new ArrayList<>();
+			while (!spool.isEmpty()) {
+				replayed.addAll(peek(spool, 7));
+				spool.commit();
+			}
+			assertThat(replayed).isEqualTo(lines(20));
+			assertThat(segmentCount()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	void appendWhenFullDiscardsOldestSegment() throws IOException {
+		try (DiskSpool spool = new DiskSpool(this.directory, 512, 256)) {
+			spool.append(DataFormat.METRIC, lines(30));
+			assertThat(spool.getDroppedCount()).isGreaterThan(0);
+			assertThat(spool.size() + spool.getDroppedCount()).isEqualTo(30);
+			assertThat(segmentCount()).isEqualTo(2);
+			assertThat(peek(spool, 1)).containsExactly(lines(30).get((int) spool.getDroppedCount()));
+		}
+	}
+
+	@Test
+	void appendDiscardsLineLargerThanSegment() throws IOException {
+		try (DiskSpool spool = new DiskSpool(this.directory, 512, 256)) {
+			char[] chars = new char[300];
+			Arrays.fill(chars, 'a');
+			spool.append(DataFormat.METRIC, Arrays.asList(new String(chars), "test.metric 1\n"));
+			assertThat(spool.getDroppedCount()).isEqualTo(1);
+			assertThat(peek(spool, 10)).containsExactly("test.metric 1\n");
+		}
+	}
+
+	@Test
+	void reopenRecoversUnreplayedLines() throws IOException {
+		try (DiskSpool spool = new DiskSpool(this.directory, 8192, 256)) {
+			spool.append(DataFormat.METRIC, lines(20));
+			peek(spool, 5);
+			spool.commit();
+		}
+		try (DiskSpool spool = new DiskSpool(this.directory, 8192, 256)) {
+			assertThat(spool.size()).isEqualTo(15);
+			List<String> replayed = new ArrayList<>();
+			while (!spool.isEmpty()) {
+				replayed.addAll(peek(spool, 100));
+				spool.commit();
+			}
+			assertThat(replayed).isEqualTo(lines(20).subList(5, 20));
+		}
+	}
+
+	@Test
+	void reopenWithDifferentSegmentSizeRecoversLines() throws IOException {
+		try (DiskSpool spool = new DiskSpool(this.directory, 8192, 256)) {
+			spool.append(DataFormat.METRIC, lines(20));
+		}
+		try (DiskSpool spool = new DiskSpool(this.directory, 8192, 1024)) {
+			assertThat(spool.size()).isEqualTo(20);
+			spool.append(DataFormat.METRIC, Collections.singletonList("test.metric 20
+"));
+			List<String> replayed = new ArrayList<>();
+			while (!spool.isEmpty()) {
+				replayed.addAll(peek(spool, 100));
+				spool.commit();
+			}
+			assertThat(replayed).isEqualTo(lines(21));
+		}
+	}
+
+	@Test
+	void reopenDeletesSegmentWithInvalidHeader() throws IOException {
+		try (DiskSpool spool = new DiskSpool(this.directory, 8192, 256)) {
+			spool.append(DataFormat.METRIC, lines(20));
+		}
+		Path segment = segments().get(0);
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 0 }), 0);
+		}
+		try (DiskSpool spool = new DiskSpool(this.directory, 8192, 256)) {
+			assertThat(segments()).doesNotContain(segment);
+			assertThat(spool.size()).isLessThan(20).isGreaterThan(0);
+		}
+	}
+
+	@Test
+	void reopenIgnoresTornRecord() throws IOException {
+		try (DiskSpool spool = new DiskSpool(this.directory, 8192, 4096)) {
+			spool.append(DataFormat.METRIC, Arrays.asList("test.metric 1\n", "test.metric 2\n"));
+		}
+		Path segment = segments().get(0);
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			// Corrupt the last byte of the second record
+			int offset = 8 + 9 + "test.metric 1\n".length() + 9 + "test.metric 2\n".length() - 1;
+			channel.write(ByteBuffer.wrap(new byte[] { 'x' }), offset);
+		}
+		try (DiskSpool spool = new DiskSpool(this.directory, 8192, 4096)) {
+			assertThat(spool.size()).isEqualTo(1);
+			assertThat(peek(spool, 10)).containsExactly("test.metric 1\n");
+		}
+	}
+
+	@Test
+	void openWhenDirectoryIsUsedByAnotherSpoolFails() throws IOException {
+		try (DiskSpool spool = new DiskSpool(this.directory, 8192, 4096)) {
+			assertThatExceptionOfType(SpoolLockedException.class)
+					.isThrownBy(() -> new DiskSpool(this.directory, 8192, 4096))
+					.withMessageContaining("is used by another application");
+		}
+		new DiskSpool(this.directory, 8192, 4096).close();
+	}
+
+	private List<String> peek(DiskSpool spool, int maxLines) throws IOException {
+		List<String> lines = new ArrayList<>();
+		spool.peek(maxLines, new ArrayList<>(), lines);
+		return lines;
+	}
+
+	private List<String> lines(int count) {
+		return IntStream.range(0, count).mapToObj((i) -> "test.metric " + i + "\n").collect(Collectors.toList());
+	}
+
+	private long segmentCount() throws IOException {
+		return segments().size();
+	}
+
+	private List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(this.directory)) {
+			return files.filter((file) -> file.getFileName().toString().endsWith(".spool")).sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+}
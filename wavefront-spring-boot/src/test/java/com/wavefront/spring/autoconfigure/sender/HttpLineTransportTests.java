@@ -0,0 +1,169 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for {@link HttpLineTransport}.
+ *
+ * @author Stephane Nicoll
+ */
+class HttpLineTransportTests {
+
+	private final AtomicReference<HttpExchange> exchange = new AtomicReference<>();
+
+	private final AtomicReference<byte[]> body = new AtomicReference<>();
+
+	private HttpServer server;
+
+	private int status = 202;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.server.createContext("/", (exchange) -> {
+			try (InputStream in = decode(exchange)) {
+				this.body.set(StreamUtils.copyToByteArray(in));
+			}
+			this.exchange.set(exchange);
+			exchange.sendResponseHeaders(this.status, -1);
+			exchange.close();
+		});
+		this.server.start();
+	}
+
+	@AfterEach
+	void stopServer() {
+		this.server.stop(0);
+	}
+
+	@Test
+	void sendPostsLinesToReportEndpoint() throws IOException {
+		HttpLineTransport transport = new HttpLineTransport(serverUri() + "/", "abc-def");
+		transport.send(DataFormat.METRIC, Arrays.asList("metric1 1 source=test\n", "metric2 2 source=test\n"));
+		HttpExchange exchange = this.exchange.get();
+		assertThat(exchange.getRequestMethod()).isEqualTo("POST");
+		assertThat(exchange.getRequestURI().toString()).isEqualTo("/report?f=wavefront");
+		assertThat(exchange.getRequestHeaders().getFirst("Authorization")).isEqualTo("Bearer abc-def");
+		assertThat(exchange.getRequestHeaders().getFirst("Content-Type")).isEqualTo("application/octet-stream");
+		assertThat(new String(this.body.get(), StandardCharsets.UTF_8))
+				.isEqualTo("metric1 1 source=test\nmetric2 2 source=test\n");
+	}
+
+	@Test
+	void sendWithoutApiTokenDoesNotSetAuthorizationHeader() throws IOException {
+		HttpLineTransport transport = new HttpLineTransport(serverUri(), null);
+		transport.send(DataFormat.SPAN, Arrays.asList("span\n"));
+		assertThat(this.exchange.get().getRequestURI().toString()).isEqualTo("/report?f=trace");
+		assertThat(this.exchange.get().getRequestHeaders().containsKey("Authorization")).isFalse();
+	}
+
+	@Test
+	void sendWithErrorStatusThrowsException() {
+		this.status = 500;
+		HttpLineTransport transport = new HttpLineTransport(serverUri(), null);
+		assertThatIOException().isThrownBy(() -> transport.send(DataFormat.METRIC, Arrays.asList("metric 1\n")))
+				.withMessageContaining("500").isNotInstanceOf(RejectedLinesException.class);
+	}
+
+	@Test
+	void sendWithClientErrorStatusThrowsRejectedLinesException() {
+		this.status = 400;
+		HttpLineTransport transport = new HttpLineTransport(serverUri(), null);
+		assertThatExceptionOfType(RejectedLinesException.class)
+				.isThrownBy(() -> transport.send(DataFormat.METRIC, Arrays.asList("metric 1\n")))
+				.withMessageContaining("400");
+	}
+
+	@Test
+	void sendWithThrottlingStatusThrowsRetryableException() {
+		this.status = 429;
+		HttpLineTransport transport = new HttpLineTransport(serverUri(), null);
+		assertThatIOException().isThrownBy(() -> transport.send(DataFormat.METRIC, Arrays.asList("metric 1\n")))
+				.isNotInstanceOf(RejectedLinesException.class);
+	}
+
+	@Test
+	void sendWithGzipCompressesBatchAboveThreshold() throws IOException {
+		HttpLineTransport transport = new HttpLineTransport(serverUri(), null, CompressionCodec.GZIP, 9, 10);
+		transport.send(DataFormat.METRIC, Arrays.asList("metric1 1 source=test\n", "metric2 2 source=test\n"));
+		assertThat(this.exchange.get().getRequestHeaders().getFirst("Content-Encoding")).isEqualTo("gzip");
+		assertThat(new String(this.body.get(), StandardCharsets.UTF_8))
+				.isEqualTo("metric1 1 source=test\nmetric2 2 source=test\n");
+	}
+
+	@Test
+	void sendWithDeflateCompressesBatchAboveThreshold() throws IOException {
+		HttpLineTransport transport = new HttpLineTransport(serverUri(), null, CompressionCodec.DEFLATE, 1, 10);
+		transport.send(DataFormat.METRIC, Arrays.asList("metric1 1 source=test\n", "metric2 2 source=test\n"));
+		assertThat(this.exchange.get().getRequestHeaders().getFirst("Content-Encoding")).isEqualTo("deflate");
+		assertThat(new String(this.body.get(), StandardCharsets.UTF_8))
+				.isEqualTo("metric1 1 source=test\nmetric2 2 source=test\n");
+	}
+
+	@Test
+	void sendWithCompressionDoesNotCompressBatchBelowThreshold() throws IOException {
+		HttpLineTransport transport = new HttpLineTransport(serverUri(), null, CompressionCodec.GZIP, -1, 1024);
+		transport.send(DataFormat.METRIC, Arrays.asList("metric1 1 source=test\n"));
+		assertThat(this.exchange.get().getRequestHeaders().containsKey("Content-Encoding")).isFalse();
+		assertThat(new String(this.body.get(), StandardCharsets.UTF_8)).isEqualTo("metric1 1 source=test\n");
+	}
+
+	@Test
+	void createWithInvalidCompressionLevelFails() {
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> new HttpLineTransport(serverUri(), null, CompressionCodec.GZIP, 10, 0))
+				.withMessage("Compression level must be between -1 and 9");
+	}
+
+	private static InputStream decode(HttpExchange exchange) throws IOException {
+		String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+		if ("gzip".equals(encoding)) {
+			return new GZIPInputStream(exchange.getRequestBody());
+		}
+		if ("deflate".equals(encoding)) {
+			return new InflaterInputStream(exchange.getRequestBody());
+		}
+		return exchange.getRequestBody();
+	}
+
+	private String serverUri() {
+		return "http://localhost:" + this.server.getAddress().getPort();
+	}
+
+}
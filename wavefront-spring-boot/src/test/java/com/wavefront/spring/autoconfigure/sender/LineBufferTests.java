@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for {@link LineBuffer}.
+ *
+ * @author Stephane Nicoll
+ */
+class LineBufferTests {
+
+	@Test
+	void capacityIsRoundedUpToPowerOfTwo() {
+		assertThat(new LineBuffer<>(1).capacity()).isEqualTo(1);
+		assertThat(new LineBuffer<>(5).capacity()).isEqualTo(8);
+		assertThat(new LineBuffer<>(8).capacity()).isEqualTo(8);
+		assertThat(new LineBuffer<>(50000).capacity()).isEqualTo(65536);
+	}
+
+	@Test
+	void capacityMustBePositive() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new LineBuffer<>(0));
+	}
+
+	@Test
+	void offerAndPollAreFifo() {
+		LineBuffer<String> buffer = new LineBuffer<>(4);
+		assertThat(buffer.offer("a")).isTrue();
+		assertThat(buffer.offer("b")).isTrue();
+		assertThat(buffer.size()).isEqualTo(2);
+		assertThat(buffer.poll()).isEqualTo("a");
+		assertThat(buffer.poll()).isEqualTo("b");
+		assertThat(buffer.poll()).isNull();
+		assertThat(buffer.size()).isEqualTo(0);
+	}
+
+	@Test
+	void offerWhenFullIsRejected() {
+		LineBuffer<String> buffer = new LineBuffer<>(2);
+		assertThat(buffer.offer("a")).isTrue();
+		assertThat(buffer.offer("b")).isTrue();
+		assertThat(buffer.offer("c")).isFalse();
+		assertThat(buffer.poll()).isEqualTo("a");
+		assertThat(buffer.offer("c")).isTrue();
+		assertThat(buffer.size()).isEqualTo(2);
+	}
+
+	@Test
+	void drainToHonorsMaximum() {
+		LineBuffer<String> buffer = new LineBuffer<>(8);
+		for (int i = 0; i < 5; i++) {
+			buffer.offer("line" + i);
+		}
+		List<String> target = new ArrayList<>();
+		assertThat(buffer.drainTo(target, 3)).isEqualTo(3);
+		assertThat(target).containsExactly("line0", "line1", "line2");
+		assertThat(buffer.size()).isEqualTo(2);
+	}
+
+	@Test
+	void concurrentProducersDoNotLoseLines() throws InterruptedException {
+		int producers = 4;
+		int linesPerProducer = 10000;
+		LineBuffer<String> buffer = new LineBuffer<>(producers * linesPerProducer);
+		ExecutorService executor = Executors.newFixedThreadPool(producers);
+		CountDownLatch latch = new CountDownLatch(producers);
+		for (int p = 0; p < producers; p++) {
+			int producer = p;
+			executor.execute(() -> {
+				for (int i = 0; i < linesPerProducer; i++) {
+					buffer.offer(producer + "-" + i);
+				}
+				latch.countDown();
+			});
+		}
+		assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+		executor.shutdown();
+		Set<String> lines = new HashSet<>();
+		String line;
+		while ((line = buffer.poll()) != null) {
+			lines.add(line);
+		}
+		assertThat(lines).hasSize(producers * linesPerProducer);
+	}
+
+}
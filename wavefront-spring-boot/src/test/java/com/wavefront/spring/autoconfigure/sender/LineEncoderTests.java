@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.Utils;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for {@link LineEncoder}.
+ *
+ * @author Stephane Nicoll
+ */
+class LineEncoderTests {
+
+	private final LineEncoder encoder = new LineEncoder("default-host");
+
+	@Test
+	void encodeMetricProducesSameLineAsSdk() {
+		Map<String, String> tags = tags("env", "qa", "application", " my \"app\" ", "weird key!", "value");
+		assertSameMetric("test.metric", 42.5, 1000L, "host", tags);
+		assertSameMetric("test.metric", -1, null, null, tags);
+		assertSameMetric("test.metric", 1.0E-5, 1000L, " ", null);
+		assertSameMetric("∆test.counter", 3, 1000L, "host", null);
+		assertSameMetric("~internal.metric", Double.MAX_VALUE, 1000L, "host", null);
+		assertSameMetric("test metric/with spaces", Double.NaN, 1000L, "host with spaces", tags("k", "v\nv"));
+	}
+
+	@Test
+	void encodeMetricWithBlankNameIsRejected() {
+		assertThatIllegalArgumentException().isThrownBy(() -> this.encoder.encodeMetric(" ", 1, null, null, null));
+	}
+
+	@Test
+	void encodeMetricWithBlankTagValueIsRejected() {
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> this.encoder.encodeMetric("test.metric", 1, null, null, tags("env", "")));
+	}
+
+	@Test
+	void encodeDistributionProducesSameLinesAsSdk() {
+		List<Pair<Double, Integer>> centroids = Arrays.asList(new Pair<>(1.5, 3), new Pair<>(20.25, 1));
+		assertSameDistribution("test.histogram", centroids, EnumSet.of(HistogramGranularity.MINUTE), 1000L, "host",
+				tags("env", "qa"));
+		assertSameDistribution("test.histogram", centroids, EnumSet.allOf(HistogramGranularity.class), null, null,
+				null);
+	}
+
+	@Test
+	void encodeDistributionWithoutCentroidIsRejected() {
+		assertThatIllegalArgumentException().isThrownBy(() -> this.encoder.encodeDistribution("test.histogram",
+				Collections.emptyList(), EnumSet.of(HistogramGranularity.MINUTE), null, null, null));
+	}
+
+	@Test
+	void encodeSpanProducesSameLineAsSdk() {
+		UUID traceId = UUID.randomUUID();
+		UUID spanId = UUID.randomUUID();
+		List<Pair<String, String>> tags = Arrays.asList(new Pair<>("application", "app"),
+				new Pair<>("http.method", "GET"), new Pair<>("http.method", "POST"));
+		assertSameSpan("test span", 1000, 10, "host", traceId, spanId, null, null, tags, null);
+		assertSameSpan("test", 1000, 10, null, traceId, spanId, Collections.singletonList(UUID.randomUUID()),
+				Arrays.asList(UUID.randomUUID(), UUID.randomUUID()), tags,
+				Collections.singletonList(new SpanLog(1000, Collections.singletonMap("event", "error"))));
+		assertSameSpan("test", 1000, 10, null, new UUID(0, 0), new UUID(-1, -1), null, null, null, null);
+	}
+
+	@Test
+	void encodeReusesBufferOfCurrentThread() {
+		this.encoder.encodeMetric("test.metric", 1, 1000L, "host", tags("env", "qa"));
+		StringBuilder buffer = LineEncoder.buffer();
+		this.encoder.encodeMetric("test.metric", 2, 2000L, "host", tags("env", "qa"));
+		assertThat(LineEncoder.buffer()).isSameAs(buffer);
+	}
+
+	@Test
+	void encodeDoesNotPoolOversizedBuffer() {
+		StringBuilder buffer = LineEncoder.buffer();
+		char[] value = new char[64 * 1024];
+		Arrays.fill(value, 'a');
+		String line = this.encoder.encodeMetric("test.metric", 1, 1000L, "host", tags("sql", new String(value)));
+		assertThat(line).hasSizeGreaterThan(value.length);
+		assertThat(LineEncoder.buffer()).isNotSameAs(buffer);
+	}
+
+	private void assertSameMetric(String name, double value, Long timestamp, String source,
+			Map<String, String> tags) {
+		assertThat(this.encoder.encodeMetric(name, value, timestamp, source, tags))
+				.isEqualTo(Utils.metricToLineData(name, value, timestamp, source, tags, "default-host"));
+	}
+
+	private void assertSameDistribution(String name, List<Pair<Double, Integer>> centroids,
+			Set<HistogramGranularity> granularities, Long timestamp, String source, Map<String, String> tags) {
+		assertThat(this.encoder.encodeDistribution(name, centroids, granularities, timestamp, source, tags)).isEqualTo(
+				Utils.histogramToLineData(name, centroids, granularities, timestamp, source, tags, "default-host"));
+	}
+
+	private void assertSameSpan(String name, long startMillis, long durationMillis, String source, UUID traceId,
+			UUID spanId, List<UUID> parents, List<UUID> followsFrom, List<Pair<String, String>> tags,
+			List<SpanLog> spanLogs) {
+		assertThat(this.encoder.encodeSpan(name, startMillis, durationMillis, source, traceId, spanId, parents,
+				followsFrom, tags, spanLogs))
+						.isEqualTo(Utils.tracingSpanToLineData(name, startMillis, durationMillis, source, traceId,
+								spanId, parents, followsFrom, tags, spanLogs, "default-host"));
+	}
+
+	private Map<String, String> tags(String... keyValues) {
+		Map<String, String> tags = new LinkedHashMap<>();
+		for (int i = 0; i < keyValues.length; i += 2) {
+			tags.put(keyValues[i], keyValues[i + 1]);
+		}
+		return tags;
+	}
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wavefront.sdk.common.Utils;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Tests for {@link MetricLineCache}.
+ *
+ * @author Stephane Nicoll
+ */
+class MetricLineCacheTests {
+
+	private final MetricLineCache cache = new MetricLineCache("default-host", 10, null, Collections.emptyMap());
+
+	@Test
+	void encodeProducesSameLineAsSdk() {
+		Map<String, String> tags = tags("env", "qa", "application", "my \"app\"", "weird key!", "value");
+		assertSameLine("test.metric", 42.5, 1000L, "host", tags);
+		assertSameLine("test.metric", -1, null, null, tags);
+		assertSameLine("∆test.counter", 3, 1000L, "host", null);
+		assertSameLine("test metric/with spaces", Double.NaN, 1000L, "host with spaces", tags("k", "v\nv"));
+	}
+
+	@Test
+	void encodeReusesSeries() {
+		Map<String, String> tags = tags("env", "qa");
+		this.cache.encode("test.metric", 1, 1000L, "host", tags);
+		this.cache.encode("test.metric", 2, 2000L, "host", new HashMap<>(tags));
+		assertThat(this.cache.size()).isEqualTo(1);
+		assertThat(this.cache.encode("test.metric", 3, 3000L, "host", tags))
+				.isEqualTo("\"test.metric\" 3.0 3000 source=\"host\" \"env\"=\"qa\"\n");
+	}
+
+	@Test
+	void encodeDistinguishesSeriesBySourceAndTags() {
+		this.cache.encode("test.metric", 1, 1000L, "host1", tags("env", "qa"));
+		this.cache.encode("test.metric", 1, 1000L, "host2", tags("env", "qa"));
+		this.cache.encode("test.metric", 1, 1000L, "host1", tags("env", "prod"));
+		this.cache.encode("test.metric", 1, 1000L, "host1", null);
+		assertThat(this.cache.size()).isEqualTo(4);
+	}
+
+	@Test
+	void encodeIsNotAffectedByLaterChangesToTags() {
+		Map<String, String> tags = tags("env", "qa");
+		this.cache.encode("test.metric", 1, 1000L, "host", tags);
+		tags.put("env", "prod");
+		assertThat(this.cache.encode("test.metric", 1, 1000L, "host", tags)).contains("\"env\"=\"prod\"");
+		assertThat(this.cache.encode("test.metric", 1, 1000L, "host", tags("env", "qa"))).contains("\"env\"=\"qa\"");
+	}
+
+	@Test
+	void encodeWhenCacheIsFullStillEncodesPoint() {
+		for (int i = 0; i < 20; i++) {
+			assertSameLine("test.metric" + i, i, 1000L, "host", null);
+		}
+		assertThat(this.cache.size()).isEqualTo(10);
+	}
+
+	@Test
+	void encodeWhenCacheIsFullCountsOverflows() {
+		for (int i = 0; i < 15; i++) {
+			this.cache.encode("test.metric" + i, i, 1000L, "host", null);
+		}
+		this.cache.encode("test.metric0", 1, 2000L, "host", null);
+		assertThat(this.cache.getOverflowCount()).isEqualTo(5);
+	}
+
+	@Test
+	void encodeWhenCacheIsFullEvictsExpiredSeries() {
+		AtomicLong time = new AtomicLong(1000);
+		MetricLineCache cache = new MetricLineCache("default-host", 2, Duration.ofMinutes(1), null,
+				Collections.emptyMap(), time::get);
+		cache.encode("test.removed", 1, null, "host", null);
+		cache.encode("test.live", 1, null, "host", null);
+		time.addAndGet(30000);
+		cache.encode("test.live", 2, null, "host", null);
+		time.addAndGet(31000);
+		cache.encode("test.new", 1, null, "host", null);
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.getOverflowCount()).isEqualTo(0);
+		cache.encode("test.other", 1, null, "host", null);
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.getOverflowCount()).isEqualTo(1);
+	}
+
+	@Test
+	void encodeInvalidPointIsNotCached() {
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> this.cache.encode("test.metric", 1, 1000L, "host", tags("env", "")));
+		assertThat(this.cache.size()).isEqualTo(0);
+	}
+
+	@Test
+	void encodeWithRefreshIntervalSkipsUnchangedValueOfGauge() {
+		MetricLineCache cache = new MetricLineCache("default-host", 10, Duration.ofSeconds(60), Collections.emptyMap());
+		cache.registerGauge("test.metric");
+		assertThat(cache.encode("test.metric", 1, 1000L, "host", null)).isNotNull();
+		assertThat(cache.encode("test.metric", 1, 2000L, "host", null)).isNull();
+		assertThat(cache.encode("test.metric", 2, 3000L, "host", null)).isNotNull();
+		assertThat(cache.encode("test.metric", 2, 4000L, "host", null)).isNull();
+		assertThat(cache.encode("test.metric", 2, 4000L, "host", tags("env", "qa"))).isNotNull();
+	}
+
+	@Test
+	void encodeWithRefreshIntervalPublishesUnchangedValueOnceIntervalHasElapsed() {
+		MetricLineCache cache = new MetricLineCache("default-host", 10, Duration.ofSeconds(60), Collections.emptyMap());
+		cache.registerGauge("test.metric");
+		assertThat(cache.encode("test.metric", 1, 1000L, "host", null)).isNotNull();
+		assertThat(cache.encode("test.metric", 1, 60999L, "host", null)).isNull();
+		assertThat(cache.encode("test.metric", 1, 61000L, "host", null))
+				.isEqualTo("\"test.metric\" 1.0 61000 source=\"host\"\n");
+		assertThat(cache.encode("test.metric", 1, 62000L, "host", null)).isNull();
+	}
+
+	@Test
+	void encodeWithRefreshIntervalPublishesEqualNonZeroStepsOfCounter() {
+		MetricLineCache cache = new MetricLineCache("default-host", 10, Duration.ofSeconds(60), Collections.emptyMap());
+		assertThat(cache.encode("test.counter", 5, 1000L, "host", null)).isNotNull();
+		assertThat(cache.encode("test.counter", 5, 2000L, "host", null))
+				.isEqualTo("\"test.counter\" 5.0 2000 source=\"host\"\n");
+	}
+
+	@Test
+	void encodeWithRefreshIntervalSkipsCounterThatRemainsAtZero() {
+		MetricLineCache cache = new MetricLineCache("default-host", 10, Duration.ofSeconds(60), Collections.emptyMap());
+		assertThat(cache.encode("test.counter", 0, 1000L, "host", null)).isNotNull();
+		assertThat(cache.encode("test.counter", 0, 2000L, "host", null)).isNull();
+		assertThat(cache.encode("test.counter", 3, 3000L, "host", null)).isNotNull();
+		assertThat(cache.encode("test.counter", 0, 4000L, "host", null)).isNotNull();
+	}
+
+	@Test
+	void encodeWithRefreshIntervalPublishesEveryPointOfUncachedSeries() {
+		MetricLineCache cache = new MetricLineCache("default-host", 1, Duration.ofSeconds(60), Collections.emptyMap());
+		cache.encode("test.metric1", 1, 1000L, "host", null);
+		assertThat(cache.encode("test.metric2", 1, 1000L, "host", null)).isNotNull();
+		assertThat(cache.encode("test.metric2", 1, 2000L, "host", null)).isNotNull();
+	}
+
+	@Test
+	void encodeWithRefreshIntervalPublishesEveryPointOfDeltaCounter() {
+		MetricLineCache cache = new MetricLineCache("default-host", 10, Duration.ofSeconds(60), Collections.emptyMap());
+		assertThat(cache.encode("\u2206test.counter", 1, 1000L, "host", null)).isNotNull();
+		assertThat(cache.encode("\u2206test.counter", 1, 2000L, "host", null)).isNotNull();
+	}
+
+	@Test
+	void encodeWithPublishIntervalPublishesOncePerInterval() {
+		MetricLineCache cache = new MetricLineCache("default-host", 10, null,
+				Collections.singletonMap("jvm.", Duration.ofSeconds(60)));
+		cache.registerGauge("jvm.classes");
+		assertThat(cache.encode("jvm.classes", 1, 50000L, "host", null)).isNotNull();
+		assertThat(cache.encode("jvm.classes", 2, 59999L, "host", null)).isNull();
+		assertThat(cache.encode("jvm.classes", 3, 60000L, "host", null))
+				.isEqualTo("\"jvm.classes\" 3.0 60000 source=\"host\"\n");
+		assertThat(cache.encode("jvm.classes", 4, 70000L, "host", null)).isNull();
+		assertThat(cache.encode("http.requests", 1, 70000L, "host", null)).isNotNull();
+		assertThat(cache.encode("http.requests", 1, 80000L, "host", null)).isNotNull();
+	}
+
+	@Test
+	void encodeWithPublishIntervalUsesLongestMatchingPrefix() {
+		Map<String, Duration> intervals = new LinkedHashMap<>();
+		intervals.put("jvm.", Duration.ofMinutes(5));
+		intervals.put("jvm.memory", Duration.ofSeconds(10));
+		MetricLineCache cache = new MetricLineCache("default-host", 10, null, intervals);
+		cache.registerGauge("jvm.memory.used");
+		cache.registerGauge("jvm.classes");
+		assertThat(cache.encode("jvm.memory.used", 1, 0L, "host", null)).isNotNull();
+		assertThat(cache.encode("jvm.memory.used", 2, 10000L, "host", null)).isNotNull();
+		assertThat(cache.encode("jvm.classes", 1, 0L, "host", null)).isNotNull();
+		assertThat(cache.encode("jvm.classes", 2, 10000L, "host", null)).isNull();
+	}
+
+	@Test
+	void encodeWithPublishIntervalMatchesWholeSegments() {
+		MetricLineCache cache = new MetricLineCache("default-host", 10, null,
+				Collections.singletonMap("jvm.memory", Duration.ofSeconds(60)));
+		cache.registerGauge("jvm.memory.used");
+		cache.registerGauge("jvm.memoryx");
+		assertThat(cache.encode("jvm.memory.used", 1, 0L, "host", null)).isNotNull();
+		assertThat(cache.encode("jvm.memory.used", 2, 10000L, "host", null)).isNull();
+		assertThat(cache.encode("jvm.memoryx", 1, 0L, "host", null)).isNotNull();
+		assertThat(cache.encode("jvm.memoryx", 2, 10000L, "host", null)).isNotNull();
+	}
+
+	@Test
+	void encodeWithPublishIntervalPublishesEveryStepOfCounter() {
+		MetricLineCache cache = new MetricLineCache("default-host", 10, null,
+				Collections.singletonMap("jvm.", Duration.ofSeconds(60)));
+		assertThat(cache.encode("jvm.gc.pause.count", 2, 50000L, "host", null)).isNotNull();
+		assertThat(cache.encode("jvm.gc.pause.count", 3, 55000L, "host", null)).isNotNull();
+		assertThat(cache.encode("jvm.gc.pause.count", 1, 60000L, "host", null)).isNotNull();
+	}
+
+	@Test
+	void encodeWithPublishIntervalPublishesEveryPointOfDeltaCounter() {
+		MetricLineCache cache = new MetricLineCache("default-host", 10, null,
+				Collections.singletonMap("\u2206", Duration.ofSeconds(60)));
+		assertThat(cache.encode("\u2206test.counter", 1, 1000L, "host", null)).isNotNull();
+		assertThat(cache.encode("\u2206test.counter", 2, 2000L, "host", null)).isNotNull();
+	}
+
+	private void assertSameLine(String name, double value, Long timestamp, String source, Map<String, String> tags) {
+		String expected = Utils.metricToLineData(name, value, timestamp, source, tags, "default-host");
+		assertThat(this.cache.encode(name, value, timestamp, source, tags)).isEqualTo(expected);
+		assertThat(this.cache.encode(name, value, timestamp, source, tags)).isEqualTo(expected);
+	}
+
+	private Map<String, String> tags(String... keyValues) {
+		Map<String, String> tags = new LinkedHashMap<>();
+		for (int i = 0; i < keyValues.length; i += 2) {
+			tags.put(keyValues[i], keyValues[i + 1]);
+		}
+		return tags;
+	}
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+/**
+ * Tests for {@link NioProxyLineTransport}.
+ *
+ * @author Stephane Nicoll
+ */
+class NioProxyLineTransportTests {
+
+	private final StandInProxy proxy = createProxy();
+
+	private final StandInProxy tracingProxy = createProxy();
+
+	private NioProxyLineTransport transport;
+
+	@AfterEach
+	void close() throws IOException {
+		if (this.transport != null) {
+			this.transport.close();
+		}
+		this.proxy.close();
+		this.tracingProxy.close();
+	}
+
+	@Test
+	void sendWritesLinesToMetricsPort() throws Exception {
+		this.transport = createTransport(1024 * 1024);
+		this.transport.send(DataFormat.METRIC, Arrays.asList("metric1 1 source=test\n", "metric2 2 source=test\n"));
+		assertThat(this.proxy.awaitLines(2)).containsExactly("metric1 1 source=test", "metric2 2 source=test");
+	}
+
+	@Test
+	void sendWritesSpansAndSpanLogsToTracingPort() throws Exception {
+		this.transport = createTransport(1024 * 1024);
+		this.transport.send(DataFormat.SPAN, Collections.singletonList("span source=test\n"));
+		this.transport.send(DataFormat.SPAN_LOG, Collections.singletonList("{\"logs\":[]}\n"));
+		assertThat(this.tracingProxy.awaitLines(2)).containsExactly("span source=test", "{\"logs\":[]}");
+		assertThat(this.proxy.awaitLines(1)).isEmpty();
+	}
+
+	@Test
+	void sendEncodesLinesInUtf8() throws Exception {
+		this.transport = createTransport(1024 * 1024);
+		this.transport.send(DataFormat.METRIC, Collections.singletonList("métric € 😀\n"));
+		assertThat(this.proxy.awaitLines(1)).containsExactly("métric € 😀");
+	}
+
+	@Test
+	void sendSplitsLargeBatchesAcrossBuffers() throws Exception {
+		this.transport = createTransport(16 * 1024 * 1024);
+		List<String> lines = lines(20000);
+		this.transport.send(DataFormat.METRIC, lines);
+		assertThat(this.proxy.awaitLines(20000)).isEqualTo(
+				lines.stream().map((line) -> line.substring(0, line.length() - 1)).collect(Collectors.toList()));
+	}
+
+	@Test
+	void sendToSlowProxyWaitsForItToCatchUp() throws Exception {
+		this.proxy.pauseReads();
+		this.transport = createTransport(256 * 1024);
+		List<String> lines = lines(200000);
+		new Thread(() -> {
+			sleep(500);
+			this.proxy.resumeReads();
+		}).start();
+		this.transport.send(DataFormat.METRIC, lines);
+		assertThat(this.proxy.awaitLines(200000)).hasSize(200000);
+	}
+
+	@Test
+	void sendToStalledProxyReportsLinesThatWereNotWritten() throws Exception {
+		this.proxy.pauseReads();
+		this.transport = new NioProxyLineTransport(InetAddress.getLoopbackAddress().getHostAddress(),
+				this.proxy.getPort(), this.proxy.getPort(), this.proxy.getPort(), 256 * 1024,
+				TimeUnit.MILLISECONDS.toNanos(500));
+		List<String> lines = lines(1000000);
+		assertThatExceptionOfType(PartialSendException.class)
+				.isThrownBy(() -> this.transport.send(DataFormat.METRIC, lines)).satisfies((ex) -> {
+					List<String> unsent = ex.getUnsentLines();
+					assertThat(unsent).isNotEmpty().hasSizeLessThan(lines.size());
+					assertThat(unsent).isEqualTo(lines.subList(lines.size() - unsent.size(), lines.size()));
+				});
+	}
+
+	@Test
+	void sendToUnavailableProxyReportsWholeBatch() throws Exception {
+		int port = unusedPort();
+		this.transport = new NioProxyLineTransport(InetAddress.getLoopbackAddress().getHostAddress(), port, port, port,
+				1024 * 1024);
+		assertThatIOException()
+				.isThrownBy(() -> this.transport.send(DataFormat.METRIC, Collections.singletonList("metric 1\n")))
+				.isNotInstanceOf(PartialSendException.class).withMessageContaining("Connection to proxy")
+				.withMessageContaining(":" + port);
+	}
+
+	@Test
+	void sendAfterFailedBatchDoesNotReportPreviousFailure() throws Exception {
+		int port = unusedPort();
+		this.transport = new NioProxyLineTransport(InetAddress.getLoopbackAddress().getHostAddress(), port, port,
+				this.tracingProxy.getPort(), 1024 * 1024);
+		assertThatIOException()
+				.isThrownBy(() -> this.transport.send(DataFormat.METRIC, Collections.singletonList("metric 1\n")));
+		this.transport.send(DataFormat.SPAN, Collections.singletonList("span source=test\n"));
+		assertThat(this.tracingProxy.awaitLines(1)).containsExactly("span source=test");
+	}
+
+	@Test
+	void sendEmptyBatchConnectsToProxy() throws Exception {
+		this.transport = createTransport(1024 * 1024);
+		this.transport.send(DataFormat.METRIC, Collections.emptyList());
+	}
+
+	@Test
+	void sendEmptyBatchToUnavailableProxyFails() throws Exception {
+		int port = unusedPort();
+		this.transport = new NioProxyLineTransport(InetAddress.getLoopbackAddress().getHostAddress(), port, port, port,
+				1024 * 1024);
+		assertThatIOException().isThrownBy(() -> this.transport.send(DataFormat.METRIC, Collections.emptyList()))
+				.withMessageContaining("Connection to proxy").withMessageContaining(":" + port);
+	}
+
+	@Test
+	void sendAfterCloseFails() throws Exception {
+		this.transport = createTransport(16 * 1024 * 1024);
+		this.transport.send(DataFormat.METRIC, lines(5000));
+		this.transport.close();
+		assertThat(this.proxy.awaitLines(5000)).hasSize(5000);
+		assertThatIOException().isThrownBy(() -> this.transport.send(DataFormat.METRIC, lines(1)))
+				.withMessage("Transport has been closed");
+	}
+
+	private NioProxyLineTransport createTransport(long maxPendingBytes) throws IOException {
+		return new NioProxyLineTransport(InetAddress.getLoopbackAddress().getHostAddress(), this.proxy.getPort(),
+				this.proxy.getPort(), this.tracingProxy.getPort(), maxPendingBytes);
+	}
+
+	private List<String> lines(int count) {
+		return IntStream.range(0, count).mapToObj((i) -> "test.metric" + i + " " + i + " source=test\n")
+				.collect(Collectors.toList());
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static int unusedPort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private static StandInProxy createProxy() {
+		try {
+			return new StandInProxy();
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+}
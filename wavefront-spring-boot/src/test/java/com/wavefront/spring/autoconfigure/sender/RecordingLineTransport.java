@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link LineTransport} that records the batches it receives.
+ *
+ * @author Stephane Nicoll
+ */
+class RecordingLineTransport implements LineTransport {
+
+	private final String name;
+
+	private final List<Batch> batches = Collections.synchronizedList(new ArrayList<>());
+
+	private volatile CountDownLatch latch = new CountDownLatch(1);
+
+	private volatile IOException failure;
+
+	private volatile DataFormat failingFormat;
+
+	private volatile boolean closed;
+
+	RecordingLineTransport() {
+		this("recording");
+	}
+
+	RecordingLineTransport(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public void send(DataFormat format, List<String> lines) throws IOException {
+		if (this.failure != null && (this.failingFormat == null || this.failingFormat == format)) {
+			throw this.failure;
+		}
+		this.batches.add(new Batch(format, new ArrayList<>(lines)));
+		this.latch.countDown();
+	}
+
+	@Override
+	public void close() {
+		this.closed = true;
+	}
+
+	void failWith(IOException failure) {
+		failWith(null, failure);
+	}
+
+	void failWith(DataFormat format, IOException failure) {
+		this.failingFormat = format;
+		this.failure = failure;
+	}
+
+	boolean awaitBatch() throws InterruptedException {
+		return this.latch.await(5, TimeUnit.SECONDS);
+	}
+
+	List<Batch> getBatches() {
+		return this.batches;
+	}
+
+	List<String> getLines(DataFormat format) {
+		List<String> lines = new ArrayList<>();
+		synchronized (this.batches) {
+			this.batches.stream().filter((batch) -> batch.format == format)
+					.forEach((batch) -> lines.addAll(batch.lines));
+		}
+		return lines;
+	}
+
+	boolean isClosed() {
+		return this.closed;
+	}
+
+	@Override
+	public String toString() {
+		return this.name;
+	}
+
+	static class Batch {
+
+		private final DataFormat format;
+
+		private final List<String> lines;
+
+		Batch(DataFormat format, List<String> lines) {
+			this.format = format;
+			this.lines = lines;
+		}
+
+		DataFormat getFormat() {
+			return this.format;
+		}
+
+		List<String> getLines() {
+			return this.lines;
+		}
+
+	}
+
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+/**
+ * Tests for {@link ShardedLineTransport}.
+ *
+ * @author Stephane Nicoll
+ */
+class ShardedLineTransportTests {
+
+	private final RecordingLineTransport first = new RecordingLineTransport("proxy1");
+
+	private final RecordingLineTransport second = new RecordingLineTransport("proxy2");
+
+	private final RecordingLineTransport third = new RecordingLineTransport("proxy3");
+
+	@Test
+	void sameSeriesIsAlwaysSentToTheSameProxy() throws IOException {
+		ShardedLineTransport transport = createTransport(Duration.ofMinutes(1));
+		transport.send(DataFormat.METRIC, Collections.singletonList(metric("test.metric", "host1", 1)));
+		transport.send(DataFormat.METRIC, Collections.singletonList(metric("test.metric", "host1", 2)));
+		transport.send(DataFormat.METRIC, Collections.singletonList(metric("test.metric", "host1", 3)));
+		assertThat(linesPerProxy()).containsOnlyOnce(3).containsOnly(0, 3);
+	}
+
+	@Test
+	void seriesAreDistributedAcrossProxies() throws IOException {
+		ShardedLineTransport transport = createTransport(Duration.ofMinutes(1));
+		transport.send(DataFormat.METRIC, metrics(3000));
+		List<Integer> linesPerProxy = linesPerProxy();
+		assertThat(linesPerProxy.stream().mapToInt(Integer::intValue).sum()).isEqualTo(3000);
+		assertThat(linesPerProxy).allSatisfy((count) -> assertThat(count).isBetween(700, 1300));
+	}
+
+	@Test
+	void failedProxyIsSkippedAndItsSeriesRedistributed() throws IOException {
+		ShardedLineTransport transport = createTransport(Duration.ofMinutes(1));
+		this.second.failWith(new IOException("test"));
+		transport.send(DataFormat.METRIC, metrics(300));
+		assertThat(transport.getHealthyCount()).isEqualTo(2);
+		assertThat(this.second.getLines(DataFormat.METRIC)).isEmpty();
+		List<String> lines = new ArrayList<>(this.first.getLines(DataFormat.METRIC));
+		lines.addAll(this.third.getLines(DataFormat.METRIC));
+		assertThat(lines).containsExactlyInAnyOrderElementsOf(metrics(300));
+	}
+
+	@Test
+	void seriesOfHealthyProxiesAreNotMovedWhenAProxyFails() throws IOException {
+		ShardedLineTransport transport = createTransport(Duration.ofMinutes(1));
+		transport.send(DataFormat.METRIC, metrics(300));
+		List<String> firstLines = new ArrayList<>(this.first.getLines(DataFormat.METRIC));
+		this.second.failWith(new IOException("test"));
+		this.first.getBatches().clear();
+		transport.send(DataFormat.METRIC, metrics(300));
+		assertThat(this.first.getLines(DataFormat.METRIC)).containsAll(firstLines);
+	}
+
+	@Test
+	void unhealthyProxyIsProbedOnceHealthCheckIntervalHasElapsed() throws IOException {
+		ShardedLineTransport transport = createTransport(Duration.ZERO);
+		this.second.failWith(new IOException("test"));
+		transport.send(DataFormat.METRIC, metrics(300));
+		assertThat(transport.getHealthyCount()).isEqualTo(2);
+		this.second.failWith(null);
+		transport.send(DataFormat.METRIC, metrics(300));
+		assertThat(transport.getHealthyCount()).isEqualTo(3);
+		assertThat(this.second.getLines(DataFormat.METRIC)).isNotEmpty();
+	}
+
+	@Test
+	void unhealthyProxyIsNotProbedBeforeHealthCheckIntervalHasElapsed() throws IOException {
+		ShardedLineTransport transport = createTransport(Duration.ofMinutes(1));
+		this.second.failWith(new IOException("test"));
+		transport.send(DataFormat.METRIC, metrics(300));
+		this.second.failWith(null);
+		transport.send(DataFormat.METRIC, metrics(300));
+		assertThat(transport.getHealthyCount()).isEqualTo(2);
+		assertThat(this.second.getBatches()).isEmpty();
+	}
+
+	@Test
+	void unhealthyProxyIsProbedOnHealthCheckExecutor() throws IOException {
+		List<Runnable> probes = new ArrayList<>();
+		ShardedLineTransport transport = new ShardedLineTransport(Arrays.asList(this.first, this.second, this.third),
+				Duration.ZERO, probes::add);
+		this.second.failWith(new IOException("test"));
+		transport.send(DataFormat.METRIC, metrics(300));
+		this.second.failWith(null);
+		transport.send(DataFormat.METRIC, metrics(300));
+		assertThat(probes).hasSize(1);
+		assertThat(transport.getHealthyCount()).isEqualTo(2);
+		transport.send(DataFormat.METRIC, metrics(300));
+		assertThat(probes).hasSize(1);
+		probes.get(0).run();
+		assertThat(transport.getHealthyCount()).isEqualTo(3);
+		assertThat(this.second.getBatches()).hasSize(1);
+		assertThat(this.second.getBatches().get(0).getLines()).isEmpty();
+	}
+
+	@Test
+	void partiallySentBatchOnlyRedistributesUnsentLines() throws IOException {
+		LineTransport partial = new LineTransport() {
+
+			@Override
+			public void send(DataFormat format, List<String> lines) throws IOException {
+				int sent = lines.size() / 2;
+				ShardedLineTransportTests.this.first.send(format, lines.subList(0, sent));
+				throw new PartialSendException("test", new ArrayList<>(lines.subList(sent, lines.size())));
+			}
+
+			@Override
+			public String toString() {
+				return "proxy1";
+			}
+
+		};
+		ShardedLineTransport transport = new ShardedLineTransport(Arrays.asList(partial, this.second, this.third),
+				Duration.ofMinutes(1), Runnable::run);
+		transport.send(DataFormat.METRIC, metrics(300));
+		assertThat(transport.getHealthyCount()).isEqualTo(2);
+		List<String> lines = new ArrayList<>(this.first.getLines(DataFormat.METRIC));
+		assertThat(lines).isNotEmpty();
+		lines.addAll(this.second.getLines(DataFormat.METRIC));
+		lines.addAll(this.third.getLines(DataFormat.METRIC));
+		assertThat(lines).containsExactlyInAnyOrderElementsOf(metrics(300));
+	}
+
+	@Test
+	void rejectedBatchIsNotRedistributedAndDoesNotMarkProxyDown() {
+		ShardedLineTransport transport = createTransport(Duration.ofMinutes(1));
+		this.second.failWith(new RejectedLinesException("test"));
+		assertThatExceptionOfType(RejectedLinesException.class)
+				.isThrownBy(() -> transport.send(DataFormat.METRIC, metrics(300)))
+				.withMessageContaining("line(s) were rejected");
+		assertThat(transport.getHealthyCount()).isEqualTo(3);
+		int sent = this.first.getLines(DataFormat.METRIC).size() + this.third.getLines(DataFormat.METRIC).size();
+		assertThat(sent).isGreaterThan(0).isLessThan(300);
+	}
+
+	@Test
+	void sendWhenAllProxiesFailThrowsException() {
+		ShardedLineTransport transport = createTransport(Duration.ofMinutes(1));
+		this.first.failWith(new IOException("test"));
+		this.second.failWith(new IOException("test"));
+		this.third.failWith(new IOException("test"));
+		assertThatIOException().isThrownBy(() -> transport.send(DataFormat.METRIC, metrics(10)))
+				.withMessageContaining("No healthy proxy available");
+		assertThat(transport.getHealthyCount()).isEqualTo(0);
+	}
+
+	@Test
+	void sendWhenSomeLinesCannotBeSentReportsOnlyUnsentLines() {
+		LineTransport flaky = new LineTransport() {
+
+			private int calls;
+
+			@Override
+			public void send(DataFormat format, List<String> lines) throws IOException {
+				if (this.calls++ > 0) {
+					throw new IOException("test");
+				}
+				ShardedLineTransportTests.this.first.send(format, lines);
+			}
+
+			@Override
+			public String toString() {
+				return "proxy1";
+			}
+
+		};
+		ShardedLineTransport transport = new ShardedLineTransport(Arrays.asList(flaky, this.second, this.third),
+				Duration.ofMinutes(1), Runnable::run);
+		this.second.failWith(new IOException("test"));
+		this.third.failWith(new IOException("test"));
+		List<String> lines = metrics(300);
+		assertThatExceptionOfType(PartialSendException.class)
+				.isThrownBy(() -> transport.send(DataFormat.METRIC, lines)).satisfies((ex) -> {
+					List<String> sent = this.first.getLines(DataFormat.METRIC);
+					assertThat(sent).isNotEmpty();
+					assertThat(ex.getUnsentLines()).hasSize(lines.size() - sent.size())
+							.doesNotContainAnyElementsOf(sent);
+				});
+	}
+
+	@Test
+	void hashUsesNameAndSourceOfMetric() {
+		int hash = ShardedLineTransport.hash(DataFormat.METRIC, "\"test.metric\" 1.0 1000 source=\"host1\"\n");
+		assertThat(ShardedLineTransport.hash(DataFormat.METRIC,
+				"\"test.metric\" 2.0 2000 source=\"host1\" \"env\"=\"qa\"\n")).isEqualTo(hash);
+		assertThat(ShardedLineTransport.hash(DataFormat.METRIC, "\"test.metric\" 1.0 1000 source=\"host2\"\n"))
+				.isNotEqualTo(hash);
+		assertThat(ShardedLineTransport.hash(DataFormat.METRIC, "\"test.other\" 1.0 1000 source=\"host1\"\n"))
+				.isNotEqualTo(hash);
+	}
+
+	@Test
+	void hashUsesNameAndSourceOfHistogram() {
+		int hash = ShardedLineTransport.hash(DataFormat.HISTOGRAM,
+				"!M 1000 #3 1.5 \"test.histogram\" source=\"host1\"\n");
+		assertThat(ShardedLineTransport.hash(DataFormat.HISTOGRAM,
+				"!M 2000 #1 2.5 #2 3.5 \"test.histogram\" source=\"host1\"\n")).isEqualTo(hash);
+		assertThat(
+				ShardedLineTransport.hash(DataFormat.HISTOGRAM, "!M 1000 #3 1.5 \"test.histogram\" source=\"host2\"\n"))
+						.isNotEqualTo(hash);
+	}
+
+	@Test
+	void hashSupportsUnquotedMetric() {
+		assertThat(ShardedLineTransport.hash(DataFormat.METRIC, "test.metric 1 source=host1\n"))
+				.isEqualTo(ShardedLineTransport.hash(DataFormat.METRIC, "test.metric 2 source=host1\n"));
+	}
+
+	private ShardedLineTransport createTransport(Duration healthCheckInterval) {
+		return new ShardedLineTransport(Arrays.asList(this.first, this.second, this.third), healthCheckInterval,
+				Runnable::run);
+	}
+
+	private List<Integer> linesPerProxy() {
+		return Arrays.asList(this.first, this.second, this.third).stream()
+				.map((proxy) -> proxy.getLines(DataFormat.METRIC).size()).collect(Collectors.toList());
+	}
+
+	private List<String> metrics(int count) {
+		return IntStream.range(0, count).mapToObj((i) -> metric("test.metric" + i, "host" + (i % 7), i))
+				.collect(Collectors.toList());
+	}
+
+	private String metric(String name, String source, double value) {
+		return String.format("\"%s\" %s 1000 source=\"%s\"%n", name, value, source);
+	}
+
+}
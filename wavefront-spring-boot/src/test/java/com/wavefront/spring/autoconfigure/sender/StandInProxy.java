@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.sender;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A minimal stand-in for the plain TCP listener of a Wavefront proxy that records the
+ * lines it receives. Reads can be paused to simulate a proxy that does not keep up.
+ *
+ * @author Stephane Nicoll
+ */
+class StandInProxy implements Closeable {
+
+	private final ServerSocket serverSocket;
+
+	private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+
+	private final List<Socket> sockets = new ArrayList<>();
+
+	private volatile CountDownLatch paused = new CountDownLatch(0);
+
+	StandInProxy() throws IOException {
+		this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread(this::accept, "stand-in-proxy");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	private void accept() {
+		try {
+			while (true) {
+				Socket socket = this.serverSocket.accept();
+				synchronized (this.sockets) {
+					this.sockets.add(socket);
+				}
+				Thread reader = new Thread(() -> read(socket), "stand-in-proxy-reader");
+				reader.setDaemon(true);
+				reader.start();
+			}
+		}
+		catch (IOException ex) {
+			// Closed
+		}
+	}
+
+	private void read(Socket socket) {
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+			while (true) {
+				this.paused.await();
+				String line = reader.readLine();
+				if (line == null) {
+					return;
+				}
+				this.lines.add(line);
+			}
+		}
+		catch (IOException | InterruptedException ex) {
+			// Closed
+		}
+	}
+
+	int getPort() {
+		return this.serverSocket.getLocalPort();
+	}
+
+	void pauseReads() {
+		this.paused = new CountDownLatch(1);
+	}
+
+	void resumeReads() {
+		this.paused.countDown();
+	}
+
+	List<String> awaitLines(int count) throws InterruptedException {
+		List<String> received = new ArrayList<>();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (received.size() < count) {
+			String line = this.lines.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			if (line == null) {
+				break;
+			}
+			received.add(line);
+		}
+		return received;
+	}
+
+	@Override
+	public void close() throws IOException {
+		resumeReads();
+		this.serverSocket.close();
+		synchronized (this.sockets) {
+			for (Socket socket : this.sockets) {
+				socket.close();
+			}
+		}
+	}
+
+}
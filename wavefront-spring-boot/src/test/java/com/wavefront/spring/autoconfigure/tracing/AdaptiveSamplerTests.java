@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.reporting.Reporter;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link AdaptiveSampler}.
+ *
+ * @author Stephane Nicoll
+ */
+class AdaptiveSamplerTests {
+
+	private final AtomicLong time = new AtomicLong();
+
+	private final AdaptiveSampler sampler = new AdaptiveSampler(100, Duration.ofSeconds(5), this.time::get);
+
+	private final Reporter delegate = mock(Reporter.class);
+
+	private final Reporter reporter = this.sampler.reporter(this.delegate);
+
+	@Test
+	void samplerIsEarly() {
+		assertThat(this.sampler.isEarly()).isTrue();
+	}
+
+	@Test
+	void samplerKeepsEverySpanInitially() {
+		for (long traceId = 0; traceId < 1000; traceId++) {
+			assertThat(this.sampler.sample("test", traceId, 0)).isTrue();
+		}
+	}
+
+	@Test
+	void rateDecreasesWhenBudgetIsExceeded() throws IOException {
+		report(5000);
+		elapse(5);
+		this.sampler.sample("test", 1L, 0);
+		assertThat(this.sampler.getRate()).isEqualTo(0.1);
+	}
+
+	@Test
+	void rateIsNotAdjustedBeforeIntervalHasElapsed() throws IOException {
+		report(5000);
+		elapse(4);
+		this.sampler.sample("test", 1L, 0);
+		assertThat(this.sampler.getRate()).isEqualTo(1);
+	}
+
+	@Test
+	void rateIncreasesAtMostTwofoldWhenBudgetIsNotReached() throws IOException {
+		report(50000);
+		elapse(5);
+		this.sampler.sample("test", 1L, 0);
+		assertThat(this.sampler.getRate()).isEqualTo(0.01);
+		report(50);
+		elapse(5);
+		this.sampler.sample("test", 1L, 0);
+		assertThat(this.sampler.getRate()).isEqualTo(0.02);
+		elapse(5);
+		this.sampler.sample("test", 1L, 0);
+		assertThat(this.sampler.getRate()).isEqualTo(0.04);
+	}
+
+	@Test
+	void rateDoesNotExceedOne() throws IOException {
+		report(10);
+		elapse(5);
+		this.sampler.sample("test", 1L, 0);
+		assertThat(this.sampler.getRate()).isEqualTo(1);
+	}
+
+	@Test
+	void samplerKeepsProportionOfTraces() throws IOException {
+		report(5000);
+		elapse(5);
+		int sampled = 0;
+		for (long traceId = 0; traceId < 100000; traceId++) {
+			if (this.sampler.sample("test", traceId * 7919, 0)) {
+				sampled++;
+			}
+		}
+		assertThat(sampled).isBetween(9000, 11000);
+	}
+
+	@Test
+	void reporterDelegatesToReporter() throws IOException {
+		given(this.delegate.getFailureCount()).willReturn(42);
+		WavefrontSpan span = mock(WavefrontSpan.class);
+		this.reporter.report(span);
+		verify(this.delegate).report(span);
+		assertThat(this.reporter.getFailureCount()).isEqualTo(42);
+		this.reporter.close();
+		verify(this.delegate, times(1)).close();
+	}
+
+	@Test
+	void createWithInvalidBudgetFails() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new AdaptiveSampler(0, Duration.ofSeconds(5)))
+				.withMessage("Spans per second must be positive");
+	}
+
+	private void report(int spans) throws IOException {
+		WavefrontSpan span = mock(WavefrontSpan.class);
+		for (int i = 0; i < spans; i++) {
+			this.reporter.report(span);
+		}
+	}
+
+	private void elapse(long seconds) {
+		this.time.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+	}
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.time.Duration;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.reporting.Reporter;
+import com.wavefront.spring.autoconfigure.sender.OverflowPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Tests for {@link AsyncReporter}.
+ *
+ * @author Stephane Nicoll
+ */
+class AsyncReporterTests {
+
+	private final RecordingReporter delegate = new RecordingReporter();
+
+	private AsyncReporter reporter;
+
+	@AfterEach
+	void closeReporter() throws IOException {
+		if (this.reporter != null) {
+			this.reporter.close();
+		}
+	}
+
+	@Test
+	void spansAreReportedOnceBatchSizeIsReached() throws InterruptedException {
+		this.reporter = new AsyncReporter(this.delegate, 100, OverflowPolicy.DROP_NEWEST, 2, Duration.ofHours(1));
+		WavefrontSpan first = span();
+		WavefrontSpan second = span();
+		this.reporter.report(first);
+		this.reporter.report(second);
+		assertThat(this.delegate.awaitSpans(2)).isTrue();
+		assertThat(this.delegate.getSpans()).containsExactly(first, second);
+		assertThat(this.reporter.getReportedCount()).isEqualTo(2);
+	}
+
+	@Test
+	void spansAreReportedOnceFlushIntervalHasElapsed() throws InterruptedException {
+		this.reporter = new AsyncReporter(this.delegate, 100, OverflowPolicy.DROP_NEWEST, 100, Duration.ofMillis(50));
+		this.reporter.report(span());
+		assertThat(this.delegate.awaitSpans(1)).isTrue();
+	}
+
+	@Test
+	void spansAreNotReportedOnCallingThread() {
+		this.reporter = new AsyncReporter(this.delegate, 100, OverflowPolicy.DROP_NEWEST, 100, Duration.ofHours(1));
+		this.reporter.report(span());
+		assertThat(this.delegate.getSpans()).isEmpty();
+		assertThat(this.reporter.getQueueSize()).isEqualTo(1);
+	}
+
+	@Test
+	void overflowWithDropNewestKeepsOldestSpans() throws IOException {
+		this.reporter = new AsyncReporter(this.delegate, 2, OverflowPolicy.DROP_NEWEST, 100, Duration.ofHours(1));
+		WavefrontSpan first = span();
+		WavefrontSpan second = span();
+		this.reporter.report(first);
+		this.reporter.report(second);
+		this.reporter.report(span());
+		this.reporter.close();
+		assertThat(this.delegate.getSpans()).containsExactly(first, second);
+		assertThat(this.reporter.getDroppedCount()).isEqualTo(1);
+	}
+
+	@Test
+	void overflowWithDropOldestKeepsNewestSpans() throws IOException {
+		this.reporter = new AsyncReporter(this.delegate, 2, OverflowPolicy.DROP_OLDEST, 100, Duration.ofHours(1));
+		this.reporter.report(span());
+		WavefrontSpan second = span();
+		WavefrontSpan third = span();
+		this.reporter.report(second);
+		this.reporter.report(third);
+		this.reporter.close();
+		assertThat(this.delegate.getSpans()).containsExactly(second, third);
+		assertThat(this.reporter.getDroppedCount()).isEqualTo(1);
+	}
+
+	@Test
+	void flushableDelegateIsFlushedOnceFlushIntervalHasElapsed() throws IOException {
+		Reporter delegate = mock(Reporter.class, withSettings().extraInterfaces(Flushable.class));
+		this.reporter = new AsyncReporter(delegate, 100, OverflowPolicy.DROP_NEWEST, 100, Duration.ofMillis(50));
+		verify((Flushable) delegate, timeout(5000).atLeastOnce()).flush();
+	}
+
+	@Test
+	void failureOfDelegateIsCountedAsDropped() throws IOException {
+		Reporter failing = mock(Reporter.class);
+		willThrow(new IOException("test")).given(failing).report(any());
+		this.reporter = new AsyncReporter(failing, 100, OverflowPolicy.DROP_NEWEST, 100, Duration.ofHours(1));
+		this.reporter.report(span());
+		this.reporter.close();
+		assertThat(this.reporter.getDroppedCount()).isEqualTo(1);
+		assertThat(this.reporter.getReportedCount()).isZero();
+	}
+
+	@Test
+	void closeReportsQueuedSpansAndClosesDelegate() throws IOException {
+		this.reporter = new AsyncReporter(this.delegate, 100, OverflowPolicy.DROP_NEWEST, 100, Duration.ofHours(1));
+		this.reporter.report(span());
+		this.reporter.close();
+		this.reporter.close();
+		assertThat(this.delegate.getSpans()).hasSize(1);
+		assertThat(this.delegate.isClosed()).isTrue();
+	}
+
+	@Test
+	void failureCountIsReadFromDelegate() {
+		Reporter delegate = mock(Reporter.class);
+		given(delegate.getFailureCount()).willReturn(42);
+		this.reporter = new AsyncReporter(delegate, 100, OverflowPolicy.DROP_NEWEST, 100, Duration.ofHours(1));
+		assertThat(this.reporter.getFailureCount()).isEqualTo(42);
+	}
+
+	@Test
+	void metersAreBound() throws IOException {
+		this.reporter = new AsyncReporter(this.delegate, 1, OverflowPolicy.DROP_NEWEST, 100, Duration.ofHours(1));
+		MeterRegistry registry = new SimpleMeterRegistry();
+		this.reporter.bindTo(registry);
+		this.reporter.report(span());
+		this.reporter.report(span());
+		assertThat(registry.get("wavefront.tracing.reporter.queue.size").gauge().value()).isEqualTo(1);
+		assertThat(registry.get("wavefront.tracing.reporter.spans.dropped").functionCounter().count()).isEqualTo(1);
+		this.reporter.close();
+		assertThat(registry.get("wavefront.tracing.reporter.spans.reported").functionCounter().count())
+				.isEqualTo(1);
+	}
+
+	private WavefrontSpan span() {
+		return mock(WavefrontSpan.class);
+	}
+
+}
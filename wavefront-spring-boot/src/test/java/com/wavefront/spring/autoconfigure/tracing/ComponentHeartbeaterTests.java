@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link ComponentHeartbeater}.
+ *
+ * @author Stephane Nicoll
+ */
+class ComponentHeartbeaterTests {
+
+	private final WavefrontSender sender = mock(WavefrontSender.class);
+
+	private final ApplicationTags applicationTags = new ApplicationTags.Builder("test-app", "test-service")
+			.cluster("test-cluster").build();
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void heartbeatIsSentForEachComponent() throws IOException {
+		new ComponentHeartbeater(this.sender, this.applicationTags, false).heartbeat(1000L);
+		ArgumentCaptor<Map<String, String>> tags = ArgumentCaptor.forClass(Map.class);
+		verify(this.sender, times(3)).sendMetric(eq("~component.heartbeat"), eq(1.0), eq(1000L), isNull(),
+				tags.capture());
+		List<Map<String, String>> heartbeats = tags.getAllValues();
+		assertThat(heartbeats).extracting((heartbeat) -> heartbeat.get("component"))
+				.containsExactly("wavefront-generated", "opentracing", "java");
+		assertThat(heartbeats).allSatisfy((heartbeat) -> assertThat(heartbeat)
+				.containsEntry("application", "test-app").containsEntry("service", "test-service")
+				.containsEntry("cluster", "test-cluster"));
+	}
+
+	@Test
+	void heartbeatFailureDoesNotPreventOtherComponents() throws IOException {
+		willThrow(new IOException("test")).given(this.sender).sendMetric(anyString(), eq(1.0), eq(1000L), isNull(),
+				any());
+		new ComponentHeartbeater(this.sender, this.applicationTags, false).heartbeat(1000L);
+		verify(this.sender, times(3)).sendMetric(eq("~component.heartbeat"), eq(1.0), eq(1000L), isNull(), any());
+	}
+
+	@Test
+	void heartbeatIsSentOnStart() throws IOException {
+		try (ComponentHeartbeater heartbeater = new ComponentHeartbeater(this.sender, this.applicationTags)) {
+			verify(this.sender, timeout(5000).times(3)).sendMetric(eq("~component.heartbeat"), eq(1.0),
+					anyLong(), isNull(), any());
+		}
+	}
+
+}
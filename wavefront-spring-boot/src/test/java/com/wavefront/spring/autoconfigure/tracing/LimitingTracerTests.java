@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+import com.wavefront.sdk.entities.tracing.sampling.RateSampler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentracing.Scope;
+import io.opentracing.Span;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Tests for {@link LimitingTracer}.
+ *
+ * @author Stephane Nicoll
+ */
+class LimitingTracerTests {
+
+	private final RecordingReporter reporter = new RecordingReporter();
+
+	private final LimitingTracer tracer = new LimitingTracer(new WavefrontTracer.Builder(this.reporter,
+			new ApplicationTags.Builder("test-app", "test-service").build()).build(), 2, 5, 1, 3);
+
+	@Test
+	void tagsWithinLimitsAreKept() {
+		this.tracer.buildSpan("test").withTag("one", "1").start().setTag("two", 2).finish();
+		assertThat(userTags()).containsExactly(entry("one", "1"), entry("two", "2"));
+		assertThat(this.tracer.getDroppedTags()).isZero();
+		assertThat(this.tracer.getTruncatedTags()).isZero();
+	}
+
+	@Test
+	void tagsBeyondLimitAreDropped() {
+		this.tracer.buildSpan("test").withTag("one", "1").withTag("two", true).withTag("three", 3).start()
+				.setTag("four", "4").finish();
+		assertThat(userTags()).containsOnlyKeys("one", "two");
+		assertThat(this.tracer.getDroppedTags()).isEqualTo(2);
+	}
+
+	@Test
+	void tagValueIsTruncated() {
+		this.tracer.buildSpan("test").withTag("sql", "select * from test").start().finish();
+		assertThat(userTags()).containsExactly(entry("sql", "selec"));
+		assertThat(this.tracer.getTruncatedTags()).isEqualTo(1);
+	}
+
+	@Test
+	void logsBeyondLimitAreDropped() {
+		this.tracer.buildSpan("test").start().log("one").log("two").log(Collections.singletonMap("three", 3))
+				.finish();
+		assertThat(logs()).hasSize(1);
+		assertThat(this.tracer.getDroppedLogs()).isEqualTo(2);
+	}
+
+	@Test
+	void logValueIsTruncated() {
+		this.tracer.buildSpan("test").start().log(Collections.singletonMap("message", "too long")).finish();
+		assertThat(logs().get(0).getFields()).containsExactly(entry("message", "too"));
+		assertThat(this.tracer.getTruncatedLogs()).isEqualTo(1);
+	}
+
+	@Test
+	void activeSpanIsLimited() {
+		try (Scope scope = this.tracer.buildSpan("parent").startActive(true)) {
+			assertThat(this.tracer.activeSpan()).isSameAs(scope.span());
+			scope.span().setTag("one", "1").setTag("two", "2").setTag("three", "3");
+			this.tracer.buildSpan("child").start().finish();
+		}
+		assertThat(this.tracer.getDroppedTags()).isEqualTo(1);
+		List<WavefrontSpan> spans = this.reporter.getSpans();
+		assertThat(spans.get(0).getParents()).containsExactly(spans.get(1).context().getSpanId());
+	}
+
+	@Test
+	void finishListenerIsNotifiedOfSpansThatAreNotSampled() {
+		List<Span> finished = new ArrayList<>();
+		WavefrontTracer delegate = new WavefrontTracer.Builder(this.reporter,
+				new ApplicationTags.Builder("test-app", "test-service").build()).withSampler(new RateSampler(0.0))
+						.build();
+		LimitingTracer tracer = new LimitingTracer(delegate, 2, 5, 1, 3, finished::add);
+		tracer.buildSpan("test").start().finish();
+		assertThat(this.reporter.getSpans()).isEmpty();
+		assertThat(finished).hasSize(1);
+		assertThat(((WavefrontSpan) finished.get(0)).getOperationName()).isEqualTo("test");
+	}
+
+	@Test
+	void metersAreBound() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		this.tracer.bindTo(registry);
+		Span span = this.tracer.buildSpan("test").start();
+		span.log("one").log("two").finish();
+		assertThat(registry.get("wavefront.tracing.spans.logs.dropped").functionCounter().count()).isEqualTo(1);
+		assertThat(registry.get("wavefront.tracing.spans.tags.dropped").functionCounter().count()).isZero();
+	}
+
+	private Map<String, String> userTags() {
+		Map<String, String> tags = new LinkedHashMap<>();
+		for (Pair<String, String> tag : this.reporter.getSpans().get(0).getTagsAsList()) {
+			if (!tag._1.equals("application") && !tag._1.equals("service") && !tag._1.equals("cluster")
+					&& !tag._1.equals("shard")) {
+				tags.put(tag._1, tag._2);
+			}
+		}
+		return tags;
+	}
+
+	private List<SpanLog> logs() {
+		return this.reporter.getSpans().get(0).getSpanLogs();
+	}
+
+}
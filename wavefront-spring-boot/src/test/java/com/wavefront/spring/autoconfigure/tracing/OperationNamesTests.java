@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link OperationNames}.
+ *
+ * @author Stephane Nicoll
+ */
+class OperationNamesTests {
+
+	private final OperationNames operationNames = new OperationNames();
+
+	@Test
+	void nameIsMadeOfMethodAndTemplate() {
+		assertThat(this.operationNames.get("GET", "/users/{id}")).isEqualTo("GET /users/{id}");
+	}
+
+	@Test
+	void nameIsReused() {
+		String name = this.operationNames.get("GET", "/users/{id}");
+		assertThat(this.operationNames.get("GET", "/users/{id}")).isSameAs(name);
+	}
+
+	@Test
+	void nameDependsOnMethod() {
+		assertThat(this.operationNames.get("GET", "/users/{id}")).isEqualTo("GET /users/{id}");
+		assertThat(this.operationNames.get("POST", "/users/{id}")).isEqualTo("POST /users/{id}");
+	}
+
+	@Test
+	void nameWithoutTemplateIsMethod() {
+		assertThat(this.operationNames.get("GET", null)).isEqualTo("GET");
+	}
+
+	@Test
+	void nameIsMethodOnceMaxNamesIsReached() {
+		OperationNames operationNames = new OperationNames(2);
+		assertThat(operationNames.get("GET", "/users/{id}")).isEqualTo("GET /users/{id}");
+		assertThat(operationNames.get("POST", "/users")).isEqualTo("POST /users");
+		assertThat(operationNames.get("GET", "/orders/{id}")).isEqualTo("GET");
+		assertThat(operationNames.get("GET", "/users/{id}")).isEqualTo("GET /users/{id}");
+	}
+
+	@Test
+	void nameForUriTemplateIsMadeOfMethodAndTemplate() {
+		assertThat(this.operationNames.getForUriTemplate("GET", "https://example.com/users/{id}"))
+				.isEqualTo("GET https://example.com/users/{id}");
+	}
+
+	@Test
+	void nameForUriTemplateWithoutVariableIsMethod() {
+		assertThat(this.operationNames.getForUriTemplate("GET", "https://example.com/users/42")).isEqualTo("GET");
+	}
+
+	@Test
+	void nameForNullUriTemplateIsMethod() {
+		assertThat(this.operationNames.getForUriTemplate("GET", null)).isEqualTo("GET");
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.reporting.Reporter;
+
+/**
+ * A {@link Reporter} that records the spans it receives.
+ *
+ * @author Stephane Nicoll
+ */
+public class RecordingReporter implements Reporter {
+
+	private final List<WavefrontSpan> spans = Collections.synchronizedList(new ArrayList<>());
+
+	private volatile boolean closed;
+
+	@Override
+	public void report(WavefrontSpan span) {
+		this.spans.add(span);
+	}
+
+	@Override
+	public int getFailureCount() {
+		return 0;
+	}
+
+	@Override
+	public void close() {
+		this.closed = true;
+	}
+
+	public List<WavefrontSpan> getSpans() {
+		return this.spans;
+	}
+
+	public List<String> getOperationNames() {
+		synchronized (this.spans) {
+			return this.spans.stream().map(WavefrontSpan::getOperationName).collect(Collectors.toList());
+		}
+	}
+
+	public boolean awaitSpans(int count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (this.spans.size() < count) {
+			if (System.nanoTime() - deadline > 0) {
+				return false;
+			}
+			Thread.sleep(10);
+		}
+		return true;
+	}
+
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+}
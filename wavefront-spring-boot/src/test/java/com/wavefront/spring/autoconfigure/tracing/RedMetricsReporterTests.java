@@ -0,0 +1,176 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.Constants;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.entities.tracing.sampling.RateSampler;
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.withPercentage;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Tests for {@link RedMetricsReporter}.
+ *
+ * @author Stephane Nicoll
+ */
+class RedMetricsReporterTests {
+
+	private static final String PREFIX = "tracing.derived.test-app.test-service.";
+
+	private static final String DELTA_PREFIX = Constants.DELTA_PREFIX + PREFIX;
+
+	private final WavefrontSender sender = mock(WavefrontSender.class);
+
+	private final RecordingReporter delegate = new RecordingReporter();
+
+	private final ApplicationTags applicationTags = new ApplicationTags.Builder("test-app", "test-service")
+			.cluster("test-cluster").build();
+
+	private final RedMetricsReporter reporter = new RedMetricsReporter(this.sender, this.applicationTags, 2);
+
+	private LimitingTracer tracer = createTracer(new WavefrontTracer.Builder(this.delegate, this.applicationTags));
+
+	@Test
+	void spansThatAreNotSampledAreRecorded() throws IOException {
+		this.tracer = createTracer(
+				new WavefrontTracer.Builder(this.delegate, this.applicationTags).withSampler(new RateSampler(0.0)));
+		finish("test", 1000, false);
+		finish("test", 3000, true);
+		this.reporter.publish(123L);
+		assertThat(this.delegate.getSpans()).isEmpty();
+		verify(this.sender).sendMetric(eq(DELTA_PREFIX + "test.invocation.count"), eq(2.0), eq(123L), isNull(),
+				eq(tags("test")));
+		verify(this.sender).sendMetric(eq(DELTA_PREFIX + "test.error.count"), eq(1.0), eq(123L), isNull(),
+				eq(tags("test")));
+	}
+
+	@Test
+	void spanFinishedTwiceIsRecordedOnce() throws IOException {
+		Span span = this.tracer.buildSpan("test").withStartTimestamp(0).start();
+		span.finish(10);
+		span.finish(20);
+		this.reporter.publish(123L);
+		verify(this.sender).sendMetric(eq(DELTA_PREFIX + "test.invocation.count"), eq(1.0), eq(123L), isNull(),
+				eq(tags("test")));
+	}
+
+	@Test
+	void publishSendsCountersPerOperation() throws IOException {
+		finish("test", 1000, false);
+		finish("test", 3000, true);
+		finish("another", 10, false);
+		this.reporter.publish(123L);
+		Map<String, String> tags = tags("test");
+		verify(this.sender).sendMetric(eq(DELTA_PREFIX + "test.invocation.count"), eq(2.0), eq(123L), isNull(),
+				eq(tags));
+		verify(this.sender).sendMetric(eq(DELTA_PREFIX + "test.error.count"), eq(1.0), eq(123L), isNull(),
+				eq(tags));
+		verify(this.sender).sendMetric(eq(DELTA_PREFIX + "test.total_time.millis.count"), eq(4.0), eq(123L),
+				isNull(), eq(tags));
+		verify(this.sender).sendMetric(eq(DELTA_PREFIX + "another.invocation.count"), eq(1.0), eq(123L),
+				isNull(), eq(tags("another")));
+		verify(this.sender, never()).sendMetric(eq(DELTA_PREFIX + "another.error.count"), anyDouble(),
+				anyLong(), any(), any());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void publishSendsDurationHistogram() throws IOException {
+		finish("test", 1000, false);
+		finish("test", 1000, false);
+		finish("test", 3000, false);
+		this.reporter.publish(123L);
+		ArgumentCaptor<List<Pair<Double, Integer>>> centroids = ArgumentCaptor.forClass(List.class);
+		verify(this.sender).sendDistribution(eq(PREFIX + "test.duration.micros"), centroids.capture(), any(),
+				eq(123L), isNull(), eq(tags("test")));
+		assertThat(centroids.getValue()).hasSize(2);
+		assertThat(centroids.getValue().get(0)._1).isCloseTo(1000, withPercentage(13));
+		assertThat(centroids.getValue().get(0)._2).isEqualTo(2);
+		assertThat(centroids.getValue().get(1)._1).isCloseTo(3000, withPercentage(13));
+		assertThat(centroids.getValue().get(1)._2).isEqualTo(1);
+	}
+
+	@Test
+	void publishResetsMetrics() throws IOException {
+		finish("test", 1000, false);
+		this.reporter.publish(123L);
+		this.reporter.publish(456L);
+		verify(this.sender, never()).sendMetric(anyString(), anyDouble(), eq(456L), any(), any());
+	}
+
+	@Test
+	void operationsBeyondLimitAreIgnored() {
+		finish("one", 10, false);
+		finish("two", 10, false);
+		finish("three", 10, false);
+		assertThat(this.reporter.getIgnoredSpans()).isEqualTo(1);
+		assertThat(this.delegate.getSpans()).hasSize(3);
+	}
+
+	@Test
+	void closePublishesMetrics() throws IOException {
+		finish("test", 10, false);
+		this.reporter.close();
+		verify(this.sender).sendMetric(eq(DELTA_PREFIX + "test.invocation.count"), eq(1.0), anyLong(),
+				isNull(), eq(tags("test")));
+	}
+
+	@Test
+	void publishWithoutSpansSendsNothing() {
+		this.reporter.publish(123L);
+		verifyNoInteractions(this.sender);
+	}
+
+	private Map<String, String> tags(String operationName) {
+		Map<String, String> tags = new HashMap<>(this.applicationTags.toPointTags());
+		tags.put("operationName", operationName);
+		return tags;
+	}
+
+	private LimitingTracer createTracer(WavefrontTracer.Builder builder) {
+		return new LimitingTracer(builder.build(), 16, 256, 16, 256, this.reporter);
+	}
+
+	private void finish(String operationName, long durationMicros, boolean error) {
+		this.tracer.buildSpan(operationName).withStartTimestamp(0).withTag(Tags.ERROR.getKey(), error).start()
+				.finish(durationMicros);
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import io.opentracing.Span;
+import io.opentracing.Tracer.SpanBuilder;
+import io.opentracing.tag.Tags;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link TailSamplingReporter}.
+ *
+ * @author Stephane Nicoll
+ */
+class TailSamplingReporterTests {
+
+	private final AtomicLong time = new AtomicLong();
+
+	private final RecordingReporter delegate = new RecordingReporter();
+
+	private final TailSamplingReporter reporter = new TailSamplingReporter(this.delegate, Duration.ofMillis(100),
+			Duration.ofSeconds(10), 5, this.time::get);
+
+	private final WavefrontTracer tracer = new WavefrontTracer.Builder(this.reporter,
+			new ApplicationTags.Builder("test-app", "test-service").build()).build();
+
+	@Test
+	void fastTraceWithoutErrorIsDropped() {
+		Span root = start("root", null);
+		start("child", root).finish(10);
+		root.finish(50_000);
+		assertThat(this.delegate.getSpans()).isEmpty();
+		assertThat(this.reporter.getDroppedTraces()).isEqualTo(1);
+		assertThat(this.reporter.getBufferedSpans()).isZero();
+	}
+
+	@Test
+	void slowTraceIsKept() {
+		Span root = start("root", null);
+		start("child", root).finish(10);
+		root.finish(100_000);
+		assertThat(this.delegate.getOperationNames()).containsExactly("child", "root");
+		assertThat(this.reporter.getKeptTraces()).isEqualTo(1);
+	}
+
+	@Test
+	void traceWithErrorIsKept() {
+		Span root = start("root", null);
+		start("child", root).setTag(Tags.ERROR.getKey(), true).finish(10);
+		root.finish(20);
+		assertThat(this.delegate.getOperationNames()).containsExactly("child", "root");
+	}
+
+	@Test
+	void traceIsHeldUntilLocalRootFinishes() {
+		Span root = start("root", null);
+		start("child", root).setTag(Tags.ERROR.getKey(), true).finish(10);
+		assertThat(this.delegate.getSpans()).isEmpty();
+		assertThat(this.reporter.getBufferedSpans()).isEqualTo(1);
+		root.finish(20);
+		assertThat(this.delegate.getSpans()).hasSize(2);
+	}
+
+	@Test
+	void serverSpanIsLocalRoot() {
+		Span remote = start("remote", null);
+		Span server = this.tracer.buildSpan("server").asChildOf(remote)
+				.withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER).withStartTimestamp(0).start();
+		start("child", server).setTag(Tags.ERROR.getKey(), true).finish(10);
+		server.finish(20);
+		assertThat(this.delegate.getOperationNames()).containsExactly("child", "server");
+	}
+
+	@Test
+	void traceIsDecidedOnceWindowHasElapsed() {
+		Span root = start("root", null);
+		start("child", root).setTag(Tags.ERROR.getKey(), true).finish(10);
+		this.time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+		start("another", null).finish(10);
+		assertThat(this.delegate.getOperationNames()).containsExactly("child");
+		assertThat(this.reporter.getEvictedTraces()).isZero();
+	}
+
+	@Test
+	void flushDecidesTracesWhoseWindowHasElapsed() throws IOException {
+		Span root = start("root", null);
+		start("child", root).setTag(Tags.ERROR.getKey(), true).finish(10);
+		this.reporter.flush();
+		assertThat(this.delegate.getSpans()).isEmpty();
+		this.time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+		this.reporter.flush();
+		assertThat(this.delegate.getOperationNames()).containsExactly("child");
+		assertThat(this.reporter.getBufferedSpans()).isZero();
+	}
+
+	@Test
+	void oldestTraceIsEvictedWhenTooManySpansAreHeld() {
+		Span root = start("root", null);
+		start("child", root).setTag(Tags.ERROR.getKey(), true).finish(10);
+		Span another = start("another", null);
+		for (int i = 0; i < 5; i++) {
+			start("another-child", another).finish(10);
+		}
+		assertThat(this.delegate.getOperationNames()).containsExactly("child");
+		assertThat(this.reporter.getEvictedTraces()).isEqualTo(1);
+		assertThat(this.reporter.getBufferedSpans()).isEqualTo(5);
+	}
+
+	@Test
+	void closeDecidesHeldTracesAndClosesDelegate() throws IOException {
+		Span root = start("root", null);
+		start("child", root).setTag(Tags.ERROR.getKey(), true).finish(10);
+		this.reporter.close();
+		assertThat(this.delegate.getOperationNames()).containsExactly("child");
+		assertThat(this.delegate.isClosed()).isTrue();
+	}
+
+	private Span start(String operationName, Span parent) {
+		SpanBuilder builder = this.tracer.buildSpan(operationName).withStartTimestamp(0);
+		if (parent != null) {
+			builder = builder.asChildOf(parent);
+		}
+		return builder.start();
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.client;
+
+import java.net.URI;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.spring.autoconfigure.tracing.RecordingReporter;
+import io.opentracing.Scope;
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Tests for {@link TracingRestTemplateCustomizer} and
+ * {@link TracingClientHttpRequestInterceptor}.
+ *
+ * @author Stephane Nicoll
+ */
+class TracingRestTemplateCustomizerTests {
+
+	private final RecordingReporter reporter = new RecordingReporter();
+
+	private final WavefrontTracer tracer = new WavefrontTracer.Builder(this.reporter,
+			new ApplicationTags.Builder("test-app", "test-service").build()).build();
+
+	private final RestTemplate restTemplate = new RestTemplate();
+
+	private final MockRestServiceServer server;
+
+	TracingRestTemplateCustomizerTests() {
+		new TracingRestTemplateCustomizer(this.tracer).customize(this.restTemplate);
+		this.server = MockRestServiceServer.bindTo(this.restTemplate).build();
+	}
+
+	@Test
+	void clientSpanIsNamedAfterUriTemplate() {
+		this.server.expect(requestTo("https://example.com/users/42")).andRespond(withSuccess());
+		this.restTemplate.getForObject("https://example.com/users/{id}", String.class, 42);
+		assertThat(this.reporter.getOperationNames()).containsExactly("GET https://example.com/users/{id}");
+		WavefrontSpan span = this.reporter.getSpans().get(0);
+		assertThat(tag(span, Tags.SPAN_KIND.getKey())).isEqualTo(Tags.SPAN_KIND_CLIENT);
+		assertThat(tag(span, Tags.HTTP_URL.getKey())).isEqualTo("https://example.com/users/42");
+		assertThat(tag(span, Tags.HTTP_STATUS.getKey())).isEqualTo("200");
+	}
+
+	@Test
+	void clientSpanWithoutUriTemplateIsNamedAfterMethod() {
+		this.server.expect(requestTo("https://example.com/users")).andRespond(withSuccess());
+		this.restTemplate.postForObject(URI.create("https://example.com/users"), null, String.class);
+		assertThat(this.reporter.getOperationNames()).containsExactly("POST");
+	}
+
+	@Test
+	void clientSpanWithConcatenatedUriIsNamedAfterMethod() {
+		this.server.expect(requestTo("https://example.com/users/42")).andRespond(withSuccess());
+		this.restTemplate.getForObject("https://example.com/users/" + 42, String.class);
+		assertThat(this.reporter.getOperationNames()).containsExactly("GET");
+	}
+
+	@Test
+	void clientSpanContextIsInjectedInRequestHeaders() {
+		HttpHeaders sentHeaders = new HttpHeaders();
+		this.server.expect(requestTo("https://example.com"))
+				.andExpect((request) -> sentHeaders.putAll(request.getHeaders())).andRespond(withSuccess());
+		this.restTemplate.getForObject("https://example.com", String.class);
+		WavefrontSpan span = this.reporter.getSpans().get(0);
+		assertThat(sentHeaders.toSingleValueMap()).containsValue(span.context().getSpanId().toString());
+	}
+
+	@Test
+	void clientSpanIsChildOfActiveSpan() {
+		this.server.expect(requestTo("https://example.com")).andRespond(withSuccess());
+		Span parent = this.tracer.buildSpan("parent").start();
+		try (Scope scope = this.tracer.scopeManager().activate(parent, false)) {
+			this.restTemplate.getForObject("https://example.com", String.class);
+		}
+		WavefrontSpan span = this.reporter.getSpans().get(0);
+		assertThat(span.getParents()).containsExactly(((WavefrontSpan) parent).context().getSpanId());
+	}
+
+	@Test
+	void clientSpanIsTaggedAsErrorOnServerError() {
+		this.server.expect(requestTo("https://example.com")).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+		assertThatExceptionOfType(HttpServerErrorException.class)
+				.isThrownBy(() -> this.restTemplate.getForObject("https://example.com", String.class));
+		WavefrontSpan span = this.reporter.getSpans().get(0);
+		assertThat(tag(span, Tags.HTTP_STATUS.getKey())).isEqualTo("503");
+		assertThat(tag(span, Tags.ERROR.getKey())).isEqualTo("true");
+	}
+
+	@Test
+	void tracingInterceptorIsAddedBeforeExistingInterceptors() {
+		RestTemplate restTemplate = new RestTemplate();
+		ClientHttpRequestInterceptor existing = mock(ClientHttpRequestInterceptor.class);
+		restTemplate.getInterceptors().add(existing);
+		new TracingRestTemplateCustomizer(this.tracer).customize(restTemplate);
+		assertThat(restTemplate.getInterceptors()).hasSize(2);
+		assertThat(restTemplate.getInterceptors().get(0)).isInstanceOf(TracingClientHttpRequestInterceptor.class);
+		assertThat(restTemplate.getInterceptors().get(1)).isSameAs(existing);
+	}
+
+	private String tag(WavefrontSpan span, String key) {
+		return span.getTagsAsList().stream().filter((tag) -> tag._1.equals(key)).map((tag) -> tag._2).findFirst()
+				.orElse(null);
+	}
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link SqlFingerprints}.
+ *
+ * @author Stephane Nicoll
+ */
+class SqlFingerprintsTests {
+
+	@Test
+	void normalizeReplacesStringLiterals() {
+		assertThat(SqlFingerprints.normalize("SELECT * FROM users WHERE name = 'O''Brien'"))
+				.isEqualTo("SELECT * FROM users WHERE name = ?");
+	}
+
+	@Test
+	void normalizeReplacesNumericLiterals() {
+		assertThat(SqlFingerprints.normalize("SELECT * FROM users WHERE id = 42 AND score > 3.5"))
+				.isEqualTo("SELECT * FROM users WHERE id = ? AND score > ?");
+	}
+
+	@Test
+	void normalizeKeepsDigitsOfIdentifiers() {
+		assertThat(SqlFingerprints.normalize("SELECT t1.col2 FROM table_3 t1"))
+				.isEqualTo("SELECT t1.col2 FROM table_3 t1");
+	}
+
+	@Test
+	void normalizeKeepsQuotedIdentifiers() {
+		assertThat(SqlFingerprints.normalize("SELECT \"user 1\" FROM `order`"))
+				.isEqualTo("SELECT \"user 1\" FROM `order`");
+	}
+
+	@Test
+	void normalizeCollapsesInLists() {
+		assertThat(SqlFingerprints.normalize("SELECT * FROM users WHERE id IN (1, 2,3)"))
+				.isEqualTo("SELECT * FROM users WHERE id IN (?)");
+		assertThat(SqlFingerprints.normalize("SELECT * FROM users WHERE id in(?,?)"))
+				.isEqualTo("SELECT * FROM users WHERE id IN (?)");
+	}
+
+	@Test
+	void normalizeRemovesCommentsAndWhitespaces() {
+		assertThat(SqlFingerprints.normalize("  SELECT /* hint */ *\n\tFROM users -- all of them\n WHERE 1 = 1  "))
+				.isEqualTo("SELECT * FROM users WHERE ? = ?");
+	}
+
+	@Test
+	void idIsShortAndStable() {
+		String id = SqlFingerprints.id("SELECT * FROM users WHERE id = ?");
+		assertThat(id).hasSize(8).isEqualTo(SqlFingerprints.id("SELECT * FROM users WHERE id = ?"))
+				.isNotEqualTo(SqlFingerprints.id("SELECT * FROM users WHERE name = ?"));
+	}
+
+	@Test
+	void operationNameIsFirstKeyword() {
+		assertThat(SqlFingerprints.operationName("select * from users")).isEqualTo("SELECT");
+		assertThat(SqlFingerprints.operationName("{call refresh(?)}")).isEqualTo("CALL");
+		assertThat(SqlFingerprints.operationName("?")).isEqualTo("JDBC");
+	}
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.spring.autoconfigure.tracing.RecordingReporter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentracing.Scope;
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.aop.support.AopUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Tests for {@link TracingDataSourceBeanPostProcessor}.
+ *
+ * @author Stephane Nicoll
+ */
+class TracingDataSourceBeanPostProcessorTests {
+
+	private final RecordingReporter reporter = new RecordingReporter();
+
+	private final WavefrontTracer tracer = new WavefrontTracer.Builder(this.reporter,
+			new ApplicationTags.Builder("test-app", "test-service").build()).build();
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final TracingDataSourceBeanPostProcessor postProcessor = new TracingDataSourceBeanPostProcessor(
+			() -> this.tracer, () -> this.registry, 10);
+
+	private DataSource dataSource;
+
+	@BeforeEach
+	void createDataSource() throws SQLException {
+		JdbcDataSource target = new JdbcDataSource();
+		target.setURL("jdbc:h2:mem:" + getClass().getSimpleName() + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+		this.dataSource = (DataSource) this.postProcessor.postProcessAfterInitialization(target, "testDataSource");
+		try (Connection connection = this.dataSource.getConnection();
+				Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE users (id INT PRIMARY KEY, name VARCHAR(64))");
+		}
+	}
+
+	@Test
+	void dataSourceIsProxied() {
+		assertThat(AopUtils.isAopProxy(this.dataSource)).isTrue();
+		assertThat(this.postProcessor.postProcessAfterInitialization(this.dataSource, "testDataSource"))
+				.isSameAs(this.dataSource);
+	}
+
+	@Test
+	void statementIsTimedByFingerprintId() throws SQLException {
+		try (Connection connection = this.dataSource.getConnection();
+				Statement statement = connection.createStatement()) {
+			statement.executeUpdate("INSERT INTO users VALUES (1, 'Alice')");
+			statement.executeUpdate("INSERT INTO users VALUES (2, 'Bob')");
+		}
+		Timer timer = this.registry.get(StatementObserver.METER_NAME).tag("datasource", "testDataSource")
+				.tag("operation", "INSERT").tag("statement", SqlFingerprints.id("INSERT INTO users VALUES (?, ?)"))
+				.tag("outcome", "SUCCESS").timer();
+		assertThat(timer.count()).isEqualTo(2);
+	}
+
+	@Test
+	void failedStatementIsTimedAsError() throws SQLException {
+		try (Connection connection = this.dataSource.getConnection();
+				Statement statement = connection.createStatement()) {
+			assertThatExceptionOfType(SQLException.class)
+					.isThrownBy(() -> statement.executeQuery("SELECT * FROM missing WHERE id = 1"));
+		}
+		Timer timer = this.registry.get(StatementObserver.METER_NAME)
+				.tag("statement", SqlFingerprints.id("SELECT * FROM missing WHERE id = ?")).tag("outcome", "ERROR")
+				.timer();
+		assertThat(timer.count()).isEqualTo(1);
+	}
+
+	@Test
+	void statementCreatesSpanWhenSpanIsActive() throws SQLException {
+		Span parent = this.tracer.buildSpan("parent").start();
+		try (Scope scope = this.tracer.scopeManager().activate(parent, false);
+				Connection connection = this.dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement("SELECT name FROM users WHERE id = 7")) {
+			statement.executeQuery().close();
+		}
+		assertThat(this.reporter.getSpans()).hasSize(1);
+		WavefrontSpan span = this.reporter.getSpans().get(0);
+		assertThat(span.getOperationName()).isEqualTo("SELECT");
+		assertThat(span.getParents()).hasSize(1);
+		assertThat(tag(span, Tags.DB_STATEMENT.getKey())).isEqualTo("SELECT name FROM users WHERE id = ?");
+		assertThat(tag(span, StatementObserver.STATEMENT_ID_TAG))
+				.isEqualTo(SqlFingerprints.id("SELECT name FROM users WHERE id = ?"));
+		assertThat(tag(span, Tags.DB_INSTANCE.getKey())).isEqualTo("testDataSource");
+		assertThat(tag(span, Tags.SPAN_KIND.getKey())).isEqualTo(Tags.SPAN_KIND_CLIENT);
+	}
+
+	@Test
+	void statementDoesNotCreateSpanWithoutActiveSpan() throws SQLException {
+		try (Connection connection = this.dataSource.getConnection();
+				Statement statement = connection.createStatement()) {
+			statement.executeQuery("SELECT * FROM users").close();
+		}
+		assertThat(this.reporter.getSpans()).isEmpty();
+		assertThat(this.registry.get(StatementObserver.METER_NAME)
+				.tag("statement", SqlFingerprints.id("SELECT * FROM users")).timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	void batchIsTimedWithPreparedStatement() throws SQLException {
+		try (Connection connection = this.dataSource.getConnection();
+				PreparedStatement statement = connection.prepareStatement("INSERT INTO users VALUES (?, ?)")) {
+			for (int i = 0; i < 3; i++) {
+				statement.setInt(1, i);
+				statement.setString(2, "user" + i);
+				statement.addBatch();
+			}
+			statement.executeBatch();
+		}
+		assertThat(this.registry.get(StatementObserver.METER_NAME)
+				.tag("statement", SqlFingerprints.id("INSERT INTO users VALUES (?, ?)")).timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	void statementReturnsInstrumentedConnection() throws SQLException {
+		try (Connection connection = this.dataSource.getConnection();
+				Statement statement = connection.createStatement()) {
+			assertThat(statement.getConnection()).isSameAs(connection);
+		}
+	}
+
+	@Test
+	void leastRecentlyUsedMetadataIsEvicted() {
+		StatementObserver observer = new StatementObserver("test", this.tracer, () -> null, 2);
+		StatementObserver.StatementMetadata first = observer.getMetadata("SELECT 1");
+		assertThat(observer.getMetadata("SELECT 1")).isSameAs(first);
+		StatementObserver.StatementMetadata second = observer.getMetadata("SELECT 2");
+		observer.getMetadata("SELECT 1");
+		StatementObserver.StatementMetadata third = observer.getMetadata("SELECT 3");
+		assertThat(observer.getMetadata("SELECT 3")).isSameAs(third);
+		assertThat(observer.getMetadata("SELECT 1")).isSameAs(first);
+		assertThat(observer.getMetadata("SELECT 2")).isNotSameAs(second);
+	}
+
+	@Test
+	void hotStatementStaysCachedWhenCacheIsFilledWithUniqueStatements() {
+		StatementObserver observer = new StatementObserver("test", this.tracer, () -> null, 256);
+		StatementObserver.StatementMetadata hot = observer.getMetadata("SELECT * FROM test WHERE id = ?");
+		for (int i = 0; i < 10000; i++) {
+			observer.getMetadata("SELECT * FROM test_" + i);
+			assertThat(observer.getMetadata("SELECT * FROM test WHERE id = ?")).isSameAs(hot);
+		}
+	}
+
+	private String tag(WavefrontSpan span, String key) {
+		return span.getTagsAsList().stream().filter((tag) -> tag._1.equals(key)).map((tag) -> tag._2).findFirst()
+				.orElse(null);
+	}
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.reactive;
+
+import java.net.URI;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.spring.autoconfigure.tracing.RecordingReporter;
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link TracingExchangeFilterFunction}.
+ *
+ * @author Stephane Nicoll
+ */
+class TracingExchangeFilterFunctionTests {
+
+	private final RecordingReporter reporter = new RecordingReporter();
+
+	private final WavefrontTracer tracer = new WavefrontTracer.Builder(this.reporter,
+			new ApplicationTags.Builder("test-app", "test-service").build()).build();
+
+	private final HttpHeaders sentHeaders = new HttpHeaders();
+
+	private HttpStatus status = HttpStatus.OK;
+
+	private final WebClient client = WebClient.builder().exchangeFunction((request) -> {
+		this.sentHeaders.putAll(request.headers());
+		return Mono.just(ClientResponse.create(this.status).build());
+	}).filter(new TracingExchangeFilterFunction(this.tracer)).build();
+
+	@Test
+	void clientSpanIsNamedAfterUriTemplate() {
+		this.client.get().uri("https://example.com/users/{id}", 42).retrieve().toBodilessEntity().block();
+		assertThat(this.reporter.getOperationNames()).containsExactly("GET https://example.com/users/{id}");
+		WavefrontSpan span = this.reporter.getSpans().get(0);
+		assertThat(tag(span, Tags.SPAN_KIND.getKey())).isEqualTo(Tags.SPAN_KIND_CLIENT);
+		assertThat(tag(span, Tags.HTTP_URL.getKey())).isEqualTo("https://example.com/users/42");
+		assertThat(tag(span, Tags.HTTP_STATUS.getKey())).isEqualTo("200");
+	}
+
+	@Test
+	void clientSpanWithoutUriTemplateIsNamedAfterMethod() {
+		this.client.post().uri(URI.create("https://example.com/users")).retrieve().toBodilessEntity()
+				.block();
+		assertThat(this.reporter.getOperationNames()).containsExactly("POST");
+	}
+
+	@Test
+	void clientSpanWithConcatenatedUriIsNamedAfterMethod() {
+		this.client.get().uri("https://example.com/users/" + 42).retrieve().toBodilessEntity().block();
+		assertThat(this.reporter.getOperationNames()).containsExactly("GET");
+	}
+
+	@Test
+	void clientSpanIsChildOfSpanInReactorContext() {
+		Span parent = this.tracer.buildSpan("parent").start();
+		this.client.get().uri("https://example.com").retrieve().toBodilessEntity()
+				.subscriberContext((context) -> TracingContext.withSpan(context, parent)).block();
+		WavefrontSpan span = this.reporter.getSpans().get(0);
+		assertThat(span.getParents()).containsExactly(((WavefrontSpan) parent).context().getSpanId());
+	}
+
+	@Test
+	void clientSpanContextIsInjectedInRequestHeaders() {
+		this.client.get().uri("https://example.com").retrieve().toBodilessEntity().block();
+		WavefrontSpan span = this.reporter.getSpans().get(0);
+		assertThat(this.sentHeaders.toSingleValueMap()).containsValue(span.context().getSpanId().toString());
+	}
+
+	@Test
+	void clientSpanIsTaggedAsErrorOnServerError() {
+		this.status = HttpStatus.SERVICE_UNAVAILABLE;
+		assertThatThrownBy(() -> this.client.get().uri("https://example.com").retrieve().toBodilessEntity().block())
+				.isNotNull();
+		WavefrontSpan span = this.reporter.getSpans().get(0);
+		assertThat(tag(span, Tags.HTTP_STATUS.getKey())).isEqualTo("503");
+		assertThat(tag(span, Tags.ERROR.getKey())).isEqualTo("true");
+	}
+
+	private String tag(WavefrontSpan span, String key) {
+		return span.getTagsAsList().stream().filter((tag) -> tag._1.equals(key)).map((tag) -> tag._2).findFirst()
+				.orElse(null);
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.reactive;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.spring.autoconfigure.tracing.RecordingReporter;
+import io.opentracing.Span;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMapInjectAdapter;
+import io.opentracing.tag.Tags;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link TracingWebFilter}.
+ *
+ * @author Stephane Nicoll
+ */
+class TracingWebFilterTests {
+
+	private final RecordingReporter reporter = new RecordingReporter();
+
+	private final WavefrontTracer tracer = new WavefrontTracer.Builder(this.reporter,
+			new ApplicationTags.Builder("test-app", "test-service").build()).build();
+
+	private final WebTestClient client = WebTestClient.bindToController(new TestController())
+			.webFilter(new TracingWebFilter(this.tracer)).build();
+
+	@Test
+	void serverSpanIsNamedAfterRouteTemplate() throws InterruptedException {
+		this.client.get().uri("/users/42").exchange().expectStatus().isOk();
+		assertThat(this.reporter.awaitSpans(1)).isTrue();
+		assertThat(this.reporter.getOperationNames()).containsExactly("GET /users/{id}");
+		WavefrontSpan span = this.reporter.getSpans().get(0);
+		assertThat(tag(span, Tags.SPAN_KIND.getKey())).isEqualTo(Tags.SPAN_KIND_SERVER);
+		assertThat(tag(span, Tags.HTTP_STATUS.getKey())).isEqualTo("200");
+		assertThat(tag(span, Tags.ERROR.getKey())).isNull();
+	}
+
+	@Test
+	void serverSpanIsAvailableInReactorContextAcrossThreads() throws InterruptedException {
+		this.client.get().uri("/context").exchange().expectStatus().isOk();
+		assertThat(this.reporter.awaitSpans(1)).isTrue();
+		assertThat(this.reporter.getOperationNames()).containsExactly("GET /context");
+		assertThat(tag(this.reporter.getSpans().get(0), "active")).isEqualTo("true");
+	}
+
+	@Test
+	void serverSpanContinuesTraceOfCaller() throws InterruptedException {
+		Span caller = this.tracer.buildSpan("caller").start();
+		Map<String, String> headers = new HashMap<>();
+		this.tracer.inject(caller.context(), Format.Builtin.HTTP_HEADERS, new TextMapInjectAdapter(headers));
+		this.client.get().uri("/users/42").headers((httpHeaders) -> headers.forEach(httpHeaders::set)).exchange()
+				.expectStatus().isOk();
+		assertThat(this.reporter.awaitSpans(1)).isTrue();
+		WavefrontSpan span = this.reporter.getSpans().get(0);
+		assertThat(span.getParents()).containsExactly(((WavefrontSpan) caller).context().getSpanId());
+	}
+
+	@Test
+	void serverSpanIsTaggedAsErrorWhenHandlerFails() throws InterruptedException {
+		this.client.get().uri("/fail").exchange().expectStatus().is5xxServerError();
+		assertThat(this.reporter.awaitSpans(1)).isTrue();
+		assertThat(this.reporter.getOperationNames()).containsExactly("GET /fail");
+		assertThat(tag(this.reporter.getSpans().get(0), Tags.ERROR.getKey())).isEqualTo("true");
+	}
+
+	private String tag(WavefrontSpan span, String key) {
+		return span.getTagsAsList().stream().filter((tag) -> tag._1.equals(key)).map((tag) -> tag._2).findFirst()
+				.orElse(null);
+	}
+
+	@RestController
+	static class TestController {
+
+		@GetMapping("/users/{id}")
+		Mono<String> user(@PathVariable String id) {
+			return Mono.just(id);
+		}
+
+		@GetMapping("/context")
+		Mono<String> context() {
+			return Mono.just("context").publishOn(Schedulers.parallel()).flatMap((value) -> TracingContext
+					.currentSpan().map((span) -> span.setTag("active", true)).thenReturn(value));
+		}
+
+		@GetMapping("/fail")
+		Mono<String> fail() {
+			return Mono.error(new IllegalStateException("test"));
+		}
+
+	}
+
+}
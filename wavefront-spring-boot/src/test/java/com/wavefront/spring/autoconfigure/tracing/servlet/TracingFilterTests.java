@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.servlet;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.spring.autoconfigure.tracing.RecordingReporter;
+import io.opentracing.Span;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMapInjectAdapter;
+import io.opentracing.tag.Tags;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests for {@link TracingFilter} and {@link TracingHandlerInterceptor}.
+ *
+ * @author Stephane Nicoll
+ */
+class TracingFilterTests {
+
+	private final RecordingReporter reporter = new RecordingReporter();
+
+	private final WavefrontTracer tracer = new WavefrontTracer.Builder(this.reporter,
+			new ApplicationTags.Builder("test-app", "test-service").build()).build();
+
+	private final MockMvc mvc = MockMvcBuilders.standaloneSetup(new TestController())
+			.addFilters(new TracingFilter(this.tracer)).addInterceptors(new TracingHandlerInterceptor()).build();
+
+	@Test
+	void serverSpanIsNamedAfterRouteTemplate() throws Exception {
+		this.mvc.perform(get("/users/42")).andExpect(status().isOk());
+		assertThat(this.reporter.getOperationNames()).containsExactly("GET /users/{id}");
+		WavefrontSpan span = this.reporter.getSpans().get(0);
+		assertThat(tag(span, Tags.SPAN_KIND.getKey())).isEqualTo(Tags.SPAN_KIND_SERVER);
+		assertThat(tag(span, Tags.HTTP_METHOD.getKey())).isEqualTo("GET");
+		assertThat(tag(span, Tags.HTTP_STATUS.getKey())).isEqualTo("200");
+		assertThat(tag(span, Tags.ERROR.getKey())).isNull();
+	}
+
+	@Test
+	void serverSpanIsActiveWhileHandlingRequest() throws Exception {
+		this.mvc.perform(get("/active")).andExpect(status().isOk());
+		assertThat(this.reporter.getOperationNames()).containsExactly("GET /active");
+		assertThat(tag(this.reporter.getSpans().get(0), "active")).isEqualTo("true");
+	}
+
+	@Test
+	void serverSpanContinuesTraceOfCaller() throws Exception {
+		Span caller = this.tracer.buildSpan("caller").start();
+		Map<String, String> headers = new HashMap<>();
+		this.tracer.inject(caller.context(), Format.Builtin.HTTP_HEADERS, new TextMapInjectAdapter(headers));
+		MockHttpServletRequestBuilder request = get("/users/42");
+		headers.forEach(request::header);
+		this.mvc.perform(request).andExpect(status().isOk());
+		WavefrontSpan span = this.reporter.getSpans().get(0);
+		WavefrontSpan callerSpan = (WavefrontSpan) caller;
+		assertThat(span.context().getTraceId()).isEqualTo(callerSpan.context().getTraceId());
+		assertThat(span.getParents()).containsExactly(callerSpan.context().getSpanId());
+	}
+
+	@Test
+	void serverSpanIsTaggedAsErrorWhenHandlerFails() {
+		assertThatThrownBy(() -> this.mvc.perform(get("/fail"))).hasRootCauseInstanceOf(IllegalStateException.class);
+		assertThat(this.reporter.getOperationNames()).containsExactly("GET /fail");
+		assertThat(tag(this.reporter.getSpans().get(0), Tags.ERROR.getKey())).isEqualTo("true");
+	}
+
+	@Test
+	void serverSpanForUnmappedRequestIsNamedAfterMethod() throws Exception {
+		this.mvc.perform(get("/missing")).andExpect(status().isNotFound());
+		assertThat(this.reporter.getOperationNames()).containsExactly("GET");
+	}
+
+	private String tag(WavefrontSpan span, String key) {
+		return span.getTagsAsList().stream().filter((tag) -> tag._1.equals(key)).map((tag) -> tag._2).findFirst()
+				.orElse(null);
+	}
+
+	@RestController
+	class TestController {
+
+		@GetMapping("/users/{id}")
+		String user(@PathVariable String id) {
+			return id;
+		}
+
+		@GetMapping("/active")
+		String active() {
+			TracingFilterTests.this.tracer.activeSpan().setTag("active", true);
+			return "active";
+		}
+
+		@GetMapping("/fail")
+		String fail() {
+			throw new IllegalStateException("test");
+		}
+
+	}
+
+}
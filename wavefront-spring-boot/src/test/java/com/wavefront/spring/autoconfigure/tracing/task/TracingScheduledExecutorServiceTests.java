@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.task;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.spring.autoconfigure.tracing.RecordingReporter;
+import io.opentracing.Scope;
+import io.opentracing.Span;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link TracingScheduledExecutorService}.
+ *
+ * @author Stephane Nicoll
+ */
+class TracingScheduledExecutorServiceTests {
+
+	private final WavefrontTracer tracer = new WavefrontTracer.Builder(new RecordingReporter(),
+			new ApplicationTags.Builder("test-app", "test-service").build()).build();
+
+	private final ScheduledExecutorService delegate = Executors.newSingleThreadScheduledExecutor();
+
+	private final TracingScheduledExecutorService executor = new TracingScheduledExecutorService(this.delegate,
+			new TracingTaskDecorator(this.tracer));
+
+	@AfterEach
+	void shutdown() {
+		this.executor.shutdownNow();
+	}
+
+	@Test
+	void executePropagatesActiveSpan() throws InterruptedException {
+		AtomicReference<Span> activeSpan = new AtomicReference<>();
+		CountDownLatch latch = new CountDownLatch(1);
+		Span span = this.tracer.buildSpan("test").start();
+		try (Scope scope = this.tracer.scopeManager().activate(span, false)) {
+			this.executor.execute(() -> {
+				activeSpan.set(this.tracer.activeSpan());
+				latch.countDown();
+			});
+		}
+		assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(activeSpan.get()).isSameAs(span);
+	}
+
+	@Test
+	void schedulePropagatesActiveSpan() throws Exception {
+		Span span = this.tracer.buildSpan("test").start();
+		Future<Span> future;
+		try (Scope scope = this.tracer.scopeManager().activate(span, false)) {
+			future = this.executor.schedule(this.tracer::activeSpan, 10, TimeUnit.MILLISECONDS);
+		}
+		assertThat(future.get(5, TimeUnit.SECONDS)).isSameAs(span);
+	}
+
+	@Test
+	void invokeAllPropagatesActiveSpan() throws Exception {
+		Span span = this.tracer.buildSpan("test").start();
+		List<Future<Span>> futures;
+		try (Scope scope = this.tracer.scopeManager().activate(span, false)) {
+			futures = this.executor.invokeAll(Arrays.asList(this.tracer::activeSpan, this.tracer::activeSpan));
+		}
+		for (Future<Span> future : futures) {
+			assertThat(future.get()).isSameAs(span);
+		}
+	}
+
+	@Test
+	void submitWithoutActiveSpanRunsWithoutSpan() throws Exception {
+		assertThat(this.executor.submit(this.tracer::activeSpan).get(5, TimeUnit.SECONDS)).isNull();
+	}
+
+	@Test
+	void shutdownIsDelegated() {
+		this.executor.shutdown();
+		assertThat(this.delegate.isShutdown()).isTrue();
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wavefront.spring.autoconfigure.tracing.task;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.spring.autoconfigure.tracing.RecordingReporter;
+import io.opentracing.Scope;
+import io.opentracing.Span;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link TracingTaskDecorator}.
+ *
+ * @author Stephane Nicoll
+ */
+class TracingTaskDecoratorTests {
+
+	private final WavefrontTracer tracer = new WavefrontTracer.Builder(new RecordingReporter(),
+			new ApplicationTags.Builder("test-app", "test-service").build()).build();
+
+	private final TracingTaskDecorator taskDecorator = new TracingTaskDecorator(this.tracer);
+
+	@Test
+	void runnableIsNotDecoratedWithoutActiveSpan() {
+		Runnable runnable = () -> {
+		};
+		assertThat(this.taskDecorator.decorate(runnable)).isSameAs(runnable);
+	}
+
+	@Test
+	void callableIsNotDecoratedWithoutActiveSpan() {
+		Callable<String> callable = () -> "test";
+		assertThat(this.taskDecorator.decorate(callable)).isSameAs(callable);
+	}
+
+	@Test
+	void runnableRunsWithSpanActiveWhenDecorated() throws InterruptedException {
+		AtomicReference<Span> activeSpan = new AtomicReference<>();
+		Span span = this.tracer.buildSpan("test").start();
+		Runnable runnable;
+		try (Scope scope = this.tracer.scopeManager().activate(span, false)) {
+			runnable = this.taskDecorator.decorate(() -> activeSpan.set(this.tracer.activeSpan()));
+		}
+		Thread thread = new Thread(runnable);
+		thread.start();
+		thread.join();
+		assertThat(activeSpan.get()).isSameAs(span);
+	}
+
+	@Test
+	void callableRunsWithSpanActiveWhenDecorated() throws Exception {
+		Span span = this.tracer.buildSpan("test").start();
+		Callable<Span> callable;
+		try (Scope scope = this.tracer.scopeManager().activate(span, false)) {
+			callable = this.taskDecorator.decorate(this.tracer::activeSpan);
+		}
+		assertThat(callable.call()).isSameAs(span);
+		assertThat(this.tracer.activeSpan()).isNull();
+	}
+
+	@Test
+	void spanIsNotFinishedWhenTaskCompletes() {
+		RecordingReporter reporter = new RecordingReporter();
+		WavefrontTracer tracer = new WavefrontTracer.Builder(reporter,
+				new ApplicationTags.Builder("test-app", "test-service").build()).build();
+		Span span = tracer.buildSpan("test").start();
+		Runnable runnable;
+		try (Scope scope = tracer.scopeManager().activate(span, false)) {
+			runnable = new TracingTaskDecorator(tracer).decorate(() -> {
+			});
+		}
+		runnable.run();
+		assertThat(reporter.getSpans()).isEmpty();
+	}
+
+}